@@ -1,6 +1,5 @@
 package org.xlrnet.datac.administration.services;
 
-import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -13,6 +12,8 @@ import org.xlrnet.datac.administration.util.MaintenanceModeEvent;
 import org.xlrnet.datac.commons.exception.DatacRuntimeException;
 import org.xlrnet.datac.commons.tasks.RunnableTask;
 import org.xlrnet.datac.database.services.ChangeIndexingService;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.services.FileService;
 import org.xlrnet.datac.foundation.services.ProjectService;
@@ -20,8 +21,10 @@ import org.xlrnet.datac.vcs.services.LockingService;
 import org.xlrnet.datac.vcs.services.RevisionGraphService;
 import org.xlrnet.datac.vcs.services.VersionControlSystemRegistry;
 
-import java.util.Collection;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -32,11 +35,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Scope("singleton")
 public class ApplicationMaintenanceService {
 
-    /** Number of times the application will try to lock projects. */
-    private static final int MAX_LOCK_FAILED_ITERATIONS = 10;
-
-    /** Time in milliseconds between a lock attempt retry. */
-    private static final int MS_BETWEEN_LOCK_ATTEMPTS = 5000;
+    /** Maximum time in milliseconds to wait for the locks of all projects when starting maintenance mode. */
+    private static final long MAX_LOCK_WAIT_MS = 50000;
 
     /** Service for locking projects. */
     private final LockingService lockingService;
@@ -57,13 +57,16 @@ public class ApplicationMaintenanceService {
 
     private AtomicBoolean maintenanceModeEnabled = new AtomicBoolean(false);
 
+    /** Leases on all projects which are held while maintenance mode is enabled. Guarded by itself. */
+    private final List<LockLease> maintenanceLeases = new ArrayList<>();
+
     /**
      * Application event publisher.
      */
     private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public ApplicationMaintenanceService(LockingService lockingService, @Qualifier("defaultTaskExecutor") TaskExecutor executorService, ProjectService projectService, ChangeIndexingService indexingService, VersionControlSystemRegistry vcsRegistry, FileService fileService, RevisionGraphService revisionGraphService, ApplicationEventPublisher eventPublisher) {
+    public ApplicationMaintenanceService(LockingService lockingService, @Qualifier("indexingTaskExecutor") TaskExecutor executorService, ProjectService projectService, ChangeIndexingService indexingService, VersionControlSystemRegistry vcsRegistry, FileService fileService, RevisionGraphService revisionGraphService, ApplicationEventPublisher eventPublisher) {
         this.lockingService = lockingService;
         this.executorService = executorService;
         this.projectService = projectService;
@@ -127,39 +130,26 @@ public class ApplicationMaintenanceService {
     }
 
     private void unlockProjects() {
-        for (Project project : projectService.findAllAlphabetically()) {
-            lockingService.unlock(project);
+        synchronized (maintenanceLeases) {
+            for (LockLease lease : maintenanceLeases) {
+                lockingService.release(lease);
+            }
+            maintenanceLeases.clear();
         }
     }
 
     private void lockProjects() {
-        int lockFailed = 0;
-        Collection<Project> allProjects = projectService.findAllAlphabetically();
-        Collection<Project> projectsToLock = Lists.newArrayList(allProjects);
-        while (!projectsToLock.isEmpty()) {
-            for (Iterator<Project> iterator = projectsToLock.iterator(); iterator.hasNext(); ) {
-                Project project = iterator.next();
-                boolean lockSuccessful = lockingService.tryLock(project);
-                if (lockSuccessful) {
-                    iterator.remove();
-                } else {
-                    LOGGER.warn("Locking project {} [id={}] failed - trying again later", project.getName(), project.getId());
-                }
-            }
-            if (lockFailed == MAX_LOCK_FAILED_ITERATIONS) {
-                throw new DatacRuntimeException("Locking projects failed more than " + MAX_LOCK_FAILED_ITERATIONS + " times");
-            }
-            if (!projectsToLock.isEmpty()) {
-                lockFailed++;
-                try {
-                    LOGGER.warn("Waiting {} ms before trying to lock projects ({}/{})", MS_BETWEEN_LOCK_ATTEMPTS, lockFailed, MAX_LOCK_FAILED_ITERATIONS);
-                    Thread.sleep(MS_BETWEEN_LOCK_ATTEMPTS);
-                } catch (InterruptedException e) {
-                    LOGGER.warn("Unexpected interrupt while waiting for acquire more locks", e);
-                    throw new DatacRuntimeException("Unexpected interrupt while waiting for acquire more locks", e);
+        long deadline = System.currentTimeMillis() + MAX_LOCK_WAIT_MS;
+        synchronized (maintenanceLeases) {
+            for (Project project : projectService.findAllAlphabetically()) {
+                long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+                Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE, remaining, TimeUnit.MILLISECONDS);
+                if (!lease.isPresent()) {
+                    LOGGER.warn("Locking project {} [id={}] failed within {} ms", project.getName(), project.getId(), MAX_LOCK_WAIT_MS);
+                    throw new DatacRuntimeException("Locking project " + project.getName() + " failed within " + MAX_LOCK_WAIT_MS + " ms");
                 }
+                maintenanceLeases.add(lease.get());
             }
         }
-
     }
 }
@@ -17,13 +17,18 @@ import org.vaadin.viritin.layouts.MVerticalLayout;
 import org.xlrnet.datac.administration.services.ApplicationMaintenanceService;
 import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.commons.ui.NotificationUtils;
+import org.xlrnet.datac.database.domain.ConnectionHealth;
 import org.xlrnet.datac.database.domain.ConnectionPingResult;
 import org.xlrnet.datac.database.domain.DatabaseConnection;
+import org.xlrnet.datac.database.services.ConnectionHealthMonitor;
 import org.xlrnet.datac.database.services.ConnectionManagerService;
 import org.xlrnet.datac.database.services.DatabaseConnectionService;
 import org.xlrnet.datac.database.tasks.CheckDatabaseConnectionTask;
+import org.xlrnet.datac.foundation.ui.util.RevisionFormatService;
 import org.xlrnet.datac.session.ui.views.AbstractSubview;
 
+import java.util.Optional;
+
 @SpringComponent
 @SpringView(name = AdminDatabaseSubview.VIEW_NAME)
 public class AdminDatabaseSubview extends AbstractSubview {
@@ -45,6 +50,16 @@ public class AdminDatabaseSubview extends AbstractSubview {
      */
     private final ConnectionManagerService connectionManagerService;
 
+    /**
+     * Monitor which provides the cached health status of connections.
+     */
+    private final ConnectionHealthMonitor connectionHealthMonitor;
+
+    /**
+     * Service for formatting timestamps.
+     */
+    private final RevisionFormatService formatService;
+
     /**
      * Form for editing database connections.
      */
@@ -56,10 +71,12 @@ public class AdminDatabaseSubview extends AbstractSubview {
     private final TaskExecutor taskExecutor;
 
     @Autowired
-    public AdminDatabaseSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, DatabaseConnectionService connectionService, ConnectionManagerService connectionManagerService, AdminDatabaseConnectionForm dbForm, @Qualifier("defaultTaskExecutor") TaskExecutor taskExecutor) {
+    public AdminDatabaseSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, DatabaseConnectionService connectionService, ConnectionManagerService connectionManagerService, ConnectionHealthMonitor connectionHealthMonitor, RevisionFormatService formatService, AdminDatabaseConnectionForm dbForm, @Qualifier("interactiveTaskExecutor") TaskExecutor taskExecutor) {
         super(applicationEventBus, maintenanceService);
         this.connectionService = connectionService;
         this.connectionManagerService = connectionManagerService;
+        this.connectionHealthMonitor = connectionHealthMonitor;
+        this.formatService = formatService;
         this.dbForm = dbForm;
         this.taskExecutor = taskExecutor;
     }
@@ -93,8 +110,11 @@ public class AdminDatabaseSubview extends AbstractSubview {
             dbForm.setDeleteHandler(null);  // Disable delete button by removing the handler
             dbForm.setVisible(true);
         });
+        Button refreshStatusButton = new Button("Refresh status");
+        refreshStatusButton.setIcon(VaadinIcons.REFRESH);
+        refreshStatusButton.addClickListener(e -> refreshConnectionStatus(refreshStatusButton));
         MVerticalLayout editorLayout = new MVerticalLayout().withMargin(false).withStyleName("editor-list-form");
-        editorLayout.with(newConnectionButton);
+        editorLayout.with(new MHorizontalLayout(newConnectionButton, refreshStatusButton).withMargin(false));
         editorLayout.with(dbForm);
         dbForm.setVisible(false);   // Invisible by default
 
@@ -106,6 +126,7 @@ public class AdminDatabaseSubview extends AbstractSubview {
         grid.addColumn(DatabaseConnection::getPort).setCaption("Port");
         grid.addColumn(DatabaseConnection::getSchema).setCaption("Schema");
         grid.addColumn(DatabaseConnection::getJdbcUrl).setCaption("Connection URL");
+        grid.addColumn(this::formatHealth).setCaption("Status");
 
         // Select the database in the editor when clicked
         grid.asSingleSelect().addValueChangeListener(e -> {
@@ -135,6 +156,8 @@ public class AdminDatabaseSubview extends AbstractSubview {
             if (connection != null && connection.isPersisted()) {
                 if (connection.getInstance() == null) {
                     connectionService.delete(connection);
+                    connectionManagerService.closePool(connection);
+                    connectionHealthMonitor.invalidate(connection);
                     NotificationUtils.showSaveSuccess();
                     hideEditor();
                 } else {
@@ -150,6 +173,7 @@ public class AdminDatabaseSubview extends AbstractSubview {
         task.setEntityChangeHandler(pingResult -> {
             if (pingResult.isConnected()) {
                 connectionService.save(databaseConnection);
+                connectionHealthMonitor.invalidate(databaseConnection);
                 runOnUiThread(() -> {
                     hideEditor();
                     updateConnections();
@@ -183,6 +207,34 @@ public class AdminDatabaseSubview extends AbstractSubview {
         taskExecutor.execute(task);
     }
 
+    private void refreshConnectionStatus(Button refreshStatusButton) {
+        refreshStatusButton.setEnabled(false);
+        taskExecutor.execute(() -> {
+            try {
+                connectionHealthMonitor.checkConnections(connectionService.findAllOrderByNameAsc(), true, finished -> {});
+            } finally {
+                runOnUiThread(() -> {
+                    refreshStatusButton.setEnabled(true);
+                    updateConnections();
+                });
+            }
+        });
+    }
+
+    @NotNull
+    private String formatHealth(DatabaseConnection connection) {
+        Optional<ConnectionHealth> health = connectionHealthMonitor.getCachedHealth(connection);
+        if (!health.isPresent()) {
+            return "Unknown";
+        }
+        ConnectionPingResult pingResult = health.get().getPingResult();
+        String checked = formatService.formatTimestamp(health.get().getChecked());
+        if (pingResult.isConnected()) {
+            return String.format("OK - %d ms, %s %s (%s)", pingResult.getLatency(), pingResult.getDbProductName(), pingResult.getDbProductVersion(), checked);
+        }
+        return String.format("Failed - %s (%s)", pingResult.getException() != null ? pingResult.getException().getMessage() : "unknown error", checked);
+    }
+
     private void hideEditor() {
         dbForm.setVisible(false);
     }
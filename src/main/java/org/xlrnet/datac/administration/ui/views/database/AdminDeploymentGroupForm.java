@@ -6,6 +6,7 @@ import com.vaadin.ui.Component;
 import com.vaadin.ui.HorizontalLayout;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.vaadin.viritin.fields.IntegerField;
 import org.vaadin.viritin.layouts.MVerticalLayout;
 import org.xlrnet.datac.database.domain.DeploymentGroup;
 import org.xlrnet.datac.database.services.DeploymentGroupService;
@@ -18,6 +19,9 @@ import org.xlrnet.datac.foundation.services.ValidationService;
 @SpringComponent
 public class AdminDeploymentGroupForm extends AbstractDeploymentForm<DeploymentGroup, DeploymentGroupService> {
 
+    /** Maximum number of parallel deployments in this group. */
+    private IntegerField maxConcurrentDeployments = new IntegerField("Maximum parallel deployments (unlimited if empty)").withFullWidth();
+
     @Autowired
     public AdminDeploymentGroupForm(ValidationService validationService, DeploymentGroupService transactionalService) {
         super(DeploymentGroup.class, transactionalService, validationService);
@@ -28,7 +32,7 @@ public class AdminDeploymentGroupForm extends AbstractDeploymentForm<DeploymentG
         getName().setCaption("Group name");
         MVerticalLayout content = new MVerticalLayout().withMargin(false);
         HorizontalLayout toolbar = getToolbar();
-        return content.with(getParentGroupName(), getName(), getBranch(), toolbar);
+        return content.with(getParentGroupName(), getName(), getBranch(), maxConcurrentDeployments, toolbar);
     }
 
     @NotNull
@@ -9,12 +9,18 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.vaadin.spring.events.EventBus;
 import org.vaadin.viritin.button.MButton;
+import org.vaadin.viritin.grid.MGrid;
 import org.vaadin.viritin.label.MLabel;
 import org.vaadin.viritin.layouts.MVerticalLayout;
 import org.xlrnet.datac.administration.services.ApplicationMaintenanceService;
 import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.commons.ui.NotificationUtils;
+import org.xlrnet.datac.database.domain.ConnectionPoolStatistics;
+import org.xlrnet.datac.database.services.ConnectionManagerService;
+import org.xlrnet.datac.foundation.configuration.async.BulkheadMetrics;
+import org.xlrnet.datac.foundation.configuration.async.TaskExecutorFactory;
 import org.xlrnet.datac.session.ui.views.AbstractSubview;
+import org.xlrnet.datac.vcs.impl.jgit.JGitWindowCacheConfigurer;
 
 @UIScope
 @SpringView(name = AdminMaintenanceSubview.VIEW_NAME)
@@ -22,9 +28,30 @@ public class AdminMaintenanceSubview extends AbstractSubview {
 
     public static final String VIEW_NAME = "admin/maintenance";
 
+    /** Factory which provides the saturation of all task executors. */
+    private final TaskExecutorFactory taskExecutorFactory;
+
+    /** Service which provides the gauges of all database connection pools. */
+    private final ConnectionManagerService connectionManagerService;
+
+    /** Configurer which provides the utilization of the JGit pack window cache. */
+    private final JGitWindowCacheConfigurer windowCacheConfigurer;
+
+    /** Grid with the saturation of all task executors. */
+    private final MGrid<BulkheadMetrics> executorGrid = new MGrid<>();
+
+    /** Grid with the gauges of all database connection pools. */
+    private final MGrid<ConnectionPoolStatistics> poolGrid = new MGrid<>();
+
+    /** Label with the utilization of the JGit pack window cache. */
+    private final MLabel windowCacheLabel = new MLabel();
+
     @Autowired
-    public AdminMaintenanceSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService) {
+    public AdminMaintenanceSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, TaskExecutorFactory taskExecutorFactory, ConnectionManagerService connectionManagerService, JGitWindowCacheConfigurer windowCacheConfigurer) {
         super(applicationEventBus, maintenanceService);
+        this.taskExecutorFactory = taskExecutorFactory;
+        this.connectionManagerService = connectionManagerService;
+        this.windowCacheConfigurer = windowCacheConfigurer;
     }
 
     @NotNull
@@ -32,6 +59,9 @@ public class AdminMaintenanceSubview extends AbstractSubview {
     protected Component buildMainPanel() {
         MVerticalLayout layout = new MVerticalLayout();
         layout.add(buildActionLayout());
+        layout.add(buildExecutorLayout());
+        layout.add(buildPoolLayout());
+        layout.add(buildWindowCacheLayout());
         return layout;
     }
 
@@ -60,6 +90,57 @@ public class AdminMaintenanceSubview extends AbstractSubview {
         return layout;
     }
 
+    @NotNull
+    private MVerticalLayout buildExecutorLayout() {
+        executorGrid.withFullWidth();
+        executorGrid.addColumn(BulkheadMetrics::getName).setCaption("Executor");
+        executorGrid.addColumn(BulkheadMetrics::getMaxThreads).setCaption("Threads");
+        executorGrid.addColumn(BulkheadMetrics::getActiveThreads).setCaption("Active threads");
+        executorGrid.addColumn(BulkheadMetrics::getQueueDepth).setCaption("Queue depth");
+        executorGrid.addColumn(BulkheadMetrics::getQueueCapacity).setCaption("Queue capacity");
+        executorGrid.addColumn(BulkheadMetrics::getRejectedCount).setCaption("Rejected tasks");
+        executorGrid.addColumn(BulkheadMetrics::getCompletedCount).setCaption("Completed tasks");
+        refreshExecutorMetrics();
+        MButton refreshButton = new MButton("Refresh").addClickListener(this::refreshExecutorMetrics);
+        return new MVerticalLayout().withMargin(false).with(new MLabel("Task executors"), executorGrid, refreshButton);
+    }
+
+    private void refreshExecutorMetrics() {
+        executorGrid.setItems(taskExecutorFactory.getMetrics());
+    }
+
+    @NotNull
+    private MVerticalLayout buildPoolLayout() {
+        poolGrid.withFullWidth();
+        poolGrid.addColumn(ConnectionPoolStatistics::getName).setCaption("Connection");
+        poolGrid.addColumn(ConnectionPoolStatistics::getJdbcUrl).setCaption("JDBC URL");
+        poolGrid.addColumn(ConnectionPoolStatistics::getMaxSize).setCaption("Max size");
+        poolGrid.addColumn(ConnectionPoolStatistics::getActive).setCaption("Active");
+        poolGrid.addColumn(ConnectionPoolStatistics::getIdle).setCaption("Idle");
+        poolGrid.addColumn(ConnectionPoolStatistics::getWaiting).setCaption("Waiting");
+        poolGrid.addColumn(ConnectionPoolStatistics::getBorrowCount).setCaption("Borrowed");
+        poolGrid.addColumn(ConnectionPoolStatistics::getAverageWaitTime).setCaption("Avg. wait (ms)");
+        poolGrid.addColumn(ConnectionPoolStatistics::getMaxWaitTime).setCaption("Max. wait (ms)");
+        refreshPoolStatistics();
+        MButton refreshButton = new MButton("Refresh").addClickListener(this::refreshPoolStatistics);
+        return new MVerticalLayout().withMargin(false).with(new MLabel("Database connection pools"), poolGrid, refreshButton);
+    }
+
+    private void refreshPoolStatistics() {
+        poolGrid.setItems(connectionManagerService.getPoolStatistics());
+    }
+
+    @NotNull
+    private MVerticalLayout buildWindowCacheLayout() {
+        refreshWindowCacheUtilization();
+        MButton refreshButton = new MButton("Refresh").addClickListener(this::refreshWindowCacheUtilization);
+        return new MVerticalLayout().withMargin(false).with(new MLabel("JGit pack window cache"), windowCacheLabel, refreshButton);
+    }
+
+    private void refreshWindowCacheUtilization() {
+        windowCacheLabel.setValue(String.format("%.1f%% of the configured limit in use", windowCacheConfigurer.getCacheUtilization()));
+    }
+
     private void checkRecalculateChecksums() {
         MessageBox.createWarning()
                 .withCaption("Recalculate all changeset checksums")
@@ -28,6 +28,8 @@ import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
 import org.xlrnet.datac.database.api.DatabaseChangeSystemMetaInfo;
 import org.xlrnet.datac.database.services.ChangeSetService;
 import org.xlrnet.datac.database.services.DatabaseChangeSystemAdapterRegistry;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.domain.ProjectState;
 import org.xlrnet.datac.foundation.services.ProjectService;
@@ -235,7 +237,7 @@ public class AdminEditProjectSubview extends AbstractSubview {
     private Button resetButton;
 
     @Autowired
-    public AdminEditProjectSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, VersionControlSystemRegistry vcsRegistry, DatabaseChangeSystemAdapterRegistry dcsRegistry, @Qualifier("defaultTaskExecutor") TaskExecutor taskExecutor, ProjectService projectService, LockingService lockingService, ChangeSetService changeSetService) {
+    public AdminEditProjectSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, VersionControlSystemRegistry vcsRegistry, DatabaseChangeSystemAdapterRegistry dcsRegistry, @Qualifier("vcsTaskExecutor") TaskExecutor taskExecutor, ProjectService projectService, LockingService lockingService, ChangeSetService changeSetService) {
         super(applicationEventBus, maintenanceService);
         this.vcsRegistry = vcsRegistry;
         this.dcsRegistry = dcsRegistry;
@@ -524,11 +526,11 @@ public class AdminEditProjectSubview extends AbstractSubview {
     }
 
     private void saveProject() {
-        boolean locked = false;
+        Optional<LockLease> lease = Optional.empty();
         if (!isNewProject) {
-            locked = lockingService.tryLock(projectBean);
+            lease = lockingService.tryAcquire(projectBean, LockMode.EXCLUSIVE);
         }
-        if (isNewProject || locked) {
+        if (isNewProject || lease.isPresent()) {
             try {
                 projectService.saveProject(projectBean);
                 NotificationUtils.showSuccess("Project saved successfully!");
@@ -540,9 +542,7 @@ public class AdminEditProjectSubview extends AbstractSubview {
                 LOGGER.error("Saving project failed", e);
                 NotificationUtils.showError("Saving failed", e.getMessage(), true);
             } finally {
-                if (locked) {
-                    lockingService.unlock(projectBean);
-                }
+                lease.ifPresent(lockingService::release);
             }
         } else {
             NotificationUtils.showError("Project locked.", false);
@@ -1,5 +1,8 @@
 package org.xlrnet.datac.administration.ui.views.projects;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -21,15 +24,18 @@ import org.xlrnet.datac.commons.ui.NotificationUtils;
 import org.xlrnet.datac.commons.ui.TemporalRenderer;
 import org.xlrnet.datac.database.services.ChangeSetService;
 import org.xlrnet.datac.foundation.EventTopics;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.domain.ProjectState;
 import org.xlrnet.datac.foundation.services.ProjectService;
 import org.xlrnet.datac.foundation.services.ProjectUpdateEvent;
 import org.xlrnet.datac.foundation.ui.services.NavigationService;
 import org.xlrnet.datac.session.ui.views.AbstractSubview;
+import org.xlrnet.datac.vcs.domain.UpdatePriority;
 import org.xlrnet.datac.vcs.services.LockingService;
 import org.xlrnet.datac.vcs.services.ProjectSchedulingService;
-import org.xlrnet.datac.vcs.services.ProjectUpdateStarter;
+import org.xlrnet.datac.vcs.services.ProjectUpdateQueue;
 
 import com.vaadin.data.ValueProvider;
 import com.vaadin.icons.VaadinIcons;
@@ -65,7 +71,12 @@ public class AdminProjectSubview extends AbstractSubview {
     /**
      * The update service for projects.
      */
-    private final ProjectUpdateStarter projectUpdateStarter;
+    private final ProjectUpdateQueue projectUpdateQueue;
+
+    /**
+     * Service for scheduling automatic project updates.
+     */
+    private final ProjectSchedulingService projectSchedulingService;
 
     /**
      * The grid component containing the projects.
@@ -96,16 +107,23 @@ public class AdminProjectSubview extends AbstractSubview {
     private MButton editButton = new MButton("Edit").withIcon(VaadinIcons.PENCIL).withVisible(false);
 
     @Autowired
-    public AdminProjectSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, ProjectService projectService, ProjectUpdateStarter projectUpdateStarter, ProjectSchedulingService projectSchedulingService, LockingService lockingService, ReadOnlyProjectInfoForm readOnlyProjectInfoForm, NavigationService navigationService, ChangeSetService changeSetService) {
+    public AdminProjectSubview(EventBus.ApplicationEventBus applicationEventBus, ApplicationMaintenanceService maintenanceService, ProjectService projectService, ProjectUpdateQueue projectUpdateQueue, ProjectSchedulingService projectSchedulingService, LockingService lockingService, ReadOnlyProjectInfoForm readOnlyProjectInfoForm, NavigationService navigationService, ChangeSetService changeSetService) {
         super(applicationEventBus, maintenanceService);
         this.projectService = projectService;
-        this.projectUpdateStarter = projectUpdateStarter;
+        this.projectUpdateQueue = projectUpdateQueue;
+        this.projectSchedulingService = projectSchedulingService;
         this.lockingService = lockingService;
         this.readOnlyProjectInfoForm = readOnlyProjectInfoForm;
         this.navigationService = navigationService;
         this.changeSetService = changeSetService;
     }
 
+    private LocalDateTime getNextPollTime(Project project) {
+        return projectSchedulingService.getNextPollTime(project)
+                .map(nextPoll -> LocalDateTime.ofInstant(nextPoll, ZoneId.systemDefault()))
+                .orElse(null);
+    }
+
     @Override
     protected void initialize() {
         // No initialization necessary
@@ -141,6 +159,7 @@ public class AdminProjectSubview extends AbstractSubview {
         grid.addColumn(Project::getName).setCaption("Name");
         grid.addColumn(Project::getUrl).setCaption("VCS Url").setMaximumWidth(514);
         grid.addColumn(Project::getLastChangeCheck, new TemporalRenderer()).setCaption("Last check for changes");
+        grid.addColumn(this::getNextPollTime, new TemporalRenderer()).setCaption("Next check for changes");
         grid.addComponentColumn(this::buildProjectActionComponent);
 
         // Select the project in the read-only form when clicked
@@ -195,13 +214,13 @@ public class AdminProjectSubview extends AbstractSubview {
                 .withMessage("The repository will be reinitialized on the next update. Are you sure?")
                 .withYesButton(() -> {
                     Project refresh = projectService.refresh(project);
-                    boolean lock = lockingService.tryLock(refresh);
-                    if (lock) {
+                    Optional<LockLease> lease = lockingService.tryAcquire(refresh, LockMode.EXCLUSIVE);
+                    if (lease.isPresent()) {
                         try {
                             refresh.setInitialized(false);
                             projectService.save(refresh);
                         } finally {
-                            lockingService.unlock(refresh);
+                            lockingService.release(lease.get());
                         }
                     } else {
                         NotificationUtils.showError("Project locked.", false);
@@ -235,7 +254,8 @@ public class AdminProjectSubview extends AbstractSubview {
                 .withCaption("Delete project")
                 .withHtmlMessage(String.format("Do you want to delete the project %s?<br>This action cannot be reverted!", StringEscapeUtils.escapeHtml4(project.getName())))
                 .withYesButton(() -> {
-                    if (lockingService.tryLock(project)) {
+                    Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE);
+                    if (lease.isPresent()) {
                         try {
                             readOnlyProjectInfoForm.setVisible(false);
                             projectService.deleteClean(project);
@@ -245,7 +265,7 @@ public class AdminProjectSubview extends AbstractSubview {
                             LOGGER.error("Deleting project failed", e);
                             NotificationUtils.showError("Deleting project failed", true);
                         } finally {
-                            lockingService.unlock(project);
+                            lockingService.release(lease.get());
                         }
                     } else {
                         NotificationUtils.showError("Project is locked", false);
@@ -256,10 +276,10 @@ public class AdminProjectSubview extends AbstractSubview {
     }
 
     private void forceUpdate(Project item) {
-        if (projectUpdateStarter.queueProjectUpdate(item)) {
+        if (projectUpdateQueue.requestUpdate(item, UpdatePriority.MANUAL)) {
             NotificationUtils.showSuccess("Project update queued");
         } else {
-            NotificationUtils.showWarning("Project is locked");
+            NotificationUtils.showSuccess("Project update is already queued");
         }
     }
 
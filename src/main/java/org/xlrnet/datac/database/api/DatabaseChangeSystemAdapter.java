@@ -1,12 +1,19 @@
 package org.xlrnet.datac.database.api;
 
+import java.io.Writer;
+import java.sql.Connection;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
 import org.xlrnet.datac.commons.exception.DatacTechnicalException;
+import org.xlrnet.datac.database.domain.AppliedChangeSet;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseType;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.IndexedChangeLog;
 import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.domain.Revision;
 
 /**
  * Adapter which provides methods for interacting with changes specific to a database change system. This includes both
@@ -29,6 +36,32 @@ public interface DatabaseChangeSystemAdapter {
     @NotNull
     List<DatabaseChangeSet> listDatabaseChangeSetsForProject(@NotNull Project project) throws DatacTechnicalException;
 
+    /**
+     * Returns all database change sets in the given project together with the paths of all files and directories which
+     * were read while parsing the change log (e.g. included change log files). The returned paths must be relative to
+     * the repository root and are used to narrow the revisions which have to be indexed in the future. Like {@link
+     * #listDatabaseChangeSetsForProject(Project)}, the project will be scanned in its current state.
+     *
+     * @param project
+     *         The project to index.
+     * @return The change sets and change log files of the project.
+     */
+    @NotNull
+    IndexedChangeLog indexChangeLog(@NotNull Project project) throws DatacTechnicalException;
+
+    /**
+     * Returns all database change sets in the given project like {@link #indexChangeLog(Project)}, but reads all files
+     * from the given snapshot instead of the current state of the project. No checkout is necessary before.
+     *
+     * @param project
+     *         The project to index.
+     * @param snapshot
+     *         Snapshot of the revision to index.
+     * @return The change sets and change log files of the project in the given revision.
+     */
+    @NotNull
+    IndexedChangeLog indexChangeLog(@NotNull Project project, @NotNull VcsFileSnapshot snapshot) throws DatacTechnicalException;
+
     /**
      * Prepare a new deployment. The adaptor may decide on its own if a connection to a database is must be established.
      * Implementors may assume that this method is called on a locked project, therefore full
@@ -41,4 +74,58 @@ public interface DatabaseChangeSystemAdapter {
      */
     @NotNull
     IPreparedDeploymentContainer prepareDeployment(@NotNull Project project, @NotNull DeploymentInstance targetInstance, @NotNull DatabaseChangeSet changeSet) throws DatacTechnicalException;
+
+    /**
+     * Returns all change sets which were already applied to the database of the given connection, i.e. which are
+     * tracked in the change log table of the database change system. The change sets should be read with a single
+     * query. If the database doesn't contain a change log table yet, an empty list must be returned.
+     *
+     * @param connection
+     *         Open connection to the target database. The connection must not be closed by the adapter.
+     * @return All applied change sets.
+     * @throws DatacTechnicalException
+     *         Will be thrown if the applied change sets couldn't be read.
+     */
+    @NotNull
+    List<AppliedChangeSet> listAppliedChangeSets(@NotNull Connection connection) throws DatacTechnicalException;
+
+    /**
+     * Writes the SQL of the given change sets for the given database type to a writer without connecting to a
+     * database. The SQL should be written change by change, so that the complete script never has to be held in memory.
+     * Implementors may assume that this method is called on a locked project.
+     *
+     * @param project
+     *         The project to which the change sets belong.
+     * @param revision
+     *         The revision from which the change sets should be read.
+     * @param changeSets
+     *         The change sets to write in the order in which they should be executed.
+     * @param databaseType
+     *         The type of database for which the SQL should be generated.
+     * @param writer
+     *         The writer to which the SQL will be written. The writer must not be closed by the adapter.
+     * @throws DatacTechnicalException
+     *         Will be thrown if the SQL couldn't be generated or written.
+     */
+    void writeOfflineSql(@NotNull Project project, @NotNull Revision revision, @NotNull List<DatabaseChangeSet> changeSets, @NotNull DatabaseType databaseType, @NotNull Writer writer) throws DatacTechnicalException;
+
+    /**
+     * Returns the SQL statements of a single change set for the given database type without connecting to a database.
+     * Each element is a single statement without end delimiter. Implementors may assume that this method is called on
+     * a locked project.
+     *
+     * @param project
+     *         The project to which the change set belongs.
+     * @param revision
+     *         The revision from which the change set should be read.
+     * @param changeSet
+     *         The change set whose statements should be generated.
+     * @param databaseType
+     *         The type of database for which the SQL should be generated.
+     * @return The statements of the change set in the order in which they should be executed.
+     * @throws DatacTechnicalException
+     *         Will be thrown if the SQL couldn't be generated.
+     */
+    @NotNull
+    List<String> generateOfflineSql(@NotNull Project project, @NotNull Revision revision, @NotNull DatabaseChangeSet changeSet, @NotNull DatabaseType databaseType) throws DatacTechnicalException;
 }
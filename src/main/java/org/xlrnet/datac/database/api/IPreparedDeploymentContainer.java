@@ -2,6 +2,7 @@ package org.xlrnet.datac.database.api;
 
 import java.util.List;
 
+import org.xlrnet.datac.database.domain.ChangeLogEntryTemplate;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
 import org.xlrnet.datac.foundation.domain.Project;
 
@@ -11,5 +12,14 @@ public interface IPreparedDeploymentContainer {
 
     DeploymentInstance getTargetInstance();
 
-    List getGeneratedSql();
+    /**
+     * Returns the statements of the change set. Each element is a single statement without end delimiter.
+     */
+    List<String> getGeneratedSql();
+
+    /**
+     * Returns the statements which record the change set as executed in the change log table of the target database.
+     * They must be executed after the generated SQL in the same transaction.
+     */
+    ChangeLogEntryTemplate getChangeLogEntry();
 }
@@ -0,0 +1,22 @@
+package org.xlrnet.datac.database.domain;
+
+import lombok.Value;
+
+/**
+ * A change set which was already applied to a target database as tracked by the database change system.
+ */
+@Value
+public class AppliedChangeSet {
+
+    /** The file in which the change set was defined. */
+    private String sourceFilename;
+
+    /** Author of the change set. */
+    private String author;
+
+    /** Id of the change set inside the change system. */
+    private String internalId;
+
+    /** Checksum of the change set when it was applied. May be null. */
+    private String checksum;
+}
@@ -0,0 +1,26 @@
+package org.xlrnet.datac.database.domain;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Statements which record a deployed change set in the change log table of a target database. The existence of the
+ * table and the next execution order are only known in the transaction of the deployment, so the statements are
+ * completed while the change set is executed.
+ */
+@Value
+public class ChangeLogEntryTemplate {
+
+    /** Unquoted name of the change log table. Databases may store it either in upper or in lower case. */
+    private String tableName;
+
+    /** Statements which create the change log table if it doesn't exist yet. */
+    private List<String> createTableSql;
+
+    /** Column which contains the order in which change sets were executed. */
+    private String orderColumn;
+
+    /** Statement which inserts the change set into the change log table. Its only parameter is the execution order. */
+    private String insertSql;
+}
@@ -0,0 +1,30 @@
+package org.xlrnet.datac.database.domain;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import lombok.Value;
+
+/**
+ * Last known health status of a database connection.
+ */
+@Value
+public class ConnectionHealth {
+
+    /** Result of the last ping. */
+    private final ConnectionPingResult pingResult;
+
+    /** The time when the last ping was finished. */
+    private final Instant checked;
+
+    /**
+     * Returns true if the connection could be established and the last ping isn't older than the given age.
+     *
+     * @param maxAge
+     *         The maximum age of the ping.
+     * @return true if the connection was healthy within the given age.
+     */
+    public boolean isHealthyWithin(Duration maxAge) {
+        return pingResult.isConnected() && checked.plus(maxAge).isAfter(Instant.now());
+    }
+}
@@ -25,6 +25,9 @@ public class ConnectionPingResult {
     /** Version of the connected db product. Null if not connected. */
     private String dbProductVersion;
 
+    /** Time in milliseconds for establishing and validating the connection. Zero if not connected. */
+    private long latency;
+
     /** Exception which might be thrown in case of a failed connection attempt. Null if connected. */
     private SQLException exception;
 
@@ -33,6 +36,7 @@ public class ConnectionPingResult {
         this.connected = connected;
         this.dbProductName = null;
         this.dbProductVersion = null;
+        this.latency = 0;
         this.exception = exception;
     }
 }
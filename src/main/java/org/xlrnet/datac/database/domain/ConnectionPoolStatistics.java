@@ -0,0 +1,37 @@
+package org.xlrnet.datac.database.domain;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the gauges of a single pooled database connection.
+ */
+@Value
+public class ConnectionPoolStatistics {
+
+    /** Name of the database connection. */
+    private String name;
+
+    /** The JDBC URL of the pooled connections. */
+    private String jdbcUrl;
+
+    /** Maximum number of connections in the pool. */
+    private int maxSize;
+
+    /** Number of connections which are currently borrowed. */
+    private int active;
+
+    /** Number of idle connections in the pool. */
+    private int idle;
+
+    /** Number of threads which are currently waiting for a connection. */
+    private int waiting;
+
+    /** Total number of borrowed connections since the pool was created. */
+    private long borrowCount;
+
+    /** Average time in milliseconds which was spent waiting for a connection. */
+    private long averageWaitTime;
+
+    /** Maximum time in milliseconds which was spent waiting for a connection. */
+    private long maxWaitTime;
+}
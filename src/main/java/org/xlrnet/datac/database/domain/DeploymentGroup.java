@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
@@ -14,6 +15,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.xlrnet.datac.foundation.domain.Project;
@@ -64,6 +66,13 @@ public class DeploymentGroup extends AbstractDeploymentInstance implements IData
     @OneToMany(mappedBy = "group", targetEntity = DeploymentInstance.class, fetch = FetchType.EAGER, cascade = CascadeType.MERGE)
     private Set<DeploymentInstance> instances = new HashSet<>();
 
+    /** Maximum number of instances in this group and all child groups which may be deployed in parallel. Unlimited if null. */
+    @Setter
+    @Getter
+    @Min(1)
+    @Column(name = "max_concurrent_deployments")
+    private Integer maxConcurrentDeployments;
+
     public DeploymentGroup(String name, Project project) {
         this(name, project, null);
     }
@@ -0,0 +1,48 @@
+package org.xlrnet.datac.database.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * Timing report of a simulated deployment of all change sets in a revision.
+ */
+@Value
+public class DryRunReport {
+
+    /** Flag whether the simulation could be performed. Single change sets may still have failed. */
+    private final boolean successful;
+
+    /** Error message if the simulation couldn't be performed. */
+    private final String errorMessage;
+
+    /** Results of all simulated change sets in the order in which they were executed. */
+    private final List<DryRunResult> results;
+
+    public static DryRunReport success(List<DryRunResult> results) {
+        return new DryRunReport(true, null, results);
+    }
+
+    public static DryRunReport failed(String errorMessage) {
+        return new DryRunReport(false, errorMessage, new ArrayList<>());
+    }
+
+    /**
+     * Returns the number of change sets which couldn't be executed.
+     *
+     * @return the number of change sets which couldn't be executed.
+     */
+    public long countFailedChangeSets() {
+        return results.stream().filter(r -> !r.isSuccessful()).count();
+    }
+
+    /**
+     * Returns the total execution time of all simulated change sets in microseconds.
+     *
+     * @return the total execution time of all simulated change sets in microseconds.
+     */
+    public long getTotalExecutionTimeMicros() {
+        return results.stream().mapToLong(DryRunResult::getExecutionTimeMicros).sum();
+    }
+}
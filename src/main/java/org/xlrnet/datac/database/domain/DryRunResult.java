@@ -0,0 +1,131 @@
+package org.xlrnet.datac.database.domain;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.xlrnet.datac.foundation.domain.AbstractEntity;
+
+/**
+ * Result of the last simulated execution of a change set on a throwaway database. Contains the total execution time
+ * and the number of modified rows of all statements in the change set.
+ */
+@Entity
+@Table(name = "dry_run_result")
+public class DryRunResult extends AbstractEntity {
+
+    /**
+     * The simulated change set.
+     */
+    @NotNull
+    @JoinColumn(name = "changeset_id")
+    @OneToOne(optional = false)
+    private DatabaseChangeSet changeSet;
+
+    /**
+     * The time when the simulation was performed.
+     */
+    @NotNull
+    @Column(name = "executed")
+    private Instant executed;
+
+    /**
+     * Flag if all statements were executed successfully.
+     */
+    @Column(name = "successful")
+    private boolean successful;
+
+    /**
+     * Total execution time of all statements in microseconds.
+     */
+    @Column(name = "execution_time")
+    private long executionTimeMicros;
+
+    /**
+     * Number of executed statements.
+     */
+    @Column(name = "statement_count")
+    private int statementCount;
+
+    /**
+     * Number of rows which were modified by the statements.
+     */
+    @Column(name = "row_count")
+    private long rowCount;
+
+    /**
+     * Error message if the simulation failed.
+     */
+    @Size(max = 4000)
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    public DatabaseChangeSet getChangeSet() {
+        return changeSet;
+    }
+
+    public DryRunResult setChangeSet(DatabaseChangeSet changeSet) {
+        this.changeSet = changeSet;
+        return this;
+    }
+
+    public Instant getExecuted() {
+        return executed;
+    }
+
+    public DryRunResult setExecuted(Instant executed) {
+        this.executed = executed;
+        return this;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public DryRunResult setSuccessful(boolean successful) {
+        this.successful = successful;
+        return this;
+    }
+
+    public long getExecutionTimeMicros() {
+        return executionTimeMicros;
+    }
+
+    public DryRunResult setExecutionTimeMicros(long executionTimeMicros) {
+        this.executionTimeMicros = executionTimeMicros;
+        return this;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public DryRunResult setStatementCount(int statementCount) {
+        this.statementCount = statementCount;
+        return this;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public DryRunResult setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+        return this;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public DryRunResult setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+        return this;
+    }
+}
@@ -0,0 +1,19 @@
+package org.xlrnet.datac.database.domain;
+
+import java.util.List;
+import java.util.Set;
+
+import lombok.Value;
+
+/**
+ * Result of indexing the change log of a project in a single revision.
+ */
+@Value
+public class IndexedChangeLog {
+
+    /** All change sets in the change log. Begins with the oldest currently present. */
+    List<DatabaseChangeSet> changeSets;
+
+    /** Paths of all files and directories relative to the repository root which were read while parsing the change log. */
+    Set<String> changeLogFiles;
+}
@@ -0,0 +1,115 @@
+package org.xlrnet.datac.database.domain;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToOne;
+import javax.persistence.OrderColumn;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+
+import org.xlrnet.datac.foundation.domain.AbstractEntity;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.domain.Revision;
+
+/**
+ * Persistent journal of a running indexing process. The journal contains the ordered list of revisions which have to
+ * be indexed and a watermark which points to the first revision that has not yet been indexed. It allows an
+ * interrupted indexing process to continue where it stopped.
+ */
+@Entity
+@Table(name = "index_journal")
+public class IndexingJournal extends AbstractEntity {
+
+    /**
+     * The project which is being indexed.
+     */
+    @NotNull
+    @JoinColumn(name = "project_id")
+    @OneToOne(optional = false)
+    private Project project;
+
+    /**
+     * The time when the journal was created.
+     */
+    @NotNull
+    @Column(name = "created")
+    private Instant created;
+
+    /**
+     * Number of revisions at the beginning of the work list which are already indexed.
+     */
+    @Column(name = "watermark")
+    private int watermark;
+
+    /**
+     * Ordered work list of revisions to index.
+     */
+    @ManyToMany(fetch = FetchType.EAGER)
+    @JoinTable(name = "index_journal_revision",
+            joinColumns = @JoinColumn(name = "journal_id", referencedColumnName = "id"),
+            inverseJoinColumns = @JoinColumn(name = "revision_id", referencedColumnName = "id"))
+    @OrderColumn(name = "sort")
+    private List<Revision> revisions = new ArrayList<>();
+
+    public Project getProject() {
+        return project;
+    }
+
+    public IndexingJournal setProject(Project project) {
+        this.project = project;
+        return this;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    public IndexingJournal setCreated(Instant created) {
+        this.created = created;
+        return this;
+    }
+
+    public int getWatermark() {
+        return watermark;
+    }
+
+    public IndexingJournal setWatermark(int watermark) {
+        this.watermark = watermark;
+        return this;
+    }
+
+    public List<Revision> getRevisions() {
+        return revisions;
+    }
+
+    public IndexingJournal setRevisions(List<Revision> revisions) {
+        this.revisions = revisions;
+        return this;
+    }
+
+    /**
+     * Returns the revisions which have not yet been indexed in the order in which they must be indexed.
+     *
+     * @return the revisions which have not yet been indexed.
+     */
+    public List<Revision> getPendingRevisions() {
+        return revisions.subList(Math.min(watermark, revisions.size()), revisions.size());
+    }
+
+    /**
+     * Returns true if all revisions in the work list have been indexed.
+     *
+     * @return true if all revisions in the work list have been indexed.
+     */
+    public boolean isFinished() {
+        return watermark >= revisions.size();
+    }
+}
@@ -0,0 +1,45 @@
+package org.xlrnet.datac.database.domain;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.xlrnet.datac.vcs.domain.Revision;
+
+import lombok.Value;
+
+/**
+ * Comparison of the change sets which were applied to an instance with the indexed change sets of the revision which
+ * is tracked by the instance.
+ */
+@Value
+public class InstanceChangePlan {
+
+    /** The compared instance. */
+    private DeploymentInstance instance;
+
+    /** The revision with which the instance was compared. */
+    private Revision revision;
+
+    /** Flag whether the applied change sets could be read. */
+    private boolean successful;
+
+    /** Error message if the applied change sets couldn't be read. */
+    private String errorMessage;
+
+    /** Change sets of the revision which weren't applied yet in their original order. */
+    private List<DatabaseChangeSet> pendingChangeSets;
+
+    /** Change sets of the revision which were already applied with the same checksum. */
+    private List<DatabaseChangeSet> appliedChangeSets;
+
+    /** Change sets of the revision which were already applied but whose checksum changed since. */
+    private List<DatabaseChangeSet> driftedChangeSets;
+
+    /** Timestamp in milliseconds when the plan was computed. */
+    private long computedAt;
+
+    public static InstanceChangePlan failed(DeploymentInstance instance, Revision revision, String errorMessage) {
+        return new InstanceChangePlan(instance, revision, false, errorMessage, Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList(), System.currentTimeMillis());
+    }
+}
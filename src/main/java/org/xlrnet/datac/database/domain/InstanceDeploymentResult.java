@@ -1,5 +1,8 @@
 package org.xlrnet.datac.database.domain;
 
+import java.util.Collections;
+import java.util.List;
+
 import lombok.Value;
 
 /**
@@ -8,9 +11,33 @@ import lombok.Value;
 @Value
 public class InstanceDeploymentResult {
 
+    /** The instance on which the deployment was performed. */
+    DeploymentInstance instance;
+
+    /** Flag whether the deployment was successful or not. */
+    boolean successful;
+
+    /** Error message if the deployment wasn't successful. */
+    String errorMessage;
+
     /** The complete generated SQL for the deployment .*/
     String generatedSql;
 
     /** The database connection which was used to perform the deployment.*/
     DatabaseConnection targetConnection;
+
+    /** Timings of all executed statements in execution order. */
+    List<StatementExecutionResult> statementResults;
+
+    public static InstanceDeploymentResult success(DeploymentInstance instance, String generatedSql, List<StatementExecutionResult> statementResults) {
+        return new InstanceDeploymentResult(instance, true, null, generatedSql, instance.getConnection(), statementResults);
+    }
+
+    public static InstanceDeploymentResult failed(DeploymentInstance instance, String errorMessage) {
+        return new InstanceDeploymentResult(instance, false, errorMessage, null, instance.getConnection(), Collections.emptyList());
+    }
+
+    public static InstanceDeploymentResult skipped(DeploymentInstance instance) {
+        return failed(instance, "Skipped after another deployment failed");
+    }
 }
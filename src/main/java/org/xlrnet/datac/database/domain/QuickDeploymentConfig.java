@@ -19,4 +19,10 @@ public class QuickDeploymentConfig {
 
     /** Abort all coming deployments if a single deployment fails. */
     private boolean abortOnFailure;
+
+    /** Deploy the instances of one group after another instead of deploying all instances in parallel. */
+    private boolean sequentialGroups;
+
+    /** Check all instance connections before the deployment instead of using their cached health status. */
+    private boolean refreshConnections;
 }
@@ -0,0 +1,25 @@
+package org.xlrnet.datac.database.domain;
+
+import lombok.Value;
+
+/**
+ * Timing and result of a single executed SQL statement.
+ */
+@Value
+public class StatementExecutionResult {
+
+    /** The executed SQL statement. */
+    private String sql;
+
+    /**
+     * Execution time in microseconds. Statements which were executed in the same batch share the execution time of
+     * the batch equally.
+     */
+    private long executionTimeMicros;
+
+    /** Number of affected rows as reported by the driver or a negative value if it isn't known. */
+    private int updateCount;
+
+    /** Flag whether the statement was executed as part of a JDBC batch. */
+    private boolean batched;
+}
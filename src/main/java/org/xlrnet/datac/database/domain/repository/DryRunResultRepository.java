@@ -0,0 +1,18 @@
+package org.xlrnet.datac.database.domain.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DryRunResult;
+
+/**
+ * Repository for accessing dry run results of change sets.
+ */
+public interface DryRunResultRepository extends PagingAndSortingRepository<DryRunResult, Long> {
+
+    @Transactional(readOnly = true)
+    List<DryRunResult> findAllByChangeSetIn(Collection<DatabaseChangeSet> changeSets);
+}
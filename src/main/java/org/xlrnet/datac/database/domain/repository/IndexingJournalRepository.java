@@ -0,0 +1,29 @@
+package org.xlrnet.datac.database.domain.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.xlrnet.datac.database.domain.IndexingJournal;
+import org.xlrnet.datac.foundation.domain.Project;
+
+/**
+ * Repository for accessing indexing journals.
+ */
+public interface IndexingJournalRepository extends PagingAndSortingRepository<IndexingJournal, Long> {
+
+    @Transactional(readOnly = true)
+    IndexingJournal findByProject(Project project);
+
+    /**
+     * Advances the watermark of the given journal without touching its work list.
+     *
+     * @param journalId
+     *         Id of the journal.
+     * @param watermark
+     *         The new watermark.
+     */
+    @Modifying
+    @Query("UPDATE IndexingJournal j SET j.watermark = ?2 WHERE j.id = ?1")
+    void updateWatermark(Long journalId, int watermark);
+}
@@ -1,21 +1,111 @@
 package org.xlrnet.datac.database.impl.liquibase;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import liquibase.resource.FileSystemResourceAccessor;
 
 /**
- * Custom implementation of liquibase's {@link FileSystemResourceAccessor}.
+ * Custom implementation of liquibase's {@link FileSystemResourceAccessor}. If a base directory is given, the accessor
+ * tracks all files inside the base directory which were read by liquibase. Directories listed by an
+ * <code>includeAll</code> are tracked even if they are still empty.
  */
 public class CustomLiquibaseFileSystemResourceAccessor extends FileSystemResourceAccessor {
 
+    /** Normalized absolute base directory or null if no base directory is used. */
+    private final Path basePath;
+
+    /** Paths relative to the base directory which were accessed. */
+    private final Set<String> accessedPaths = new LinkedHashSet<>();
+
     public CustomLiquibaseFileSystemResourceAccessor() {
+        this.basePath = null;
     }
 
     public CustomLiquibaseFileSystemResourceAccessor(String base) {
         super(base);
+        this.basePath = Paths.get(base).toAbsolutePath().normalize();
     }
 
     @Override
     protected String convertToPath(String string) {
         return string;
     }
+
+    @Override
+    public Set<InputStream> getResourcesAsStream(String path) throws IOException {
+        Set<InputStream> resources = super.getResourcesAsStream(path);
+        if (resources != null && !resources.isEmpty()) {
+            trackPath(path);
+        }
+        return resources;
+    }
+
+    @Override
+    public Set<String> list(String relativeTo, String path, boolean includeFiles, boolean includeDirectories, boolean recursive) throws IOException {
+        Set<String> entries = super.list(relativeTo, path, includeFiles, includeDirectories, recursive);
+        // Track the listed directory itself, so that files added to a directory which is still empty are detected
+        trackListedDirectory(relativeTo, path);
+        if (entries != null) {
+            for (String entry : entries) {
+                Path parent = Paths.get(entry).getParent();
+                if (parent != null) {
+                    trackPath(parent.toString());
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the paths of all files and directories inside the base directory which were accessed. The paths are
+     * relative to the base directory and always use forward slashes as separator.
+     *
+     * @return the paths of all accessed files and directories.
+     */
+    public Set<String> getAccessedPaths() {
+        return Collections.unmodifiableSet(accessedPaths);
+    }
+
+    private void trackListedDirectory(String relativeTo, String path) {
+        if (basePath == null || path == null) {
+            return;
+        }
+        try {
+            Path directory = Paths.get(path);
+            if (!directory.isAbsolute() && relativeTo != null) {
+                // Like liquibase, resolve the directory against the directory of the including file
+                Path relativeToParent = basePath.resolve(relativeTo).getParent();
+                directory = (relativeToParent != null ? relativeToParent : basePath).resolve(directory);
+            }
+            trackPath(directory.toString());
+        } catch (InvalidPathException e) {      // NOSONAR: Non-file resources can't be tracked
+            // Ignore
+        }
+    }
+
+    private void trackPath(String path) {
+        if (basePath == null) {
+            return;
+        }
+        try {
+            Path resolved = Paths.get(path);
+            if (!resolved.isAbsolute()) {
+                resolved = basePath.resolve(resolved);
+            }
+            resolved = resolved.normalize();
+            // Resources outside of the repository (e.g. XSD files) are never part of the change log
+            if (resolved.startsWith(basePath) && !resolved.equals(basePath)) {
+                accessedPaths.add(basePath.relativize(resolved).toString().replace('\\', '/'));
+            }
+        } catch (InvalidPathException e) {      // NOSONAR: Non-file resources can't be tracked
+            // Ignore
+        }
+    }
 }
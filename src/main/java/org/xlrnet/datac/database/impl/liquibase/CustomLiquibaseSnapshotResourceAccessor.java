@@ -0,0 +1,160 @@
+package org.xlrnet.datac.database.impl.liquibase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+
+import com.google.common.io.ByteStreams;
+
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Implementation of liquibase's {@link ResourceAccessor} which reads all files from a {@link VcsFileSnapshot} instead
+ * of the file system. Like {@link CustomLiquibaseFileSystemResourceAccessor}, the accessor tracks all files which were
+ * read by liquibase and the containing directories of all listed files.
+ * <p>
+ * Parsed changes keep a reference to the accessor and read external files (e.g. of {@code sqlFile} changes) lazily.
+ * The accessor therefore keeps the contents of all read files in memory. After {@link #detach()} was called, all
+ * reads are served from memory only, so that a parsed change log stays usable after its snapshot was closed.
+ */
+public class CustomLiquibaseSnapshotResourceAccessor implements ResourceAccessor {
+
+    /** The snapshot from which all files are read. Null after the accessor was detached. */
+    private volatile VcsFileSnapshot snapshot;
+
+    /** Paths relative to the repository root which were accessed. */
+    private final Set<String> accessedPaths = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    /** Contents of all files which were read by their normalized path. */
+    private final Map<String, byte[]> fileContents = new ConcurrentHashMap<>();
+
+    /** Results of all directory listings by their normalized directory and listing options. */
+    private final Map<String, Set<String>> directoryListings = new ConcurrentHashMap<>();
+
+    public CustomLiquibaseSnapshotResourceAccessor(VcsFileSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Detaches the accessor from its snapshot. Afterwards, only files which were already read can be read again. The
+     * snapshot must be detached before it is closed, if parsed changes are still used after closing the snapshot.
+     */
+    public void detach() {
+        snapshot = null;
+    }
+
+    @Override
+    public Set<InputStream> getResourcesAsStream(String path) throws IOException {
+        String normalizedPath = normalizePath(path);
+        if (normalizedPath == null) {
+            return null;
+        }
+        byte[] content = fileContents.get(normalizedPath);
+        if (content == null) {
+            VcsFileSnapshot currentSnapshot = getSnapshot(normalizedPath);
+            try (InputStream inputStream = currentSnapshot.openFile(normalizedPath)) {
+                if (inputStream == null) {
+                    return null;
+                }
+                content = ByteStreams.toByteArray(inputStream);
+            }
+            fileContents.put(normalizedPath, content);
+        }
+        accessedPaths.add(normalizedPath);
+        return Collections.singleton(new ByteArrayInputStream(content));
+    }
+
+    @Override
+    public Set<String> list(String relativeTo, String path, boolean includeFiles, boolean includeDirectories, boolean recursive) throws IOException {
+        String directory = path;
+        if (relativeTo != null) {
+            String base = normalizePath(relativeTo);
+            if (base == null) {
+                return null;
+            }
+            // Files which were already read are never directories
+            if (fileContents.containsKey(base) || !getSnapshot(base).isDirectory(base)) {
+                // Paths are relative to the directory of the given file
+                base = base.contains("/") ? StringUtils.substringBeforeLast(base, "/") : "";
+            }
+            directory = base + "/" + path;
+        }
+        String normalizedDirectory = normalizePath(directory);
+        if (normalizedDirectory == null) {
+            return null;
+        }
+        String listingKey = normalizedDirectory + ":" + includeFiles + ":" + includeDirectories + ":" + recursive;
+        Set<String> entries = directoryListings.get(listingKey);
+        if (entries == null) {
+            entries = getSnapshot(normalizedDirectory).list(normalizedDirectory, includeFiles, includeDirectories, recursive);
+            if (entries == null) {
+                return null;
+            }
+            directoryListings.put(listingKey, entries);
+        }
+        for (String entry : entries) {
+            if (StringUtils.contains(entry, "/")) {
+                accessedPaths.add(StringUtils.substringBeforeLast(entry, "/"));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the snapshot for reading the given path or throws an exception if the accessor was already detached.
+     */
+    private VcsFileSnapshot getSnapshot(String path) throws IOException {
+        VcsFileSnapshot currentSnapshot = snapshot;
+        if (currentSnapshot == null) {
+            throw new IOException("Unable to read " + path + " - the snapshot of the change log was already closed");
+        }
+        return currentSnapshot;
+    }
+
+    @Override
+    public ClassLoader toClassLoader() {
+        return getClass().getClassLoader();
+    }
+
+    /**
+     * Returns the paths of all files and directories which were accessed. The paths are relative to the repository
+     * root and always use forward slashes as separator.
+     *
+     * @return the paths of all accessed files and directories.
+     */
+    public Set<String> getAccessedPaths() {
+        return Collections.unmodifiableSet(accessedPaths);
+    }
+
+    /**
+     * Normalizes the given path to a path relative to the repository root with forward slashes. Returns null if the
+     * path points outside of the repository.
+     */
+    private String normalizePath(String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : StringUtils.split(path.replace('\\', '/'), '/')) {
+            if (".".equals(segment)) {
+                continue;
+            }
+            if ("..".equals(segment)) {
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                segments.removeLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return StringUtils.join(segments, '/');
+    }
+}
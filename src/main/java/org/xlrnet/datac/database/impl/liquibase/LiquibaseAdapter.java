@@ -2,6 +2,9 @@ package org.xlrnet.datac.database.impl.liquibase;
 
 import ch.qos.logback.classic.Level;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import liquibase.change.Change;
 import liquibase.changelog.ChangeLogParameters;
 import liquibase.changelog.ChangeSet;
@@ -10,6 +13,7 @@ import liquibase.database.Database;
 import liquibase.database.DatabaseConnection;
 import liquibase.database.DatabaseFactory;
 import liquibase.database.core.H2Database;
+import liquibase.database.core.HsqlDatabase;
 import liquibase.exception.DatabaseException;
 import liquibase.exception.LiquibaseException;
 import liquibase.exception.LiquibaseParseException;
@@ -18,7 +22,12 @@ import liquibase.parser.ChangeLogParserFactory;
 import liquibase.resource.ResourceAccessor;
 import liquibase.sql.Sql;
 import liquibase.sqlgenerator.SqlGeneratorFactory;
+import liquibase.statement.DatabaseFunction;
 import liquibase.statement.SqlStatement;
+import liquibase.statement.core.CreateDatabaseChangeLogTableStatement;
+import liquibase.statement.core.InsertStatement;
+import liquibase.util.LiquibaseUtil;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
@@ -29,19 +38,36 @@ import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
 import org.xlrnet.datac.database.api.DatabaseChangeSystemMetaInfo;
 import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
+import org.xlrnet.datac.database.domain.AppliedChangeSet;
+import org.xlrnet.datac.database.domain.ChangeLogEntryTemplate;
 import org.xlrnet.datac.database.domain.DatabaseChange;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseType;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.IndexedChangeLog;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.services.FileService;
 import org.xlrnet.datac.vcs.api.VcsAdapter;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
 import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.domain.Revision;
 import org.xlrnet.datac.vcs.services.VersionControlSystemRegistry;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service which provides access to liquibase change log files.
@@ -54,6 +80,27 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
 
     private static final String DOES_NOT_EXIST = "does not exist";
 
+    /** Name of the table in which liquibase tracks applied change sets. */
+    private static final String CHANGELOG_TABLE = "DATABASECHANGELOG";
+
+    /** Column of the change log table which contains the order in which change sets were executed. */
+    private static final String ORDER_EXECUTED_COLUMN = "ORDEREXECUTED";
+
+    /** Maximum length of the description and the comments in the change log table. */
+    private static final int MAX_CHANGELOG_TEXT_LENGTH = 255;
+
+    /** Length of the deployment id in the change log table. */
+    private static final int DEPLOYMENT_ID_LENGTH = 10;
+
+    /** Maximum number of cached parsed change logs. */
+    private static final int CHANGELOG_CACHE_SIZE = 8;
+
+    /** Maximum number of cached generated deployment SQL lists. */
+    private static final int PREPARED_SQL_CACHE_SIZE = 1000;
+
+    /** Time in minutes after which unused parsed change logs and generated SQL are removed from the cache. */
+    private static final int PREPARED_DEPLOYMENT_CACHE_EXPIRY = 30;
+
     /**
      * Service for accessing the file system.
      */
@@ -67,6 +114,14 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
     /** Factory for liquibase connections. */
     private final LiquibaseConnectionFactory liquibaseConnectionFactory;
 
+    /** Parsed change logs by project and revision. Parsed change logs are large, so only a few of them are kept. */
+    private final Cache<ChangeLogKey, DatabaseChangeLog> changeLogCache = CacheBuilder.newBuilder()
+            .maximumSize(CHANGELOG_CACHE_SIZE).expireAfterAccess(PREPARED_DEPLOYMENT_CACHE_EXPIRY, TimeUnit.MINUTES).build();
+
+    /** Generated deployment SQL by change set and target database. */
+    private final Cache<PreparedSqlKey, List<String>> preparedSqlCache = CacheBuilder.newBuilder()
+            .maximumSize(PREPARED_SQL_CACHE_SIZE).expireAfterAccess(PREPARED_DEPLOYMENT_CACHE_EXPIRY, TimeUnit.MINUTES).build();
+
     @Autowired
     public LiquibaseAdapter(FileService fileService, VersionControlSystemRegistry versionControlSystemRegistry, LiquibaseConnectionFactory liquibaseConnectionFactory) {
         this.fileService = fileService;
@@ -74,9 +129,8 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
         this.liquibaseConnectionFactory = liquibaseConnectionFactory;
     }
 
-    private DatabaseChangeLog getDatabaseChangeLog(String changeLogFile, Project project) throws LiquibaseException {
+    private DatabaseChangeLog getDatabaseChangeLog(String changeLogFile, ResourceAccessor resourceAccessor) throws LiquibaseException {
         LOGGER.debug("Opening Liquibase changelog file at {}", changeLogFile);
-        ResourceAccessor resourceAccessor = getFileSystemResourceAccessorForProject(project);
         ChangeLogParser parser = ChangeLogParserFactory.getInstance().getParser(changeLogFile, resourceAccessor);
         Database database = getReadOnlyDatabase();
         ChangeLogParameters changeLogParameters = new ChangeLogParameters(database);
@@ -103,10 +157,33 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
     @Override
     @NotNull
     public List<DatabaseChangeSet> listDatabaseChangeSetsForProject(@NotNull Project project) throws DatacTechnicalException {
-        ArrayList<DatabaseChangeSet> datacChangeSets = new ArrayList<>();
+        return indexChangeLog(project).getChangeSets();
+    }
+
+    @Override
+    @NotNull
+    public IndexedChangeLog indexChangeLog(@NotNull Project project) throws DatacTechnicalException {
         LOGGER.debug("Listing database changes in project {} [id={}]", project.getName(), project.getId());
+        // Track all files which are read by liquibase to find out which files are part of the change log
+        CustomLiquibaseFileSystemResourceAccessor resourceAccessor = getFileSystemResourceAccessorForProject(project);
+        List<DatabaseChangeSet> changeSets = listDatabaseChangeSets(project, resourceAccessor);
+        return new IndexedChangeLog(changeSets, resourceAccessor.getAccessedPaths());
+    }
+
+    @Override
+    @NotNull
+    public IndexedChangeLog indexChangeLog(@NotNull Project project, @NotNull VcsFileSnapshot snapshot) throws DatacTechnicalException {
+        LOGGER.debug("Listing database changes in project {} [id={}] in revision {}", project.getName(), project.getId(), snapshot.getRevision().getInternalId());
+        CustomLiquibaseSnapshotResourceAccessor resourceAccessor = new CustomLiquibaseSnapshotResourceAccessor(snapshot);
+        List<DatabaseChangeSet> changeSets = listDatabaseChangeSets(project, resourceAccessor);
+        return new IndexedChangeLog(changeSets, resourceAccessor.getAccessedPaths());
+    }
+
+    @NotNull
+    private List<DatabaseChangeSet> listDatabaseChangeSets(@NotNull Project project, @NotNull ResourceAccessor resourceAccessor) throws DatacTechnicalException {
+        List<DatabaseChangeSet> datacChangeSets = new ArrayList<>();
         try {
-            DatabaseChangeLog databaseChangeLog = getDatabaseChangeLog(project.getChangelogLocation(), project);
+            DatabaseChangeLog databaseChangeLog = getDatabaseChangeLog(project.getChangelogLocation(), resourceAccessor);
 
             int sort = 0;
             for (ChangeSet changeSet : databaseChangeLog.getChangeSets()) {
@@ -128,48 +205,234 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
         return datacChangeSets;
     }
 
+    /**
+     * Prepares the deployment of a change set on the given instance. The generated SQL is cached per project, revision,
+     * change set, database type and schema, so that deployments on multiple instances of the same kind only generate it
+     * once. The change log of a revision is parsed only once for all cached change sets.
+     */
     @NotNull
     @Override
     public IPreparedDeploymentContainer prepareDeployment(@NotNull Project project, @NotNull DeploymentInstance targetInstance, @NotNull DatabaseChangeSet changeSet) throws DatacTechnicalException {
-        VcsAdapter vcsAdapter = versionControlSystemRegistry.getVcsAdapter(project);
-        VcsLocalRepository vcsLocalRepository = vcsAdapter.openLocalRepository(fileService.getProjectRepositoryPath(project), project);
-        vcsLocalRepository.checkoutRevision(changeSet.getRevision());
+        ChangeLogKey changeLogKey = new ChangeLogKey(project.getId(), changeSet.getRevision().getInternalId(), project.getChangelogLocation());
+        org.xlrnet.datac.database.domain.DatabaseConnection targetConnection = targetInstance.getConnection();
+        PreparedSqlKey preparedSqlKey = new PreparedSqlKey(changeLogKey, changeSet.getSourceFilename(), changeSet.getAuthor(),
+                changeSet.getInternalId(), changeSet.getChecksum(), targetConnection.getType(), targetConnection.getSchema());
+
+        DatabaseChangeLog databaseChangeLog = getCached(changeLogCache, changeLogKey, () -> openChangeLog(project, changeSet.getRevision()));
+        ChangeSet originalChangeSet = findChangeSet(databaseChangeLog, changeSet);
+        List<String> generatedSql = getCached(preparedSqlCache, preparedSqlKey, () -> generateDeploymentSql(targetInstance, originalChangeSet));
+
         LiquibaseDeploymentContainer preparedDeploymentContainer = new LiquibaseDeploymentContainer();
+        preparedDeploymentContainer.setProject(project);
+        preparedDeploymentContainer.setTargetInstance(targetInstance);
+        preparedDeploymentContainer.setGeneratedSql(generatedSql);
+        preparedDeploymentContainer.setChangeLogEntry(generateChangeLogEntry(targetInstance, originalChangeSet));
+        return preparedDeploymentContainer;
+    }
 
+    @NotNull
+    private List<String> generateDeploymentSql(@NotNull DeploymentInstance targetInstance, @NotNull ChangeSet originalChangeSet) throws DatacTechnicalException {
+        LOGGER.debug("Generating SQL for change set {} on {}", originalChangeSet.getId(), targetInstance.getConnection().getType());
+        Database targetDatabase = null;
         try {
-            DatabaseChangeLog databaseChangeLog = getDatabaseChangeLog(project.getChangelogLocation(), project);
-            ChangeSet originalChangeSet = databaseChangeLog.getChangeSet(changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId());
-            if (originalChangeSet == null) {
-                LOGGER.error("Unable to find change set {} {} {}", changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId());
-                throw new DatacTechnicalException("Unable to find change set");
+            targetDatabase = getDatabaseFromDeploymentInstance(targetInstance);
+            List<String> allSql = new ArrayList<>();
+            for (Sql sql : generateChangeSetSql(originalChangeSet, targetDatabase)) {
+                allSql.add(sql.toSql());
             }
+            return Collections.unmodifiableList(allSql);
+        } catch (LiquibaseException | SQLException e) {
+            LOGGER.error("Unexpected exception occurred while trying to prepare a deployment", e);
+            throw new DatacTechnicalException(e);
+        } finally {
+            closeQuietly(targetDatabase);
+        }
+    }
 
-            Database targetDatabase = null;
-            try {
-                targetDatabase = getDatabaseFromDeploymentInstance(targetInstance);
-                List<String> allSql = new ArrayList<>();
-                for (Change change : originalChangeSet.getChanges()) {
-                    StringBuilder stringBuilder = new StringBuilder();
-                    generateSql(change, targetDatabase, stringBuilder);
-                    allSql.add(stringBuilder.toString());
-                }
-                preparedDeploymentContainer.setGeneratedSql(allSql);
-            } finally {
-                if (targetDatabase != null && targetDatabase.getConnection() != null) {
-                    targetDatabase.getConnection().close();
-                }
+    /**
+     * Generates the statements which mark the given change set as executed in the change log table of the target
+     * database. Whether the change log table exists and which execution order the change set gets is determined when
+     * the statements are executed in the same transaction as the change set, so that a failed change set is never
+     * marked as executed. No connection to the target database is needed.
+     */
+    @NotNull
+    private ChangeLogEntryTemplate generateChangeLogEntry(@NotNull DeploymentInstance targetInstance, @NotNull ChangeSet originalChangeSet) throws DatacTechnicalException {
+        Database offlineDatabase = getOfflineDatabase(targetInstance.getConnection().getType());
+        String changeLogTable = offlineDatabase.getDatabaseChangeLogTableName();
+        InsertStatement insertStatement = new InsertStatement(offlineDatabase.getLiquibaseCatalogName(), offlineDatabase.getLiquibaseSchemaName(), changeLogTable);
+        // Change sets of a cached change log are shared by all concurrent deployments and aren't thread-safe
+        synchronized (originalChangeSet) {
+            insertStatement.addColumnValue("ID", originalChangeSet.getId())
+                    .addColumnValue("AUTHOR", originalChangeSet.getAuthor())
+                    .addColumnValue("FILENAME", originalChangeSet.getFilePath())
+                    .addColumnValue("DATEEXECUTED", new DatabaseFunction(offlineDatabase.getCurrentDateTimeFunction()))
+                    .addColumnValue(ORDER_EXECUTED_COLUMN, new DatabaseFunction("?"))
+                    .addColumnValue("MD5SUM", originalChangeSet.generateCheckSum().toString())
+                    .addColumnValue("DESCRIPTION", StringUtils.abbreviate(originalChangeSet.getDescription(), MAX_CHANGELOG_TEXT_LENGTH))
+                    .addColumnValue("COMMENTS", StringUtils.abbreviate(StringUtils.trimToEmpty(originalChangeSet.getComments()), MAX_CHANGELOG_TEXT_LENGTH))
+                    .addColumnValue("EXECTYPE", ChangeSet.ExecType.EXECUTED.value)
+                    .addColumnValue("CONTEXTS", originalChangeSet.getContexts() == null || originalChangeSet.getContexts().isEmpty() ? null : originalChangeSet.getContexts().toString())
+                    .addColumnValue("LABELS", originalChangeSet.getLabels() == null || originalChangeSet.getLabels().isEmpty() ? null : originalChangeSet.getLabels().toString())
+                    .addColumnValue("LIQUIBASE", LiquibaseUtil.getBuildVersion().replaceAll("SNAPSHOT", "SNP"))
+                    .addColumnValue("DEPLOYMENT_ID", StringUtils.right(String.valueOf(System.currentTimeMillis()), DEPLOYMENT_ID_LENGTH));
+        }
+        List<String> insertSql = generateStatementSql(insertStatement, offlineDatabase);
+        if (insertSql.size() != 1) {
+            throw new DatacTechnicalException("Expected a single statement for recording change set " + originalChangeSet.getId() + " but got " + insertSql.size());
+        }
+        List<String> createTableSql = generateStatementSql(new CreateDatabaseChangeLogTableStatement(), offlineDatabase);
+        return new ChangeLogEntryTemplate(changeLogTable, createTableSql, ORDER_EXECUTED_COLUMN, insertSql.get(0));
+    }
+
+    @NotNull
+    private ChangeSet findChangeSet(@NotNull DatabaseChangeLog databaseChangeLog, @NotNull DatabaseChangeSet changeSet) throws DatacTechnicalException {
+        ChangeSet originalChangeSet = databaseChangeLog.getChangeSet(changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId());
+        if (originalChangeSet == null) {
+            LOGGER.error("Unable to find change set {} {} {}", changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId());
+            throw new DatacTechnicalException("Unable to find change set");
+        }
+        return originalChangeSet;
+    }
+
+    @NotNull
+    private DatabaseChangeLog openChangeLog(@NotNull Project project, @NotNull Revision revision) throws DatacTechnicalException {
+        VcsAdapter vcsAdapter = versionControlSystemRegistry.getVcsAdapter(project);
+        VcsLocalRepository vcsLocalRepository = vcsAdapter.openLocalRepository(fileService.getProjectRepositoryPath(project), project);
+        try (VcsFileSnapshot snapshot = vcsLocalRepository.openFileSnapshot(revision)) {
+            CustomLiquibaseSnapshotResourceAccessor resourceAccessor = new CustomLiquibaseSnapshotResourceAccessor(snapshot);
+            DatabaseChangeLog databaseChangeLog = getDatabaseChangeLog(project.getChangelogLocation(), resourceAccessor);
+            // Changes read external files (e.g. sqlFile) lazily - calculating the checksums reads them while the
+            // snapshot is still open, so that the cached change log doesn't depend on the snapshot anymore
+            for (ChangeSet changeSet : databaseChangeLog.getChangeSets()) {
+                changeSet.generateCheckSum();
             }
+            resourceAccessor.detach();
+            return databaseChangeLog;
         } catch (LiquibaseParseException pe) {
             if (StringUtils.endsWith(pe.getMessage(), DOES_NOT_EXIST)) {
                 LOGGER.warn("Unable to find find changelog file {}", StringUtils.substringBefore(DOES_NOT_EXIST, pe.getMessage()));
+                throw new DatacTechnicalException("Unable to find changelog file " + project.getChangelogLocation(), pe);
             } else {
                 throw new DatacTechnicalException(pe);
             }
-        } catch (LiquibaseException | SQLException e) {
-            LOGGER.error("Unexpected exception occurred while trying to prepare a deployment", e);
+        } catch (LiquibaseException | IOException e) {
+            LOGGER.error("Unexpected exception occurred while trying to open the changelog", e);
             throw new DatacTechnicalException(e);
         }
-        return preparedDeploymentContainer;
+    }
+
+    private void closeQuietly(Database database) {
+        if (database != null && database.getConnection() != null) {
+            try {
+                database.getConnection().close();
+            } catch (DatabaseException e) {
+                LOGGER.warn("Closing database connection failed", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the cached value of the given key or loads it. Concurrent loads of the same key wait for each other, so
+     * that a value is loaded only once.
+     */
+    @NotNull
+    private static <K, V> V getCached(Cache<K, V> cache, K key, Callable<V> loader) throws DatacTechnicalException {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), DatacTechnicalException.class);
+            throw new DatacTechnicalException(e.getCause());
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<AppliedChangeSet> listAppliedChangeSets(@NotNull Connection connection) throws DatacTechnicalException {
+        try {
+            String changeLogTable = findChangeLogTable(connection);
+            if (changeLogTable == null) {
+                LOGGER.debug("No liquibase change log table found");
+                return Collections.emptyList();
+            }
+            List<AppliedChangeSet> appliedChangeSets = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT ID, AUTHOR, FILENAME, MD5SUM FROM " + changeLogTable)) {
+                while (resultSet.next()) {
+                    appliedChangeSets.add(new AppliedChangeSet(resultSet.getString(3), resultSet.getString(2), resultSet.getString(1), resultSet.getString(4)));
+                }
+            }
+            return appliedChangeSets;
+        } catch (SQLException e) {
+            throw new DatacTechnicalException("Reading the liquibase change log table failed", e);
+        }
+    }
+
+    /**
+     * Returns the name of the liquibase change log table in the current schema or null if it doesn't exist. Databases
+     * may store the unquoted table name either in upper or in lower case.
+     */
+    private String findChangeLogTable(@NotNull Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String schema = connection.getSchema();
+        for (String tableName : new String[]{CHANGELOG_TABLE, CHANGELOG_TABLE.toLowerCase(Locale.ROOT)}) {
+            try (ResultSet tables = metaData.getTables(null, schema, tableName, null)) {
+                if (tables.next()) {
+                    return tableName;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void writeOfflineSql(@NotNull Project project, @NotNull Revision revision, @NotNull List<DatabaseChangeSet> changeSets, @NotNull DatabaseType databaseType, @NotNull Writer writer) throws DatacTechnicalException {
+        ChangeLogKey changeLogKey = new ChangeLogKey(project.getId(), revision.getInternalId(), project.getChangelogLocation());
+        DatabaseChangeLog databaseChangeLog = getCached(changeLogCache, changeLogKey, () -> openChangeLog(project, revision));
+        writeOfflineSql(databaseChangeLog, changeSets, getOfflineDatabase(databaseType), writer);
+    }
+
+    private void writeOfflineSql(@NotNull DatabaseChangeLog databaseChangeLog, @NotNull List<DatabaseChangeSet> changeSets, @NotNull Database offlineDatabase, @NotNull Writer writer) throws DatacTechnicalException {
+        try {
+            for (DatabaseChangeSet changeSet : changeSets) {
+                ChangeSet originalChangeSet = findChangeSet(databaseChangeLog, changeSet);
+                List<Sql> generatedSql = generateChangeSetSql(originalChangeSet, offlineDatabase);
+                writer.write(String.format("-- Changeset %s::%s::%s%n", changeSet.getSourceFilename(), changeSet.getInternalId(), changeSet.getAuthor()));
+                for (Sql sql : generatedSql) {
+                    // Scripts need delimiters between their statements
+                    writer.write(sql.toSql() + sql.getEndDelimiter() + System.lineSeparator());
+                }
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            throw new DatacTechnicalException("Writing SQL failed", e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<String> generateOfflineSql(@NotNull Project project, @NotNull Revision revision, @NotNull DatabaseChangeSet changeSet, @NotNull DatabaseType databaseType) throws DatacTechnicalException {
+        ChangeLogKey changeLogKey = new ChangeLogKey(project.getId(), revision.getInternalId(), project.getChangelogLocation());
+        DatabaseChangeLog databaseChangeLog = getCached(changeLogCache, changeLogKey, () -> openChangeLog(project, revision));
+        ChangeSet originalChangeSet = findChangeSet(databaseChangeLog, changeSet);
+        List<String> statements = new ArrayList<>();
+        for (Sql sql : generateChangeSetSql(originalChangeSet, getOfflineDatabase(databaseType))) {
+            statements.add(sql.toSql());
+        }
+        return statements;
+    }
+
+    /**
+     * Returns a new database implementation without connection for generating SQL of the given database type.
+     */
+    @NotNull
+    private Database getOfflineDatabase(@NotNull DatabaseType databaseType) {
+        switch (databaseType) {
+            case HSQL:
+                return new HsqlDatabase();
+            case H2:
+            default:
+                return new H2Database();
+        }
     }
 
     private Database getDatabaseFromDeploymentInstance(DeploymentInstance targetInstance) throws DatabaseException, SQLException {
@@ -225,7 +488,9 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
         if (!liquibaseChange.generateStatementsVolatile(mockDatabase)) {
             try {
                 StringBuilder stringBuilder = new StringBuilder();
-                generateSql(liquibaseChange, mockDatabase, stringBuilder);
+                for (Sql sql : generateSql(liquibaseChange, mockDatabase)) {
+                    stringBuilder.append(sql.toSql());
+                }
                 datacChange.setPreviewSql(stringBuilder.toString());
             } catch (DatacTechnicalException e) {
                 LOGGER.warn("Generating preview SQL failed: {}", Throwables.getRootCause(e).getMessage());
@@ -238,15 +503,47 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
         return datacChange;
     }
 
-    private void generateSql(@NotNull Change change, @NotNull Database database, StringBuilder sqlBuilder) throws DatacTechnicalException {
+    /**
+     * Generates the SQL of a change. Each returned {@link Sql} is a single statement without its end delimiter.
+     */
+    /**
+     * Generates the SQL of all changes in the given change set. Change sets of a cached change log are shared by all
+     * concurrent deployments, dry runs and exports and their changes aren't thread-safe. Generation is therefore
+     * synchronized per change set, so that different change sets of the same change log are generated in parallel and
+     * callers can process the generated SQL without holding any lock.
+     */
+    @NotNull
+    private List<Sql> generateChangeSetSql(@NotNull ChangeSet changeSet, @NotNull Database database) throws DatacTechnicalException {
+        List<Sql> allSql = new ArrayList<>();
+        synchronized (changeSet) {
+            for (Change change : changeSet.getChanges()) {
+                allSql.addAll(generateSql(change, database));
+            }
+        }
+        return allSql;
+    }
+
+    @NotNull
+    private List<Sql> generateSql(@NotNull Change change, @NotNull Database database) throws DatacTechnicalException {
         try {
-            SqlStatement[] sqlStatements = change.generateStatements(database);
-            for (SqlStatement sqlStatement : sqlStatements) {
-                Sql[] sqls = SqlGeneratorFactory.getInstance().generateSql(sqlStatement, database);
-                for (Sql sql : sqls) {
-                    sqlBuilder.append(sql.toSql());
-                }
+            List<Sql> allSql = new ArrayList<>();
+            for (SqlStatement sqlStatement : change.generateStatements(database)) {
+                Collections.addAll(allSql, SqlGeneratorFactory.getInstance().generateSql(sqlStatement, database));
             }
+            return allSql;
+        } catch (RuntimeException e) {
+            throw new DatacTechnicalException("Generating SQL failed", e);
+        }
+    }
+
+    @NotNull
+    private List<String> generateStatementSql(@NotNull SqlStatement sqlStatement, @NotNull Database database) throws DatacTechnicalException {
+        try {
+            List<String> statements = new ArrayList<>();
+            for (Sql sql : SqlGeneratorFactory.getInstance().generateSql(sqlStatement, database)) {
+                statements.add(sql.toSql());
+            }
+            return statements;
         } catch (RuntimeException e) {
             throw new DatacTechnicalException("Generating SQL failed", e);
         }
@@ -261,7 +558,42 @@ public class LiquibaseAdapter implements DatabaseChangeSystemAdapter {
      * Returns a resource accessor with project-based base path.
      */
     @NotNull
-    private ResourceAccessor getFileSystemResourceAccessorForProject(@NotNull Project project) {
+    private CustomLiquibaseFileSystemResourceAccessor getFileSystemResourceAccessorForProject(@NotNull Project project) {
         return new CustomLiquibaseFileSystemResourceAccessor(fileService.getProjectRepositoryPath(project).toString());
     }
+
+    /**
+     * Identifies the change log of a project in a single revision.
+     */
+    @Value
+    private static class ChangeLogKey {
+
+        Long projectId;
+
+        String revisionId;
+
+        String changeLogLocation;
+    }
+
+    /**
+     * Identifies the generated SQL of a single change set. SQL generated by liquibase only depends on the type of the
+     * target database and its default schema, which is used for qualifying object names.
+     */
+    @Value
+    private static class PreparedSqlKey {
+
+        ChangeLogKey changeLogKey;
+
+        String sourceFilename;
+
+        String author;
+
+        String changeSetId;
+
+        String checksum;
+
+        DatabaseType databaseType;
+
+        String schema;
+    }
 }
@@ -4,6 +4,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
+import org.xlrnet.datac.database.domain.ChangeLogEntryTemplate;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
 import org.xlrnet.datac.foundation.domain.Project;
 
@@ -20,6 +21,10 @@ public class LiquibaseDeploymentContainer implements IPreparedDeploymentContaine
     @Setter(AccessLevel.PROTECTED)
     private List<String> generatedSql;
 
+    @Getter
+    @Setter(AccessLevel.PROTECTED)
+    private ChangeLogEntryTemplate changeLogEntry;
+
     @Getter
     @Setter(AccessLevel.PROTECTED)
     private DeploymentInstance targetInstance;
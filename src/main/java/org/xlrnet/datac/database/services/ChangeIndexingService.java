@@ -2,12 +2,17 @@ package org.xlrnet.datac.database.services;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -26,15 +31,18 @@ import org.xlrnet.datac.commons.util.SortableComparator;
 import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
 import org.xlrnet.datac.database.domain.DatabaseChange;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.IndexedChangeLog;
+import org.xlrnet.datac.database.domain.IndexingJournal;
 import org.xlrnet.datac.foundation.components.EventLogProxy;
 import org.xlrnet.datac.foundation.domain.EventLogMessage;
 import org.xlrnet.datac.foundation.domain.MessageSeverity;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.domain.ProjectState;
 import org.xlrnet.datac.foundation.services.ProjectService;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
 import org.xlrnet.datac.vcs.api.VcsLocalRepository;
-import org.xlrnet.datac.vcs.api.VcsRevision;
 import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.PathHistoryService;
 import org.xlrnet.datac.vcs.services.RevisionGraphService;
 
 /**
@@ -75,6 +83,16 @@ public class ChangeIndexingService {
      */
     private final RevisionGraphService revisionGraphService;
 
+    /**
+     * Service for persisting the progress of indexing processes.
+     */
+    private final IndexingJournalService indexingJournalService;
+
+    /**
+     * Service for cached queries of revisions which modified the change log.
+     */
+    private final PathHistoryService pathHistoryService;
+
     /**
      * Helper class for performing breadth first traversals on revision graphs.
      */
@@ -85,12 +103,14 @@ public class ChangeIndexingService {
      */
     private DepthFirstTraverser<Revision> depthFirstTraverser = new DepthFirstTraverser<>();
 
-    public ChangeIndexingService(EventLogProxy eventLog, DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry, ChangeSetService changeSetService, ProjectService projectService, RevisionGraphService revisionGraphService) {
+    public ChangeIndexingService(EventLogProxy eventLog, DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry, ChangeSetService changeSetService, ProjectService projectService, RevisionGraphService revisionGraphService, IndexingJournalService indexingJournalService, PathHistoryService pathHistoryService) {
         this.eventLog = eventLog;
         this.databaseChangeSystemAdapterRegistry = databaseChangeSystemAdapterRegistry;
         this.changeSetService = changeSetService;
         this.projectService = projectService;
         this.revisionGraphService = revisionGraphService;
+        this.indexingJournalService = indexingJournalService;
+        this.pathHistoryService = pathHistoryService;
     }
 
 
@@ -99,7 +119,7 @@ public class ChangeIndexingService {
         LOGGER.info("Begin indexing changes in project {}", project.getName());
 
         // Find revisions where only the changelog file itself changed to check if the given changelog file exists
-        Collection<VcsRevision> changeLogRevisions = localRepository.listRevisionsWithChangesInPath(project.getChangelogLocation());
+        Set<String> changeLogRevisions = pathHistoryService.listRevisionsWithChangesInPaths(project, localRepository, Collections.singleton(project.getChangelogLocation()));
 
         if (changeLogRevisions.isEmpty()) {
             String msg = String.format("Couldn't find change log file %s for project %s", project.getChangelogLocation(), project.getName());
@@ -109,24 +129,94 @@ public class ChangeIndexingService {
             return project;
         }
 
-        // For performing the actual indexing, retrieve all revisions which changed the whole directory in which the changelog lies
+        project.setState(ProjectState.INDEXING);
+        Project updatedProject = projectService.save(project);
+        projectService.saveAndPublishStateChange(updatedProject, 0);
+
+        // Finish the work list of an interrupted indexing process first, since it was already ordered correctly
+        Set<String> processedRevisions = new HashSet<>();
+        Optional<IndexingJournal> unfinishedJournal = indexingJournalService.findUnfinishedJournal(updatedProject);
+        if (unfinishedJournal.isPresent()) {
+            IndexingJournal journal = unfinishedJournal.get();
+            String msg = String.format("Resuming interrupted indexing at revision %d of %d", journal.getWatermark() + 1, journal.getRevisions().size());
+            eventLog.addMessage(new EventLogMessage(msg));
+            LOGGER.info("{} in project {} [id={}]", msg, updatedProject.getName(), updatedProject.getId());
+            journal.getRevisions().forEach(r -> processedRevisions.add(r.getInternalId()));
+            indexDatabaseChanges(updatedProject, localRepository, journal);
+        }
+
+        // Indexing may discover change log files which weren't known before (e.g. a new include) - in that case the
+        // revisions which modified only the new files must be indexed in another pass
+        Set<String> changeLogFiles = revisionGraphService.findChangeLogFilesInProject(updatedProject);
+        boolean newChangeLogFilesFound;
+        do {
+            Set<String> candidateRevisions = listCandidateRevisions(updatedProject, localRepository, changeLogFiles);
+            indexCandidateRevisions(updatedProject, localRepository, candidateRevisions, processedRevisions);
+
+            Set<String> updatedChangeLogFiles = revisionGraphService.findChangeLogFilesInProject(updatedProject);
+            newChangeLogFilesFound = !changeLogFiles.isEmpty() && !changeLogFiles.containsAll(updatedChangeLogFiles);
+            if (newChangeLogFilesFound) {
+                LOGGER.debug("Found new change log files in project {} [id={}] - checking for additional revisions", updatedProject.getName(), updatedProject.getId());
+            }
+            changeLogFiles = updatedChangeLogFiles;
+        } while (newChangeLogFilesFound);
+
+        return updatedProject;
+    }
+
+    /**
+     * Lists all revisions which might contain changes to the change log of the given project. If the change log files
+     * of the project are already known from previous indexing runs, only revisions which modified exactly these files
+     * will be returned. Otherwise all revisions which modified the directory of the change log are returned.
+     *
+     * @param project
+     *         The project for which revisions should be listed.
+     * @param localRepository
+     *         The local repository connection.
+     * @param changeLogFiles
+     *         Known change log files of the project. May be empty.
+     * @return Internal ids of revisions which might contain changes to the change log.
+     */
+    @NotNull
+    private Set<String> listCandidateRevisions(@NotNull Project project, @NotNull VcsLocalRepository localRepository, @NotNull Set<String> changeLogFiles) throws DatacTechnicalException {
+        if (!changeLogFiles.isEmpty()) {
+            Set<String> paths = new LinkedHashSet<>(changeLogFiles);
+            paths.add(project.getChangelogLocation());
+            LOGGER.debug("Listing revisions which modified {} known change log files in project {} [id={}]", paths.size(), project.getName(), project.getId());
+            return pathHistoryService.listRevisionsWithChangesInPaths(project, localRepository, paths);
+        }
+
+        // Without any known change log files, retrieve all revisions which changed the whole directory in which the changelog lies
         Path parentPath = Paths.get(project.getChangelogLocation()).getParent();
         if (parentPath != null) {
-            changeLogRevisions = localRepository.listRevisionsWithChangesInPath(parentPath.toString());
+            return pathHistoryService.listRevisionsWithChangesInPaths(project, localRepository, Collections.singleton(parentPath.toString()));
         } else {
             LOGGER.warn("Parent directory of change log may not be null - this is probably a bug in the VCS adapter. Falling back to direct file changes");
+            return pathHistoryService.listRevisionsWithChangesInPaths(project, localRepository, Collections.singleton(project.getChangelogLocation()));
         }
+    }
 
-        project.setState(ProjectState.INDEXING);
-        Project updatedProject = projectService.save(project);
-        projectService.saveAndPublishStateChange(updatedProject, 0);
-
+    /**
+     * Indexes all given candidate revisions and all merge revisions in the project which contain the change log and
+     * don't have any change sets yet.
+     *
+     * @param project
+     *         The project for which database changes shall be indexed.
+     * @param localRepository
+     *         The local repository connection.
+     * @param candidateRevisions
+     *         Internal ids of revisions which might contain changes to the change log.
+     * @param processedRevisions
+     *         Internal ids of revisions which were already processed in this run. Newly processed revisions will be
+     *         added.
+     */
+    private void indexCandidateRevisions(@NotNull Project project, @NotNull VcsLocalRepository localRepository, @NotNull Collection<String> candidateRevisions, @NotNull Set<String> processedRevisions) throws DatacTechnicalException {
         // Convert the external revisions to internal ones
-        Collection<Revision> internalRevisions = revisionGraphService.findMatchingInternalRevisions(updatedProject, changeLogRevisions);
+        Collection<Revision> internalRevisions = revisionGraphService.findMatchingInternalRevisionsByIds(project, candidateRevisions);
         // Find those revisions which don't have a change set yet
         Set<Revision> revisionsToIndex = new LinkedHashSet<>();
         for (Revision revision : internalRevisions) {
-            if (changeSetService.countCachedByRevision(revision) == 0) {
+            if (changeSetService.countCachedByRevision(revision) == 0 && !processedRevisions.contains(revision.getInternalId())) {
                 revisionsToIndex.add(revision);
             }
         }
@@ -137,26 +227,33 @@ public class ChangeIndexingService {
             // Add merge revisions after the regular revisions -> this works fine, since a merge revision is never an introducing change
             // The java Set makes sure that no revisions are indexed twice
             Iterable<Revision> mergeRevisionsInProject = revisionGraphService.findMergeRevisionsInProject(project);
-            LOGGER.debug("Checking for merge revisions in project {} [id={}]", updatedProject.getName(), updatedProject.getId());
+            LOGGER.debug("Checking for merge revisions in project {} [id={}]", project.getName(), project.getId());
+            List<Revision> unindexedMergeRevisions = new ArrayList<>();
             for (Revision revision : mergeRevisionsInProject) {
-                if (changeSetService.countCachedByRevision(revision) == 0 && localRepository.existsPathInRevision(revision, project.getChangelogLocation())) {
+                if (changeSetService.countCachedByRevision(revision) == 0 && !processedRevisions.contains(revision.getInternalId())) {
+                    unindexedMergeRevisions.add(revision);
+                }
+            }
+            // Check all merge revisions at once to avoid reopening the repository for every single revision
+            Set<String> mergeRevisionsWithChangeLog = localRepository.findRevisionsContainingPath(unindexedMergeRevisions, project.getChangelogLocation());
+            for (Revision revision : unindexedMergeRevisions) {
+                if (mergeRevisionsWithChangeLog.contains(revision.getInternalId())) {
                     orderedRevisionsToIndex.add(revision);
                     LOGGER.debug("Adding merge revision {} to index", revision.getInternalId());
                 }
             }
 
-            LOGGER.debug("Indexing {} revisions in project {} [id={}]", orderedRevisionsToIndex.size(), updatedProject.getName(), updatedProject.getId());
-            indexDatabaseChanges(updatedProject, localRepository, orderedRevisionsToIndex);
+            LOGGER.debug("Indexing {} revisions in project {} [id={}]", orderedRevisionsToIndex.size(), project.getName(), project.getId());
+            orderedRevisionsToIndex.forEach(r -> processedRevisions.add(r.getInternalId()));
+            IndexingJournal journal = indexingJournalService.createJournal(project, orderedRevisionsToIndex);
+            indexDatabaseChanges(project, localRepository, journal);
         } else {
-            LOGGER.info("No new revisions in project {} [id={}]", updatedProject.getName(), updatedProject.getId());
+            LOGGER.info("No new revisions in project {} [id={}]", project.getName(), project.getId());
         }
-
-        return updatedProject;
     }
 
     @Transactional
     public void recalculateChecksumsInRevision(@NotNull Project project, @NotNull Revision revision, @NotNull VcsLocalRepository localRepository) throws DatacTechnicalException {
-        localRepository.checkoutRevision(revision);
         LOGGER.debug("Recalculating checksums in revision {}", revision.getInternalId());
         List<DatabaseChangeSet> newChangeSets = listDatabaseChangeSetsInRevision(project, localRepository, revision);
         newChangeSets.sort(new SortableComparator());
@@ -191,31 +288,32 @@ public class ChangeIndexingService {
     }
 
     /**
-     * Performs indexing of database changes in the given project using the given local repository. The algorithm will
-     * perform a breadth-first traversal from the root revision. For each revision during the traversal,
-     * the whole local repository will checkout the given revision.
-     * The traversal will abort when an already visited revision is met.
+     * Performs indexing of database changes in the given project using the given local repository. The revisions in
+     * the work list of the given journal will be indexed beginning at its watermark. The files of each revision are read
+     * from a snapshot of the local repository. The change sets of each revision are committed together with the
+     * advanced watermark, so that an interrupted process can be resumed at the first revision that wasn't indexed.
+     * The journal will be removed after all revisions were indexed.
      *
      * @param project
      *         The project for which database changes shall be indexed.
      * @param localRepository
      *         The local repository connection.
-     * @param revisionsToIndex
-     *         The revisions that should be indexed.
+     * @param journal
+     *         The journal containing the revisions that should be indexed.
      */
-    private void indexDatabaseChanges(@NotNull Project project, @NotNull VcsLocalRepository localRepository, @NotNull Collection<Revision> revisionsToIndex) throws DatacTechnicalException {
-        int indexed = 0;
+    private void indexDatabaseChanges(@NotNull Project project, @NotNull VcsLocalRepository localRepository, @NotNull IndexingJournal journal) throws DatacTechnicalException {
+        int position = journal.getWatermark();
+        int total = journal.getRevisions().size();
         int newChangeSets = 0;
 
-        for (Revision toIndex : revisionsToIndex) {
-            double progress = (indexed++ / (double) revisionsToIndex.size()) * 100.0;
+        for (Revision toIndex : new ArrayList<>(journal.getPendingRevisions())) {
+            double progress = (position / (double) total) * 100.0;
             projectService.saveAndPublishStateChange(project, progress);
-            Collection<DatabaseChangeSet> changeSets = indexDatabaseChangesInRevision(project, localRepository, toIndex);
-            if (changeSets != null) {
-                newChangeSets += changeSets.size();
-            }
+            Collection<DatabaseChangeSet> changeSets = indexDatabaseChangesInRevision(project, localRepository, journal, position++, toIndex);
+            newChangeSets += changeSets.size();
         }
 
+        indexingJournalService.finishJournal(journal);
         eventLog.addMessage(new EventLogMessage(String.format("Indexed total of %s new change sets", newChangeSets)));
         LOGGER.info("Indexed total of {} new change sets in project {} [id={}]", newChangeSets, project.getName(), project.getId());
     }
@@ -226,9 +324,13 @@ public class ChangeIndexingService {
         rootRevision = revisionGraphService.findCachedByInternalIdAndProject(rootRevision.getInternalId(), project);
         Set<Revision> orderedRevisionsToIndex = new LinkedHashSet<Revision>();
         HashMap<String, AtomicInteger> mergeMap = new HashMap<>();
+        // The traversal visits cached decorators, but the journal must reference the persisted revisions
+        Map<String, Revision> revisionsByInternalId = new HashMap<>();
+        revisionsToIndex.forEach(r -> revisionsByInternalId.put(r.getInternalId(), r));
         breadthFirstTraverser.traverseChildrenCutOnMatch(rootRevision, r -> {
-            if (revisionsToIndex.contains(r) && !orderedRevisionsToIndex.contains(r)) {
-                orderedRevisionsToIndex.add(r);
+            Revision toIndex = revisionsByInternalId.get(r.getInternalId());
+            if (toIndex != null) {
+                orderedRevisionsToIndex.add(toIndex);
             }
         }, (Revision r) -> {
             if (r.getChildren().size() == 1) {
@@ -245,30 +347,36 @@ public class ChangeIndexingService {
         return orderedRevisionsToIndex;
     }
 
-    private Collection<DatabaseChangeSet> indexDatabaseChangesInRevision(Project project, VcsLocalRepository localRepository, Revision revision) throws DatacTechnicalException {
+    @NotNull
+    private Collection<DatabaseChangeSet> indexDatabaseChangesInRevision(Project project, VcsLocalRepository localRepository, IndexingJournal journal, int position, Revision revision) throws DatacTechnicalException {
         long byRevision = changeSetService.countByRevision(revision);
+        IndexedChangeLog indexedChangeLog;
         if (byRevision == 0) {
             LOGGER.debug("Indexing database changes of project {} in revision {}", project.getName(), revision.getInternalId());
-            List<DatabaseChangeSet> databaseChangeSets = listDatabaseChangeSetsInRevision(project, localRepository, revision);
-            return changeSetService.linkRevisionsAndSave(databaseChangeSets, revision);
+            indexedChangeLog = indexChangeLogInRevision(project, localRepository, revision);
         } else {
             LOGGER.debug("Skipping database changes of project {} in revision {} because it was already indexed", project.getName(), revision.getInternalId());
+            indexedChangeLog = new IndexedChangeLog(Collections.emptyList(), Collections.emptySet());
         }
-        return null;
+        return indexingJournalService.commitRevision(journal, position, revision, indexedChangeLog);
     }
 
     @NotNull
     private List<DatabaseChangeSet> listDatabaseChangeSetsInRevision(Project project, VcsLocalRepository localRepository, Revision revision) throws DatacTechnicalException {
-        // TODO: Check if the file even exists in that revision (somewhere -> maybe a bit earlier while calculating the list of revs to index)
-        localRepository.checkoutRevision(revision);
+        return indexChangeLogInRevision(project, localRepository, revision).getChangeSets();
+    }
 
+    @NotNull
+    private IndexedChangeLog indexChangeLogInRevision(Project project, VcsLocalRepository localRepository, Revision revision) throws DatacTechnicalException {
         Optional<DatabaseChangeSystemAdapter> databaseChangeSystemAdapter = databaseChangeSystemAdapterRegistry.getAdapterByProject(project);
-        List<DatabaseChangeSet> databaseChangeSets;
-        if (databaseChangeSystemAdapter.isPresent()) {
-            databaseChangeSets = databaseChangeSystemAdapter.get().listDatabaseChangeSetsForProject(project);
-        } else {
+        if (!databaseChangeSystemAdapter.isPresent()) {
             throw new MissingDatabaseChangeSystemAdapterException(project);
         }
-        return databaseChangeSets;
+        // Files are read directly from the revision, so the local repository doesn't need to be checked out
+        try (VcsFileSnapshot snapshot = localRepository.openFileSnapshot(revision)) {
+            return databaseChangeSystemAdapter.get().indexChangeLog(project, snapshot);
+        } catch (IOException e) {
+            throw new DatacTechnicalException("Closing snapshot of revision " + revision.getInternalId() + " failed", e);
+        }
     }
 }
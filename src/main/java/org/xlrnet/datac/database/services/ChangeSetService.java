@@ -20,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -38,6 +39,8 @@ import org.xlrnet.datac.database.domain.repository.ChangeSetRepository;
 import org.xlrnet.datac.foundation.domain.EventLog;
 import org.xlrnet.datac.foundation.domain.EventLogMessage;
 import org.xlrnet.datac.foundation.domain.EventType;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.MessageSeverity;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.domain.validation.SortOrderValidator;
@@ -93,6 +96,11 @@ public class ChangeSetService extends AbstractTransactionalService<DatabaseChang
 
     private BasicFormatterImpl changeSetFormatter = new BasicFormatterImpl();
 
+    /**
+     * Maximum number of revisions which are traversed to find the change sets of a revision.
+     */
+    private final int revisionsToTraverse;
+
     /**
      * Constructor for abstract transactional service. Needs always a crud repository for performing operations.
      *  @param crudRepository
@@ -102,13 +110,15 @@ public class ChangeSetService extends AbstractTransactionalService<DatabaseChang
      * @param eventPublisher
      */
     @Autowired
-    public ChangeSetService(ChangeSetRepository crudRepository, SortOrderValidator sortOrderValidator, RevisionGraphService revisionGraphService, LockingService lockingService, EventLogService eventLogService, ApplicationEventPublisher eventPublisher) {
+    public ChangeSetService(ChangeSetRepository crudRepository, SortOrderValidator sortOrderValidator, RevisionGraphService revisionGraphService, LockingService lockingService, EventLogService eventLogService, ApplicationEventPublisher eventPublisher,
+                            @Value("${datac.revisionsToTraverse:200}") int revisionsToTraverse) {
         super(crudRepository);
         this.sortOrderValidator = sortOrderValidator;
         this.revisionGraphService = revisionGraphService;
         this.lockingService = lockingService;
         this.eventLogService = eventLogService;
         this.eventPublisher = eventPublisher;
+        this.revisionsToTraverse = revisionsToTraverse;
     }
 
     /**
@@ -244,6 +254,19 @@ public class ChangeSetService extends AbstractTransactionalService<DatabaseChang
         return findDatabaseChangeSetsInRevision(lastDevRevision, revisionsToVisit);
     }
 
+    /**
+     * Returns the last database change sets in the given revision like {@link #findDatabaseChangeSetsInRevision(Revision,
+     * int)}. Traverses only the configured amount of revisions before an empty list will be returned.
+     *
+     * @param revision
+     *         The revision in which should be searched.
+     */
+    @NotNull
+    @Transactional(readOnly = true)
+    public List<DatabaseChangeSet> findDatabaseChangeSetsInRevision(@NotNull Revision revision) throws DatacTechnicalException {
+        return findDatabaseChangeSetsInRevision(revision, revisionsToTraverse);
+    }
+
     /**
      * Returns the last database change sets in the given revision. Traverses only the given amount of revisions before an
      * empty list will be returned. The resulting list begins with the oldest change set and ends with the newest. The
@@ -339,7 +362,8 @@ public class ChangeSetService extends AbstractTransactionalService<DatabaseChang
      * @throws DatacTechnicalException
      */
     public void resetChanges(Project project) throws DatacTechnicalException {
-        if (!lockingService.tryLock(project)) {
+        Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE);
+        if (!lease.isPresent()) {
             throw new LockFailedException(project);
         }
         EventLog eventLog = eventLogService.newEventLog().setProject(project).setType(EventType.CHANGESET_RESET);
@@ -354,7 +378,7 @@ public class ChangeSetService extends AbstractTransactionalService<DatabaseChang
             eventLogService.save(eventLog);
             throw new DatacTechnicalException(e);
         } finally {
-            lockingService.unlock(project);
+            lockingService.release(lease.get());
         }
     }
 
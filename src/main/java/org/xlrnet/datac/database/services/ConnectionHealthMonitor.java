@@ -0,0 +1,210 @@
+package org.xlrnet.datac.database.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.xlrnet.datac.database.domain.ConnectionHealth;
+import org.xlrnet.datac.database.domain.ConnectionPingResult;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background monitor which pings all configured database connections periodically and caches the results. Each run is
+ * scheduled with a random jitter, so that the pings don't hit the databases at fixed times, and pings only a limited
+ * number of connections at once. A run only coordinates the pings on the scheduler thread, while the pings themselves
+ * are executed by the connection check executor and time out individually. Deployments and views read the cached
+ * results instead of opening new connections.
+ */
+@Slf4j
+@Service
+public class ConnectionHealthMonitor {
+
+    /** Service for accessing the configured connections. */
+    private final DatabaseConnectionService databaseConnectionService;
+
+    /** Service for pinging connections. */
+    private final ConnectionManagerService connectionManagerService;
+
+    /** Scheduler which triggers the monitor runs. */
+    private final TaskScheduler taskScheduler;
+
+    /** Time in milliseconds between two monitor runs. The monitor is disabled if not positive. */
+    private final long interval;
+
+    /** Maximum random deviation in milliseconds from the interval. */
+    private final long jitter;
+
+    /** Maximum number of connections which are pinged at once by a monitor run. */
+    private final int concurrency;
+
+    /** Last health status by connection id. */
+    private final Map<Long, ConnectionHealth> healthByConnection = new ConcurrentHashMap<>();
+
+    /** The next scheduled monitor run. */
+    private volatile ScheduledFuture<?> nextRun;
+
+    public ConnectionHealthMonitor(DatabaseConnectionService databaseConnectionService, ConnectionManagerService connectionManagerService,
+                                   TaskScheduler taskScheduler,
+                                   @Value("${datac.connectionCheck.monitorInterval:60}") int intervalSeconds,
+                                   @Value("${datac.connectionCheck.monitorJitter:15}") int jitterSeconds,
+                                   @Value("${datac.connectionCheck.monitorConcurrency:4}") int concurrency) {
+        this.databaseConnectionService = databaseConnectionService;
+        this.connectionManagerService = connectionManagerService;
+        this.taskScheduler = taskScheduler;
+        this.interval = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        this.jitter = Math.min(TimeUnit.SECONDS.toMillis(jitterSeconds), interval / 2);
+        this.concurrency = Math.max(concurrency, 1);
+    }
+
+    @PostConstruct
+    void init() {
+        if (interval > 0) {
+            LOGGER.info("Monitoring database connections every {} ms (+/- {} ms)", interval, jitter);
+            scheduleNextRun();
+        } else {
+            LOGGER.info("Database connection monitoring is disabled");
+        }
+    }
+
+    @PreDestroy
+    void destroy() {
+        ScheduledFuture<?> run = nextRun;
+        if (run != null) {
+            run.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the last known health status of the given connection.
+     *
+     * @param config
+     *         The connection to check.
+     * @return the last known status or an empty optional if the connection wasn't checked yet.
+     */
+    @NotNull
+    public Optional<ConnectionHealth> getCachedHealth(@NotNull DatabaseConnection config) {
+        return config.isPersisted() ? Optional.ofNullable(healthByConnection.get(config.getId())) : Optional.empty();
+    }
+
+    /**
+     * Returns the health of all given connections. Connections which were healthy in the last two monitor intervals
+     * are not pinged again unless a refresh is forced. All other connections are pinged concurrently and their cached
+     * status is updated.
+     *
+     * @param configs
+     *         The connections to check.
+     * @param forceRefresh
+     *         If true, all connections will be pinged.
+     * @param progressHandler
+     *         Handler which is called with the number of checked connections.
+     * @return The results in the same order as the given connections.
+     */
+    @NotNull
+    public List<ConnectionPingResult> checkConnections(@NotNull List<DatabaseConnection> configs, boolean forceRefresh, @NotNull IntConsumer progressHandler) {
+        Duration maxAge = Duration.ofMillis(2 * interval);
+        List<ConnectionPingResult> results = new ArrayList<>(configs.size());
+        List<DatabaseConnection> configsToPing = new ArrayList<>();
+        List<Integer> pingIndices = new ArrayList<>();
+        for (DatabaseConnection config : configs) {
+            Optional<ConnectionHealth> health = getCachedHealth(config);
+            if (!forceRefresh && interval > 0 && health.isPresent() && health.get().isHealthyWithin(maxAge)) {
+                results.add(health.get().getPingResult());
+            } else {
+                pingIndices.add(results.size());
+                configsToPing.add(config);
+                results.add(null);
+            }
+        }
+        int cached = configs.size() - configsToPing.size();
+        LOGGER.debug("Using {} cached connection states and pinging {} connections", cached, configsToPing.size());
+        if (cached > 0) {
+            progressHandler.accept(cached);
+        }
+        if (!configsToPing.isEmpty()) {
+            List<ConnectionPingResult> pingResults = connectionManagerService.pingConnections(configsToPing, finished -> progressHandler.accept(cached + finished));
+            for (int i = 0; i < pingResults.size(); i++) {
+                record(configsToPing.get(i), pingResults.get(i));
+                results.set(pingIndices.get(i), pingResults.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Removes the cached status of the given connection, e.g. after it was changed or deleted.
+     *
+     * @param config
+     *         The connection whose status should be removed.
+     */
+    public void invalidate(@NotNull DatabaseConnection config) {
+        if (config.isPersisted()) {
+            healthByConnection.remove(config.getId());
+        }
+    }
+
+    /**
+     * Pings all configured connections in chunks of the configured concurrency and removes the status of deleted
+     * connections.
+     */
+    void runHealthCheck() {
+        List<DatabaseConnection> configs = databaseConnectionService.findAllOrderByNameAsc();
+        LOGGER.debug("Checking health of {} database connections", configs.size());
+        Set<Long> connectionIds = new HashSet<>();
+        for (int start = 0; start < configs.size(); start += concurrency) {
+            List<DatabaseConnection> chunk = configs.subList(start, Math.min(start + concurrency, configs.size()));
+            List<ConnectionPingResult> pingResults = connectionManagerService.pingConnections(chunk, finished -> {});
+            for (int i = 0; i < chunk.size(); i++) {
+                record(chunk.get(i), pingResults.get(i));
+                connectionIds.add(chunk.get(i).getId());
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+        healthByConnection.keySet().retainAll(connectionIds);
+    }
+
+    private void record(DatabaseConnection config, ConnectionPingResult pingResult) {
+        if (config.isPersisted()) {
+            healthByConnection.put(config.getId(), new ConnectionHealth(pingResult, Instant.now()));
+        }
+    }
+
+    private void scheduleNextRun() {
+        long delay = interval + (jitter > 0 ? ThreadLocalRandom.current().nextLong(-jitter, jitter + 1) : 0);
+        nextRun = taskScheduler.schedule(this::runAndReschedule, new Date(System.currentTimeMillis() + delay));
+    }
+
+    /**
+     * Performs a monitor run and schedules the next one afterwards, so runs never overlap.
+     */
+    void runAndReschedule() {
+        try {
+            runHealthCheck();
+        } catch (RuntimeException e) {
+            LOGGER.error("Checking health of database connections failed", e);
+        } finally {
+            scheduleNextRun();
+        }
+    }
+}
@@ -4,31 +4,147 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.IntConsumer;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.xlrnet.datac.database.domain.ConnectionPingResult;
+import org.xlrnet.datac.database.domain.ConnectionPoolStatistics;
 import org.xlrnet.datac.database.domain.DatabaseConnection;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Service for establishing JDBC connections and performing basic operations on them (e.g. pinging).
+ * Service for establishing JDBC connections and performing basic operations on them (e.g. pinging). Connections of
+ * persisted {@link DatabaseConnection} configurations are pooled per configuration. Pools validate connections on
+ * borrow, close connections after they were idle or open for too long and are rebuilt automatically if the
+ * configuration changes. The schema of a pooled connection is reset when it is returned to its pool.
  */
 @Slf4j
 @Service
 public class ConnectionManagerService {
 
     /**
-     * Establishes a JDBC connection using the given {@link DatabaseConnection} for configuration.
+     * Interval in milliseconds in which unused pools are closed.
+     */
+    private static final long POOL_EVICTION_INTERVAL = 5 * 60 * 1000L;
+
+    /**
+     * Maximum number of connections per pool.
+     */
+    private final int maxSize;
+
+    /**
+     * Maximum time in milliseconds to wait for a free connection.
+     */
+    private final int maxWait;
+
+    /**
+     * Time in milliseconds after which idle connections are closed.
+     */
+    private final int maxIdleTime;
+
+    /**
+     * Time in milliseconds after which connections are closed when they are returned to the pool.
+     */
+    private final long maxLifetime;
+
+    /**
+     * Minimum time in milliseconds between two validations of the same connection.
+     */
+    private final long validationInterval;
+
+    /**
+     * Maximum time in milliseconds for establishing a connection during a connection check. Also passed to drivers
+     * which support a connect timeout.
+     */
+    private final long connectTimeout;
+
+    /**
+     * Maximum time in seconds for the validation query of a connection check.
+     */
+    private final int queryTimeout;
+
+    /**
+     * Executor which performs connection checks.
+     */
+    private final AsyncTaskExecutor connectionCheckTaskExecutor;
+
+    /**
+     * Connection pools by the id of their configuration. Guarded by this.
+     */
+    private final Map<Long, ConnectionPool> pools = new HashMap<>();
+
+    public ConnectionManagerService(@Value("${datac.connectionPool.maxSize:5}") int maxSize,
+                                    @Value("${datac.connectionPool.maxWait:30}") int maxWaitSeconds,
+                                    @Value("${datac.connectionPool.maxIdleTime:300}") int maxIdleTimeSeconds,
+                                    @Value("${datac.connectionPool.maxLifetime:1800}") int maxLifetimeSeconds,
+                                    @Value("${datac.connectionPool.validationInterval:30}") int validationIntervalSeconds,
+                                    @Value("${datac.connectionCheck.connectTimeout:10}") int connectTimeoutSeconds,
+                                    @Value("${datac.connectionCheck.queryTimeout:5}") int queryTimeoutSeconds,
+                                    @Qualifier("connectionCheckTaskExecutor") AsyncTaskExecutor connectionCheckTaskExecutor) {
+        this.maxSize = maxSize;
+        this.maxWait = (int) TimeUnit.SECONDS.toMillis(maxWaitSeconds);
+        this.maxIdleTime = (int) TimeUnit.SECONDS.toMillis(maxIdleTimeSeconds);
+        this.maxLifetime = TimeUnit.SECONDS.toMillis(maxLifetimeSeconds);
+        this.validationInterval = TimeUnit.SECONDS.toMillis(validationIntervalSeconds);
+        this.connectTimeout = TimeUnit.SECONDS.toMillis(connectTimeoutSeconds);
+        this.queryTimeout = queryTimeoutSeconds;
+        this.connectionCheckTaskExecutor = connectionCheckTaskExecutor;
+    }
+
+    /**
+     * Borrows a JDBC connection using the given {@link DatabaseConnection} for configuration. Connections of persisted
+     * configurations are taken from the pool of the configuration, all other connections are established directly.
+     * Closing the returned connection returns it to its pool.
      * @param config The entity to use for deriving the connection.
      * @param useSchema If set to true, then the schema defined in the entity will be loaded (if it isn't blank).
      * @return A JDBC connection.
-     * @throws SQLException if a database access error occurs or the url is null
+     * @throws SQLException if a database access error occurs, the url is null or no connection was available in time
      */
     public Connection getConnectionFromConfig(DatabaseConnection config, boolean useSchema) throws SQLException {
-        // TODO: use some connection pooling mechanism to keep track of connections and reap them if necessary
-        Connection connection = DriverManager.getConnection(config.getJdbcUrl(), config.getUser(), config.getPassword());
+        Connection connection;
+        if (config.isPersisted()) {
+            connection = getPool(config).borrow();
+        } else {
+            Properties properties = buildDriverProperties(config.getJdbcUrl());
+            if (config.getUser() != null) {
+                properties.setProperty("user", config.getUser());
+            }
+            if (config.getPassword() != null) {
+                properties.setProperty("password", config.getPassword());
+            }
+            connection = DriverManager.getConnection(config.getJdbcUrl(), properties);
+        }
         if (useSchema && StringUtils.isNotBlank(config.getSchema())) {
             connection.setSchema(config.getSchema());
         }
@@ -37,24 +153,394 @@ public class ConnectionManagerService {
 
     /**
      * Tries to ping the JDBC database defined by the given {@link DatabaseConnection} object and returns information
-     * about the connection.
+     * about the connection. The ping fails if it takes longer than the configured connect and query timeouts.
      * @param config The configuration to use for establishing the connection.
      * @return The connection result.
      */
     public ConnectionPingResult pingConnection(DatabaseConnection config) {
+        return pingConnections(Collections.singletonList(config), finished -> {}).get(0);
+    }
+
+    /**
+     * Pings the JDBC databases of all given configurations concurrently and waits until all pings are finished. Each
+     * ping fails if it takes longer than the configured connect and query timeouts, so that a single unreachable
+     * database doesn't block the check of all other databases.
+     * @param configs The configurations to ping.
+     * @param progressHandler Handler which is called with the number of finished pings after each finished ping.
+     * @return The results in the same order as the given configurations.
+     */
+    @NotNull
+    public List<ConnectionPingResult> pingConnections(@NotNull List<DatabaseConnection> configs, @NotNull IntConsumer progressHandler) {
+        CompletionService<ConnectionPingResult> completionService = new ExecutorCompletionService<>(connectionCheckTaskExecutor);
+        Map<Future<ConnectionPingResult>, PendingPing> pendingPings = new HashMap<>();
+        ConnectionPingResult[] results = new ConnectionPingResult[configs.size()];
+        int finished = 0;
+        for (int i = 0; i < configs.size(); i++) {
+            PendingPing ping = new PendingPing(i, configs.get(i));
+            try {
+                pendingPings.put(completionService.submit(ping), ping);
+            } catch (TaskRejectedException e) {
+                LOGGER.warn("Connection check executor rejected connection test: {}", ping.config.getJdbcUrl());
+                results[i] = new ConnectionPingResult(ping.config.getJdbcUrl(), false,
+                        new SQLTransientConnectionException("Connection check executor is saturated", e));
+                progressHandler.accept(++finished);
+            }
+        }
+
+        try {
+            while (!pendingPings.isEmpty()) {
+                Future<ConnectionPingResult> future = completionService.poll(getTimeUntilNextTimeout(pendingPings.values()), TimeUnit.MILLISECONDS);
+                // Cancelled pings are also returned by the completion service but aren't pending anymore
+                PendingPing ping = future != null ? pendingPings.remove(future) : null;
+                if (ping != null) {
+                    results[ping.index] = getPingResult(future, ping.config);
+                    progressHandler.accept(++finished);
+                }
+                Iterator<Map.Entry<Future<ConnectionPingResult>, PendingPing>> iterator = pendingPings.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Future<ConnectionPingResult>, PendingPing> entry = iterator.next();
+                    if (entry.getValue().isTimedOut()) {
+                        String message = entry.getValue().started > 0 ? "Connection test timed out" : "Connection test wasn't started in time";
+                        LOGGER.warn("{}: {}", message, entry.getValue().config.getJdbcUrl());
+                        entry.getKey().cancel(true);
+                        iterator.remove();
+                        results[entry.getValue().index] = new ConnectionPingResult(entry.getValue().config.getJdbcUrl(), false,
+                                new SQLTimeoutException(message));
+                        progressHandler.accept(++finished);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Map.Entry<Future<ConnectionPingResult>, PendingPing> entry : pendingPings.entrySet()) {
+                entry.getKey().cancel(true);
+                results[entry.getValue().index] = new ConnectionPingResult(entry.getValue().config.getJdbcUrl(), false,
+                        new SQLException("Connection test was interrupted"));
+            }
+        }
+        List<ConnectionPingResult> resultList = new ArrayList<>(results.length);
+        Collections.addAll(resultList, results);
+        return resultList;
+    }
+
+    @NotNull
+    private ConnectionPingResult getPingResult(Future<ConnectionPingResult> future, DatabaseConnection config) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ConnectionPingResult(config.getJdbcUrl(), false, new SQLException("Connection test was interrupted", e));
+        } catch (ExecutionException e) {
+            // Pings catch their own SQL exceptions, so this only happens on unexpected runtime exceptions
+            LOGGER.error("Connection test to {} failed", config.getJdbcUrl(), e);
+            return new ConnectionPingResult(config.getJdbcUrl(), false, new SQLException("Connection test failed", e));
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds until the next pending ping times out.
+     */
+    private long getTimeUntilNextTimeout(Collection<PendingPing> pendingPings) {
+        long now = System.currentTimeMillis();
+        long timeout = getPingTimeout();
+        for (PendingPing ping : pendingPings) {
+            timeout = Math.min(timeout, ping.getDeadline() - now);
+        }
+        return Math.max(timeout, 0);
+    }
+
+    private long getPingTimeout() {
+        return connectTimeout + TimeUnit.SECONDS.toMillis(queryTimeout);
+    }
+
+    @NotNull
+    private ConnectionPingResult doPing(@NotNull DatabaseConnection config) {
         ConnectionPingResult connectionPingResult;
         String jdbcUrl = config.getJdbcUrl();
         LOGGER.info("Pinging connection to {}", jdbcUrl);
+        long start = System.nanoTime();
         try (Connection connection = getConnectionFromConfig(config, true)) {
+            if (!connection.isValid(queryTimeout)) {
+                throw new SQLTimeoutException("Connection was not valid after " + queryTimeout + " seconds");
+            }
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
             DatabaseMetaData metaData = connection.getMetaData();
             String dbProductName = metaData.getDatabaseProductName();
             String dbProductVersion = metaData.getDatabaseProductVersion();
-            LOGGER.info("Successfully connected to {} {} via {}", dbProductName, dbProductVersion, jdbcUrl);
-            connectionPingResult = new ConnectionPingResult(jdbcUrl, true, dbProductName, dbProductVersion, null);
+            LOGGER.info("Successfully connected to {} {} via {} in {} ms", dbProductName, dbProductVersion, jdbcUrl, latency);
+            connectionPingResult = new ConnectionPingResult(jdbcUrl, true, dbProductName, dbProductVersion, latency, null);
         } catch (SQLException e) {
             LOGGER.error("Connection test to {} failed", jdbcUrl, e);
             connectionPingResult = new ConnectionPingResult(jdbcUrl, false, e);
         }
         return connectionPingResult;
     }
+
+    /**
+     * Returns the current gauges of all open connection pools.
+     * @return the current gauges of all open connection pools.
+     */
+    @NotNull
+    public synchronized Collection<ConnectionPoolStatistics> getPoolStatistics() {
+        List<ConnectionPoolStatistics> statistics = new ArrayList<>(pools.size());
+        for (ConnectionPool pool : pools.values()) {
+            statistics.add(pool.getStatistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * Closes the pool of the given configuration, e.g. after it was deleted. Borrowed connections will be closed as soon
+     * as they are returned.
+     * @param config The configuration whose pool should be closed.
+     */
+    public synchronized void closePool(@NotNull DatabaseConnection config) {
+        ConnectionPool pool = pools.remove(config.getId());
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * Closes all pools which have no borrowed connections and weren't used for longer than the maximum idle time.
+     */
+    @Scheduled(fixedDelay = POOL_EVICTION_INTERVAL, initialDelay = POOL_EVICTION_INTERVAL)
+    public void evictUnusedPools() {
+        evictUnusedPools(System.currentTimeMillis());
+    }
+
+    /**
+     * Closes all pools which have no borrowed connections and weren't used for longer than the maximum idle time at the
+     * given time.
+     * @param now The current time in milliseconds.
+     */
+    synchronized void evictUnusedPools(long now) {
+        Iterator<ConnectionPool> iterator = pools.values().iterator();
+        while (iterator.hasNext()) {
+            ConnectionPool pool = iterator.next();
+            if (pool.dataSource.getActive() == 0 && now - pool.lastBorrow.get() > maxIdleTime) {
+                iterator.remove();
+                pool.close();
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void closeAll() {
+        LOGGER.debug("Closing {} connection pools", pools.size());
+        pools.values().forEach(ConnectionPool::close);
+        pools.clear();
+    }
+
+    /**
+     * Returns the pool of the given configuration. If the configuration changed since the pool was created, the old
+     * pool will be closed and a new one is created.
+     */
+    @NotNull
+    private synchronized ConnectionPool getPool(@NotNull DatabaseConnection config) {
+        PoolKey key = new PoolKey(config);
+        ConnectionPool pool = pools.get(config.getId());
+        if (pool != null && !pool.key.equals(key)) {
+            LOGGER.info("Configuration of connection {} changed - rebuilding connection pool", config.getName());
+            pool.close();
+            pool = null;
+        }
+        if (pool == null) {
+            LOGGER.debug("Creating new connection pool for {} with {} connections", config.getJdbcUrl(), maxSize);
+            pool = new ConnectionPool(config.getName(), key, buildDataSource(config));
+            pools.put(config.getId(), pool);
+        }
+        return pool;
+    }
+
+    @NotNull
+    private DataSource buildDataSource(@NotNull DatabaseConnection config) {
+        PoolProperties properties = new PoolProperties();
+        properties.setName("datac-" + config.getId());
+        properties.setUrl(config.getJdbcUrl());
+        properties.setUsername(config.getUser());
+        properties.setPassword(config.getPassword());
+        properties.setDbProperties(buildDriverProperties(config.getJdbcUrl()));
+        properties.setInitialSize(0);
+        properties.setMinIdle(0);
+        properties.setMaxIdle(maxSize);
+        properties.setMaxActive(maxSize);
+        properties.setMaxWait(maxWait);
+        // Validation uses Connection#isValid() since no validation query is set
+        properties.setTestOnBorrow(true);
+        properties.setValidationInterval(validationInterval);
+        properties.setTestWhileIdle(true);
+        properties.setTimeBetweenEvictionRunsMillis((int) TimeUnit.SECONDS.toMillis(30));
+        properties.setMinEvictableIdleTimeMillis(maxIdleTime);
+        properties.setMaxAge(maxLifetime);
+        // Connections are returned to their defaults and schema, since e.g. liquibase disables auto-commit
+        properties.setDefaultAutoCommit(true);
+        properties.setRollbackOnReturn(true);
+        properties.setJdbcInterceptors("ConnectionState;" + SchemaResetInterceptor.class.getName());
+        properties.setJmxEnabled(false);
+        return new DataSource(properties);
+    }
+
+    /**
+     * Builds the driver properties which apply the connect timeout to a single connection, so that drivers give up on
+     * unreachable databases instead of blocking a connection check thread forever. The global login timeout of the
+     * {@link DriverManager} isn't used, since it would apply to all connections of the JVM. Drivers without a known
+     * timeout property don't get any properties, since some drivers (e.g. H2) reject unknown properties.
+     *
+     * @param jdbcUrl
+     *         The JDBC url of the connection.
+     * @return The driver properties for connecting to the given url.
+     */
+    @NotNull
+    private Properties buildDriverProperties(@NotNull String jdbcUrl) {
+        Properties properties = new Properties();
+        long connectTimeoutSeconds = TimeUnit.MILLISECONDS.toSeconds(connectTimeout);
+        if (StringUtils.startsWithAny(jdbcUrl, "jdbc:mysql:", "jdbc:mariadb:")) {
+            properties.setProperty("connectTimeout", String.valueOf(connectTimeout));
+        } else if (StringUtils.startsWith(jdbcUrl, "jdbc:postgresql:")) {
+            properties.setProperty("loginTimeout", String.valueOf(connectTimeoutSeconds));
+            properties.setProperty("connectTimeout", String.valueOf(connectTimeoutSeconds));
+        } else if (StringUtils.startsWithAny(jdbcUrl, "jdbc:sqlserver:", "jdbc:jtds:", "jdbc:db2:")) {
+            properties.setProperty("loginTimeout", String.valueOf(connectTimeoutSeconds));
+        } else if (StringUtils.startsWith(jdbcUrl, "jdbc:oracle:")) {
+            properties.setProperty("oracle.net.CONNECT_TIMEOUT", String.valueOf(connectTimeout));
+        }
+        return properties;
+    }
+
+    /**
+     * A ping which was submitted for execution. Pings may wait in the queue of the executor before they are started, so
+     * a ping times out if it wasn't started within the ping timeout after its submission or if it didn't finish within
+     * the ping timeout after its start. Otherwise, pings queued behind blocked pings would be awaited forever.
+     */
+    private class PendingPing implements Callable<ConnectionPingResult> {
+
+        /** Index of the ping in the list of results. */
+        private final int index;
+
+        /** The configuration to ping. */
+        private final DatabaseConnection config;
+
+        /** Timestamp in milliseconds at which the ping was submitted. */
+        private final long submitted;
+
+        /** Timestamp in milliseconds at which the ping was started or 0 if it wasn't started yet. */
+        private volatile long started;
+
+        PendingPing(int index, DatabaseConnection config) {
+            this.index = index;
+            this.config = config;
+            this.submitted = System.currentTimeMillis();
+        }
+
+        @Override
+        public ConnectionPingResult call() {
+            started = System.currentTimeMillis();
+            return doPing(config);
+        }
+
+        long getDeadline() {
+            long startedAt = started;
+            return (startedAt > 0 ? startedAt : submitted) + getPingTimeout();
+        }
+
+        boolean isTimedOut() {
+            return System.currentTimeMillis() >= getDeadline();
+        }
+    }
+
+    /**
+     * Configuration values from which a pool was built. If any of them changes, the pool must be rebuilt.
+     */
+    private static class PoolKey {
+
+        private final String jdbcUrl;
+
+        private final String user;
+
+        private final String password;
+
+        private final String schema;
+
+        PoolKey(DatabaseConnection config) {
+            this.jdbcUrl = config.getJdbcUrl();
+            this.user = config.getUser();
+            this.password = config.getPassword();
+            this.schema = config.getSchema();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PoolKey poolKey = (PoolKey) o;
+            return Objects.equals(jdbcUrl, poolKey.jdbcUrl) && Objects.equals(user, poolKey.user) && Objects.equals(password, poolKey.password) && Objects.equals(schema, poolKey.schema);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(jdbcUrl, user, password, schema);
+        }
+    }
+
+    /**
+     * Pool of connections of a single configuration together with its wait time gauges.
+     */
+    private static class ConnectionPool {
+
+        /** Name of the configuration. */
+        private final String name;
+
+        /** The configuration values from which the pool was built. */
+        private final PoolKey key;
+
+        /** The pooling data source. */
+        private final DataSource dataSource;
+
+        /** Total number of borrowed connections. */
+        private final AtomicLong borrowCount = new AtomicLong();
+
+        /** Total time in nanoseconds spent waiting for connections. */
+        private final AtomicLong totalWaitTime = new AtomicLong();
+
+        /** Maximum time in nanoseconds spent waiting for a connection. */
+        private final LongAccumulator maxWaitTime = new LongAccumulator(Math::max, 0);
+
+        /** Timestamp of the last borrow in milliseconds. */
+        private final AtomicLong lastBorrow = new AtomicLong(System.currentTimeMillis());
+
+        ConnectionPool(String name, PoolKey key, DataSource dataSource) {
+            this.name = name;
+            this.key = key;
+            this.dataSource = dataSource;
+        }
+
+        Connection borrow() throws SQLException {
+            long start = System.nanoTime();
+            Connection connection = dataSource.getConnection();
+            long waitTime = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+            maxWaitTime.accumulate(waitTime);
+            lastBorrow.set(System.currentTimeMillis());
+            return connection;
+        }
+
+        ConnectionPoolStatistics getStatistics() {
+            long borrowed = borrowCount.get();
+            long averageWaitTime = borrowed > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitTime.get() / borrowed) : 0;
+            return new ConnectionPoolStatistics(name, key.jdbcUrl, dataSource.getMaxActive(), dataSource.getActive(),
+                    dataSource.getIdle(), dataSource.getWaitCount(), borrowed, averageWaitTime,
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get()));
+        }
+
+        void close() {
+            // Borrowed connections will be closed as soon as they are returned
+            dataSource.close(false);
+        }
+    }
 }
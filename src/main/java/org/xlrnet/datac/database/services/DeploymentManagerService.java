@@ -1,14 +1,23 @@
 package org.xlrnet.datac.database.services;
 
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.xlrnet.datac.commons.exception.DatacTechnicalException;
@@ -17,19 +26,27 @@ import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
 import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
 import org.xlrnet.datac.database.domain.ConnectionPingResult;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+import org.xlrnet.datac.database.domain.DatabaseType;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.DryRunReport;
+import org.xlrnet.datac.database.domain.DryRunResult;
 import org.xlrnet.datac.database.domain.InstanceDeploymentResult;
 import org.xlrnet.datac.database.domain.QuickDeploymentConfig;
 import org.xlrnet.datac.database.domain.QuickDeploymentResult;
+import org.xlrnet.datac.database.domain.StatementExecutionResult;
 import org.xlrnet.datac.database.util.DeploymentPhase;
 import org.xlrnet.datac.foundation.components.EventLogProxy;
 import org.xlrnet.datac.foundation.domain.EventLogMessage;
 import org.xlrnet.datac.foundation.domain.EventType;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.MessageSeverity;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.services.EventLogService;
 import org.xlrnet.datac.foundation.ui.components.EntityChangeHandler;
 import org.xlrnet.datac.foundation.ui.components.ProgressChangeHandler;
+import org.xlrnet.datac.vcs.domain.Revision;
 import org.xlrnet.datac.vcs.services.LockingService;
 
 import lombok.extern.slf4j.Slf4j;
@@ -44,6 +61,12 @@ public class DeploymentManagerService {
     /** The factor which is indicates 100% finished connection checks. */
     private static final float CONNECTION_CHECK_PROGRESS_FACTOR = 0.1f;
 
+    /** JDBC URL prefix of the throwaway databases for dry runs. In-memory H2 databases are dropped after the last connection closes. */
+    private static final String DRY_RUN_URL_PREFIX = "jdbc:h2:mem:dryrun-";
+
+    /** Maximum length of stored error messages. */
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 4000;
+
     /** Locking service. */
     private final LockingService lockingService;
 
@@ -53,19 +76,44 @@ public class DeploymentManagerService {
     /** Event logging proxy. */
     private final EventLogProxy eventLogProxy;
 
-    /** Service for connecting to databases. */
-    private final ConnectionManagerService connectionManagerService;
+    /** Monitor which provides the cached health status of database connections. */
+    private final ConnectionHealthMonitor connectionHealthMonitor;
 
     /** Registry for accessing DCS. */
     private final DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry;
 
+    /** Executor for deploying multiple instances in parallel. */
+    private final ParallelDeploymentExecutor parallelDeploymentExecutor;
+
+    /** Service for executing generated SQL. */
+    private final SqlExecutionService sqlExecutionService;
+
+    /** Service for accessing indexed change sets. */
+    private final ChangeSetService changeSetService;
+
+    /** Service for storing dry run results. */
+    private final DryRunResultService dryRunResultService;
+
+    /** Service for computing the pending change sets of instances. */
+    private final DeploymentPlanningService deploymentPlanningService;
+
+    /** Maximum time in seconds to wait for a shared lock on the project of a dry run. */
+    private final int sharedLockTimeout;
+
     @Autowired
-    public DeploymentManagerService(LockingService lockingService, EventLogService eventLogService, EventLogProxy eventLogProxy, ConnectionManagerService connectionManagerService, DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry) {
+    public DeploymentManagerService(LockingService lockingService, EventLogService eventLogService, EventLogProxy eventLogProxy, ConnectionHealthMonitor connectionHealthMonitor, DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry, ParallelDeploymentExecutor parallelDeploymentExecutor, SqlExecutionService sqlExecutionService, ChangeSetService changeSetService, DryRunResultService dryRunResultService,
+                                    DeploymentPlanningService deploymentPlanningService, @Value("${datac.locking.sharedTimeout:30}") int sharedLockTimeout) {
         this.lockingService = lockingService;
         this.eventLogService = eventLogService;
         this.eventLogProxy = eventLogProxy;
-        this.connectionManagerService = connectionManagerService;
+        this.connectionHealthMonitor = connectionHealthMonitor;
         this.databaseChangeSystemAdapterRegistry = databaseChangeSystemAdapterRegistry;
+        this.parallelDeploymentExecutor = parallelDeploymentExecutor;
+        this.sqlExecutionService = sqlExecutionService;
+        this.changeSetService = changeSetService;
+        this.dryRunResultService = dryRunResultService;
+        this.deploymentPlanningService = deploymentPlanningService;
+        this.sharedLockTimeout = sharedLockTimeout;
     }
 
     /**
@@ -88,54 +136,179 @@ public class DeploymentManagerService {
     }
 
     private QuickDeploymentResult performQuickDeployment(@NotNull Project project, @NotNull QuickDeploymentConfig quickDeploymentConfig, @NotNull DatabaseChangeSet changeSet, @NotNull ProgressChangeHandler changeHandler) throws LockFailedException {
+        Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE);
+        if (!lease.isPresent()) {
+            throw new LockFailedException(project);
+        }
         LOGGER.info("Starting quick deployment for project {} and change set {} on instances {}", project.getName(), changeSet.getInternalId(), quickDeploymentConfig);
         eventLogProxy.setDelegate(eventLogService.newEventLog().setType(EventType.QUICK_DEPLOYMENT).setProject(project));
         List<InstanceDeploymentResult> instanceDeploymentResults = new ArrayList<>();
+        DeploymentPhase phase = DeploymentPhase.CONFIG_VALIDATION;
         try {
-            if (lockingService.tryLock(project)) {
-                // Open DCS adapter
-                Optional<DatabaseChangeSystemAdapter> databaseChangeSystemAdapterOptional = databaseChangeSystemAdapterRegistry.getAdapterByProject(project);
-                if (!databaseChangeSystemAdapterOptional.isPresent()) {
-                    handleDeploymentFailure(DeploymentPhase.CONFIG_VALIDATION);
-                    return QuickDeploymentResult.failed(DeploymentPhase.CONFIG_VALIDATION, "Unable to open DCS adapter");
-                }
-                DatabaseChangeSystemAdapter dcsAdapter = databaseChangeSystemAdapterOptional.get();
-                Set<DeploymentInstance> instances = quickDeploymentConfig.getInstances();
-
-                changeHandler.handleProgressChange(0, "Validating deployment configuration ...");
-                // Pre-validate instance configuration
-                if (!validateInstances(project, instances)) {
-                    handleDeploymentFailure(DeploymentPhase.CONFIG_VALIDATION);
-                    return QuickDeploymentResult.failed(DeploymentPhase.CONFIG_VALIDATION, "At least one instance is not configured correctly.");
-                }
-                // Check connection to instances
-                if (!validateInstanceConnections(instances, changeHandler)) {
-                    handleDeploymentFailure(DeploymentPhase.CONNECTION_VALIDATION);
-                    return QuickDeploymentResult.failed(DeploymentPhase.CONNECTION_VALIDATION, "Connection failure.");
-                }
+            // Open DCS adapter
+            Optional<DatabaseChangeSystemAdapter> databaseChangeSystemAdapterOptional = databaseChangeSystemAdapterRegistry.getAdapterByProject(project);
+            if (!databaseChangeSystemAdapterOptional.isPresent()) {
+                handleDeploymentFailure(DeploymentPhase.CONFIG_VALIDATION);
+                return QuickDeploymentResult.failed(DeploymentPhase.CONFIG_VALIDATION, "Unable to open DCS adapter");
+            }
+            DatabaseChangeSystemAdapter dcsAdapter = databaseChangeSystemAdapterOptional.get();
+            Set<DeploymentInstance> instances = quickDeploymentConfig.getInstances();
 
-                // Perform deployment
-                int i = 0;
-                for (DeploymentInstance targetInstance : instances) {
-                    changeHandler.handleProgressChange((float) i++ / instances.size(), String.format("Deploying %s...", targetInstance.getFullPath()));
-                    IPreparedDeploymentContainer preparedDeployment = dcsAdapter.prepareDeployment(project, targetInstance, changeSet);
-                }
+            changeHandler.handleProgressChange(0, "Validating deployment configuration ...");
+            // Pre-validate instance configuration
+            if (!validateInstances(project, instances)) {
+                handleDeploymentFailure(DeploymentPhase.CONFIG_VALIDATION);
+                return QuickDeploymentResult.failed(DeploymentPhase.CONFIG_VALIDATION, "At least one instance is not configured correctly.");
+            }
+            // Check connection to instances
+            phase = DeploymentPhase.CONNECTION_VALIDATION;
+            List<String> failedInstances = validateInstanceConnections(instances, quickDeploymentConfig.isRefreshConnections(), changeHandler);
+            if (!failedInstances.isEmpty()) {
+                handleDeploymentFailure(DeploymentPhase.CONNECTION_VALIDATION);
+                return QuickDeploymentResult.failed(DeploymentPhase.CONNECTION_VALIDATION, "Connection failure on " + String.join(", ", failedInstances));
+            }
 
-                LOGGER.info("Finished quick deployment for project {} and change set {} on instances {}", project.getName(), changeSet.getInternalId(), quickDeploymentConfig);
-                changeHandler.handleProgressChange(1, "Finished quick deployment");
-            } else {
-                throw new LockFailedException(project);
+            // Perform deployment
+            phase = DeploymentPhase.MIGRATION;
+            changeHandler.handleProgressChange(CONNECTION_CHECK_PROGRESS_FACTOR, String.format("Deploying %d instances ...", instances.size()));
+            instanceDeploymentResults = parallelDeploymentExecutor.deploy(instances,
+                    targetInstance -> deployInstance(dcsAdapter, project, targetInstance, changeSet),
+                    quickDeploymentConfig.isAbortOnFailure(), quickDeploymentConfig.isSequentialGroups(),
+                    CONNECTION_CHECK_PROGRESS_FACTOR, changeHandler);
+            if (logFailedInstanceDeployments(instanceDeploymentResults)) {
+                handleDeploymentFailure(DeploymentPhase.MIGRATION);
+                return QuickDeploymentResult.failed(DeploymentPhase.MIGRATION, "Deployment failed on at least one instance.", instanceDeploymentResults);
             }
+
+            LOGGER.info("Finished quick deployment for project {} and change set {} on instances {}", project.getName(), changeSet.getInternalId(), quickDeploymentConfig);
+            changeHandler.handleProgressChange(1, "Finished quick deployment");
         } catch (RuntimeException | DatacTechnicalException e) {
             LOGGER.error("Unexpected error during quick deployment for project {} [id={}]", project.getName(), project.getId(), e);
             eventLogService.addExceptionToEventLog(eventLogProxy, "Unexpected error during quick deployment",  e);
+            handleDeploymentFailure(phase);
+            return QuickDeploymentResult.failed(phase, "Unexpected error: " + e.getMessage(), instanceDeploymentResults);
         } finally {
-            lockingService.unlock(project);
+            lockingService.release(lease.get());
             eventLogService.save(eventLogProxy);
         }
         return QuickDeploymentResult.success(instanceDeploymentResults);
     }
 
+    /**
+     * Performs an asynchronous dry run of all change sets in a revision.
+     * @param project       The project to which the revision belongs.
+     * @param revision      The revision whose change sets should be simulated.
+     * @param changeHandler The handler for progress updates.
+     * @param finishedHandler The handler which receives the report of the dry run.
+     */
+    @Async
+    public void startAsynchronousDryRun(@NotNull Project project, @NotNull Revision revision, @NotNull ProgressChangeHandler changeHandler, EntityChangeHandler<DryRunReport> finishedHandler) {
+        DryRunReport report;
+        try {
+            report = performDryRun(project, revision, changeHandler);
+        } catch (LockFailedException e) {       // NOSONAR: No logging of exception necessary
+            LOGGER.warn("Dry run in project {} [id={}] failed because project is locked", project.getName(), project.getId());
+            report = DryRunReport.failed("Project is locked");
+        }
+        finishedHandler.onChange(report);
+    }
+
+    /**
+     * Simulates the deployment of all change sets in a revision on a throwaway in-memory H2 database. Since the
+     * database is empty, all change sets of the revision are pending and executed in their original order. The
+     * execution time and the number of modified rows of each change set are stored as {@link DryRunResult} and replace
+     * the results of previous dry runs. Failed change sets don't stop the simulation of later change sets.
+     * @param project       The project to which the revision belongs.
+     * @param revision      The revision whose change sets should be simulated.
+     * @param changeHandler The handler for progress updates.
+     * @return The report of the dry run.
+     * @throws LockFailedException Will be thrown if the project is locked.
+     */
+    @NotNull
+    public DryRunReport performDryRun(@NotNull Project project, @NotNull Revision revision, @NotNull ProgressChangeHandler changeHandler) throws LockFailedException {
+        // Dry runs only read the project, so they may run in parallel with other read-only operations
+        Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.SHARED, sharedLockTimeout, TimeUnit.SECONDS);
+        if (!lease.isPresent()) {
+            throw new LockFailedException(project);
+        }
+        try {
+            Optional<DatabaseChangeSystemAdapter> dcsAdapter = databaseChangeSystemAdapterRegistry.getAdapterByProject(project);
+            if (!dcsAdapter.isPresent()) {
+                return DryRunReport.failed("Unable to open DCS adapter");
+            }
+            changeHandler.handleProgressChange(0, "Loading change sets ...");
+            List<DatabaseChangeSet> changeSets = changeSetService.findDatabaseChangeSetsInRevision(revision);
+            LOGGER.info("Starting dry run of {} change sets in revision {} of project {}", changeSets.size(), revision.getInternalId(), project.getName());
+
+            List<DryRunResult> results = new ArrayList<>(changeSets.size());
+            try (Connection connection = DriverManager.getConnection(DRY_RUN_URL_PREFIX + UUID.randomUUID())) {
+                for (DatabaseChangeSet changeSet : changeSets) {
+                    results.add(simulateChangeSet(dcsAdapter.get(), project, revision, changeSet, connection));
+                    changeHandler.handleProgressChange((float) results.size() / changeSets.size(),
+                            String.format("Simulated %d of %d change sets", results.size(), changeSets.size()));
+                }
+            }
+            List<DryRunResult> savedResults = dryRunResultService.replaceResults(results);
+            LOGGER.info("Finished dry run in revision {} of project {}", revision.getInternalId(), project.getName());
+            return DryRunReport.success(savedResults);
+        } catch (SQLException | DatacTechnicalException | RuntimeException e) {
+            LOGGER.error("Dry run in revision {} of project {} [id={}] failed", revision.getInternalId(), project.getName(), project.getId(), e);
+            return DryRunReport.failed(e.getMessage());
+        } finally {
+            lockingService.release(lease.get());
+        }
+    }
+
+    @NotNull
+    private DryRunResult simulateChangeSet(DatabaseChangeSystemAdapter dcsAdapter, Project project, Revision revision, DatabaseChangeSet changeSet, Connection connection) throws DatacTechnicalException {
+        List<String> statements = dcsAdapter.generateOfflineSql(project, revision, changeSet, DatabaseType.H2);
+        List<StatementExecutionResult> statementResults = new ArrayList<>();
+        DryRunResult result = new DryRunResult().setChangeSet(changeSet).setExecuted(Instant.now()).setSuccessful(true);
+        try {
+            sqlExecutionService.executeInTransaction(connection, statements, statementResults::add);
+        } catch (SQLException e) {
+            LOGGER.debug("Dry run of change set {} failed", changeSet.getInternalId(), e);
+            result.setSuccessful(false).setErrorMessage(StringUtils.abbreviate(e.getMessage(), MAX_ERROR_MESSAGE_LENGTH));
+        }
+        // Statements which were executed before a failure are still part of the timing
+        return result.setStatementCount(statementResults.size())
+                .setExecutionTimeMicros(statementResults.stream().mapToLong(StatementExecutionResult::getExecutionTimeMicros).sum())
+                .setRowCount(statementResults.stream().mapToLong(r -> Math.max(r.getUpdateCount(), 0)).sum());
+    }
+
+    @NotNull
+    private InstanceDeploymentResult deployInstance(DatabaseChangeSystemAdapter dcsAdapter, Project project, DeploymentInstance targetInstance, DatabaseChangeSet changeSet) throws DatacTechnicalException {
+        LOGGER.debug("Deploying change set {} on {}", changeSet.getInternalId(), targetInstance.getFullPath());
+        IPreparedDeploymentContainer preparedDeployment = dcsAdapter.prepareDeployment(project, targetInstance, changeSet);
+        String generatedSql = String.join("\n", preparedDeployment.getGeneratedSql());
+        try {
+            List<StatementExecutionResult> statementResults = sqlExecutionService.executePreparedDeployment(preparedDeployment,
+                    result -> LOGGER.debug("Executed statement on {} in {} us", targetInstance.getFullPath(), result.getExecutionTimeMicros()));
+            return InstanceDeploymentResult.success(targetInstance, generatedSql, statementResults);
+        } catch (SQLException e) {
+            throw new DatacTechnicalException("Executing SQL failed: " + e.getMessage(), e);
+        } finally {
+            // Even failed deployments may have applied some statements
+            deploymentPlanningService.invalidate(targetInstance);
+        }
+    }
+
+    /**
+     * Writes all failed instance deployments to the event log.
+     * @return true if at least one instance deployment failed.
+     */
+    private boolean logFailedInstanceDeployments(Collection<InstanceDeploymentResult> instanceDeploymentResults) {
+        boolean failed = false;
+        for (InstanceDeploymentResult result : instanceDeploymentResults) {
+            if (!result.isSuccessful()) {
+                String message = String.format("Deployment on instance %s failed: %s", result.getInstance().getFullPath(), result.getErrorMessage());
+                eventLogProxy.addMessage(new EventLogMessage(message).setSeverity(MessageSeverity.ERROR));
+                failed = true;
+            }
+        }
+        return failed;
+    }
+
     private void handleDeploymentFailure(DeploymentPhase deploymentPhase) {
         eventLogProxy.addMessage(new EventLogMessage("Deployment failure in phase " + deploymentPhase).setSeverity(MessageSeverity.ERROR));
         LOGGER.error("Deployment failure in phase {}", deploymentPhase);
@@ -154,20 +327,32 @@ public class DeploymentManagerService {
         return valid;
     }
 
-    private boolean validateInstanceConnections(Collection<DeploymentInstance> targetInstances, ProgressChangeHandler progressChangeHandler) {
-        boolean valid = true;
-        int totalInstances = targetInstances.size();
-        int currentInstance = 0;
-        for (DeploymentInstance targetInstance : targetInstances) {
-            progressChangeHandler.handleProgressChange(currentInstance / totalInstances * CONNECTION_CHECK_PROGRESS_FACTOR, String.format("Checking connection to %s ...", targetInstance.getConnection().getName()));
-            ConnectionPingResult connectionPingResult = connectionManagerService.pingConnection(targetInstance.getConnection());
+    /**
+     * Checks the connections of all given instances concurrently. Connections which were recently reported as healthy
+     * by the {@link ConnectionHealthMonitor} are not checked again unless a refresh is forced.
+     * @return The full paths of all instances whose connection failed.
+     */
+    @NotNull
+    private List<String> validateInstanceConnections(Collection<DeploymentInstance> targetInstances, boolean forceRefresh, ProgressChangeHandler progressChangeHandler) {
+        List<DeploymentInstance> instances = new ArrayList<>(targetInstances);
+        List<DatabaseConnection> connections = instances.stream().map(DeploymentInstance::getConnection).collect(Collectors.toList());
+        int totalInstances = instances.size();
+        progressChangeHandler.handleProgressChange(0, String.format("Checking connections to %d instances ...", totalInstances));
+        List<ConnectionPingResult> pingResults = connectionHealthMonitor.checkConnections(connections, forceRefresh, finished ->
+                progressChangeHandler.handleProgressChange((float) finished / totalInstances * CONNECTION_CHECK_PROGRESS_FACTOR,
+                        String.format("Checked %d of %d connections ...", finished, totalInstances)));
+
+        List<String> failedInstances = new ArrayList<>();
+        for (int i = 0; i < totalInstances; i++) {
+            ConnectionPingResult connectionPingResult = pingResults.get(i);
             if (!connectionPingResult.isConnected()) {
-                eventLogService.addExceptionToEventLog(eventLogProxy, "Connecting to database instance %s using connection %s failed", connectionPingResult.getException());
-                valid = false;
-                break;
+                DeploymentInstance instance = instances.get(i);
+                String message = String.format("Connecting to database instance %s using connection %s failed", instance.getFullPath(), instance.getConnection().getName());
+                eventLogService.addExceptionToEventLog(eventLogProxy, message, connectionPingResult.getException());
+                failedInstances.add(instance.getFullPath());
             }
         }
-        return valid;
+        return failedInstances;
     }
 
 }
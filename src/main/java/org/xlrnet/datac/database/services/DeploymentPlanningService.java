@@ -0,0 +1,226 @@
+package org.xlrnet.datac.database.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.xlrnet.datac.commons.exception.DatacTechnicalException;
+import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
+import org.xlrnet.datac.database.domain.AppliedChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.InstanceChangePlan;
+import org.xlrnet.datac.vcs.domain.Branch;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.RevisionGraphService;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service which computes which change sets are pending on deployment instances. The change sets which were applied to
+ * an instance are compared with the indexed change sets of the revision which the instance tracks. Instances are
+ * compared in parallel and the results are cached for a short time.
+ */
+@Slf4j
+@Service
+public class DeploymentPlanningService {
+
+    /** Service for accessing indexed change sets. */
+    private final ChangeSetService changeSetService;
+
+    /** Service for accessing the revision graph. */
+    private final RevisionGraphService revisionGraphService;
+
+    /** Service for borrowing connections to target databases. */
+    private final ConnectionManagerService connectionManagerService;
+
+    /** Registry for accessing DCS. */
+    private final DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry;
+
+    /** Executor which reads the applied change sets of the instances. */
+    private final AsyncTaskExecutor connectionCheckTaskExecutor;
+
+    /** Computed plans by instance and revision. */
+    private final Cache<PlanKey, InstanceChangePlan> planCache;
+
+    public DeploymentPlanningService(ChangeSetService changeSetService, RevisionGraphService revisionGraphService,
+                                     ConnectionManagerService connectionManagerService, DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry,
+                                     @Qualifier("connectionCheckTaskExecutor") AsyncTaskExecutor connectionCheckTaskExecutor,
+                                     @Value("${datac.deployment.planCacheTtl:60}") long planCacheTtlSeconds) {
+        this.changeSetService = changeSetService;
+        this.revisionGraphService = revisionGraphService;
+        this.connectionManagerService = connectionManagerService;
+        this.databaseChangeSystemAdapterRegistry = databaseChangeSystemAdapterRegistry;
+        this.connectionCheckTaskExecutor = connectionCheckTaskExecutor;
+        this.planCache = CacheBuilder.newBuilder().expireAfterWrite(planCacheTtlSeconds, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * Computes the pending, applied and drifted change sets of all given instances. Each instance is compared with the
+     * latest indexed revision on the branch it tracks. The applied change sets of all instances are read in parallel.
+     *
+     * @param instances
+     *         The instances to compare.
+     * @return The plans of all instances in the iteration order of the given collection.
+     * @throws DatacTechnicalException
+     *         Will be thrown if the indexed change sets couldn't be loaded or if the calling thread was interrupted.
+     */
+    @NotNull
+    public Map<DeploymentInstance, InstanceChangePlan> planInstances(@NotNull Collection<DeploymentInstance> instances) throws DatacTechnicalException {
+        Map<DeploymentInstance, InstanceChangePlan> plans = new LinkedHashMap<>();
+        Map<DeploymentInstance, Future<InstanceChangePlan>> pendingPlans = new LinkedHashMap<>();
+        // Revisions and change sets are shared by all instances on the same branch and loaded only once
+        Map<Long, Revision> revisionsByBranch = new HashMap<>();
+        Map<Long, List<DatabaseChangeSet>> changeSetsByRevision = new HashMap<>();
+
+        for (DeploymentInstance instance : instances) {
+            Branch branch = instance.getActualBranch();
+            if (branch == null) {
+                plans.put(instance, InstanceChangePlan.failed(instance, null, "Instance doesn't track any branch"));
+                continue;
+            }
+            Revision revision = revisionsByBranch.computeIfAbsent(branch.getId(),
+                    id -> revisionGraphService.findByInternalIdAndProject(branch.getInternalId(), branch.getProject()));
+            if (revision == null) {
+                plans.put(instance, InstanceChangePlan.failed(instance, null, "Branch " + branch.getName() + " is not indexed yet"));
+                continue;
+            }
+            InstanceChangePlan cachedPlan = planCache.getIfPresent(new PlanKey(instance.getId(), revision.getId()));
+            if (cachedPlan != null) {
+                LOGGER.trace("Using cached plan of instance {}", instance.getFullPath());
+                plans.put(instance, cachedPlan);
+                continue;
+            }
+            List<DatabaseChangeSet> changeSets = changeSetsByRevision.get(revision.getId());
+            if (changeSets == null) {
+                changeSets = changeSetService.findDatabaseChangeSetsInRevision(revision);
+                changeSetsByRevision.put(revision.getId(), changeSets);
+            }
+            Optional<DatabaseChangeSystemAdapter> adapter = databaseChangeSystemAdapterRegistry.getAdapterByProject(instance.getGroup().getProject());
+            if (!adapter.isPresent()) {
+                plans.put(instance, InstanceChangePlan.failed(instance, revision, "Unable to open DCS adapter"));
+                continue;
+            }
+            List<DatabaseChangeSet> indexedChangeSets = changeSets;
+            pendingPlans.put(instance, connectionCheckTaskExecutor.submit(() -> computePlan(adapter.get(), instance, revision, indexedChangeSets)));
+            // Keep the iteration order of the given instances
+            plans.put(instance, null);
+        }
+
+        for (Map.Entry<DeploymentInstance, Future<InstanceChangePlan>> entry : pendingPlans.entrySet()) {
+            InstanceChangePlan plan = awaitPlan(entry.getKey(), entry.getValue(), pendingPlans.values());
+            if (plan.isSuccessful()) {
+                planCache.put(new PlanKey(entry.getKey().getId(), plan.getRevision().getId()), plan);
+            }
+            plans.put(entry.getKey(), plan);
+        }
+        return plans;
+    }
+
+    /**
+     * Removes all cached plans of the given instance, e.g. after it was deployed.
+     *
+     * @param instance
+     *         The instance whose plans should be removed.
+     */
+    public void invalidate(@NotNull DeploymentInstance instance) {
+        planCache.asMap().keySet().removeIf(key -> key.getInstanceId().equals(instance.getId()));
+    }
+
+    /**
+     * Compares the indexed change sets of a revision with the applied change sets of an instance using hash lookups.
+     * Change sets are identified by their file, author and id.
+     *
+     * @param instance
+     *         The compared instance.
+     * @param revision
+     *         The compared revision.
+     * @param indexedChangeSets
+     *         The indexed change sets of the revision in their original order.
+     * @param appliedChangeSets
+     *         The change sets which were applied to the instance.
+     * @return The computed plan.
+     */
+    @NotNull
+    static InstanceChangePlan diffChangeSets(@NotNull DeploymentInstance instance, @NotNull Revision revision, @NotNull List<DatabaseChangeSet> indexedChangeSets, @NotNull Collection<AppliedChangeSet> appliedChangeSets) {
+        Map<String, AppliedChangeSet> appliedByIdentity = new HashMap<>(appliedChangeSets.size() * 2);
+        for (AppliedChangeSet appliedChangeSet : appliedChangeSets) {
+            appliedByIdentity.put(buildIdentity(appliedChangeSet.getSourceFilename(), appliedChangeSet.getAuthor(), appliedChangeSet.getInternalId()), appliedChangeSet);
+        }
+
+        List<DatabaseChangeSet> pending = new ArrayList<>();
+        List<DatabaseChangeSet> applied = new ArrayList<>();
+        List<DatabaseChangeSet> drifted = new ArrayList<>();
+        for (DatabaseChangeSet changeSet : indexedChangeSets) {
+            AppliedChangeSet appliedChangeSet = appliedByIdentity.get(buildIdentity(changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId()));
+            if (appliedChangeSet == null) {
+                pending.add(changeSet);
+            } else if (appliedChangeSet.getChecksum() != null && changeSet.getChecksum() != null && !appliedChangeSet.getChecksum().equals(changeSet.getChecksum())) {
+                drifted.add(changeSet);
+            } else {
+                applied.add(changeSet);
+            }
+        }
+        return new InstanceChangePlan(instance, revision, true, null, pending, applied, drifted, System.currentTimeMillis());
+    }
+
+    @NotNull
+    static String buildIdentity(String sourceFilename, String author, String internalId) {
+        String normalizedFilename = sourceFilename != null ? sourceFilename.replace('\\', '/') : "";
+        return normalizedFilename + '\n' + author + '\n' + internalId;
+    }
+
+    @NotNull
+    private InstanceChangePlan computePlan(DatabaseChangeSystemAdapter adapter, DeploymentInstance instance, Revision revision, List<DatabaseChangeSet> indexedChangeSets) {
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(instance.getConnection(), true)) {
+            List<AppliedChangeSet> appliedChangeSets = adapter.listAppliedChangeSets(connection);
+            LOGGER.debug("Found {} applied change sets on instance {}", appliedChangeSets.size(), instance.getFullPath());
+            return diffChangeSets(instance, revision, indexedChangeSets, appliedChangeSets);
+        } catch (SQLException | DatacTechnicalException e) {
+            LOGGER.warn("Reading applied change sets of instance {} failed", instance.getFullPath(), e);
+            return InstanceChangePlan.failed(instance, revision, e.getMessage());
+        }
+    }
+
+    @NotNull
+    private InstanceChangePlan awaitPlan(DeploymentInstance instance, Future<InstanceChangePlan> future, Collection<Future<InstanceChangePlan>> allFutures) throws DatacTechnicalException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            LOGGER.error("Computing plan of instance {} failed unexpectedly", instance.getFullPath(), e.getCause());
+            return InstanceChangePlan.failed(instance, null, String.valueOf(e.getCause()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            allFutures.forEach(f -> f.cancel(true));
+            throw new DatacTechnicalException("Interrupted while computing deployment plans", e);
+        }
+    }
+
+    /**
+     * Cache key of a computed plan.
+     */
+    @lombok.Value
+    private static class PlanKey {
+
+        Long instanceId;
+
+        Long revisionId;
+    }
+}
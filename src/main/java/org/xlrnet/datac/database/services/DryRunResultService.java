@@ -0,0 +1,86 @@
+package org.xlrnet.datac.database.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DryRunResult;
+import org.xlrnet.datac.database.domain.repository.DryRunResultRepository;
+import org.xlrnet.datac.foundation.services.AbstractTransactionalService;
+
+/**
+ * Transactional service for accessing dry run results. Only the result of the last simulation is kept for each change
+ * set.
+ */
+@Service
+public class DryRunResultService extends AbstractTransactionalService<DryRunResult, DryRunResultRepository> {
+
+    /**
+     * Constructor for abstract transactional service. Needs always a crud repository for performing operations.
+     *
+     * @param crudRepository
+     *         The crud repository for providing basic crud operations.
+     */
+    @Autowired
+    public DryRunResultService(DryRunResultRepository crudRepository) {
+        super(crudRepository);
+    }
+
+    /**
+     * Returns the last dry run results of the given change sets.
+     *
+     * @param changeSets
+     *         The change sets whose results should be returned.
+     * @return the results by the id of their change set. Change sets which were never simulated are not contained.
+     */
+    @NotNull
+    @Transactional(readOnly = true)
+    public Map<Long, DryRunResult> findByChangeSets(@NotNull Collection<DatabaseChangeSet> changeSets) {
+        Map<Long, DryRunResult> results = new HashMap<>();
+        if (changeSets.isEmpty()) {
+            return results;
+        }
+        for (DryRunResult result : getRepository().findAllByChangeSetIn(changeSets)) {
+            results.put(result.getChangeSet().getId(), result);
+        }
+        return results;
+    }
+
+    /**
+     * Stores the given results and replaces the previous results of the same change sets.
+     *
+     * @param results
+     *         The new results.
+     * @return the persisted results.
+     */
+    @NotNull
+    @Transactional
+    public List<DryRunResult> replaceResults(@NotNull Collection<DryRunResult> results) {
+        List<DatabaseChangeSet> changeSets = new ArrayList<>(results.size());
+        results.forEach(r -> changeSets.add(r.getChangeSet()));
+        Map<Long, DryRunResult> existingResults = findByChangeSets(changeSets);
+
+        List<DryRunResult> resultsToSave = new ArrayList<>(results.size());
+        for (DryRunResult result : results) {
+            // Update existing rows in place, since each change set may only have one result
+            DryRunResult target = existingResults.getOrDefault(result.getChangeSet().getId(), result);
+            target.setExecuted(result.getExecuted())
+                    .setSuccessful(result.isSuccessful())
+                    .setExecutionTimeMicros(result.getExecutionTimeMicros())
+                    .setStatementCount(result.getStatementCount())
+                    .setRowCount(result.getRowCount())
+                    .setErrorMessage(result.getErrorMessage());
+            resultsToSave.add(target);
+        }
+        List<DryRunResult> savedResults = new ArrayList<>(resultsToSave.size());
+        save(resultsToSave).forEach(savedResults::add);
+        return savedResults;
+    }
+}
@@ -0,0 +1,141 @@
+package org.xlrnet.datac.database.services;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.IndexedChangeLog;
+import org.xlrnet.datac.database.domain.IndexingJournal;
+import org.xlrnet.datac.database.domain.repository.IndexingJournalRepository;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.AbstractTransactionalService;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.RevisionGraphService;
+
+/**
+ * Transactional service for accessing indexing journals. Every indexed revision is committed together with the
+ * advanced watermark of its journal, so that an interrupted indexing process loses at most the work of a single
+ * revision.
+ */
+@Service
+public class IndexingJournalService extends AbstractTransactionalService<IndexingJournal, IndexingJournalRepository> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexingJournalService.class);
+
+    /**
+     * Service for accessing change sets.
+     */
+    private final ChangeSetService changeSetService;
+
+    /**
+     * Service for accessing the revision graph.
+     */
+    private final RevisionGraphService revisionGraphService;
+
+    /**
+     * Constructor for abstract transactional service. Needs always a crud repository for performing operations.
+     *
+     * @param crudRepository
+     *         The crud repository for providing basic crud operations.
+     * @param changeSetService
+     *         Service for accessing change sets.
+     * @param revisionGraphService
+     *         Service for accessing the revision graph.
+     */
+    @Autowired
+    public IndexingJournalService(IndexingJournalRepository crudRepository, ChangeSetService changeSetService, RevisionGraphService revisionGraphService) {
+        super(crudRepository);
+        this.changeSetService = changeSetService;
+        this.revisionGraphService = revisionGraphService;
+    }
+
+    /**
+     * Returns the journal of an indexing process in the given project which has not been finished yet.
+     *
+     * @param project
+     *         The project to check.
+     * @return the unfinished journal or an empty optional if there is none.
+     */
+    @NotNull
+    @Transactional(readOnly = true)
+    public Optional<IndexingJournal> findUnfinishedJournal(@NotNull Project project) {
+        IndexingJournal journal = getRepository().findByProject(project);
+        if (journal != null && !journal.isFinished()) {
+            return Optional.of(journal);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Creates a new journal for the given project with the given revisions as its work list. An existing journal of
+     * the project will be replaced.
+     *
+     * @param project
+     *         The project which will be indexed.
+     * @param revisions
+     *         The revisions to index in the order in which they must be indexed.
+     * @return the persisted journal.
+     */
+    @NotNull
+    @Transactional
+    public IndexingJournal createJournal(@NotNull Project project, @NotNull Collection<Revision> revisions) {
+        IndexingJournal journal = getRepository().findByProject(project);
+        if (journal == null) {
+            journal = new IndexingJournal().setProject(project);
+        } else {
+            LOGGER.debug("Replacing existing indexing journal of project {} [id={}]", project.getName(), project.getId());
+        }
+        journal.setCreated(Instant.now()).setWatermark(0).setRevisions(new ArrayList<>(revisions));
+        return save(journal);
+    }
+
+    /**
+     * Saves the change sets of the revision at the given position of the work list and advances the watermark of the
+     * journal in the same transaction.
+     *
+     * @param journal
+     *         The journal to advance.
+     * @param position
+     *         The position of the indexed revision in the work list.
+     * @param revision
+     *         The indexed revision.
+     * @param indexedChangeLog
+     *         The change sets and change log files that were found in the revision. May be empty if the revision was
+     *         already indexed.
+     * @return the persisted change sets.
+     */
+    @NotNull
+    @Transactional
+    public List<DatabaseChangeSet> commitRevision(@NotNull IndexingJournal journal, int position, @NotNull Revision revision, @NotNull IndexedChangeLog indexedChangeLog) {
+        List<DatabaseChangeSet> savedChangeSets = indexedChangeLog.getChangeSets();
+        if (!savedChangeSets.isEmpty()) {
+            savedChangeSets = changeSetService.linkRevisionsAndSave(savedChangeSets, revision);
+        }
+        if (!indexedChangeLog.getChangeLogFiles().isEmpty()) {
+            revisionGraphService.saveChangeLogFiles(revision, indexedChangeLog.getChangeLogFiles());
+        }
+        getRepository().updateWatermark(journal.getId(), position + 1);
+        journal.setWatermark(position + 1);
+        return savedChangeSets;
+    }
+
+    /**
+     * Removes the given journal after its work list was completely indexed.
+     *
+     * @param journal
+     *         The journal to remove.
+     */
+    @Transactional
+    public void finishJournal(@NotNull IndexingJournal journal) {
+        delete(journal);
+    }
+}
@@ -0,0 +1,289 @@
+package org.xlrnet.datac.database.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.xlrnet.datac.commons.exception.DatacTechnicalException;
+import org.xlrnet.datac.database.domain.DeploymentGroup;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.InstanceDeploymentResult;
+import org.xlrnet.datac.foundation.ui.components.ProgressChangeHandler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Performs deployments on multiple instances in parallel. The number of parallel deployments is limited globally and by
+ * the {@link DeploymentGroup#getMaxConcurrentDeployments() limits} of the groups containing the instances. Only the
+ * calling thread dispatches deployments and collects their results, so that results and progress are reported from a
+ * single thread.
+ */
+@Slf4j
+@Component
+public class ParallelDeploymentExecutor {
+
+    /** Executor which performs the deployments on single instances. */
+    private final AsyncTaskExecutor deploymentTaskExecutor;
+
+    /** Maximum number of parallel deployments of a single call. */
+    private final int maxConcurrency;
+
+    public ParallelDeploymentExecutor(@Qualifier("deploymentTaskExecutor") AsyncTaskExecutor deploymentTaskExecutor,
+                                      @Value("${datac.executors.deployment.threads:8}") int maxConcurrency) {
+        this.deploymentTaskExecutor = deploymentTaskExecutor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Deploys the given instances in parallel and waits until all deployments are finished. Progress is reported
+     * after each finished instance and scaled to the range between the given start progress and 1.
+     *
+     * @param instances
+     *         The instances to deploy.
+     * @param deployment
+     *         The deployment to perform on each instance.
+     * @param abortOnFailure
+     *         If true, no new deployments will be started after a deployment failed. All instances which weren't
+     *         deployed yet will be reported as skipped.
+     * @param sequentialGroups
+     *         If true, the instances of a group are only deployed after all instances of the previous group are
+     *         finished. Groups are ordered by their path, i.e. parent groups are deployed before their children.
+     * @param startProgress
+     *         The progress before the first deployment is finished.
+     * @param progressChangeHandler
+     *         Handler for progress updates.
+     * @return The results of all given instances in the order in which they were finished. Instances which the
+     *         executor rejects while no other deployment of this call is running are reported as failed.
+     * @throws DatacTechnicalException
+     *         Will be thrown if the calling thread was interrupted while waiting for deployments.
+     */
+    @NotNull
+    public List<InstanceDeploymentResult> deploy(@NotNull Collection<DeploymentInstance> instances, @NotNull InstanceDeployment deployment,
+                                                 boolean abortOnFailure, boolean sequentialGroups, float startProgress,
+                                                 @NotNull ProgressChangeHandler progressChangeHandler) throws DatacTechnicalException {
+        List<InstanceDeploymentResult> results = new ArrayList<>(instances.size());
+        CompletionService<InstanceDeploymentResult> completionService = new ExecutorCompletionService<>(deploymentTaskExecutor);
+        RunningDeployments running = new RunningDeployments();
+        boolean aborted = false;
+
+        try {
+            for (List<DeploymentInstance> phase : buildPhases(instances, sequentialGroups)) {
+                LinkedList<DeploymentInstance> pending = new LinkedList<>(phase);
+                while (!pending.isEmpty() || !running.isEmpty()) {
+                    List<InstanceDeploymentResult> finished = new ArrayList<>();
+                    if (!aborted) {
+                        finished.addAll(dispatchPending(pending, running, completionService, deployment));
+                    }
+                    if (finished.isEmpty() && running.isEmpty()) {
+                        // Nothing left to wait for, i.e. the deployment was aborted
+                        break;
+                    }
+                    if (finished.isEmpty()) {
+                        finished.add(awaitNext(completionService, running));
+                    }
+                    for (InstanceDeploymentResult result : finished) {
+                        results.add(result);
+                        progressChangeHandler.handleProgressChange(startProgress + (1 - startProgress) * results.size() / instances.size(),
+                                String.format("Deployed %d of %d instances", results.size(), instances.size()));
+                        if (!result.isSuccessful() && abortOnFailure && !aborted) {
+                            LOGGER.warn("Deployment on {} failed - skipping remaining instances", result.getInstance().getFullPath());
+                            aborted = true;
+                        }
+                    }
+                }
+                for (DeploymentInstance instance : pending) {
+                    results.add(InstanceDeploymentResult.skipped(instance));
+                }
+            }
+        } finally {
+            awaitRemaining(completionService, running);
+        }
+        return results;
+    }
+
+    /**
+     * Submits all pending instances whose deployment wouldn't exceed the global limit or the limit of any group. If the
+     * executor rejects a deployment, it is retried after the next running deployment is finished. If no deployment of
+     * this call is running, the instance can't be deployed and a failed result is returned for it.
+     *
+     * @return The results of instances which couldn't be deployed.
+     */
+    @NotNull
+    private List<InstanceDeploymentResult> dispatchPending(List<DeploymentInstance> pending, RunningDeployments running,
+                                                           CompletionService<InstanceDeploymentResult> completionService, InstanceDeployment deployment) {
+        Iterator<DeploymentInstance> iterator = pending.iterator();
+        while (iterator.hasNext() && running.size() < maxConcurrency) {
+            DeploymentInstance instance = iterator.next();
+            if (running.hasGroupCapacity(instance)) {
+                LOGGER.debug("Starting deployment on {}", instance.getFullPath());
+                Future<InstanceDeploymentResult> future;
+                try {
+                    future = completionService.submit(() -> performDeployment(instance, deployment));
+                } catch (TaskRejectedException e) {
+                    if (!running.isEmpty()) {
+                        LOGGER.debug("Executor rejected deployment on {} - retrying after the next finished deployment", instance.getFullPath());
+                        return Collections.emptyList();
+                    }
+                    LOGGER.error("Executor rejected deployment on {}", instance.getFullPath(), e);
+                    iterator.remove();
+                    return Collections.singletonList(InstanceDeploymentResult.failed(instance, "Deployment executor is saturated"));
+                }
+                iterator.remove();
+                running.add(instance, future);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Waits until all running deployments are finished, e.g. after reporting progress failed. Deployments may not be
+     * left running without a lock on their project.
+     */
+    private void awaitRemaining(CompletionService<InstanceDeploymentResult> completionService, RunningDeployments running) {
+        while (!running.isEmpty()) {
+            try {
+                DeploymentInstance instance = running.remove(completionService.take());
+                LOGGER.debug("Deployment on {} finished after the parallel deployment ended", instance.getFullPath());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running.cancelAll();
+            }
+        }
+    }
+
+    @NotNull
+    private InstanceDeploymentResult awaitNext(CompletionService<InstanceDeploymentResult> completionService, RunningDeployments running) throws DatacTechnicalException {
+        try {
+            Future<InstanceDeploymentResult> future = completionService.take();
+            DeploymentInstance instance = running.remove(future);
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                // Deployments catch their own exceptions, so this should only happen on errors
+                LOGGER.error("Deployment on {} failed unexpectedly", instance.getFullPath(), e.getCause());
+                return InstanceDeploymentResult.failed(instance, String.valueOf(e.getCause()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running.cancelAll();
+            throw new DatacTechnicalException("Interrupted while waiting for deployments", e);
+        }
+    }
+
+    @NotNull
+    private InstanceDeploymentResult performDeployment(DeploymentInstance instance, InstanceDeployment deployment) {
+        try {
+            return deployment.deploy(instance);
+        } catch (DatacTechnicalException | RuntimeException e) {
+            LOGGER.error("Deployment on {} failed", instance.getFullPath(), e);
+            return InstanceDeploymentResult.failed(instance, e.getMessage());
+        }
+    }
+
+    /**
+     * Splits the given instances into phases which are deployed one after another.
+     */
+    @NotNull
+    private Collection<List<DeploymentInstance>> buildPhases(Collection<DeploymentInstance> instances, boolean sequentialGroups) {
+        if (!sequentialGroups) {
+            List<List<DeploymentInstance>> phases = new ArrayList<>(1);
+            phases.add(new ArrayList<>(instances));
+            return phases;
+        }
+        Map<String, List<DeploymentInstance>> phasesByGroupPath = new TreeMap<>();
+        for (DeploymentInstance instance : instances) {
+            DeploymentGroup group = instance.getGroup();
+            phasesByGroupPath.computeIfAbsent(group.getParentPath() + "/" + group.getName(), k -> new ArrayList<>()).add(instance);
+        }
+        phasesByGroupPath.values().forEach(phase -> phase.sort(Comparator.comparing(DeploymentInstance::getName)));
+        return phasesByGroupPath.values();
+    }
+
+    /**
+     * A deployment which is performed on a single instance.
+     */
+    @FunctionalInterface
+    public interface InstanceDeployment {
+
+        /**
+         * Performs the deployment on the given instance. Any thrown exception marks the deployment of the instance as
+         * failed.
+         *
+         * @param instance
+         *         The instance to deploy.
+         * @return The result of the deployment.
+         * @throws DatacTechnicalException
+         *         Will be thrown if the deployment failed.
+         */
+        @NotNull
+        InstanceDeploymentResult deploy(@NotNull DeploymentInstance instance) throws DatacTechnicalException;
+    }
+
+    /**
+     * Running deployments and the number of running deployments per group. Only accessed by the coordinating thread.
+     */
+    private static class RunningDeployments {
+
+        /** Instances of the running deployments. */
+        private final Map<Future<InstanceDeploymentResult>, DeploymentInstance> instances = new HashMap<>();
+
+        /** Number of running deployments in each group and its children by the id of the group. */
+        private final Map<Long, Integer> runningPerGroup = new HashMap<>();
+
+        boolean hasGroupCapacity(DeploymentInstance instance) {
+            for (DeploymentGroup group = instance.getGroup(); group != null; group = group.getParent()) {
+                Integer limit = group.getMaxConcurrentDeployments();
+                if (limit != null && runningPerGroup.getOrDefault(group.getId(), 0) >= limit) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(DeploymentInstance instance, Future<InstanceDeploymentResult> future) {
+            instances.put(future, instance);
+            for (DeploymentGroup group = instance.getGroup(); group != null; group = group.getParent()) {
+                runningPerGroup.merge(group.getId(), 1, Integer::sum);
+            }
+        }
+
+        DeploymentInstance remove(Future<InstanceDeploymentResult> future) {
+            DeploymentInstance instance = instances.remove(future);
+            for (DeploymentGroup group = instance.getGroup(); group != null; group = group.getParent()) {
+                runningPerGroup.merge(group.getId(), -1, Integer::sum);
+            }
+            return instance;
+        }
+
+        void cancelAll() {
+            instances.keySet().forEach(future -> future.cancel(true));
+            instances.clear();
+            runningPerGroup.clear();
+        }
+
+        boolean isEmpty() {
+            return instances.isEmpty();
+        }
+
+        int size() {
+            return instances.size();
+        }
+    }
+}
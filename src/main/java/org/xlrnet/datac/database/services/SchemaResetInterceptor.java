@@ -0,0 +1,81 @@
+package org.xlrnet.datac.database.services;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Objects;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.JdbcInterceptor;
+import org.apache.tomcat.jdbc.pool.PooledConnection;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Interceptor for pooled connections which resets the schema of a connection when it is returned to its pool. Without
+ * resetting, a connection which was borrowed without a schema would still use the schema of a previous borrower. The
+ * {@link org.apache.tomcat.jdbc.pool.interceptor.ConnectionState} interceptor doesn't cover the schema. Connections
+ * whose schema can't be reset are discarded by the pool.
+ */
+@Slf4j
+public class SchemaResetInterceptor extends JdbcInterceptor {
+
+    /** Name of the method which changes the schema of a connection. */
+    private static final String SET_SCHEMA_VAL = "setSchema";
+
+    /** The pooled connection which is currently intercepted. */
+    private PooledConnection pooledConnection;
+
+    /** Version of the physical connection whose initial schema is known. */
+    private long connectionVersion = -1;
+
+    /** The schema of the physical connection right after it was established. */
+    private String initialSchema;
+
+    /** True if the schema was changed since the connection was borrowed. */
+    private boolean schemaChanged;
+
+    @Override
+    public void reset(ConnectionPool parent, PooledConnection con) {
+        pooledConnection = con;
+        schemaChanged = false;
+        if (con == null || con.getConnectionVersion() == connectionVersion) {
+            return;
+        }
+        try {
+            initialSchema = con.getConnection().getSchema();
+            connectionVersion = con.getConnectionVersion();
+        } catch (SQLException | AbstractMethodError e) {    // NOSONAR: Old drivers don't support schemas at all
+            LOGGER.debug("Unable to determine the initial schema of a pooled connection", e);
+        }
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (compare(SET_SCHEMA_VAL, method)) {
+            schemaChanged = true;
+        } else if (compare(CLOSE_VAL, method) && schemaChanged) {
+            resetSchema();
+        }
+        return super.invoke(proxy, method, args);
+    }
+
+    private void resetSchema() {
+        schemaChanged = false;
+        if (pooledConnection == null) {
+            return;
+        }
+        if (pooledConnection.getConnectionVersion() != connectionVersion) {
+            LOGGER.debug("Initial schema of a pooled connection is unknown - discarding connection");
+            pooledConnection.setDiscarded(true);
+            return;
+        }
+        try {
+            if (!Objects.equals(initialSchema, pooledConnection.getConnection().getSchema())) {
+                pooledConnection.getConnection().setSchema(initialSchema);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Resetting the schema of a pooled connection failed - discarding connection", e);
+            pooledConnection.setDiscarded(true);
+        }
+    }
+}
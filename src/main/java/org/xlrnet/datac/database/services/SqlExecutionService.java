@@ -0,0 +1,214 @@
+package org.xlrnet.datac.database.services;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
+import org.xlrnet.datac.database.domain.ChangeLogEntryTemplate;
+import org.xlrnet.datac.database.domain.StatementExecutionResult;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service for executing generated deployment SQL on a target database. All statements of a change set are executed in
+ * a single transaction. Consecutive DML statements are sent as a single JDBC batch if the driver supports it, all
+ * other statements are executed one by one. Note that many databases commit DDL statements implicitly, so a failed
+ * change set containing DDL may only be rolled back partially.
+ */
+@Slf4j
+@Service
+public class SqlExecutionService {
+
+    /** Statements which may be executed in a batch. */
+    private static final Pattern BATCHABLE_STATEMENT = Pattern.compile("^(INSERT|UPDATE|DELETE|MERGE)\\b.*", Pattern.DOTALL);
+
+    /** Leading comments which are ignored when checking whether a statement is batchable. */
+    private static final Pattern LEADING_COMMENTS = Pattern.compile("^(\\s*(--[^\\n]*\\n?|/\\*.*?\\*/))*\\s*", Pattern.DOTALL);
+
+    /** Service for borrowing connections to target databases. */
+    private final ConnectionManagerService connectionManagerService;
+
+    /** Timeout in seconds for a single statement or batch. */
+    private final int statementTimeout;
+
+    public SqlExecutionService(ConnectionManagerService connectionManagerService, @Value("${datac.deployment.statementTimeout:300}") int statementTimeout) {
+        this.connectionManagerService = connectionManagerService;
+        this.statementTimeout = statementTimeout;
+    }
+
+    /**
+     * Executes the generated SQL of a prepared deployment on its target instance in a single transaction. The change
+     * set is recorded in the change log table of the target database in the same transaction: the table is created if
+     * it doesn't exist and the change set gets the execution order after the latest recorded change set.
+     *
+     * @param preparedDeployment
+     *         The prepared deployment to execute.
+     * @param resultListener
+     *         Listener which is called after each executed statement.
+     * @return The results of all executed statements.
+     * @throws SQLException
+     *         Will be thrown if a statement failed. All uncommitted changes will be rolled back.
+     */
+    @NotNull
+    public List<StatementExecutionResult> executePreparedDeployment(@NotNull IPreparedDeploymentContainer preparedDeployment, @NotNull Consumer<StatementExecutionResult> resultListener) throws SQLException {
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(preparedDeployment.getTargetInstance().getConnection(), true)) {
+            return executeInTransaction(connection, preparedDeployment.getGeneratedSql(), preparedDeployment.getChangeLogEntry(), resultListener);
+        }
+    }
+
+    /**
+     * Executes the given SQL statements in a single transaction on the given connection. The auto-commit mode of the
+     * connection is restored afterwards.
+     *
+     * @param connection
+     *         The connection to use.
+     * @param statements
+     *         The SQL statements to execute. Each element must be a single statement without end delimiter.
+     * @param resultListener
+     *         Listener which is called after each executed statement.
+     * @return The results of all executed statements.
+     * @throws SQLException
+     *         Will be thrown if a statement failed. All uncommitted changes will be rolled back.
+     */
+    @NotNull
+    public List<StatementExecutionResult> executeInTransaction(@NotNull Connection connection, @NotNull List<String> statements, @NotNull Consumer<StatementExecutionResult> resultListener) throws SQLException {
+        return executeInTransaction(connection, statements, null, resultListener);
+    }
+
+    @NotNull
+    private List<StatementExecutionResult> executeInTransaction(@NotNull Connection connection, @NotNull List<String> statements, @Nullable ChangeLogEntryTemplate changeLogEntry, @NotNull Consumer<StatementExecutionResult> resultListener) throws SQLException {
+        boolean batchingSupported = connection.getMetaData().supportsBatchUpdates();
+        boolean autoCommit = connection.getAutoCommit();
+        List<StatementExecutionResult> results = new ArrayList<>(statements.size());
+        Consumer<StatementExecutionResult> collector = result -> {
+            results.add(result);
+            resultListener.accept(result);
+        };
+
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(statementTimeout);
+            List<String> batch = new ArrayList<>();
+            for (String sql : statements) {
+                if (batchingSupported && isBatchable(sql)) {
+                    batch.add(sql);
+                } else {
+                    executeBatch(statement, batch, collector);
+                    executeSingle(statement, sql, collector);
+                }
+            }
+            executeBatch(statement, batch, collector);
+            if (changeLogEntry != null) {
+                recordChangeLogEntry(connection, statement, changeLogEntry, collector);
+            }
+            connection.commit();
+            LOGGER.debug("Executed {} statements in one transaction", results.size());
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("Statement execution failed after {} statements - rolling back", results.size());
+            rollbackQuietly(connection, e);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Records a change set in the change log table on the connection of the running transaction. The table is created
+     * if it doesn't exist yet.
+     */
+    private void recordChangeLogEntry(Connection connection, Statement statement, ChangeLogEntryTemplate changeLogEntry, Consumer<StatementExecutionResult> collector) throws SQLException {
+        String changeLogTable = findTable(connection, changeLogEntry.getTableName());
+        int orderExecuted = 1;
+        if (changeLogTable == null) {
+            for (String sql : changeLogEntry.getCreateTableSql()) {
+                executeSingle(statement, sql, collector);
+            }
+        } else {
+            try (ResultSet resultSet = statement.executeQuery("SELECT MAX(" + changeLogEntry.getOrderColumn() + ") FROM " + changeLogTable)) {
+                orderExecuted = resultSet.next() ? resultSet.getInt(1) + 1 : 1;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(changeLogEntry.getInsertSql())) {
+            insert.setQueryTimeout(statementTimeout);
+            insert.setInt(1, orderExecuted);
+            long start = System.nanoTime();
+            int updateCount = insert.executeUpdate();
+            long executionTime = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            collector.accept(new StatementExecutionResult(changeLogEntry.getInsertSql(), executionTime, updateCount, false));
+        }
+    }
+
+    /**
+     * Returns the name of the given table in the current schema or null if it doesn't exist. Databases may store the
+     * unquoted table name either in upper or in lower case.
+     */
+    @Nullable
+    private String findTable(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String schema = connection.getSchema();
+        for (String name : new String[]{tableName.toUpperCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT)}) {
+            try (ResultSet tables = metaData.getTables(null, schema, name, null)) {
+                if (tables.next()) {
+                    return name;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void executeSingle(Statement statement, String sql, Consumer<StatementExecutionResult> collector) throws SQLException {
+        long start = System.nanoTime();
+        boolean hasResultSet = statement.execute(sql);
+        long executionTime = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        int updateCount = hasResultSet ? -1 : statement.getUpdateCount();
+        collector.accept(new StatementExecutionResult(sql, executionTime, updateCount, false));
+    }
+
+    private void executeBatch(Statement statement, List<String> batch, Consumer<StatementExecutionResult> collector) throws SQLException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (String sql : batch) {
+            statement.addBatch(sql);
+        }
+        long start = System.nanoTime();
+        int[] updateCounts = statement.executeBatch();
+        long executionTime = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / batch.size();
+        for (int i = 0; i < batch.size(); i++) {
+            int updateCount = i < updateCounts.length ? updateCounts[i] : Statement.SUCCESS_NO_INFO;
+            collector.accept(new StatementExecutionResult(batch.get(i), executionTime, updateCount, true));
+        }
+        statement.clearBatch();
+        batch.clear();
+    }
+
+    private boolean isBatchable(String sql) {
+        String withoutComments = LEADING_COMMENTS.matcher(sql).replaceFirst("");
+        return BATCHABLE_STATEMENT.matcher(withoutComments.toUpperCase(Locale.ROOT)).matches();
+    }
+
+    private void rollbackQuietly(Connection connection, Exception cause) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LOGGER.error("Rollback failed", e);
+            cause.addSuppressed(e);
+        }
+    }
+}
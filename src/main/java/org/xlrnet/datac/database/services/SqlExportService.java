@@ -0,0 +1,242 @@
+package org.xlrnet.datac.database.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.xlrnet.datac.commons.exception.DatacTechnicalException;
+import org.xlrnet.datac.commons.exception.LockFailedException;
+import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseType;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.FileService;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.LockingService;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Service for exporting ready-to-run SQL scripts of all change sets which were added between two revisions. Scripts
+ * are streamed to files in the export directory. Since the generated SQL only depends on the exported change sets and
+ * the database type, files are named by a hash of their content and reused by later exports.
+ */
+@Slf4j
+@Service
+public class SqlExportService {
+
+    /** Service for accessing indexed change sets. */
+    private final ChangeSetService changeSetService;
+
+    /** Registry for accessing DCS. */
+    private final DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry;
+
+    /** Service for accessing the file system. */
+    private final FileService fileService;
+
+    /** Locking service. */
+    private final LockingService lockingService;
+
+    /** Executor which generates the scripts of multiple database types in parallel. */
+    private final AsyncTaskExecutor deploymentTaskExecutor;
+
+    /** Maximum time in seconds to wait for a shared lock on the exported project. */
+    private final int sharedLockTimeout;
+
+    public SqlExportService(ChangeSetService changeSetService, DatabaseChangeSystemAdapterRegistry databaseChangeSystemAdapterRegistry,
+                            FileService fileService, LockingService lockingService,
+                            @Qualifier("deploymentTaskExecutor") AsyncTaskExecutor deploymentTaskExecutor,
+                            @Value("${datac.locking.sharedTimeout:30}") int sharedLockTimeout) {
+        this.changeSetService = changeSetService;
+        this.databaseChangeSystemAdapterRegistry = databaseChangeSystemAdapterRegistry;
+        this.fileService = fileService;
+        this.lockingService = lockingService;
+        this.deploymentTaskExecutor = deploymentTaskExecutor;
+        this.sharedLockTimeout = sharedLockTimeout;
+    }
+
+    /**
+     * Exports the SQL of all change sets which exist in the target revision but not in the source revision. If a single
+     * database type is given, a plain SQL file will be returned. Otherwise a zip file with one SQL file per database
+     * type will be returned.
+     *
+     * @param project
+     *         The project to export.
+     * @param fromRevision
+     *         The revision which is already deployed. If null, all change sets of the target revision are exported.
+     * @param toRevision
+     *         The revision which should be deployed.
+     * @param databaseTypes
+     *         The database types for which SQL should be generated.
+     * @return The path of the exported file.
+     * @throws LockFailedException
+     *         Will be thrown if the project is locked.
+     * @throws DatacTechnicalException
+     *         Will be thrown if the export failed.
+     */
+    @NotNull
+    public Path exportSqlBundle(@NotNull Project project, @Nullable Revision fromRevision, @NotNull Revision toRevision, @NotNull Collection<DatabaseType> databaseTypes) throws DatacTechnicalException {
+        Optional<DatabaseChangeSystemAdapter> adapter = databaseChangeSystemAdapterRegistry.getAdapterByProject(project);
+        if (!adapter.isPresent()) {
+            throw new DatacTechnicalException("Unable to open DCS adapter");
+        }
+        List<DatabaseChangeSet> changeSets = findChangeSetsToExport(fromRevision, toRevision);
+        String contentHash = buildContentHash(project, changeSets);
+        Set<DatabaseType> sortedTypes = new TreeSet<>(databaseTypes);
+        LOGGER.info("Exporting {} change sets of project {} for {}", changeSets.size(), project.getName(), sortedTypes);
+
+        try {
+            Path exportDirectory = fileService.getExportDirectoryPath();
+            Map<DatabaseType, Path> scripts = new LinkedHashMap<>();
+            for (DatabaseType databaseType : sortedTypes) {
+                scripts.put(databaseType, exportDirectory.resolve(contentHash + "-" + databaseType.name().toLowerCase() + ".sql"));
+            }
+            generateMissingScripts(adapter.get(), project, toRevision, changeSets, scripts);
+            if (scripts.size() == 1) {
+                return scripts.values().iterator().next();
+            }
+
+            String typeNames = sortedTypes.stream().map(t -> t.name().toLowerCase()).collect(Collectors.joining("-"));
+            Path bundle = exportDirectory.resolve(contentHash + "-" + typeNames + ".zip");
+            if (!Files.exists(bundle)) {
+                writeZip(bundle, scripts);
+            }
+            return bundle;
+        } catch (IOException e) {
+            throw new DatacTechnicalException("Exporting SQL failed", e);
+        }
+    }
+
+    @NotNull
+    private List<DatabaseChangeSet> findChangeSetsToExport(@Nullable Revision fromRevision, @NotNull Revision toRevision) throws DatacTechnicalException {
+        List<DatabaseChangeSet> toChangeSets = changeSetService.findDatabaseChangeSetsInRevision(toRevision);
+        if (fromRevision == null) {
+            return toChangeSets;
+        }
+        Set<String> deployed = new HashSet<>();
+        for (DatabaseChangeSet changeSet : changeSetService.findDatabaseChangeSetsInRevision(fromRevision)) {
+            deployed.add(DeploymentPlanningService.buildIdentity(changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId()));
+        }
+        List<DatabaseChangeSet> changeSets = new ArrayList<>();
+        for (DatabaseChangeSet changeSet : toChangeSets) {
+            if (!deployed.contains(DeploymentPlanningService.buildIdentity(changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId()))) {
+                changeSets.add(changeSet);
+            }
+        }
+        return changeSets;
+    }
+
+    @NotNull
+    private String buildContentHash(@NotNull Project project, @NotNull List<DatabaseChangeSet> changeSets) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putLong(project.getId())
+                .putString(project.getChangelogLocation(), StandardCharsets.UTF_8);
+        for (DatabaseChangeSet changeSet : changeSets) {
+            hasher.putString(DeploymentPlanningService.buildIdentity(changeSet.getSourceFilename(), changeSet.getAuthor(), changeSet.getInternalId()), StandardCharsets.UTF_8)
+                    .putString(String.valueOf(changeSet.getChecksum()), StandardCharsets.UTF_8);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Generates all scripts which don't exist yet in parallel. Scripts are written to temporary files first, so that
+     * failed or concurrent exports never leave incomplete scripts behind.
+     */
+    private void generateMissingScripts(DatabaseChangeSystemAdapter adapter, Project project, Revision revision, List<DatabaseChangeSet> changeSets, Map<DatabaseType, Path> scripts) throws DatacTechnicalException {
+        Map<DatabaseType, Path> missingScripts = scripts.entrySet().stream()
+                .filter(e -> !Files.exists(e.getValue()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        if (missingScripts.isEmpty()) {
+            LOGGER.debug("Using cached SQL scripts");
+            return;
+        }
+
+        // Scripts are generated from file snapshots of the repository, so other read-only operations may run in parallel
+        Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.SHARED, sharedLockTimeout, TimeUnit.SECONDS);
+        if (!lease.isPresent()) {
+            throw new LockFailedException(project);
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (Map.Entry<DatabaseType, Path> entry : missingScripts.entrySet()) {
+                futures.add(deploymentTaskExecutor.submit(() -> {
+                    writeScript(adapter, project, revision, changeSets, entry.getKey(), entry.getValue());
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new DatacTechnicalException("Generating SQL failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(true));
+            throw new DatacTechnicalException("Interrupted while generating SQL", e);
+        } finally {
+            lockingService.release(lease.get());
+        }
+    }
+
+    private void writeScript(DatabaseChangeSystemAdapter adapter, Project project, Revision revision, List<DatabaseChangeSet> changeSets, DatabaseType databaseType, Path target) throws IOException, DatacTechnicalException {
+        LOGGER.debug("Generating {} SQL script {}", databaseType, target);
+        Path temporaryFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                adapter.writeOfflineSql(project, revision, changeSets, databaseType, writer);
+            }
+            Files.move(temporaryFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private void writeZip(Path bundle, Map<DatabaseType, Path> scripts) throws IOException {
+        LOGGER.debug("Writing SQL bundle {}", bundle);
+        Path temporaryFile = Files.createTempFile(bundle.getParent(), bundle.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporaryFile);
+                 ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+                for (Map.Entry<DatabaseType, Path> entry : scripts.entrySet()) {
+                    zipOutputStream.putNextEntry(new ZipEntry(entry.getKey().name().toLowerCase() + ".sql"));
+                    Files.copy(entry.getValue(), zipOutputStream);
+                    zipOutputStream.closeEntry();
+                }
+            }
+            Files.move(temporaryFile, bundle, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+}
@@ -26,7 +26,7 @@ public class SchedulerConfiguration {
     private ConcurrentTaskScheduler scheduler;
 
     @Autowired
-    public SchedulerConfiguration(UncaughtExceptionHandler exceptionHandler, @Qualifier("defaultTaskExecutor") TaskExecutor taskExecutor) {
+    public SchedulerConfiguration(UncaughtExceptionHandler exceptionHandler, @Qualifier("interactiveTaskExecutor") TaskExecutor taskExecutor) {
         this.exceptionHandler = exceptionHandler;
         this.taskExecutor = taskExecutor;
     }
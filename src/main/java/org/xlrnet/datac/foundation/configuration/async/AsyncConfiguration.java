@@ -27,7 +27,7 @@ public class AsyncConfiguration implements AsyncConfigurer {
 
     @Override
     public Executor getAsyncExecutor() {
-        return taskExecutorFactory.defaultTaskExecutor();
+        return taskExecutorFactory.interactiveTaskExecutor();
     }
 
     @Override
@@ -0,0 +1,31 @@
+package org.xlrnet.datac.foundation.configuration.async;
+
+import lombok.Value;
+
+/**
+ * Snapshot of the saturation of a single {@link BulkheadTaskExecutor}.
+ */
+@Value
+public class BulkheadMetrics {
+
+    /** Name of the executor. */
+    private final String name;
+
+    /** Maximum number of threads. */
+    private final int maxThreads;
+
+    /** Number of threads which are currently executing tasks. */
+    private final int activeThreads;
+
+    /** Number of tasks waiting in the queue. */
+    private final int queueDepth;
+
+    /** Maximum number of tasks in the queue. */
+    private final int queueCapacity;
+
+    /** Number of tasks which were rejected because the executor was saturated. */
+    private final long rejectedCount;
+
+    /** Number of tasks which were completed. */
+    private final long completedCount;
+}
@@ -0,0 +1,71 @@
+package org.xlrnet.datac.foundation.configuration.async;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Task executor with a fixed number of threads and a bounded queue which is reserved for a single kind of workload.
+ * Saturating one executor doesn't affect the tasks of any other executor. The executor counts all tasks which were
+ * rejected by its {@link RejectionPolicy} and provides a snapshot of its saturation.
+ */
+public class BulkheadTaskExecutor extends ThreadPoolTaskExecutor {
+
+    /** Name of the executor. */
+    private final String name;
+
+    /** Maximum number of tasks in the queue. */
+    private final int queueCapacity;
+
+    /** Number of rejected tasks. */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public BulkheadTaskExecutor(@NotNull String name, @NotNull String threadNamePrefix, int threads, int queueCapacity, @NotNull RejectionPolicy rejectionPolicy) {
+        this.name = name;
+        this.queueCapacity = Math.max(queueCapacity, 0);
+        int poolSize = Math.max(threads, 1);
+        setCorePoolSize(poolSize);
+        setMaxPoolSize(poolSize);
+        setQueueCapacity(this.queueCapacity);
+        setThreadNamePrefix(threadNamePrefix);
+        RejectedExecutionHandler handler = rejectionPolicy.createHandler();
+        setRejectedExecutionHandler((runnable, executor) -> {
+            rejectedCount.incrementAndGet();
+            handler.rejectedExecution(runnable, executor);
+        });
+    }
+
+    /**
+     * Returns the name of this executor.
+     *
+     * @return the name of this executor.
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of tasks which were rejected since the executor was started.
+     *
+     * @return the number of rejected tasks.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns a snapshot of the current saturation of this executor.
+     *
+     * @return a snapshot of the current saturation.
+     */
+    @NotNull
+    public BulkheadMetrics getMetrics() {
+        ThreadPoolExecutor executor = getThreadPoolExecutor();
+        return new BulkheadMetrics(name, getMaxPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+                queueCapacity, rejectedCount.get(), executor.getCompletedTaskCount());
+    }
+}
@@ -0,0 +1,38 @@
+package org.xlrnet.datac.foundation.configuration.async;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Policy of a {@link BulkheadTaskExecutor} for tasks which are submitted while all threads are busy and the queue is
+ * full.
+ */
+public enum RejectionPolicy {
+
+    /**
+     * The task is rejected and the caller receives a {@link org.springframework.core.task.TaskRejectedException}.
+     */
+    ABORT {
+        @Override
+        RejectedExecutionHandler createHandler() {
+            return new ThreadPoolExecutor.AbortPolicy();
+        }
+    },
+
+    /**
+     * The task is executed directly by the calling thread, which slows down the caller until the executor catches up.
+     */
+    CALLER_RUNS {
+        @Override
+        RejectedExecutionHandler createHandler() {
+            return new ThreadPoolExecutor.CallerRunsPolicy();
+        }
+    };
+
+    /**
+     * Creates a new handler which implements this policy.
+     *
+     * @return a new handler.
+     */
+    abstract RejectedExecutionHandler createHandler();
+}
@@ -1,16 +1,22 @@
 package org.xlrnet.datac.foundation.configuration.async;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskExecutor;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
-
 /**
- * Factory for creating instances of {@link TaskExecutor}.
+ * Factory for creating instances of {@link TaskExecutor}. Every kind of workload gets its own {@link
+ * BulkheadTaskExecutor}, so that e.g. a burst of project updates can't block tasks which were triggered by users.
  */
 @Component
 public class TaskExecutorFactory {
@@ -18,35 +24,226 @@ public class TaskExecutorFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskExecutorFactory.class);
 
     /**
-     * Size of the default pool.
+     * Number of threads which access remote version control systems, e.g. for project updates or fetching branches.
+     */
+    @Value("${datac.executors.vcs.threads:4}")
+    private int vcsThreads;
+
+    /**
+     * Queue capacity of the VCS executor.
+     */
+    @Value("${datac.executors.vcs.queueCapacity:50}")
+    private int vcsQueueCapacity;
+
+    /**
+     * Rejection policy of the VCS executor.
+     */
+    @Value("${datac.executors.vcs.rejectionPolicy:ABORT}")
+    private RejectionPolicy vcsRejectionPolicy;
+
+    /**
+     * Number of threads which perform CPU intensive indexing tasks like checksum recalculations.
+     */
+    @Value("${datac.executors.indexing.threads:2}")
+    private int indexingThreads;
+
+    /**
+     * Queue capacity of the indexing executor.
+     */
+    @Value("${datac.executors.indexing.queueCapacity:10}")
+    private int indexingQueueCapacity;
+
+    /**
+     * Rejection policy of the indexing executor.
+     */
+    @Value("${datac.executors.indexing.rejectionPolicy:ABORT}")
+    private RejectionPolicy indexingRejectionPolicy;
+
+    /**
+     * Number of threads which run tasks triggered by users, e.g. deployments, dry runs or connection checks.
+     */
+    @Value("${datac.executors.interactive.threads:10}")
+    private int interactiveThreads;
+
+    /**
+     * Queue capacity of the interactive executor.
+     */
+    @Value("${datac.executors.interactive.queueCapacity:50}")
+    private int interactiveQueueCapacity;
+
+    /**
+     * Rejection policy of the interactive executor.
+     */
+    @Value("${datac.executors.interactive.rejectionPolicy:ABORT}")
+    private RejectionPolicy interactiveRejectionPolicy;
+
+    /**
+     * Number of threads which walk the revisions of branches concurrently.
+     */
+    @Value("${datac.executors.revisionImport.threads:4}")
+    private int revisionImportThreads;
+
+    /**
+     * Queue capacity of the revision import executor.
+     */
+    @Value("${datac.executors.revisionImport.queueCapacity:" + Integer.MAX_VALUE + "}")
+    private int revisionImportQueueCapacity;
+
+    /**
+     * Rejection policy of the revision import executor.
+     */
+    @Value("${datac.executors.revisionImport.rejectionPolicy:ABORT}")
+    private RejectionPolicy revisionImportRejectionPolicy;
+
+    /**
+     * Number of threads which deploy to database instances concurrently.
+     */
+    @Value("${datac.executors.deployment.threads:8}")
+    private int deploymentThreads;
+
+    /**
+     * Queue capacity of the deployment executor.
+     */
+    @Value("${datac.executors.deployment.queueCapacity:" + Integer.MAX_VALUE + "}")
+    private int deploymentQueueCapacity;
+
+    /**
+     * Rejection policy of the deployment executor.
+     */
+    @Value("${datac.executors.deployment.rejectionPolicy:ABORT}")
+    private RejectionPolicy deploymentRejectionPolicy;
+
+    /**
+     * Maximum number of connection checks which run concurrently.
+     */
+    @Value("${datac.executors.connectionCheck.threads:32}")
+    private int connectionCheckThreads;
+
+    /**
+     * Queue capacity of the connection check executor.
      */
-    private static final int DEFAULT_POOL_SIZE = 20;
+    @Value("${datac.executors.connectionCheck.queueCapacity:" + Integer.MAX_VALUE + "}")
+    private int connectionCheckQueueCapacity;
 
     /**
-     * Queue capacity for the default pool.
+     * Rejection policy of the connection check executor.
      */
-    private static final int DEFAULT_QUEUE_CAPACITY = 20;
+    @Value("${datac.executors.connectionCheck.rejectionPolicy:ABORT}")
+    private RejectionPolicy connectionCheckRejectionPolicy;
+
+    private BulkheadTaskExecutor vcsExecutor;
+
+    private BulkheadTaskExecutor indexingExecutor;
+
+    private BulkheadTaskExecutor interactiveExecutor;
 
-    private ThreadPoolTaskExecutor defaultExecutor;
+    private BulkheadTaskExecutor revisionImportExecutor;
+
+    private BulkheadTaskExecutor deploymentExecutor;
+
+    private BulkheadTaskExecutor connectionCheckExecutor;
+
+    /**
+     * All created executors in the order of their creation.
+     */
+    private final List<BulkheadTaskExecutor> executors = new ArrayList<>();
 
     @PostConstruct
     void init() {
-        defaultExecutor = new ThreadPoolTaskExecutor();
-        defaultExecutor.setCorePoolSize(DEFAULT_POOL_SIZE);
-        defaultExecutor.setMaxPoolSize(DEFAULT_POOL_SIZE);
-        defaultExecutor.setQueueCapacity(DEFAULT_QUEUE_CAPACITY);
-        defaultExecutor.setThreadNamePrefix("defTaskExec-");
-        LOGGER.info("Initializing default TaskExecutor with {} threads and queue size of {}", DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
-        defaultExecutor.initialize();
+        vcsExecutor = createExecutor("VCS", "vcsExec-", vcsThreads, vcsQueueCapacity, vcsRejectionPolicy);
+        indexingExecutor = createExecutor("Indexing", "indexExec-", indexingThreads, indexingQueueCapacity, indexingRejectionPolicy);
+        interactiveExecutor = createExecutor("Interactive", "uiExec-", interactiveThreads, interactiveQueueCapacity, interactiveRejectionPolicy);
+        revisionImportExecutor = createExecutor("Revision import", "revImportExec-", revisionImportThreads, revisionImportQueueCapacity, revisionImportRejectionPolicy);
+        deploymentExecutor = createExecutor("Deployment", "deployExec-", deploymentThreads, deploymentQueueCapacity, deploymentRejectionPolicy);
+        // Connection checks are rare, so idle threads don't need to be kept
+        connectionCheckExecutor = createExecutor("Connection check", "connCheckExec-", connectionCheckThreads, connectionCheckQueueCapacity, connectionCheckRejectionPolicy);
+        connectionCheckExecutor.getThreadPoolExecutor().allowCoreThreadTimeOut(true);
+    }
+
+    @NotNull
+    private BulkheadTaskExecutor createExecutor(String name, String threadNamePrefix, int threads, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        BulkheadTaskExecutor executor = new BulkheadTaskExecutor(name, threadNamePrefix, threads, queueCapacity, rejectionPolicy);
+        LOGGER.info("Initializing {} TaskExecutor with {} threads, queue size of {} and rejection policy {}", name, threads, queueCapacity, rejectionPolicy);
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    /**
+     * Returns a snapshot of the saturation of all executors.
+     *
+     * @return a snapshot of the saturation of all executors.
+     */
+    @NotNull
+    public List<BulkheadMetrics> getMetrics() {
+        List<BulkheadMetrics> metrics = new ArrayList<>(executors.size());
+        for (BulkheadTaskExecutor executor : executors) {
+            metrics.add(executor.getMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Bean producer method for the task executor which accesses remote version control systems. This includes project
+     * updates and fetching the branches of a repository.
+     *
+     * @return The VCS task executor.
+     */
+    @Bean
+    public AsyncTaskExecutor vcsTaskExecutor() {
+        return vcsExecutor;
+    }
+
+    /**
+     * Bean producer method for the task executor which performs CPU intensive indexing and maintenance tasks.
+     *
+     * @return The indexing task executor.
+     */
+    @Bean
+    public AsyncTaskExecutor indexingTaskExecutor() {
+        return indexingExecutor;
+    }
+
+    /**
+     * Bean producer method for the task executor which runs short tasks triggered by users and asynchronous methods.
+     *
+     * @return The interactive task executor.
+     */
+    @Bean
+    public AsyncTaskExecutor interactiveTaskExecutor() {
+        return interactiveExecutor;
+    }
+
+    /**
+     * Bean producer method for the task executor which walks the revisions of branches during project updates. The
+     * number of threads is bounded, since every thread holds a revision walk on a local repository.
+     *
+     * @return The revision import task executor.
+     */
+    @Bean
+    public AsyncTaskExecutor revisionImportTaskExecutor() {
+        return revisionImportExecutor;
+    }
+
+    /**
+     * Bean producer method for the task executor which performs deployments on single database instances. The number
+     * of threads limits the number of parallel deployments across all running deployments.
+     *
+     * @return The deployment task executor.
+     */
+    @Bean
+    public AsyncTaskExecutor deploymentTaskExecutor() {
+        return deploymentExecutor;
     }
 
     /**
-     * Bean producer method for the default task executor.
+     * Bean producer method for the task executor which checks database connections. Connection checks mostly wait for
+     * the network, so many of them may run concurrently.
      *
-     * @return The default task executor.
+     * @return The connection check task executor.
      */
     @Bean
-    public TaskExecutor defaultTaskExecutor() {
-        return defaultExecutor;
+    public AsyncTaskExecutor connectionCheckTaskExecutor() {
+        return connectionCheckExecutor;
     }
-}
\ No newline at end of file
+}
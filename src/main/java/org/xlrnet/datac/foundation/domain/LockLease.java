@@ -0,0 +1,26 @@
+package org.xlrnet.datac.foundation.domain;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import lombok.Value;
+
+/**
+ * Lease of a lock on a {@link Lockable}. The lease identifies its owner by a unique token instead of a thread, so it
+ * may be released by any thread.
+ */
+@Value
+public class LockLease {
+
+    /** Unique token of the lease owner. */
+    private final UUID token;
+
+    /** Key of the locked object. */
+    private final String lockKey;
+
+    /** Mode of the lease. */
+    private final LockMode mode;
+
+    /** The time when the lease was acquired. */
+    private final Instant acquired;
+}
@@ -0,0 +1,18 @@
+package org.xlrnet.datac.foundation.domain;
+
+/**
+ * Mode of a lock lease on a {@link Lockable}.
+ */
+public enum LockMode {
+
+    /**
+     * Read-only access. Any number of shared leases may be held at the same time, but not together with an exclusive
+     * lease.
+     */
+    SHARED,
+
+    /**
+     * Modifying access. An exclusive lease can only be held if no other lease is held on the same object.
+     */
+    EXCLUSIVE
+}
@@ -14,6 +14,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.xlrnet.datac.commons.exception.DatacRuntimeException;
@@ -34,6 +35,11 @@ import lombok.extern.slf4j.Slf4j;
 @Scope("singleton")
 public class FileService extends AbstractLifecycleComponent {
 
+    /**
+     * Name of the directory inside the working directory in which exported files are stored.
+     */
+    private static final String EXPORT_DIRECTORY = "exports";
+
     /**
      * The configuration value for the file directory which should be used for storing files.
      */
@@ -46,9 +52,15 @@ public class FileService extends AbstractLifecycleComponent {
     @Getter
     private Path workingDirectoryPath;
 
+    /**
+     * Application event publisher.
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
     @Autowired
-    public FileService() {
+    public FileService(ApplicationEventPublisher eventPublisher) {
         super();
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -86,7 +98,8 @@ public class FileService extends AbstractLifecycleComponent {
     }
 
     /**
-     * Deletes a local project repository including all files recursively.
+     * Deletes a local project repository including all files recursively. A {@link ProjectRepositoryDeletionEvent}
+     * will be published before any files are deleted.
      *
      * @param project
      *         The project whose repository should be deleted.
@@ -95,6 +108,7 @@ public class FileService extends AbstractLifecycleComponent {
      */
     public void deleteProjectRepository(@NotNull Project project) throws DatacTechnicalException {
         Path projectRepositoryPath = getProjectRepositoryPath(project);
+        eventPublisher.publishEvent(new ProjectRepositoryDeletionEvent(this, project, projectRepositoryPath));
         deleteRecursively(projectRepositoryPath);
     }
 
@@ -125,6 +139,21 @@ public class FileService extends AbstractLifecycleComponent {
         return getWorkingDirectoryPath().resolve(id);
     }
 
+    /**
+     * Returns an absolute {@link Path} object which points to the directory for exported files. The directory will be
+     * created if it doesn't exist yet.
+     *
+     * @return A path which points to the directory for exported files.
+     * @throws IOException
+     *         Will be thrown if the directory couldn't be created.
+     */
+    @NotNull
+    public Path getExportDirectoryPath() throws IOException {
+        Path exportDirectoryPath = getWorkingDirectoryPath().resolve(EXPORT_DIRECTORY);
+        Files.createDirectories(exportDirectoryPath);
+        return exportDirectoryPath;
+    }
+
     void deleteRecursively(Path pathToDelete) throws DatacTechnicalException {
         LOGGER.info("Deleting directory {} recursively", pathToDelete.toString());
         try {
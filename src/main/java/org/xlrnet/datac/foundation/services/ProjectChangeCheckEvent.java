@@ -0,0 +1,25 @@
+package org.xlrnet.datac.foundation.services;
+
+import org.springframework.context.ApplicationEvent;
+import org.xlrnet.datac.foundation.domain.Project;
+
+import lombok.Getter;
+
+/**
+ * Event to indicate that a project update checked the remote repository for changes.
+ */
+public class ProjectChangeCheckEvent extends ApplicationEvent {
+
+    @Getter
+    private final Project project;
+
+    /** Flag whether new revisions or branches were found. */
+    @Getter
+    private final boolean changed;
+
+    public ProjectChangeCheckEvent(Object source, Project project, boolean changed) {
+        super(source);
+        this.project = project;
+        this.changed = changed;
+    }
+}
@@ -0,0 +1,27 @@
+package org.xlrnet.datac.foundation.services;
+
+import java.nio.file.Path;
+
+import org.springframework.context.ApplicationEvent;
+import org.xlrnet.datac.foundation.domain.Project;
+
+import lombok.Getter;
+
+/**
+ * Event to indicate that the local repository of a project is about to be deleted. Listeners must release all
+ * resources which refer to files inside the repository.
+ */
+public class ProjectRepositoryDeletionEvent extends ApplicationEvent {
+
+    @Getter
+    private final Project project;
+
+    @Getter
+    private final Path repositoryPath;
+
+    public ProjectRepositoryDeletionEvent(Object source, Project project, Path repositoryPath) {
+        super(source);
+        this.project = project;
+        this.repositoryPath = repositoryPath;
+    }
+}
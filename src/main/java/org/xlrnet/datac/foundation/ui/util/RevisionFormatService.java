@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 import org.springframework.stereotype.Service;
 import org.xlrnet.datac.vcs.domain.Revision;
 
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
@@ -40,7 +41,12 @@ public class RevisionFormatService {
 
     @NotNull
     public String formatTimestamp(@NotNull Revision revision) {
-        return defaultDateTimeFormatter.format(revision.getCommitTime());
+        return formatTimestamp(revision.getCommitTime());
+    }
+
+    @NotNull
+    public String formatTimestamp(@NotNull Instant instant) {
+        return defaultDateTimeFormatter.format(instant);
     }
 
     @NotNull
@@ -1,7 +1,11 @@
 package org.xlrnet.datac.session.ui.components.project;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -16,18 +20,30 @@ import org.vaadin.viritin.label.MLabel;
 import org.vaadin.viritin.layouts.MCssLayout;
 import org.vaadin.viritin.layouts.MHorizontalLayout;
 import org.vaadin.viritin.layouts.MVerticalLayout;
+import org.xlrnet.datac.commons.exception.DatacRuntimeException;
 import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.commons.ui.DatacTheme;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseType;
+import org.xlrnet.datac.database.domain.DryRunReport;
+import org.xlrnet.datac.database.domain.DryRunResult;
 import org.xlrnet.datac.database.services.ChangeSetService;
+import org.xlrnet.datac.database.services.DeploymentManagerService;
+import org.xlrnet.datac.database.services.DryRunResultService;
+import org.xlrnet.datac.database.services.SqlExportService;
+import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.ui.components.CodeSnippet;
+import org.xlrnet.datac.foundation.ui.components.ProgressWindow;
 import org.xlrnet.datac.foundation.ui.services.NavigationService;
+import org.xlrnet.datac.foundation.ui.util.ProgressWindowChangeHandler;
 import org.xlrnet.datac.foundation.ui.util.RevisionFormatService;
 import org.xlrnet.datac.vcs.domain.Revision;
 
 import com.vaadin.annotations.JavaScript;
 import com.vaadin.annotations.StyleSheet;
 import com.vaadin.icons.VaadinIcons;
+import com.vaadin.server.FileDownloader;
+import com.vaadin.server.StreamResource;
 import com.vaadin.spring.annotation.SpringComponent;
 import com.vaadin.ui.Component;
 import com.vaadin.ui.GridLayout;
@@ -36,17 +52,18 @@ import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.themes.ValoTheme;
 
+import lombok.extern.slf4j.Slf4j;
+
 /**
  * Layout component which is used for displaying the changes of a project revision.
  */
+@Slf4j
 @SpringComponent
 @Scope("prototype")
 @JavaScript("vaadin://vendor/prism/prism.js")
 @StyleSheet("vaadin://vendor/prism/prism.css")
 public class ProjectChangeLayout extends AbstractProjectLayout {
 
-    private static final int REVISIONS_TO_TRAVERSE = 200;   // TODO: Move this to config
-
     private VerticalLayout changeListLayout;
 
     /** Service for accessing change sets. */
@@ -70,12 +87,34 @@ public class ProjectChangeLayout extends AbstractProjectLayout {
     /** Window for starting a quick deployment. */
     private final QuickDeploymentWindow quickDeploymentWindow;
 
+    /** Service for performing dry runs. */
+    private final DeploymentManagerService deploymentManagerService;
+
+    /** Service for accessing dry run results. */
+    private final DryRunResultService dryRunResultService;
+
+    /** Service for exporting SQL scripts. */
+    private final SqlExportService sqlExportService;
+
+    /** Last dry run results of the displayed change sets by change set id. */
+    private Map<Long, DryRunResult> dryRunResults = new HashMap<>();
+
+    /** Window which displays the progress of a dry run. */
+    private final ProgressWindow progressWindow = new ProgressWindow();
+
+    /** Handler to update the progress window. */
+    private final ProgressWindowChangeHandler progressWindowChangeHandler = new ProgressWindowChangeHandler(progressWindow);
+
     @Autowired
-    public ProjectChangeLayout(ChangeSetService changeSetService, RevisionFormatService revisionFormatService, NavigationService navigationService, QuickDeploymentWindow quickDeploymentWindow) {
+    public ProjectChangeLayout(ChangeSetService changeSetService, RevisionFormatService revisionFormatService, NavigationService navigationService, QuickDeploymentWindow quickDeploymentWindow, DeploymentManagerService deploymentManagerService, DryRunResultService dryRunResultService, SqlExportService sqlExportService) {
         this.changeSetService = changeSetService;
         this.revisionFormatService = revisionFormatService;
         this.navigationService = navigationService;
         this.quickDeploymentWindow = quickDeploymentWindow;
+        this.deploymentManagerService = deploymentManagerService;
+        this.dryRunResultService = dryRunResultService;
+        this.sqlExportService = sqlExportService;
+        progressWindow.setCaption("Dry run progress");
     }
 
     @Override
@@ -93,8 +132,9 @@ public class ProjectChangeLayout extends AbstractProjectLayout {
 
     @Override
     protected void refreshContent() throws DatacTechnicalException {
-        List<DatabaseChangeSet> changeSets = changeSetService.findDatabaseChangeSetsInRevision(getRevision(), REVISIONS_TO_TRAVERSE);
+        List<DatabaseChangeSet> changeSets = changeSetService.findDatabaseChangeSetsInRevision(getRevision());
         changeSetSize = changeSets.size();
+        dryRunResults = dryRunResultService.findByChangeSets(changeSets);
         Collections.reverse(changeSets);
         refreshChangeSetList(changeSets);
     }
@@ -170,6 +210,10 @@ public class ProjectChangeLayout extends AbstractProjectLayout {
             quickDeploymentWindow.prepareWindow(changeSet, getRevision());
             UI.getCurrent().addWindow(quickDeploymentWindow);
         }));
+        buttonLayout.add(new MButton("Dry run revision").withListener(e -> startDryRun()));
+        MButton exportButton = new MButton("Export revision SQL");
+        new FileDownloader(buildSqlExportResource()).extend(exportButton);
+        buttonLayout.add(exportButton);
 
 
         topContainer.with(grid).withExpand(grid, 0.85f);
@@ -192,6 +236,17 @@ public class ProjectChangeLayout extends AbstractProjectLayout {
             grid.addComponent(new MLabel(revisionFormatService.formatTimestamp(conflictingRevision)));
         }
 
+        DryRunResult dryRunResult = dryRunResults.get(changeSet.getId());
+        if (dryRunResult != null) {
+            grid.addComponent(new MLabel("Dry run: "));
+            MLabel dryRunLabel = new MLabel(formatDryRunResult(dryRunResult));
+            if (!dryRunResult.isSuccessful()) {
+                dryRunLabel.setDescription(dryRunResult.getErrorMessage());
+                dryRunLabel.addStyleName(ValoTheme.LABEL_FAILURE);
+            }
+            grid.addComponent(dryRunLabel);
+        }
+
         if (!changeSet.getChanges().isEmpty() && StringUtils.isNotBlank(changeSet.getChanges().get(0).getPreviewSql())) {
             grid.addComponent(new Label("SQL Preview:"));
             String previewSql = changeSetService.formatPreviewSql(changeSet).trim();
@@ -212,6 +267,56 @@ public class ProjectChangeLayout extends AbstractProjectLayout {
         return panelContent;
     }
 
+    @NotNull
+    private String formatDryRunResult(@NotNull DryRunResult dryRunResult) {
+        String timing = String.format("%.1f ms, %d statements, %d rows modified (%s)", dryRunResult.getExecutionTimeMicros() / 1000.0,
+                dryRunResult.getStatementCount(), dryRunResult.getRowCount(), revisionFormatService.formatTimestamp(dryRunResult.getExecuted()));
+        return dryRunResult.isSuccessful() ? timing : "Failed after " + timing;
+    }
+
+    /**
+     * Returns a resource which exports the SQL of all change sets in the current revision for all database types when
+     * it is downloaded.
+     */
+    @NotNull
+    private StreamResource buildSqlExportResource() {
+        Project project = getProject();
+        Revision revision = getRevision();
+        String fileName = String.format("%s-%s.zip", project.getName(), revisionFormatService.abbreviateRevisionId(revision));
+        return new StreamResource(() -> {
+            try {
+                Path bundle = sqlExportService.exportSqlBundle(project, null, revision, EnumSet.allOf(DatabaseType.class));
+                return Files.newInputStream(bundle);
+            } catch (DatacTechnicalException | IOException e) {
+                LOGGER.error("Exporting SQL of revision {} in project {} failed", revision.getInternalId(), project.getName(), e);
+                return null;
+            }
+        }, fileName);
+    }
+
+    private void startDryRun() {
+        progressWindow.reset();
+        UI.getCurrent().addWindow(progressWindow);
+        deploymentManagerService.startAsynchronousDryRun(getProject(), getRevision(), progressWindowChangeHandler, this::handleDryRunComplete);
+    }
+
+    private void handleDryRunComplete(DryRunReport report) {
+        getUI().access(() -> {
+            progressWindow.setCloseButtonEnabled(true);
+            if (report.isSuccessful()) {
+                progressWindow.setMessage(String.format("Simulated %d change sets in %.1f ms (%d failed)", report.getResults().size(),
+                        report.getTotalExecutionTimeMicros() / 1000.0, report.countFailedChangeSets()));
+                try {
+                    refreshContent();
+                } catch (DatacTechnicalException e) {
+                    throw new DatacRuntimeException(e);
+                }
+            } else {
+                progressWindow.setMessage("Dry run failed:\n" + report.getErrorMessage());
+            }
+        });
+    }
+
     @NotNull
     @Override
     public String getSubtitle() {
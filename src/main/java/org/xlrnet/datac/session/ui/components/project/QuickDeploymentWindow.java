@@ -1,20 +1,28 @@
 package org.xlrnet.datac.session.ui.components.project;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
 import java.util.Set;
 
 import org.vaadin.addons.ComboBoxMultiselect;
 import org.vaadin.viritin.button.MButton;
+import org.vaadin.viritin.grid.MGrid;
 import org.vaadin.viritin.label.MLabel;
 import org.vaadin.viritin.layouts.MHorizontalLayout;
 import org.vaadin.viritin.layouts.MVerticalLayout;
 import org.vaadin.viritin.layouts.MWindow;
+import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.commons.ui.DatacTheme;
+import org.xlrnet.datac.commons.ui.NotificationUtils;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.InstanceChangePlan;
 import org.xlrnet.datac.database.domain.QuickDeploymentConfig;
 import org.xlrnet.datac.database.domain.QuickDeploymentResult;
 import org.xlrnet.datac.database.services.DeploymentInstanceService;
 import org.xlrnet.datac.database.services.DeploymentManagerService;
+import org.xlrnet.datac.database.services.DeploymentPlanningService;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.ui.components.ProgressWindow;
 import org.xlrnet.datac.foundation.ui.util.ProgressWindowChangeHandler;
@@ -52,18 +60,36 @@ public class QuickDeploymentWindow extends MWindow {
     /** Service to execute deployments. */
     private final DeploymentManagerService deploymentManagerService;
 
+    /** Service for computing the pending change sets of instances. */
+    private final DeploymentPlanningService deploymentPlanningService;
+
+    /** The instances which are currently available as targets. */
+    private Set<DeploymentInstance> instances = Collections.emptySet();
+
     /** Checkbox to select the target instances for the deployment. */
     private ComboBoxMultiselect<DeploymentInstance> targetInstances = new ComboBoxMultiselect<>("Target instances");
 
     /** Checkbox to abort if any instance fails. */
     private CheckBox abortOnFailure = new CheckBox("Cancel deployment on single instance failure");
 
+    /** Checkbox to deploy the groups one after another. */
+    private CheckBox sequentialGroups = new CheckBox("Deploy groups one after another");
+
+    /** Checkbox to check all connections again instead of using their cached status. */
+    private CheckBox refreshConnections = new CheckBox("Re-check all connections before deployment");
+
     /** Flag to show only compatible instances as possible targets. */
     private CheckBox showCompatibleInstancesOnly = new CheckBox("Show only instance on same branch", true);
 
     /** Button to perform the deployment. */
     private MButton deployButton = new MButton("Perform deployment").withStyleName(ValoTheme.BUTTON_PRIMARY).withListener(this::performDeployment);
 
+    /** Button to check which change sets are pending on the available instances. */
+    private MButton checkInstancesButton = new MButton("Check pending change sets").withListener(e -> refreshPlans());
+
+    /** Grid with the pending change sets of all available instances. */
+    private final MGrid<InstanceChangePlan> planGrid = new MGrid<>();
+
     /** Button to cancel the deployment. */
     private MButton cancelButton = new MButton("Cancel").withListener((e) -> this.close());
 
@@ -85,9 +111,10 @@ public class QuickDeploymentWindow extends MWindow {
 
     private final BeanValidationBinder<QuickDeploymentConfig> binder = new BeanValidationBinder<>(QuickDeploymentConfig.class);
 
-    public QuickDeploymentWindow(DeploymentInstanceService instanceService, DeploymentManagerService deploymentManagerService) {
+    public QuickDeploymentWindow(DeploymentInstanceService instanceService, DeploymentManagerService deploymentManagerService, DeploymentPlanningService deploymentPlanningService) {
         this.instanceService = instanceService;
         this.deploymentManagerService = deploymentManagerService;
+        this.deploymentPlanningService = deploymentPlanningService;
         setModal(true);
         setWidth("1200px");
         setHeight("600px");
@@ -100,13 +127,16 @@ public class QuickDeploymentWindow extends MWindow {
 
         binder.forField(targetInstances).bind(QuickDeploymentConfig::getInstances, QuickDeploymentConfig::setInstances);
         binder.forField(abortOnFailure).bind(QuickDeploymentConfig::isAbortOnFailure, QuickDeploymentConfig::setAbortOnFailure);
+        binder.forField(sequentialGroups).bind(QuickDeploymentConfig::isSequentialGroups, QuickDeploymentConfig::setSequentialGroups);
+        binder.forField(refreshConnections).bind(QuickDeploymentConfig::isRefreshConnections, QuickDeploymentConfig::setRefreshConnections);
     }
 
     private Component buildContent() {
         MVerticalLayout content = new MVerticalLayout().withFullSize();
         MVerticalLayout form = new MVerticalLayout();
         showCompatibleInstancesOnly.addValueChangeListener((x) -> refreshInstances());
-        form.with(headerLabel, noInstancesLabel, infoLabel, targetInstances, showCompatibleInstancesOnly, abortOnFailure);
+        form.with(headerLabel, noInstancesLabel, infoLabel, targetInstances, showCompatibleInstancesOnly, abortOnFailure, sequentialGroups, refreshConnections,
+                buildPlanLayout());
 
         MHorizontalLayout buttonLayout = new MHorizontalLayout().with(deployButton, cancelButton);
         MVerticalLayout footer = new MVerticalLayout().withStyleName(ValoTheme.WINDOW_BOTTOM_TOOLBAR)
@@ -117,6 +147,48 @@ public class QuickDeploymentWindow extends MWindow {
         return content;
     }
 
+    private Component buildPlanLayout() {
+        planGrid.withFullWidth().withHeight("200px");
+        planGrid.addColumn(p -> p.getInstance().getFullPath()).setCaption("Instance");
+        planGrid.addColumn(this::getChangeSetStatus).setCaption("This change set");
+        planGrid.addColumn(p -> p.getPendingChangeSets().size()).setCaption("Pending change sets");
+        planGrid.addColumn(p -> p.getDriftedChangeSets().size()).setCaption("Modified change sets");
+        planGrid.addColumn(InstanceChangePlan::getErrorMessage).setCaption("Error");
+        planGrid.setVisible(false);
+        return new MVerticalLayout().withMargin(false).with(checkInstancesButton, planGrid);
+    }
+
+    private void refreshPlans() {
+        try {
+            planGrid.setItems(deploymentPlanningService.planInstances(instances).values());
+            planGrid.setVisible(true);
+        } catch (DatacTechnicalException e) {
+            LOGGER.error("Checking the pending change sets of the instances failed", e);
+            NotificationUtils.showError("Checking the pending change sets of the instances failed", false);
+        }
+    }
+
+    /**
+     * Returns whether the change set of this deployment is pending on the instance of the given plan.
+     */
+    private String getChangeSetStatus(InstanceChangePlan plan) {
+        if (!plan.isSuccessful()) {
+            return "Unknown";
+        } else if (containsChangeSet(plan.getPendingChangeSets())) {
+            return "Pending";
+        } else if (containsChangeSet(plan.getDriftedChangeSets())) {
+            return "Modified since deployment";
+        } else if (containsChangeSet(plan.getAppliedChangeSets())) {
+            return "Deployed";
+        }
+        return "Not on tracked branch";
+    }
+
+    private boolean containsChangeSet(Collection<DatabaseChangeSet> changeSets) {
+        return changeSets.stream().anyMatch(c -> Objects.equals(c.getSourceFilename(), changeSet.getSourceFilename())
+                && Objects.equals(c.getAuthor(), changeSet.getAuthor()) && Objects.equals(c.getInternalId(), changeSet.getInternalId()));
+    }
+
     private void performDeployment(Button.ClickEvent event) {
         progressWindow.reset();
         UI.getCurrent().addWindow(progressWindow);
@@ -133,6 +205,9 @@ public class QuickDeploymentWindow extends MWindow {
             } else {
                 progressWindow.setMessage("Quick deployment failed:\n" + quickDeploymentResult.getErrorMessage() + "\nCheck the event log for more details.");
             }
+            if (planGrid.isVisible()) {
+                refreshPlans();
+            }
         });
     }
 
@@ -145,7 +220,6 @@ public class QuickDeploymentWindow extends MWindow {
     }
 
     private void refreshInstances() {
-        Set<DeploymentInstance> instances;
         if (Boolean.TRUE.equals(showCompatibleInstancesOnly.getValue())) {
             instances = instanceService.findInstancesWithTrackingRevision(revision);
         } else {
@@ -155,7 +229,11 @@ public class QuickDeploymentWindow extends MWindow {
         targetInstances.setEnabled(instancesAvailable);
         noInstancesLabel.setVisible(!instancesAvailable);
         deployButton.setEnabled(instancesAvailable);
+        checkInstancesButton.setEnabled(instancesAvailable);
         targetInstances.setItems(instances);
         abortOnFailure.setValue(false);
+        sequentialGroups.setValue(false);
+        refreshConnections.setValue(false);
+        planGrid.setVisible(false);
     }
 }
@@ -51,11 +51,6 @@ public class ProjectSubview extends AbstractSubview {
 
     private static final String DEFAULT_TAB = "changes";
 
-    /**
-     * Number of revisions to traverse in order to find database changes.
-     */
-    static final int REVISIONS_TO_TRAVERSE = 200;
-
     /**
      * Parameter which may contain a branch name.
      */
@@ -0,0 +1,61 @@
+package org.xlrnet.datac.vcs.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Read-only view on the files of a single revision in a local repository. Reading files from a snapshot never modifies
+ * the local repository, so snapshots can also be used on repositories without a working tree. All paths are relative to
+ * the repository root and use forward slashes as separator. Snapshots must be closed after usage.
+ */
+public interface VcsFileSnapshot extends Closeable {
+
+    /**
+     * Returns the revision of which the files are read.
+     *
+     * @return the revision of which the files are read.
+     */
+    @NotNull
+    VcsRevision getRevision();
+
+    /**
+     * Opens the file at the given path for reading. The returned stream must be closed by the caller.
+     *
+     * @param path
+     *         Path of the file relative to the repository root.
+     * @return A stream of the file contents or null if no file exists at the given path.
+     */
+    @Nullable
+    InputStream openFile(@NotNull String path) throws IOException;
+
+    /**
+     * Checks if a directory exists at the given path.
+     *
+     * @param path
+     *         Path of the directory relative to the repository root.
+     * @return True if the given path is a directory.
+     */
+    boolean isDirectory(@NotNull String path) throws IOException;
+
+    /**
+     * Lists the contents of the given directory.
+     *
+     * @param directory
+     *         Path of the directory relative to the repository root.
+     * @param includeFiles
+     *         Include files in the result.
+     * @param includeDirectories
+     *         Include directories in the result.
+     * @param recursive
+     *         Also list the contents of all subdirectories.
+     * @return The paths of all matching entries relative to the repository root or null if the directory doesn't
+     * exist.
+     */
+    @Nullable
+    Set<String> list(@NotNull String directory, boolean includeFiles, boolean includeDirectories, boolean recursive) throws IOException;
+}
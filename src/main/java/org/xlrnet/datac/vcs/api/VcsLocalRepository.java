@@ -6,6 +6,8 @@ import org.xlrnet.datac.commons.exception.VcsRepositoryException;
 import org.xlrnet.datac.vcs.domain.Branch;
 
 import java.util.Collection;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Local representation of a VCS repository. Local repositories are usually not thread-safe since they may modify the
@@ -24,7 +26,8 @@ public interface VcsLocalRepository {
     /**
      * Updates the internal list of revisions from remote. Concrete implementations may decide if it is necessary to
      * perform a remote call to retrieve the latest revisions or not. If the fetching would e.g. take too long, it is
-     * also sufficient to fetch the revisions directly during {@link #listLatestRevisionOnBranch(Branch)} .
+     * also sufficient to fetch the revisions directly during {@link
+     * #streamNewRevisionsOnBranch(Branch, Collection, Consumer)}.
      *
      * @param branch
      *         The branch to fetch.
@@ -32,15 +35,33 @@ public interface VcsLocalRepository {
     void updateRevisionsFromRemote(@NotNull Branch branch) throws DatacTechnicalException;
 
     /**
-     * Returns the latest revision in the given branch. The returned revision contains a tree-structure for all parent
-     * revisions. Depending on the concrete implementation, this method may invoke calls to a remote repository.
+     * Updates the internal list of revisions from remote for all given branches at once. This behaves like {@link
+     * #updateRevisionsFromRemote(Branch)}, but implementations should use as few remote calls as possible and avoid
+     * modifying any working files. After this call, {@link #streamNewRevisionsOnBranch(Branch, Collection, Consumer)}
+     * must return the updated revisions for each of the given branches.
+     *
+     * @param branches
+     *         The branches to fetch.
+     */
+    void updateRevisionsFromRemote(@NotNull Collection<Branch> branches) throws DatacTechnicalException;
+
+    /**
+     * Streams all revisions in the given branch which are not reachable from any of the given known revisions as flat
+     * {@link VcsRevisionRecord} objects to the given consumer. Records are emitted in topological order, i.e. a record
+     * is always emitted after the records of all its new parents. Parent ids may refer to known revisions, which are
+     * never emitted. Known revisions which don't exist in the repository are ignored. Implementations should not keep
+     * emitted records in memory.
      *
      * @param branch
-     *         The branch of which the revisions should be returned.
-     * @return An {@link Iterable} containing the revisions of the given branch.
+     *         The branch of which the revisions should be streamed.
+     * @param knownRevisions
+     *         Internal ids of revisions which were already imported, e.g. the previous heads of all branches.
+     * @param consumer
+     *         Consumer which receives the new revisions.
+     * @return The internal id of the latest revision in the given branch.
      */
     @NotNull
-    VcsRevision listLatestRevisionOnBranch(@NotNull Branch branch) throws DatacTechnicalException;
+    String streamNewRevisionsOnBranch(@NotNull Branch branch, @NotNull Collection<String> knownRevisions, @NotNull Consumer<VcsRevisionRecord> consumer) throws DatacTechnicalException;
 
     /**
      * Returns a {@link Collection} of {@link VcsRevision} with all revisions where the given path was modified. This
@@ -59,6 +80,54 @@ public interface VcsLocalRepository {
     @NotNull
     Collection<VcsRevision> listRevisionsWithChangesInPath(@NotNull String path) throws VcsRepositoryException;
 
+    /**
+     * Returns a {@link Collection} of {@link VcsRevision} with all revisions where at least one of the given paths was
+     * modified. This behaves exactly like {@link #listRevisionsWithChangesInPath(String)} but checks multiple paths at
+     * once. Each revision is returned only once.
+     *
+     * @param paths
+     *         The paths of files or directories relative to the root of the repository which should be checked for
+     *         modifying revisions.
+     * @return An {@link Iterable} of all revisions where at least one of the given paths was modified.
+     * @throws VcsRepositoryException
+     *         Will be thrown if the VCS repository encountered an internal error.
+     */
+    @NotNull
+    Collection<VcsRevision> listRevisionsWithChangesInPaths(@NotNull Collection<String> paths) throws VcsRepositoryException;
+
+    /**
+     * Incremental variant of {@link #listRevisionsWithChangesInPaths(Collection)}. Only revisions which are reachable
+     * from the current heads of the repository but not from any of the given walked heads are checked. The result
+     * contains the current heads, which can be passed as walked heads to the next query. Walked heads which don't
+     * exist in the repository anymore are ignored.
+     *
+     * @param paths
+     *         The paths of files or directories relative to the root of the repository which should be checked for
+     *         modifying revisions.
+     * @param walkedHeads
+     *         Internal ids of the heads returned by a previous query for the same paths. May be empty to walk the
+     *         whole history.
+     * @return The ids of all new revisions which modified at least one of the given paths and the current heads.
+     * @throws VcsRepositoryException
+     *         Will be thrown if the VCS repository encountered an internal error.
+     */
+    @NotNull
+    VcsPathHistory listPathHistory(@NotNull Collection<String> paths, @NotNull Collection<String> walkedHeads) throws VcsRepositoryException;
+
+    /**
+     * Opens a read-only snapshot of all files in the given revision. In contrast to {@link
+     * #checkoutRevision(VcsRevision)}, opening a snapshot doesn't modify the local repository and works also for
+     * repositories without a working tree. The returned snapshot must be closed after usage.
+     *
+     * @param revision
+     *         The revision whose files should be read.
+     * @return A snapshot of the files in the given revision.
+     * @throws VcsRepositoryException
+     *         Will be thrown if the VCS repository encountered an internal error.
+     */
+    @NotNull
+    VcsFileSnapshot openFileSnapshot(@NotNull VcsRevision revision) throws VcsRepositoryException;
+
     /**
      * Performs a checkout operation for the local repository. This will reset all files in the local repository to the
      * exact state represented by the given revision. This method may modify the file system and is explicitly not
@@ -90,4 +159,20 @@ public interface VcsLocalRepository {
      * @return True if the path exists in the given revision.
      */
     boolean existsPathInRevision(@NotNull VcsRevision revision, @NotNull String path) throws VcsRepositoryException;
+
+    /**
+     * Checks for each of the given revisions if the given path exists in it. This is the bulk variant of {@link
+     * #existsPathInRevision(VcsRevision, String)} and should be preferred when many revisions must be checked, since
+     * implementations may perform all checks in a single repository session without reading any file contents.
+     *
+     * @param revisions
+     *         The revisions which should be checked for the given path.
+     * @param path
+     *         The path to check.
+     * @return The internal ids of all given revisions in which the path exists.
+     * @throws VcsRepositoryException
+     *         Will be thrown if the VCS repository encountered an internal error.
+     */
+    @NotNull
+    Set<String> findRevisionsContainingPath(@NotNull Collection<? extends VcsRevision> revisions, @NotNull String path) throws VcsRepositoryException;
 }
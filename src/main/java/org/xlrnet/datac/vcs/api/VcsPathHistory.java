@@ -0,0 +1,19 @@
+package org.xlrnet.datac.vcs.api;
+
+import java.util.Set;
+
+import lombok.Value;
+
+/**
+ * Result of an incremental path history query. Contains the revisions which modified the queried paths and the heads
+ * from which the history was walked. The heads can be passed to the next query to walk only new revisions.
+ */
+@Value
+public class VcsPathHistory {
+
+    /** Internal ids of all revisions which modified at least one of the queried paths. */
+    Set<String> revisionIds;
+
+    /** Internal ids of all heads from which the history was walked. */
+    Set<String> heads;
+}
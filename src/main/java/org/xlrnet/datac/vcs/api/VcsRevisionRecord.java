@@ -0,0 +1,44 @@
+package org.xlrnet.datac.vcs.api;
+
+import java.time.Instant;
+import java.util.List;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.hibernate.validator.constraints.NotEmpty;
+
+import lombok.Value;
+
+/**
+ * Immutable flat representation of a single revision in a VCS. In contrast to {@link VcsRevision}, a record doesn't
+ * reference any parent objects but only their ids. This allows streaming large revision histories without keeping the
+ * whole revision graph in memory.
+ */
+@Value
+public class VcsRevisionRecord {
+
+    /** Internal id of the revision. */
+    @NotEmpty
+    @Size(max = 256)
+    String internalId;
+
+    /** Internal ids of all direct parents in the order given by the VCS. */
+    @NotNull
+    List<String> parentIds;
+
+    /** Time when the revision was originally created. */
+    @NotNull
+    Instant commitTime;
+
+    /** Name of the author who originally created the revision. */
+    @Size(max = 256)
+    String author;
+
+    /** Name of the user who submitted the revision to the VCS. */
+    @Size(max = 256)
+    String reviewer;
+
+    /** Message which describes the changes in the revision. */
+    String message;
+}
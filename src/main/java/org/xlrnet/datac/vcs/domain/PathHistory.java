@@ -0,0 +1,72 @@
+package org.xlrnet.datac.vcs.domain;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import org.xlrnet.datac.foundation.domain.AbstractEntity;
+import org.xlrnet.datac.foundation.domain.Project;
+
+/**
+ * Cached history of a single path in a project. The revisions which modified the path and the heads from which the
+ * history was walked are stored in separate tables, so that later queries only have to walk new revisions.
+ */
+@Entity
+@Table(name = "path_history")
+public class PathHistory extends AbstractEntity {
+
+    /**
+     * The project in which the history was walked.
+     */
+    @NotNull
+    @JoinColumn(name = "project_id")
+    @ManyToOne(optional = false)
+    private Project project;
+
+    /**
+     * Hash of the normalized path which identifies the history inside the project.
+     */
+    @NotNull
+    @Size(max = 64)
+    @Column(name = "path_hash")
+    private String pathHash;
+
+    /**
+     * The time when the history was updated the last time.
+     */
+    @Column(name = "updated")
+    private Instant updated;
+
+    public Project getProject() {
+        return project;
+    }
+
+    public PathHistory setProject(Project project) {
+        this.project = project;
+        return this;
+    }
+
+    public String getPathHash() {
+        return pathHash;
+    }
+
+    public PathHistory setPathHash(String pathHash) {
+        this.pathHash = pathHash;
+        return this;
+    }
+
+    public Instant getUpdated() {
+        return updated;
+    }
+
+    public PathHistory setUpdated(Instant updated) {
+        this.updated = updated;
+        return this;
+    }
+}
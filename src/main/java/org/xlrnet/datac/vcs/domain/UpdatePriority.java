@@ -0,0 +1,17 @@
+package org.xlrnet.datac.vcs.domain;
+
+/**
+ * Priority of a requested project update. Queued updates with a higher priority are started first.
+ */
+public enum UpdatePriority {
+
+    /**
+     * The update was requested by a user.
+     */
+    MANUAL,
+
+    /**
+     * The update was triggered by the automatic polling schedule.
+     */
+    SCHEDULED
+}
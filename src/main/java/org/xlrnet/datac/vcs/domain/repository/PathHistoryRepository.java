@@ -0,0 +1,44 @@
+package org.xlrnet.datac.vcs.domain.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.domain.PathHistory;
+
+/**
+ * Repository for accessing cached path histories.
+ */
+public interface PathHistoryRepository extends PagingAndSortingRepository<PathHistory, Long> {
+
+    @Transactional(readOnly = true)
+    PathHistory findByProjectAndPathHash(Project project, String pathHash);
+
+    @Modifying
+    @Transactional
+    int deleteByProjectAndUpdatedBefore(Project project, Instant updated);
+
+    @Transactional(readOnly = true)
+    @Query(nativeQuery = true, value = "SELECT REVISION_ID FROM PATH_HISTORY_REVISION WHERE HISTORY_ID = ?1")
+    List<String> findRevisionIds(long historyId);
+
+    @Transactional(readOnly = true)
+    @Query(nativeQuery = true, value = "SELECT HEAD_ID FROM PATH_HISTORY_HEAD WHERE HISTORY_ID = ?1")
+    List<String> findHeads(long historyId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO PATH_HISTORY_REVISION (HISTORY_ID, REVISION_ID) VALUES (?1, ?2)")
+    void insertRevisionId(long historyId, String revisionId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO PATH_HISTORY_HEAD (HISTORY_ID, HEAD_ID) VALUES (?1, ?2)")
+    void insertHead(long historyId, String headId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM PATH_HISTORY_HEAD WHERE HISTORY_ID = ?1")
+    void deleteHeads(long historyId);
+}
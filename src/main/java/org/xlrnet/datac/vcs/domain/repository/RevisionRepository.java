@@ -1,9 +1,11 @@
 package org.xlrnet.datac.vcs.domain.repository;
 
 import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,6 +29,9 @@ public interface RevisionRepository extends PagingAndSortingRepository<Revision,
     @Transactional(readOnly = true)
     long countRevisionByInternalIdAndProject(String revisionId, Project project);
 
+    @Transactional(readOnly = true)
+    List<Revision> findAllByProjectAndInternalIdIn(Project project, Collection<String> revisionIds);
+
     @Transactional(readOnly = true)
     @Query(value = "SELECT P.INTERNAL_ID AS PARENT_ID, C.INTERNAL_ID AS CHILD_ID FROM REVISION P JOIN REVISION_GRAPH G on P.ID = G.PARENT_REVISION_ID JOIN REVISION C ON G.REVISION_ID = C.ID WHERE P.PROJECT_ID = ?1", nativeQuery = true)
     List<Object[]> findAllParentChildRelationsInProject(long projectId);
@@ -53,4 +58,19 @@ public interface RevisionRepository extends PagingAndSortingRepository<Revision,
     @Transactional(readOnly = true)
     @Query(nativeQuery = true, value = "SELECT DISTINCT R.* FROM REVISION R JOIN CHANGESET C ON R.ID = C.REVISION_ID AND R.PROJECT_ID = ?1")
     List<Revision> findAllWithModifyingDatabaseChangesInProject(long projectId);
+
+    /**
+     * Returns the distinct paths of all change log files which were read while indexing revisions of a project.
+     */
+    @Transactional(readOnly = true)
+    @Query(nativeQuery = true, value = "SELECT DISTINCT F.PATH FROM REVISION_CHANGELOG_FILE F JOIN REVISION R ON F.REVISION_ID = R.ID WHERE R.PROJECT_ID = ?1")
+    List<String> findAllChangeLogFilesInProject(long projectId);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "INSERT INTO REVISION_CHANGELOG_FILE (REVISION_ID, PATH) VALUES (?1, ?2)")
+    void insertChangeLogFile(long revisionId, String path);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM REVISION_CHANGELOG_FILE WHERE REVISION_ID = ?1")
+    void deleteChangeLogFilesInRevision(long revisionId);
 }
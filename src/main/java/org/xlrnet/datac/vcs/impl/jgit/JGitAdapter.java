@@ -1,10 +1,22 @@
 package org.xlrnet.datac.vcs.impl.jgit;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.FileUtils;
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.xlrnet.datac.commons.exception.VcsRepositoryException;
 import org.xlrnet.datac.foundation.services.FileService;
@@ -16,11 +28,43 @@ import org.xlrnet.datac.vcs.api.*;
 @Component
 public class JGitAdapter implements VcsAdapter {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(JGitAdapter.class);
+
+    /** Name of the git directory inside a repository with working tree. */
+    private static final String GIT_DIRECTORY = Constants.DOT_GIT;
+
+    /** Suffix of the temporary directory which is used while migrating a repository to a bare repository. */
+    private static final String MIGRATION_SUFFIX = ".migrating";
+
     private final FileService fileService;
 
+    /**
+     * Pool of shared repository handles.
+     */
+    private final JGitRepositoryPool repositoryPool;
+
+    /**
+     * Fetch all branches of a project at once instead of checking out and pulling each branch.
+     */
+    private final boolean fetchAllBranches;
+
+    /**
+     * Use bare repositories without a working tree. Existing repositories will be migrated when they are opened.
+     */
+    private final boolean bareRepositories;
+
+    /**
+     * Shared cache of advertised remote refs.
+     */
+    private final JGitRemoteRefCache refCache;
+
     @Autowired
-    public JGitAdapter(FileService fileService) {
+    public JGitAdapter(FileService fileService, JGitRepositoryPool repositoryPool, JGitRemoteRefCache refCache, @Value("${datac.git.fetchAllBranches:true}") boolean fetchAllBranches, @Value("${datac.git.bareRepositories:false}") boolean bareRepositories) {
         this.fileService = fileService;
+        this.repositoryPool = repositoryPool;
+        this.refCache = refCache;
+        this.fetchAllBranches = fetchAllBranches;
+        this.bareRepositories = bareRepositories;
     }
 
     @NotNull
@@ -33,14 +77,88 @@ public class JGitAdapter implements VcsAdapter {
     @Override
     public VcsRemoteRepositoryConnection connectRemote(@NotNull VcsRemoteCredentials credentials) throws VcsConnectionException {
         UsernamePasswordCredentialsProvider provider = buildCredentialsProvider(credentials);
-        return new JGitRemoteRepositoryConnection(credentials.getUrl(), provider);
+        return new JGitRemoteRepositoryConnection(credentials.getUrl(), provider, bareRepositories, refCache, buildRefCacheKey(credentials));
     }
 
     @NotNull
     @Override
     public VcsLocalRepository openLocalRepository(@NotNull Path repositoryPath, @NotNull VcsRemoteCredentials credentials) throws VcsRepositoryException {
         UsernamePasswordCredentialsProvider provider = buildCredentialsProvider(credentials);
-        return new JGitLocalRepository(repositoryPath, provider, credentials.getUrl(), fileService);
+        if (bareRepositories && isMigrationRequired(repositoryPath)) {
+            migrateToBareRepository(repositoryPath);
+        }
+        return new JGitLocalRepository(repositoryPath, provider, credentials.getUrl(), fileService, repositoryPool, fetchAllBranches, bareRepositories, refCache, buildRefCacheKey(credentials));
+    }
+
+    /**
+     * Converts an existing repository with working tree into a bare repository. The migration only consists of atomic
+     * renames, so objects and refs are preserved and no revisions have to be fetched again:
+     * <ol>
+     * <li>The repository is renamed to a temporary directory next to it.</li>
+     * <li>The git directory inside the temporary directory is renamed to the original repository path.</li>
+     * <li>The repository is marked as bare and the temporary directory with the old working tree is deleted.</li>
+     * </ol>
+     * If the process is interrupted at any point, the migration will be resumed the next time the repository is
+     * opened. The repository is never left in a state where its git directory is lost.
+     *
+     * @param repositoryPath
+     *         The path of the repository with working tree.
+     */
+    synchronized void migrateToBareRepository(@NotNull Path repositoryPath) throws VcsRepositoryException {
+        Path migrationPath = getMigrationPath(repositoryPath);
+        boolean resumed = Files.isDirectory(migrationPath);
+        if (!resumed && !Files.isDirectory(repositoryPath.resolve(GIT_DIRECTORY))) {
+            // Another thread migrated the repository already
+            return;
+        }
+        if (resumed && Files.isDirectory(repositoryPath.resolve(GIT_DIRECTORY))) {
+            throw new VcsRepositoryException("Can't migrate repository " + repositoryPath + " to a bare repository: " + migrationPath + " already exists");
+        }
+        LOGGER.info("{} migration of repository {} to a bare repository", resumed ? "Resuming" : "Starting", repositoryPath);
+        try {
+            repositoryPool.invalidate(repositoryPath);
+            if (!resumed) {
+                Files.move(repositoryPath, migrationPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Path movedGitDirectory = migrationPath.resolve(GIT_DIRECTORY);
+            if (Files.notExists(repositoryPath) && Files.isDirectory(movedGitDirectory)) {
+                Files.move(movedGitDirectory, repositoryPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (!Files.isDirectory(repositoryPath)) {
+                throw new VcsRepositoryException("Migration of repository " + repositoryPath + " failed: git directory is missing in " + migrationPath);
+            }
+            // The index belongs to the old working tree
+            Files.deleteIfExists(repositoryPath.resolve("index"));
+
+            FileBasedConfig config = new FileBasedConfig(repositoryPath.resolve(Constants.CONFIG).toFile(), FS.DETECTED);
+            config.load();
+            config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_BARE, true);
+            config.save();
+
+            FileUtils.delete(migrationPath.toFile(), FileUtils.RECURSIVE);
+            LOGGER.info("Finished migration of repository {} to a bare repository", repositoryPath);
+        } catch (IOException | ConfigInvalidException e) {
+            LOGGER.error("Migrating repository {} to a bare repository failed", repositoryPath, e);
+            throw new VcsRepositoryException(e);
+        }
+    }
+
+    /**
+     * Checks if the repository at the given path must be migrated to a bare repository. This is the case if the
+     * repository still has a working tree or if a previous migration was interrupted.
+     */
+    private boolean isMigrationRequired(@NotNull Path repositoryPath) {
+        return Files.isDirectory(repositoryPath.resolve(GIT_DIRECTORY)) || Files.isDirectory(getMigrationPath(repositoryPath));
+    }
+
+    @NotNull
+    private Path getMigrationPath(@NotNull Path repositoryPath) {
+        return repositoryPath.resolveSibling(repositoryPath.getFileName() + MIGRATION_SUFFIX);
+    }
+
+    @NotNull
+    private String buildRefCacheKey(@NotNull VcsRemoteCredentials credentials) {
+        return JGitRemoteRefCache.buildKey(credentials.getUrl(), credentials.getUsername(), credentials.getPassword());
     }
 
     @NotNull
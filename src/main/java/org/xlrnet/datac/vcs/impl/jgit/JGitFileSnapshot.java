@@ -0,0 +1,133 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.api.VcsRevision;
+
+/**
+ * Implementation of {@link VcsFileSnapshot} which reads all files directly from the object database of a git
+ * repository. The snapshot keeps its repository session open until it is closed. Closed snapshots can't be read
+ * anymore.
+ */
+public class JGitFileSnapshot implements VcsFileSnapshot {
+
+    /** The revision of which the files are read. */
+    private final VcsRevision revision;
+
+    /** The session which is used for reading objects. */
+    private final JGitRepositorySession session;
+
+    /** The root tree of the revision. */
+    private final RevTree tree;
+
+    /** True if the snapshot was closed. */
+    private volatile boolean closed;
+
+    JGitFileSnapshot(VcsRevision revision, JGitRepositorySession session, RevTree tree) {
+        this.revision = revision;
+        this.session = session;
+        this.tree = tree;
+    }
+
+    @NotNull
+    @Override
+    public VcsRevision getRevision() {
+        return revision;
+    }
+
+    @Nullable
+    @Override
+    public InputStream openFile(@NotNull String path) throws IOException {
+        ObjectReader reader = getReader();
+        try (TreeWalk treeWalk = TreeWalk.forPath(reader, cleanPath(path), tree)) {
+            if (treeWalk == null || (treeWalk.getRawMode(0) & FileMode.TYPE_MASK) != FileMode.TYPE_FILE) {
+                return null;
+            }
+            return reader.open(treeWalk.getObjectId(0), Constants.OBJ_BLOB).openStream();
+        }
+    }
+
+    @Override
+    public boolean isDirectory(@NotNull String path) throws IOException {
+        String cleanedPath = cleanPath(path);
+        if (cleanedPath.isEmpty()) {
+            return true;
+        }
+        try (TreeWalk treeWalk = TreeWalk.forPath(getReader(), cleanedPath, tree)) {
+            return treeWalk != null && treeWalk.isSubtree();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Set<String> list(@NotNull String directory, boolean includeFiles, boolean includeDirectories, boolean recursive) throws IOException {
+        String cleanedPath = cleanPath(directory);
+        if (!isDirectory(cleanedPath)) {
+            return null;
+        }
+        Set<String> entries = new LinkedHashSet<>();
+        try (TreeWalk treeWalk = new TreeWalk(getReader())) {
+            treeWalk.addTree(tree);
+            treeWalk.setRecursive(false);
+            if (!cleanedPath.isEmpty()) {
+                treeWalk.setFilter(PathFilter.create(cleanedPath));
+            }
+            while (treeWalk.next()) {
+                String entryPath = treeWalk.getPathString();
+                boolean insideDirectory = cleanedPath.isEmpty() || entryPath.startsWith(cleanedPath + "/");
+                if (!insideDirectory) {
+                    // The filter also matches the listed directory and its parents, which must be entered
+                    if (treeWalk.isSubtree()) {
+                        treeWalk.enterSubtree();
+                    }
+                    continue;
+                }
+                if (treeWalk.isSubtree()) {
+                    if (includeDirectories) {
+                        entries.add(entryPath);
+                    }
+                    if (recursive) {
+                        treeWalk.enterSubtree();
+                    }
+                } else if (includeFiles) {
+                    entries.add(entryPath);
+                }
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            session.close();
+        }
+    }
+
+    @NotNull
+    private ObjectReader getReader() throws IOException {
+        if (closed) {
+            throw new IOException("Snapshot of revision " + revision.getInternalId() + " was already closed");
+        }
+        return session.getReader();
+    }
+
+    @NotNull
+    private String cleanPath(@NotNull String path) {
+        return StringUtils.removeEnd(StringUtils.removeStart(path.replace("\\", "/"), "/"), "/");
+    }
+}
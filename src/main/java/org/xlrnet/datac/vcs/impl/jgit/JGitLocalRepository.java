@@ -3,38 +3,54 @@ package org.xlrnet.datac.vcs.impl.jgit;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.JGitInternalException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xlrnet.datac.commons.exception.VcsRepositoryException;
 import org.xlrnet.datac.foundation.services.FileService;
 import org.xlrnet.datac.vcs.api.VcsConnectionException;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
 import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.api.VcsPathHistory;
 import org.xlrnet.datac.vcs.api.VcsRemoteRepositoryConnection;
 import org.xlrnet.datac.vcs.api.VcsRevision;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
 import org.xlrnet.datac.vcs.domain.Branch;
 
 /**
@@ -46,6 +62,11 @@ public class JGitLocalRepository implements VcsLocalRepository {
 
     private static final String REMOTE_PREFIX = "origin/";
 
+    /**
+     * Number of walked commits whose bodies are loaded and emitted as records at once.
+     */
+    private static final int RECORD_BATCH_SIZE = 500;
+
     private static Logger LOGGER = LoggerFactory.getLogger(JGitLocalRepository.class);
 
     /**
@@ -68,25 +89,61 @@ public class JGitLocalRepository implements VcsLocalRepository {
      */
     private final FileService fileService;
 
-    JGitLocalRepository(Path repositoryPath, CredentialsProvider credentialsProvider, String remoteRepositoryUrl, FileService fileService) {
+    /**
+     * Pool of shared repository handles.
+     */
+    private final JGitRepositoryPool repositoryPool;
+
+    /**
+     * Fetch all branches at once into remote-tracking refs instead of checking out and pulling each branch.
+     */
+    private final boolean fetchAllBranches;
+
+    /**
+     * Initialize new repositories as bare repositories without a working tree.
+     */
+    private final boolean bareRepositories;
+
+    /**
+     * Shared cache of advertised remote refs.
+     */
+    private final JGitRemoteRefCache refCache;
+
+    /**
+     * Key of the remote in the ref cache.
+     */
+    private final String refCacheKey;
+
+    JGitLocalRepository(Path repositoryPath, CredentialsProvider credentialsProvider, String remoteRepositoryUrl, FileService fileService, JGitRepositoryPool repositoryPool, boolean fetchAllBranches, boolean bareRepositories, JGitRemoteRefCache refCache, String refCacheKey) {
         this.repositoryPath = repositoryPath;
         this.credentialsProvider = credentialsProvider;
         this.remoteRepositoryUrl = remoteRepositoryUrl;
         this.fileService = fileService;
+        this.repositoryPool = repositoryPool;
+        this.fetchAllBranches = fetchAllBranches;
+        this.bareRepositories = bareRepositories;
+        this.refCache = refCache;
+        this.refCacheKey = refCacheKey;
     }
 
     @NotNull
     @Override
     public VcsRemoteRepositoryConnection connectToRemote() throws VcsConnectionException {
-        return new JGitRemoteRepositoryConnection(remoteRepositoryUrl, credentialsProvider);
+        return new JGitRemoteRepositoryConnection(remoteRepositoryUrl, credentialsProvider, bareRepositories, refCache, refCacheKey);
     }
 
     @Override
     public synchronized void updateRevisionsFromRemote(@NotNull Branch branch) throws VcsConnectionException, VcsRepositoryException {
+        if (isBare()) {
+            // Bare repositories can't be pulled, since there is no working tree to merge into
+            fetchBranches(Collections.singletonList(branch));
+            return;
+        }
         String branchName = StringUtils.removeStartIgnoreCase(branch.getName(), "refs/heads/");
         LOGGER.debug("Fetching latest revisions from remote {} on branch {}", remoteRepositoryUrl, branchName);
         cleanupIfNecessary();
-        try (Git git = openRepository()) {
+        try (JGitRepositorySession session = openSession()) {
+            Git git = session.getGit();
             if (!isBranchInRepository(git, branch.getName())) {
                 git.checkout().setCreateBranch(true).setName(branchName).setStartPoint(REMOTE_PREFIX + branchName)
                         .setUpstreamMode(CreateBranchCommand.SetupUpstreamMode.TRACK).call();
@@ -94,6 +151,7 @@ public class JGitLocalRepository implements VcsLocalRepository {
                 git.checkout().setName(branchName).call();
             }
             git.pull().setCredentialsProvider(credentialsProvider).setRemoteBranchName(branchName).setStrategy(MergeStrategy.THEIRS).call();
+            refCache.invalidate(refCacheKey);
 
             LOGGER.debug("Finished checking out from remote {} on branch {}", remoteRepositoryUrl, branchName);
         } catch (JGitInternalException | GitAPIException e) {
@@ -105,6 +163,59 @@ public class JGitLocalRepository implements VcsLocalRepository {
         }
     }
 
+    @Override
+    public synchronized void updateRevisionsFromRemote(@NotNull Collection<Branch> branches) throws VcsConnectionException, VcsRepositoryException {
+        if (!fetchAllBranches && !isBare()) {
+            for (Branch branch : branches) {
+                updateRevisionsFromRemote(branch);
+            }
+            return;
+        }
+        fetchBranches(branches);
+    }
+
+    private void fetchBranches(@NotNull Collection<Branch> branches) throws VcsConnectionException, VcsRepositoryException {
+        if (branches.isEmpty()) {
+            return;
+        }
+
+        List<RefSpec> refSpecs = new ArrayList<>(branches.size());
+        for (Branch branch : branches) {
+            String branchName = StringUtils.removeStartIgnoreCase(branch.getName(), Constants.R_HEADS);
+            refSpecs.add(new RefSpec("+" + Constants.R_HEADS + branchName + ":" + Constants.R_REMOTES + REMOTE_PREFIX + branchName));
+        }
+        LOGGER.debug("Fetching latest revisions of {} branches from remote {}", refSpecs.size(), remoteRepositoryUrl);
+        try (JGitRepositorySession session = openSession()) {
+            FetchResult fetchResult = session.getGit().fetch()
+                    .setCredentialsProvider(credentialsProvider)
+                    .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                    .setRefSpecs(refSpecs)
+                    .call();
+            // The fetch has seen the latest advertised refs, so cached refs might be outdated now
+            refCache.invalidate(refCacheKey);
+            LOGGER.debug("Finished fetching from remote {} - {} refs were updated", remoteRepositoryUrl, fetchResult.getTrackingRefUpdates().size());
+        } catch (JGitInternalException | GitAPIException e) {
+            LOGGER.error("Unexpected exception while communicating with git", e);
+            throw new VcsConnectionException(e);
+        } catch (IOException e) {
+            LOGGER.error("Unexpected IOException", e);
+            throw new VcsRepositoryException(e);
+        }
+    }
+
+    /**
+     * Resolves the latest commit of the given branch. The remote-tracking ref is preferred, since it is updated by
+     * both fetching and pulling, while the local branch is only updated when pulling.
+     */
+    private ObjectId resolveBranchHead(Repository repository, Branch branch) throws IOException {
+        String branchName = StringUtils.removeStartIgnoreCase(branch.getName(), Constants.R_HEADS);
+        Ref trackingRef = repository.exactRef(Constants.R_REMOTES + REMOTE_PREFIX + branchName);
+        if (trackingRef != null && trackingRef.getObjectId() != null) {
+            return trackingRef.getObjectId();
+        }
+        return repository.resolve(branch.getName());
+    }
+
     private boolean isBranchInRepository(Git git, String branchName) throws GitAPIException {
         List<Ref> call = git.branchList().call();
         return call.stream().anyMatch(ref -> StringUtils.equals(branchName, ref.getName()));
@@ -112,45 +223,98 @@ public class JGitLocalRepository implements VcsLocalRepository {
 
     @NotNull
     @Override
-    public VcsRevision listLatestRevisionOnBranch(@NotNull Branch branch) throws VcsConnectionException, VcsRepositoryException {
-        LOGGER.debug("Reading revisions on branch {} in repository {}", branch.getName(), repositoryPath.toString());
-        try (Git git = openRepository()) {
-            Repository repository = git.getRepository();
-            Iterable<RevCommit> call = git.log()
-                    .add(repository.resolve(branch.getName()))
-                    .call();
-
-            Iterator<RevCommit> iterator = call.iterator();
-            RevCommit next = iterator.next();
-            CommitToRevisionWrapper commitToRevisionWrapper = new CommitToRevisionWrapper(next);
+    public String streamNewRevisionsOnBranch(@NotNull Branch branch, @NotNull Collection<String> knownRevisions, @NotNull Consumer<VcsRevisionRecord> consumer) throws VcsRepositoryException {
+        LOGGER.debug("Streaming new revisions on branch {} in repository {} starting from {} known revisions", branch.getName(), repositoryPath, knownRevisions.size());
+        try (JGitRepositorySession session = openSession()) {
+            ObjectId headId = resolveBranchHead(session.getRepository(), branch);
+            if (headId == null) {
+                throw new VcsRepositoryException("Unable to resolve branch " + branch.getName());
+            }
+            RevWalk walk = session.getRevWalk();
+            // The topological sort buffers all new commits before emitting the first one - keep only their headers
+            walk.setRetainBody(false);
+            // Parents must be emitted before their children
+            walk.sort(RevSort.TOPO);
+            walk.sort(RevSort.REVERSE, true);
+            walk.markStart(walk.parseCommit(headId));
+            for (String knownRevision : knownRevisions) {
+                if (!ObjectId.isId(knownRevision)) {
+                    continue;
+                }
+                try {
+                    // Everything reachable from a known revision was already imported and won't be walked at all
+                    walk.markUninteresting(walk.parseCommit(ObjectId.fromString(knownRevision)));
+                } catch (MissingObjectException | IncorrectObjectTypeException e) {     // NOSONAR: Unknown revisions are ignored
+                    LOGGER.trace("Ignoring unknown revision {}", knownRevision);
+                }
+            }
 
-            do {
-                // Just walk over all commits to initialize them correctly...
-                LOGGER.trace("ID: {}, Time: {}, Parents: {}, Message: {}", next.getId(), next.getCommitTime(), next.getParentCount(), next.getShortMessage().trim());
-                next = iterator.hasNext() ? iterator.next() : null;
-            } while (next != null);
+            int newRevisions = 0;
+            List<RevCommit> batch = new ArrayList<>(RECORD_BATCH_SIZE);
+            for (RevCommit revCommit : walk) {
+                batch.add(revCommit);
+                if (batch.size() >= RECORD_BATCH_SIZE) {
+                    newRevisions += emitRevisionRecords(walk, batch, consumer);
+                }
+            }
+            newRevisions += emitRevisionRecords(walk, batch, consumer);
 
-            LOGGER.debug("Finished reading revisions on branch {} in repository {}", branch.getName(), repositoryPath.toString());
-            return commitToRevisionWrapper;
-        } catch (JGitInternalException | GitAPIException e) {
+            LOGGER.debug("Streamed {} new revisions on branch {} in repository {}", newRevisions, branch.getName(), repositoryPath);
+            return headId.getName();
+        } catch (JGitInternalException e) {
             LOGGER.error("Unexpected exception while communicating with git", e);
-            throw new VcsConnectionException(e);
+            throw new VcsRepositoryException(e);
         } catch (IOException e) {
             LOGGER.error("Unexpected IOException", e);
             throw new VcsRepositoryException(e);
         }
     }
 
+    /**
+     * Loads the bodies of the given commits, emits their records in the given order and clears the batch. The bodies
+     * are disposed right after emitting, since the flat records contain everything necessary.
+     */
+    private int emitRevisionRecords(@NotNull RevWalk walk, @NotNull List<RevCommit> batch, @NotNull Consumer<VcsRevisionRecord> consumer) throws IOException {
+        for (RevCommit revCommit : batch) {
+            walk.parseBody(revCommit);
+            consumer.accept(toRevisionRecord(revCommit));
+            revCommit.disposeBody();
+        }
+        int emitted = batch.size();
+        batch.clear();
+        return emitted;
+    }
+
+    @NotNull
+    private VcsRevisionRecord toRevisionRecord(@NotNull RevCommit revCommit) {
+        List<String> parentIds = new ArrayList<>(revCommit.getParentCount());
+        for (int i = 0; i < revCommit.getParentCount(); i++) {
+            parentIds.add(revCommit.getParent(i).getName());
+        }
+        return new VcsRevisionRecord(revCommit.getName(), Collections.unmodifiableList(parentIds),
+                Instant.ofEpochSecond(revCommit.getCommitTime()), revCommit.getAuthorIdent().toExternalString(),
+                revCommit.getCommitterIdent().toExternalString(), revCommit.getFullMessage());
+    }
+
     @NotNull
     @Override
     public Collection<VcsRevision> listRevisionsWithChangesInPath(@NotNull String path) throws VcsRepositoryException {
-        String cleanedPath = StringUtils.removeStart(path.replace("\\", "/"), "/");
-        LOGGER.debug("Listing affected revisions for path {} in repository {}", cleanedPath, repositoryPath.toString());
-        try (Git git = openRepository()) {
-            Iterable<RevCommit> call = git.log()
-                    .all()
-                    .addPath(cleanedPath)
-                    .call();
+        return listRevisionsWithChangesInPaths(Collections.singletonList(path));
+    }
+
+    @NotNull
+    @Override
+    public Collection<VcsRevision> listRevisionsWithChangesInPaths(@NotNull Collection<String> paths) throws VcsRepositoryException {
+        List<String> cleanedPaths = paths.stream()
+                .map(path -> StringUtils.removeStart(path.replace("\\", "/"), "/"))
+                .collect(Collectors.toList());
+        LOGGER.debug("Listing affected revisions for paths {} in repository {}", cleanedPaths, repositoryPath.toString());
+        try (JGitRepositorySession session = openSession()) {
+            Git git = session.getGit();
+            LogCommand logCommand = git.log().all();
+            // Multiple paths are combined with OR, i.e. a commit is listed if it touches at least one of them
+            cleanedPaths.forEach(logCommand::addPath);
+            Iterable<RevCommit> call = logCommand.call();
 
             List<VcsRevision> affectedRevisions = new ArrayList<>();
 
@@ -159,7 +323,7 @@ public class JGitLocalRepository implements VcsLocalRepository {
                 LOGGER.trace("ID: {}, Time: {}, Parents: {}, Message: {}", revCommit.getId(), revCommit.getCommitTime(), revCommit.getParentCount(), revCommit.getShortMessage().trim());
             }
 
-            LOGGER.debug("Found {} affected revisions for path {} in repository {}", affectedRevisions.size(), cleanedPath, repositoryPath.toString());
+            LOGGER.debug("Found {} affected revisions for paths {} in repository {}", affectedRevisions.size(), cleanedPaths, repositoryPath.toString());
             return affectedRevisions;
         } catch (JGitInternalException | GitAPIException e) {
             LOGGER.error("Unexpected exception while communicating with git", e);
@@ -170,12 +334,89 @@ public class JGitLocalRepository implements VcsLocalRepository {
         }
     }
 
+    @NotNull
+    @Override
+    public VcsPathHistory listPathHistory(@NotNull Collection<String> paths, @NotNull Collection<String> walkedHeads) throws VcsRepositoryException {
+        List<String> cleanedPaths = paths.stream()
+                .map(path -> StringUtils.removeStart(path.replace("\\", "/"), "/"))
+                .collect(Collectors.toList());
+        LOGGER.debug("Listing new affected revisions for paths {} in repository {} since {} walked heads", cleanedPaths, repositoryPath, walkedHeads.size());
+        try (JGitRepositorySession session = openSession()) {
+            RevWalk walk = session.getRevWalk();
+            walk.setTreeFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(cleanedPaths), TreeFilter.ANY_DIFF));
+
+            // Start at the tips of all refs like "git log --all"
+            Set<String> heads = new HashSet<>();
+            for (Ref ref : session.getRepository().getRefDatabase().getRefs(RefDatabase.ALL).values()) {
+                Ref peeledRef = ref.isPeeled() ? ref : session.getRepository().peel(ref);
+                ObjectId objectId = peeledRef.getPeeledObjectId() != null ? peeledRef.getPeeledObjectId() : peeledRef.getObjectId();
+                if (objectId == null) {
+                    continue;
+                }
+                try {
+                    RevCommit head = walk.parseCommit(objectId);
+                    walk.markStart(head);
+                    heads.add(head.getName());
+                } catch (MissingObjectException | IncorrectObjectTypeException e) {     // NOSONAR: Refs to non-commits are ignored
+                    LOGGER.trace("Ignoring ref {} which doesn't point to a commit", ref.getName());
+                }
+            }
+            for (String walkedHead : walkedHeads) {
+                if (!ObjectId.isId(walkedHead)) {
+                    continue;
+                }
+                try {
+                    walk.markUninteresting(walk.parseCommit(ObjectId.fromString(walkedHead)));
+                } catch (MissingObjectException | IncorrectObjectTypeException e) {     // NOSONAR: Unknown heads are ignored
+                    LOGGER.trace("Ignoring unknown walked head {}", walkedHead);
+                }
+            }
+
+            Set<String> revisionIds = new HashSet<>();
+            for (RevCommit revCommit : walk) {
+                revisionIds.add(revCommit.getName());
+            }
+            LOGGER.debug("Found {} new affected revisions for paths {} in repository {}", revisionIds.size(), cleanedPaths, repositoryPath);
+            return new VcsPathHistory(revisionIds, heads);
+        } catch (JGitInternalException | IllegalArgumentException e) {
+            LOGGER.error("Unexpected exception while communicating with git", e);
+            throw new VcsRepositoryException(e);
+        } catch (IOException e) {
+            LOGGER.error("Unexpected IOException", e);
+            throw new VcsRepositoryException(e);
+        }
+    }
+
+    @NotNull
+    @Override
+    public VcsFileSnapshot openFileSnapshot(@NotNull VcsRevision revision) throws VcsRepositoryException {
+        LOGGER.trace("Opening file snapshot of revision {} in repository {}", revision.getInternalId(), repositoryPath);
+        JGitRepositorySession session = null;
+        try {
+            session = openSession();
+            RevCommit commit = session.getRevWalk().parseCommit(ObjectId.fromString(revision.getInternalId()));
+            return new JGitFileSnapshot(revision, session, commit.getTree());
+        } catch (JGitInternalException | IllegalArgumentException e) {
+            closeQuietly(session);
+            LOGGER.error("Unexpected exception while communicating with git", e);
+            throw new VcsRepositoryException(e);
+        } catch (IOException e) {
+            closeQuietly(session);
+            LOGGER.error("Unexpected IOException", e);
+            throw new VcsRepositoryException(e);
+        }
+    }
+
     @Override
     public void checkoutRevision(@NotNull VcsRevision revision) throws VcsRepositoryException {
         String internalId = revision.getInternalId();
         LOGGER.debug("Checking out revision {} in repository {}", internalId, repositoryPath);
+        if (isBare()) {
+            throw new VcsRepositoryException("Repository " + repositoryPath + " is bare and can't be checked out");
+        }
 
-        try (Git git = openRepository()) {
+        try (JGitRepositorySession session = openSession()) {
+            Git git = session.getGit();
             git.checkout()
                     .setForce(true)
                     .setName(internalId)
@@ -193,7 +434,12 @@ public class JGitLocalRepository implements VcsLocalRepository {
 
     @Override
     public void cleanupIfNecessary() throws VcsRepositoryException {
-        try (Git git = openRepository()) {
+        try (JGitRepositorySession session = openSession()) {
+            if (session.getRepository().isBare()) {
+                // Nothing to clean without a working tree
+                return;
+            }
+            Git git = session.getGit();
             if (isRepositoryLocked()) {
                 unlockRepository();
             }
@@ -219,10 +465,30 @@ public class JGitLocalRepository implements VcsLocalRepository {
 
     @Override
     public boolean existsPathInRevision(@NotNull VcsRevision revision, @NotNull String path) throws VcsRepositoryException {
+        return !findRevisionsContainingPath(Collections.singletonList(revision), path).isEmpty();
+    }
+
+    @NotNull
+    @Override
+    public Set<String> findRevisionsContainingPath(@NotNull Collection<? extends VcsRevision> revisions, @NotNull String path) throws VcsRepositoryException {
         String cleanedPath = StringUtils.removeStart(path.replace("\\", "/"), "/");
-        try {
-            return fetchBlob(revision.getInternalId(), cleanedPath) != null;
-        } catch (JGitInternalException e) {
+        LOGGER.debug("Checking {} revisions for path {} in repository {}", revisions.size(), cleanedPath, repositoryPath);
+        Set<String> matchingRevisions = new HashSet<>();
+        try (JGitRepositorySession session = openSession()) {
+            ObjectReader reader = session.getReader();
+            RevWalk walk = session.getRevWalk();
+            for (VcsRevision revision : revisions) {
+                RevCommit commit = walk.parseCommit(ObjectId.fromString(revision.getInternalId()));
+                // Only the tree entry is looked up - the blob itself is never loaded
+                try (TreeWalk treeWalk = TreeWalk.forPath(reader, cleanedPath, commit.getTree())) {
+                    if (treeWalk != null) {
+                        matchingRevisions.add(revision.getInternalId());
+                    }
+                }
+            }
+            LOGGER.debug("Found path {} in {} of {} revisions in repository {}", cleanedPath, matchingRevisions.size(), revisions.size(), repositoryPath);
+            return matchingRevisions;
+        } catch (JGitInternalException | IllegalArgumentException e) {
             LOGGER.error("Unexpected exception while communicating with git", e);
             throw new VcsRepositoryException(e);
         } catch (IOException e) {
@@ -237,8 +503,23 @@ public class JGitLocalRepository implements VcsLocalRepository {
     }
 
     @NotNull
-    private Git openRepository() throws IOException {
-        return Git.open(repositoryPath.toFile());
+    private JGitRepositorySession openSession() throws IOException {
+        return repositoryPool.openSession(repositoryPath);
+    }
+
+    private boolean isBare() throws VcsRepositoryException {
+        try (JGitRepositorySession session = openSession()) {
+            return session.getRepository().isBare();
+        } catch (IOException e) {
+            LOGGER.error("Unexpected IOException", e);
+            throw new VcsRepositoryException(e);
+        }
+    }
+
+    private void closeQuietly(JGitRepositorySession session) {
+        if (session != null) {
+            session.close();
+        }
     }
 
     private boolean isRepositoryLocked() {
@@ -248,37 +529,4 @@ public class JGitLocalRepository implements VcsLocalRepository {
     private Path getLockFilePath() {
         return repositoryPath.resolve(".git").resolve("index.lock");
     }
-
-    /**
-     * Fetches a file's content in a specific revision from a given path.
-     */
-    private byte[] fetchBlob(String revSpec, String path) throws MissingObjectException, IncorrectObjectTypeException,
-            IOException {
-        try (Git git = openRepository()) {
-            Repository repo = git.getRepository();
-
-            // Resolve the revision specification
-            final ObjectId id = repo.resolve(revSpec);
-
-            // Makes it simpler to release the allocated resources in one go
-
-            try (ObjectReader reader = repo.newObjectReader()) {
-                // Get the commit object for that revision
-                RevWalk walk = new RevWalk(reader);
-                RevCommit commit = walk.parseCommit(id);
-
-                // Get the revision's file tree
-                RevTree tree = commit.getTree();
-                // .. and narrow it down to the single file's path
-                TreeWalk treewalk = TreeWalk.forPath(reader, path, tree);
-
-                if (treewalk != null) {
-                    // use the blob id to read the file's data
-                    return reader.open(treewalk.getObjectId(0)).getBytes();
-                } else {
-                    return null;
-                }
-            }
-        }
-    }
 }
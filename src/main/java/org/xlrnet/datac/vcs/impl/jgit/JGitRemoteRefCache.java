@@ -0,0 +1,227 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.InvalidRemoteException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.errors.NotSupportedException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FetchConnection;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.URIish;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Short-lived cache of the branches which are advertised by remote git repositories. Connection checks, branch
+ * listings in the UI and branch updates during project updates usually query the same remote within a few seconds,
+ * so the advertised refs are cached per remote URL and credentials. The transport of each remote is kept open while
+ * it is used, so that refreshing the cache doesn't have to set up a new transport (e.g. a new SSH session).
+ */
+@Component
+public class JGitRemoteRefCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JGitRemoteRefCache.class);
+
+    /**
+     * Time in milliseconds after which unused transports will be closed.
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Interval in milliseconds in which idle transports are evicted.
+     */
+    private static final long EVICTION_INTERVAL = 60 * 1000L;
+
+    /**
+     * Time in milliseconds for which advertised refs are reused.
+     */
+    private final long timeToLive;
+
+    /**
+     * Cached entries by their key.
+     */
+    private final Map<String, CachedRemote> cachedRemotes = new ConcurrentHashMap<>();
+
+    public JGitRemoteRefCache(@Value("${datac.git.remoteRefCacheTtl:30}") long timeToLiveSeconds) {
+        this.timeToLive = TimeUnit.SECONDS.toMillis(timeToLiveSeconds);
+    }
+
+    /**
+     * Builds the cache key for the given remote URL and credentials. Passwords are only stored as hashes.
+     *
+     * @param url
+     *         URL of the remote repository.
+     * @param username
+     *         User name for accessing the remote repository. May be null.
+     * @param password
+     *         Password for accessing the remote repository. May be null.
+     * @return the cache key for the given remote URL and credentials.
+     */
+    @NotNull
+    public static String buildKey(@NotNull String url, String username, String password) {
+        String passwordHash = Hashing.sha256().hashString(StringUtils.defaultString(password), StandardCharsets.UTF_8).toString();
+        return url + '\n' + StringUtils.defaultString(username) + '\n' + passwordHash;
+    }
+
+    /**
+     * Returns all branch refs which are advertised by the given remote. Refs which were listed less than the configured
+     * time to live ago are returned from the cache.
+     *
+     * @param key
+     *         The cache key built by {@link #buildKey(String, String, String)}.
+     * @param url
+     *         URL of the remote repository.
+     * @param credentialsProvider
+     *         Credentials provider for accessing the remote repository.
+     * @return All advertised branch refs.
+     * @throws GitAPIException
+     *         Will be thrown if the remote couldn't be accessed.
+     */
+    @NotNull
+    public Collection<Ref> listHeads(@NotNull String key, @NotNull String url, @NotNull CredentialsProvider credentialsProvider) throws GitAPIException {
+        // Touching the entry atomically prevents that it is evicted before it is used
+        CachedRemote cachedRemote = cachedRemotes.compute(key, (k, existing) -> {
+            CachedRemote remote = existing != null ? existing : new CachedRemote(url);
+            remote.touch();
+            return remote;
+        });
+        return cachedRemote.listHeads(credentialsProvider, timeToLive);
+    }
+
+    /**
+     * Removes the cached refs with the given key, e.g. after the remote was fetched. The transport will stay open.
+     *
+     * @param key
+     *         The cache key built by {@link #buildKey(String, String, String)}.
+     */
+    public void invalidate(@NotNull String key) {
+        CachedRemote cachedRemote = cachedRemotes.get(key);
+        if (cachedRemote != null) {
+            cachedRemote.invalidate();
+        }
+    }
+
+    /**
+     * Closes all transports which weren't used for longer than {@link #IDLE_TIMEOUT}.
+     */
+    @Scheduled(fixedDelay = EVICTION_INTERVAL, initialDelay = EVICTION_INTERVAL)
+    public void evictIdleRemotes() {
+        long now = System.currentTimeMillis();
+        for (String key : cachedRemotes.keySet()) {
+            cachedRemotes.computeIfPresent(key, (k, cachedRemote) -> cachedRemote.closeIfIdle(now) ? null : cachedRemote);
+        }
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        LOGGER.debug("Closing {} cached remote transports", cachedRemotes.size());
+        cachedRemotes.values().forEach(CachedRemote::close);
+        cachedRemotes.clear();
+    }
+
+    /**
+     * Cached refs and the open transport of a single remote.
+     */
+    private static class CachedRemote {
+
+        /** URL of the remote repository. */
+        private final String url;
+
+        /** Open transport to the remote. Guarded by this. */
+        private Transport transport;
+
+        /** The last listed branch refs. Guarded by this. */
+        private List<Ref> heads;
+
+        /** Timestamp of the last listing in milliseconds. Guarded by this. */
+        private long listed;
+
+        /** Timestamp of the last access in milliseconds. */
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        CachedRemote(String url) {
+            this.url = url;
+        }
+
+        synchronized Collection<Ref> listHeads(CredentialsProvider credentialsProvider, long timeToLive) throws GitAPIException {
+            long now = System.currentTimeMillis();
+            if (heads != null && now - listed < timeToLive) {
+                LOGGER.trace("Using cached refs of remote {}", url);
+                return heads;
+            }
+
+            try {
+                if (transport == null) {
+                    LOGGER.debug("Opening new transport to remote {}", url);
+                    transport = Transport.open(new URIish(url));
+                }
+                transport.setCredentialsProvider(credentialsProvider);
+                List<Ref> remoteHeads = new ArrayList<>();
+                try (FetchConnection connection = transport.openFetch()) {
+                    for (Ref ref : connection.getRefs()) {
+                        if (ref.getName().startsWith(Constants.R_HEADS)) {
+                            remoteHeads.add(ref);
+                        }
+                    }
+                }
+                heads = Collections.unmodifiableList(remoteHeads);
+                listed = System.currentTimeMillis();
+                LOGGER.debug("Listed {} branches of remote {}", heads.size(), url);
+                return heads;
+            } catch (URISyntaxException e) {
+                throw new InvalidRemoteException("Invalid remote: " + url, e);
+            } catch (NotSupportedException e) {
+                throw new InvalidRemoteException("Unsupported remote: " + url, e);
+            } catch (org.eclipse.jgit.errors.TransportException e) {
+                // The transport might be broken, so a new one will be opened next time
+                close();
+                throw new TransportException(e.getMessage(), e);
+            }
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        synchronized void invalidate() {
+            heads = null;
+        }
+
+        boolean closeIfIdle(long now) {
+            if (now - lastAccess > IDLE_TIMEOUT) {
+                LOGGER.debug("Evicting idle remote {}", url);
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void close() {
+            if (transport != null) {
+                transport.close();
+                transport = null;
+            }
+        }
+    }
+}
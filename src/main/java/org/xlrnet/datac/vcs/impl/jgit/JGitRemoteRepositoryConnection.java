@@ -39,9 +39,21 @@ public class JGitRemoteRepositoryConnection implements VcsRemoteRepositoryConnec
     /** The credentials provider for accessing the remote repository. */
     private final CredentialsProvider provider;
 
-    JGitRemoteRepositoryConnection(String remoteRepositoryUrl, CredentialsProvider provider) {
+    /** Initialize local repositories as bare repositories without a working tree. */
+    private final boolean bare;
+
+    /** Shared cache of advertised remote refs. */
+    private final JGitRemoteRefCache refCache;
+
+    /** Key of the remote in the ref cache. */
+    private final String refCacheKey;
+
+    JGitRemoteRepositoryConnection(String remoteRepositoryUrl, CredentialsProvider provider, boolean bare, JGitRemoteRefCache refCache, String refCacheKey) {
         this.remoteRepositoryUrl = remoteRepositoryUrl;
         this.provider = provider;
+        this.bare = bare;
+        this.refCache = refCache;
+        this.refCacheKey = refCacheKey;
     }
 
     @NotNull
@@ -74,22 +86,18 @@ public class JGitRemoteRepositoryConnection implements VcsRemoteRepositoryConnec
     }
 
     private Collection<Ref> fetchRefs() throws GitAPIException {
-        return Git.lsRemoteRepository()
-                .setHeads(true)
-                .setTags(false)
-                .setRemote(remoteRepositoryUrl)
-                .setCredentialsProvider(provider)
-                .call();
+        return refCache.listHeads(refCacheKey, remoteRepositoryUrl, provider);
     }
 
     @Override
     public void initializeLocalRepository(@NotNull Path repositoryPath, @NotNull Branch branch) throws DatacTechnicalException, IOException, VcsConnectionException {
         String branchName = branch.getName();
-        LOGGER.debug("Cloning repository from {} to {} on branch {}", remoteRepositoryUrl, repositoryPath, branchName);
+        LOGGER.debug("Cloning {} repository from {} to {} on branch {}", bare ? "bare" : "non-bare", remoteRepositoryUrl, repositoryPath, branchName);
         try (Git result = Git.cloneRepository()
                 .setURI(remoteRepositoryUrl)
                 .setDirectory(repositoryPath.toFile())
                 .setBranch(branchName)
+                .setBare(bare)
                 .setCredentialsProvider(provider)
                 .call()) {
             LOGGER.debug("Finished cloning repository to {}", result.getRepository().getDirectory().toPath().toString());
@@ -0,0 +1,197 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FS;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.xlrnet.datac.foundation.services.ProjectRepositoryDeletionEvent;
+
+/**
+ * Pool of long-lived JGit {@link Repository} handles per local repository. Opening a repository reads its config, refs
+ * and pack indexes, which is expensive when done for every single operation. Handles are reference counted and will
+ * be closed after they weren't used for a while or when the repository of a project is deleted.
+ */
+@Component
+public class JGitRepositoryPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JGitRepositoryPool.class);
+
+    /**
+     * Time in milliseconds after which unused repository handles will be closed.
+     */
+    static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Interval in milliseconds in which idle repository handles are evicted.
+     */
+    private static final long EVICTION_INTERVAL = 60 * 1000L;
+
+    /**
+     * Open repository handles by their normalized absolute path. Guarded by this.
+     */
+    private final Map<Path, PooledRepository> pooledRepositories = new HashMap<>();
+
+    /**
+     * Opens a new session on the repository at the given path. The underlying repository handle will be reused if it
+     * is already open. The returned session must be closed after usage.
+     *
+     * @param repositoryPath
+     *         Path of the local repository.
+     * @return a new session on the repository.
+     * @throws IOException
+     *         Will be thrown if the repository couldn't be opened.
+     */
+    @NotNull
+    public JGitRepositorySession openSession(@NotNull Path repositoryPath) throws IOException {
+        return new JGitRepositorySession(this, acquire(repositoryPath));
+    }
+
+    /**
+     * Closes all unused handles of the repository at the given path and makes sure that handles which are still in use
+     * will be closed as soon as they are released.
+     *
+     * @param repositoryPath
+     *         Path of the local repository.
+     */
+    public synchronized void invalidate(@NotNull Path repositoryPath) {
+        PooledRepository pooledRepository = pooledRepositories.remove(normalize(repositoryPath));
+        if (pooledRepository != null) {
+            pooledRepository.invalidated = true;
+            if (pooledRepository.references == 0) {
+                close(pooledRepository);
+            } else {
+                LOGGER.debug("Repository handle for {} is still in use and will be closed after release", repositoryPath);
+            }
+        }
+    }
+
+    @EventListener
+    public void onProjectRepositoryDeletion(ProjectRepositoryDeletionEvent event) {
+        invalidate(event.getRepositoryPath());
+    }
+
+    /**
+     * Closes all repository handles which weren't used for longer than {@link #IDLE_TIMEOUT}.
+     */
+    @Scheduled(fixedDelay = EVICTION_INTERVAL, initialDelay = EVICTION_INTERVAL)
+    public void evictIdleRepositories() {
+        evictIdleRepositories(System.currentTimeMillis());
+    }
+
+    /**
+     * Closes all repository handles which weren't used for longer than {@link #IDLE_TIMEOUT} at the given time.
+     *
+     * @param now
+     *         The current time in milliseconds.
+     */
+    synchronized void evictIdleRepositories(long now) {
+        Iterator<PooledRepository> iterator = pooledRepositories.values().iterator();
+        while (iterator.hasNext()) {
+            PooledRepository pooledRepository = iterator.next();
+            if (pooledRepository.references == 0 && now - pooledRepository.lastAccess > IDLE_TIMEOUT) {
+                LOGGER.debug("Evicting idle repository handle for {}", pooledRepository.path);
+                iterator.remove();
+                close(pooledRepository);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void closeAll() {
+        LOGGER.debug("Closing {} pooled repository handles", pooledRepositories.size());
+        pooledRepositories.values().forEach(this::close);
+        pooledRepositories.clear();
+    }
+
+    /**
+     * Returns the number of currently open repository handles.
+     *
+     * @return the number of currently open repository handles.
+     */
+    public synchronized int getOpenRepositoryCount() {
+        return pooledRepositories.size();
+    }
+
+    @NotNull
+    private synchronized PooledRepository acquire(@NotNull Path repositoryPath) throws IOException {
+        Path normalizedPath = normalize(repositoryPath);
+        PooledRepository pooledRepository = pooledRepositories.get(normalizedPath);
+        if (pooledRepository == null) {
+            LOGGER.debug("Opening new repository handle for {}", normalizedPath);
+            RepositoryCache.FileKey fileKey = RepositoryCache.FileKey.lenient(normalizedPath.toFile(), FS.DETECTED);
+            Repository repository = new FileRepositoryBuilder()
+                    .setFS(FS.DETECTED)
+                    .setGitDir(fileKey.getFile())
+                    .setMustExist(true)
+                    .build();
+            pooledRepository = new PooledRepository(normalizedPath, repository);
+            pooledRepositories.put(normalizedPath, pooledRepository);
+        }
+        pooledRepository.references++;
+        pooledRepository.lastAccess = System.currentTimeMillis();
+        return pooledRepository;
+    }
+
+    synchronized void release(@NotNull PooledRepository pooledRepository) {
+        pooledRepository.references--;
+        pooledRepository.lastAccess = System.currentTimeMillis();
+        if (pooledRepository.invalidated && pooledRepository.references == 0) {
+            close(pooledRepository);
+        }
+    }
+
+    private void close(@NotNull PooledRepository pooledRepository) {
+        LOGGER.debug("Closing repository handle for {}", pooledRepository.path);
+        pooledRepository.repository.close();
+    }
+
+    @NotNull
+    private Path normalize(@NotNull Path repositoryPath) {
+        return repositoryPath.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Reference counted repository handle.
+     */
+    static class PooledRepository {
+
+        /** Normalized path of the repository. */
+        private final Path path;
+
+        /** The open repository. */
+        private final Repository repository;
+
+        /** Number of sessions which currently use the repository. */
+        private int references;
+
+        /** Timestamp of the last access in milliseconds. */
+        private long lastAccess;
+
+        /** Flag to indicate that the repository must be closed as soon as it is no longer used. */
+        private boolean invalidated;
+
+        PooledRepository(Path path, Repository repository) {
+            this.path = path;
+            this.repository = repository;
+        }
+
+        Repository getRepository() {
+            return repository;
+        }
+    }
+}
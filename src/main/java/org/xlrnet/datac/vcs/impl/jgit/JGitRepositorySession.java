@@ -0,0 +1,89 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Short-lived session on a pooled repository handle. The {@link ObjectReader} and {@link RevWalk} of a session are
+ * created lazily and shared by all operations inside the session. Sessions are not thread-safe and must be closed after
+ * usage, which releases the underlying repository handle.
+ */
+public class JGitRepositorySession implements AutoCloseable {
+
+    /** The pool from which the repository handle was acquired. */
+    private final JGitRepositoryPool pool;
+
+    /** The acquired repository handle. */
+    private final JGitRepositoryPool.PooledRepository pooledRepository;
+
+    /** Lazily created object reader. */
+    private ObjectReader reader;
+
+    /** Lazily created revision walk which uses {@link #reader}. */
+    private RevWalk revWalk;
+
+    /** Flag to indicate if the session was already closed. */
+    private boolean closed;
+
+    JGitRepositorySession(JGitRepositoryPool pool, JGitRepositoryPool.PooledRepository pooledRepository) {
+        this.pool = pool;
+        this.pooledRepository = pooledRepository;
+    }
+
+    /**
+     * Returns the pooled repository. The repository must not be closed by the caller.
+     */
+    @NotNull
+    public Repository getRepository() {
+        return pooledRepository.getRepository();
+    }
+
+    /**
+     * Returns a {@link Git} porcelain wrapper for the pooled repository. Closing the wrapper won't close the repository.
+     */
+    @NotNull
+    public Git getGit() {
+        return Git.wrap(getRepository());
+    }
+
+    /**
+     * Returns the object reader of this session.
+     */
+    @NotNull
+    public ObjectReader getReader() {
+        if (reader == null) {
+            reader = getRepository().newObjectReader();
+        }
+        return reader;
+    }
+
+    /**
+     * Returns the revision walk of this session. The walk is shared among all operations of this session, so callers
+     * must reset it if they depend on a clean state.
+     */
+    @NotNull
+    public RevWalk getRevWalk() {
+        if (revWalk == null) {
+            revWalk = new RevWalk(getReader());
+        }
+        return revWalk;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (revWalk != null) {
+            revWalk.close();
+        }
+        if (reader != null) {
+            reader.close();
+        }
+        pool.release(pooledRepository);
+    }
+}
@@ -0,0 +1,125 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import java.lang.reflect.Method;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.xlrnet.datac.commons.lifecycle.AbstractLifecycleComponent;
+import org.xlrnet.datac.foundation.configuration.StartupPhases;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lifecycle component which installs the configured JGit pack window cache settings before any repository is opened.
+ * All values may be configured below <code>datac.git</code>. If a value is missing, the JGit default will be used.
+ */
+@Slf4j
+@Component
+@Scope("singleton")
+public class JGitWindowCacheConfigurer extends AbstractLifecycleComponent {
+
+    /**
+     * Interval in milliseconds in which the cache usage will be logged.
+     */
+    private static final long STATISTICS_INTERVAL = 5 * 60 * 1000L;
+
+    /**
+     * Name of the internal JGit window cache class. JGit 4.6 has no public statistics API, so the open files and bytes
+     * are read reflectively from the cache instance.
+     */
+    private static final String WINDOW_CACHE_CLASS = "org.eclipse.jgit.internal.storage.file.WindowCache";
+
+    /**
+     * Maximum number of bytes of pack files which may be held in memory.
+     */
+    @Value("${datac.git.packedGitLimit:67108864}")
+    private long packedGitLimit;
+
+    /**
+     * Size in bytes of a single window which is read from a pack file.
+     */
+    @Value("${datac.git.packedGitWindowSize:8192}")
+    private int packedGitWindowSize;
+
+    /**
+     * Maximum number of pack files which may be opened at the same time.
+     */
+    @Value("${datac.git.packedGitOpenFiles:128}")
+    private int packedGitOpenFiles;
+
+    /**
+     * Maximum number of bytes used for caching delta bases.
+     */
+    @Value("${datac.git.deltaBaseCacheLimit:16777216}")
+    private int deltaBaseCacheLimit;
+
+    /**
+     * Flag to indicate if pack files should be accessed using memory-mapping.
+     */
+    @Value("${datac.git.packedGitMmap:false}")
+    private boolean packedGitMmap;
+
+    @Override
+    protected void onStart() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit(packedGitLimit);
+        config.setPackedGitWindowSize(packedGitWindowSize);
+        config.setPackedGitOpenFiles(packedGitOpenFiles);
+        config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+        config.setPackedGitMMAP(packedGitMmap);
+        config.install();
+        LOGGER.info("Installed JGit window cache configuration: packedGitLimit={}, packedGitWindowSize={}, packedGitOpenFiles={}, deltaBaseCacheLimit={}, packedGitMmap={}",
+                packedGitLimit, packedGitWindowSize, packedGitOpenFiles, deltaBaseCacheLimit, packedGitMmap);
+    }
+
+    /**
+     * Returns the utilization of the pack window cache in percent of the configured limit.
+     *
+     * @return the utilization of the pack window cache in percent.
+     */
+    public double getCacheUtilization() {
+        long openBytes = readCacheStatistic("getOpenBytes");
+        return packedGitLimit > 0 && openBytes >= 0 ? openBytes * 100.0 / packedGitLimit : 0;
+    }
+
+    /**
+     * Logs the current usage of the pack window cache. The JGit version in use doesn't count cache hits, so the number
+     * of open bytes compared to the configured limit serves as indicator: a cache which is constantly full is likely
+     * too small for the repositories.
+     */
+    @Scheduled(fixedDelay = STATISTICS_INTERVAL, initialDelay = STATISTICS_INTERVAL)
+    public void logCacheStatistics() {
+        LOGGER.debug("JGit window cache: {} open pack files of {} allowed, {} of {} bytes in use ({}%)",
+                readCacheStatistic("getOpenFiles"), packedGitOpenFiles, readCacheStatistic("getOpenBytes"), packedGitLimit,
+                String.format("%.1f", getCacheUtilization()));
+    }
+
+    /**
+     * Reads a numeric statistic from the current JGit window cache instance.
+     *
+     * @param methodName
+     *         Name of the package-private getter on the window cache.
+     * @return the value of the statistic or -1 if it couldn't be read.
+     */
+    private long readCacheStatistic(String methodName) {
+        try {
+            Class<?> windowCacheClass = Class.forName(WINDOW_CACHE_CLASS);
+            Method getInstance = windowCacheClass.getDeclaredMethod("getInstance");
+            getInstance.setAccessible(true);
+            Method getter = windowCacheClass.getDeclaredMethod(methodName);
+            getter.setAccessible(true);
+            return ((Number) getter.invoke(getInstance.invoke(null))).longValue();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.trace("Reading JGit window cache statistic {} failed", methodName, e);
+            return -1;
+        }
+    }
+
+    @Override
+    public int getPhase() {
+        return StartupPhases.CONFIGURATION;
+    }
+}
@@ -1,18 +1,29 @@
 package org.xlrnet.datac.vcs.services;
 
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.Lockable;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
 /**
- * Central locking service for entities. This service may be used for aquiring application wide database locks.
+ * Central locking service for entities. This service may be used for acquiring application wide locks. Locks are
+ * granted as {@link LockLease}s which are identified by a unique token, so that a lease may be released by a
+ * different thread than the one which acquired it. Any number of {@link LockMode#SHARED} leases may be held at the
+ * same time, while an {@link LockMode#EXCLUSIVE} lease excludes all other leases. Waiting exclusive requests are
+ * preferred over new shared requests, so that writers don't starve. Lock entries are removed as soon as no lease is
+ * held and nobody waits for them.
  */
 @Service
 @Scope("singleton")
@@ -20,63 +31,198 @@ public class LockingService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LockingService.class);
 
-    private final ConcurrentHashMap<String, ReentrantLock> lockMap = new ConcurrentHashMap<>();
+    /** Lock entries by lock key. Entries are only added and removed atomically in the map. */
+    private final ConcurrentHashMap<String, LockEntry> lockMap = new ConcurrentHashMap<>();
 
     /**
-     * Tries to acquire the lock for the given object. The lock must be manually released by calling {@link
-     * #unlock(Lockable)} after the custom logic has finished.
+     * Tries to acquire a lease on the given object without waiting. The lease must be released by calling {@link
+     * #release(LockLease)} after the custom logic has finished.
      *
      * @param lockable
-     *         The lockable to lock.
-     * @return True if the object could be locked, false if not.
+     *         The object to lock.
+     * @param mode
+     *         The requested lock mode.
+     * @return The acquired lease or an empty optional if the object is locked in a conflicting mode.
      */
-    public boolean tryLock(@NotNull Lockable lockable) {
-        String key = getLockKey(lockable);
-        Lock lock = internalGetLock(key);
-        boolean locked = lock.tryLock();    // NOSONAR: This service is used for centrally managing locks across the application
-        if (locked) {
-            LOGGER.debug("Successfully acquired lock for object {}", key);
-        } else {
-            LOGGER.debug("Locking object {} failed", key);
-        }
-        return locked;
+    @NotNull
+    public Optional<LockLease> tryAcquire(@NotNull Lockable lockable, @NotNull LockMode mode) {
+        return tryAcquire(lockable, mode, 0, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Unlocks the given object.
+     * Tries to acquire a lease on the given object and waits at most the given time for conflicting leases to be
+     * released. The lease must be released by calling {@link #release(LockLease)} after the custom logic has
+     * finished. If the calling thread is interrupted while waiting, no lease is acquired and the interrupt flag is
+     * kept.
      *
      * @param lockable
-     *         The object to unlock.
+     *         The object to lock.
+     * @param mode
+     *         The requested lock mode.
+     * @param timeout
+     *         The maximum time to wait.
+     * @param unit
+     *         The unit of the timeout.
+     * @return The acquired lease or an empty optional if the timeout expired.
      */
-    public void unlock(@NotNull Lockable lockable) {
+    @NotNull
+    public Optional<LockLease> tryAcquire(@NotNull Lockable lockable, @NotNull LockMode mode, long timeout, @NotNull TimeUnit unit) {
         String key = getLockKey(lockable);
-        ReentrantLock reentrantLock = internalGetLock(key);
-        if (reentrantLock.isLocked()) {
-            reentrantLock.unlock();
-            LOGGER.debug("Unlocked object {}", key);
-        } else {
-            LOGGER.warn("No lock present on object {}", key);
+        LockLease lease = new LockLease(UUID.randomUUID(), key, mode, Instant.now());
+        LockEntry entry = reference(key);
+        boolean acquired = false;
+        try {
+            acquired = entry.acquire(lease, unit.toNanos(timeout));
+        } catch (InterruptedException e) {     // NOSONAR: Interrupt flag is restored
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting for {} lock on object {}", mode, key);
+        } finally {
+            if (!acquired) {
+                dereference(key);
+            }
+        }
+        if (acquired) {
+            LOGGER.debug("Successfully acquired {} lock for object {}", mode, key);
+            return Optional.of(lease);
+        }
+        LOGGER.debug("Locking object {} in mode {} failed", key, mode);
+        return Optional.empty();
+    }
+
+    /**
+     * Releases the given lease. Releasing a lease which isn't held anymore has no effect.
+     *
+     * @param lease
+     *         The lease to release.
+     * @return True if the lease was released, false if it wasn't held.
+     */
+    public boolean release(@NotNull LockLease lease) {
+        LockEntry entry = lockMap.get(lease.getLockKey());
+        if (entry == null || !entry.release(lease)) {
+            LOGGER.warn("No {} lock with token {} present on object {}", lease.getMode(), lease.getToken(), lease.getLockKey());
+            return false;
         }
+        dereference(lease.getLockKey());
+        LOGGER.debug("Released {} lock on object {}", lease.getMode(), lease.getLockKey());
+        return true;
     }
 
     /**
-     * Checks if the given object is currently locked.
+     * Checks if any lease is currently held on the given object.
      *
      * @param lockable
      *         The object to check.
      * @return True if locked, false otherwise.
      */
     public boolean isLocked(@NotNull Lockable lockable) {
-        String key = getLockKey(lockable);
-        return internalGetLock(key).isLocked();
+        LockEntry entry = lockMap.get(getLockKey(lockable));
+        return entry != null && entry.isLocked();
+    }
+
+    /**
+     * Returns the number of lock entries which are currently in use.
+     *
+     * @return the number of lock entries.
+     */
+    int getLockEntryCount() {
+        return lockMap.size();
+    }
+
+    /**
+     * Returns the entry of the given key and registers a new reference on it. The entry is created if necessary.
+     */
+    @NotNull
+    private LockEntry reference(@NotNull String key) {
+        return lockMap.compute(key, (k, entry) -> {
+            LockEntry referenced = entry != null ? entry : new LockEntry();
+            referenced.references++;
+            return referenced;
+        });
     }
 
-    private ReentrantLock internalGetLock(String key) {
-        return lockMap.computeIfAbsent(key, (x) -> new ReentrantLock());
+    /**
+     * Removes a reference from the entry of the given key and removes the entry if it isn't referenced anymore.
+     */
+    private void dereference(@NotNull String key) {
+        lockMap.computeIfPresent(key, (k, entry) -> --entry.references > 0 ? entry : null);
     }
 
     @NotNull
     private String getLockKey(@NotNull Lockable lockable) {
         return lockable.getClass().getName() + "_" + lockable.getLockKey();
     }
+
+    /**
+     * State of the lock on a single object. All state except the reference count is guarded by the entry itself.
+     */
+    private static class LockEntry {
+
+        /** Number of held leases and waiting requests. Only modified while computing the entry in the lock map. */
+        private int references;
+
+        /** Token of the exclusive lease holder or null if no exclusive lease is held. */
+        private UUID exclusiveOwner;
+
+        /** Tokens of all shared lease holders. */
+        private final Set<UUID> sharedOwners = new HashSet<>();
+
+        /** Number of waiting exclusive requests. */
+        private int waitingExclusive;
+
+        synchronized boolean acquire(LockLease lease, long timeoutNanos) throws InterruptedException {
+            boolean exclusive = lease.getMode() == LockMode.EXCLUSIVE;
+            long deadline = System.nanoTime() + timeoutNanos;
+            if (exclusive) {
+                waitingExclusive++;
+            }
+            try {
+                while (!isAvailable(exclusive)) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } finally {
+                if (exclusive) {
+                    waitingExclusive--;
+                    // Shared requests which waited for this request may continue if it gave up
+                    notifyAll();
+                }
+            }
+            if (exclusive) {
+                exclusiveOwner = lease.getToken();
+            } else {
+                sharedOwners.add(lease.getToken());
+            }
+            return true;
+        }
+
+        synchronized boolean release(LockLease lease) {
+            boolean released;
+            if (lease.getMode() == LockMode.EXCLUSIVE) {
+                released = lease.getToken().equals(exclusiveOwner);
+                if (released) {
+                    exclusiveOwner = null;
+                }
+            } else {
+                released = sharedOwners.remove(lease.getToken());
+            }
+            if (released) {
+                notifyAll();
+            }
+            return released;
+        }
+
+        synchronized boolean isLocked() {
+            return exclusiveOwner != null || !sharedOwners.isEmpty();
+        }
+
+        private boolean isAvailable(boolean exclusive) {
+            if (exclusive) {
+                return exclusiveOwner == null && sharedOwners.isEmpty();
+            }
+            return exclusiveOwner == null && waitingExclusive == 0;
+        }
+    }
 }
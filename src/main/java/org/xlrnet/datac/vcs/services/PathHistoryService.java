@@ -0,0 +1,139 @@
+package org.xlrnet.datac.vcs.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.xlrnet.datac.commons.exception.VcsRepositoryException;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.AbstractTransactionalService;
+import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.api.VcsPathHistory;
+import org.xlrnet.datac.vcs.domain.PathHistory;
+import org.xlrnet.datac.vcs.domain.repository.PathHistoryRepository;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Service for querying the revisions which modified a set of paths. The results are cached per project and path
+ * together with the heads from which the history was walked, so that later queries only walk revisions which were added
+ * since - even if a path is queried together with other paths than before. Histories of paths which weren't queried
+ * for a configurable time are deleted.
+ */
+@Service
+public class PathHistoryService extends AbstractTransactionalService<PathHistory, PathHistoryRepository> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PathHistoryService.class);
+
+    /**
+     * Number of days after which path histories which weren't queried anymore are deleted.
+     */
+    private final int retentionDays;
+
+    /**
+     * Constructor for abstract transactional service. Needs always a crud repository for performing operations.
+     *
+     * @param crudRepository
+     *         The crud repository for providing basic crud operations.
+     * @param retentionDays
+     *         Number of days after which unused path histories are deleted.
+     */
+    @Autowired
+    public PathHistoryService(PathHistoryRepository crudRepository, @Value("${datac.pathHistory.retentionDays:30}") int retentionDays) {
+        super(crudRepository);
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Returns the internal ids of all revisions in the given project which modified at least one of the given paths.
+     * For each path, only revisions which are not reachable from the heads of the previous query for the same path are
+     * walked in the local repository and merged into the cached result.
+     *
+     * @param project
+     *         The project in which the revisions must exist.
+     * @param localRepository
+     *         The local repository of the project.
+     * @param paths
+     *         The paths of files or directories relative to the root of the repository.
+     * @return The internal ids of all revisions which modified at least one of the given paths.
+     * @throws VcsRepositoryException
+     *         Will be thrown if the VCS repository encountered an internal error.
+     */
+    @NotNull
+    @Transactional
+    public Set<String> listRevisionsWithChangesInPaths(@NotNull Project project, @NotNull VcsLocalRepository localRepository, @NotNull Collection<String> paths) throws VcsRepositoryException {
+        checkArgument(project.isPersisted(), "Project must be persisted");
+        Instant now = Instant.now();
+        Set<String> revisionIds = new HashSet<>();
+        for (String path : normalizePaths(paths)) {
+            revisionIds.addAll(listRevisionsWithChangesInPath(project, localRepository, path, now));
+        }
+
+        int deletedHistories = getRepository().deleteByProjectAndUpdatedBefore(project, now.minus(retentionDays, ChronoUnit.DAYS));
+        if (deletedHistories > 0) {
+            LOGGER.debug("Deleted {} path histories in project {} [id={}] which weren't used for {} days", deletedHistories, project.getName(), project.getId(), retentionDays);
+        }
+        return revisionIds;
+    }
+
+    /**
+     * Updates the cached history of a single normalized path with all revisions which were added since the last query
+     * and returns the internal ids of all revisions which modified the path.
+     */
+    @NotNull
+    private Set<String> listRevisionsWithChangesInPath(@NotNull Project project, @NotNull VcsLocalRepository localRepository, @NotNull String path, @NotNull Instant now) throws VcsRepositoryException {
+        String pathHash = Hashing.sha256().hashString(path, StandardCharsets.UTF_8).toString();
+        PathHistory history = getRepository().findByProjectAndPathHash(project, pathHash);
+        if (history == null) {
+            history = new PathHistory().setProject(project).setPathHash(pathHash);
+        }
+        history = super.save(history.setUpdated(now));
+        long historyId = history.getId();
+
+        List<String> walkedHeads = getRepository().findHeads(historyId);
+        VcsPathHistory newHistory = localRepository.listPathHistory(Collections.singleton(path), walkedHeads);
+
+        Set<String> revisionIds = new HashSet<>(getRepository().findRevisionIds(historyId));
+        int cachedRevisions = revisionIds.size();
+        for (String revisionId : newHistory.getRevisionIds()) {
+            if (revisionIds.add(revisionId)) {
+                getRepository().insertRevisionId(historyId, revisionId);
+            }
+        }
+        getRepository().deleteHeads(historyId);
+        for (String head : newHistory.getHeads()) {
+            getRepository().insertHead(historyId, head);
+        }
+
+        LOGGER.debug("Found {} cached and {} new revisions for path {} in project {} [id={}]", cachedRevisions, revisionIds.size() - cachedRevisions, path, project.getName(), project.getId());
+        return revisionIds;
+    }
+
+    /**
+     * Returns the given paths relative to the repository root with forward slashes in a stable order.
+     */
+    @NotNull
+    private Set<String> normalizePaths(@NotNull Collection<String> paths) {
+        Set<String> normalizedPaths = new TreeSet<>();
+        for (String path : paths) {
+            normalizedPaths.add(StringUtils.removeEnd(StringUtils.removeStart(path.replace("\\", "/"), "/"), "/"));
+        }
+        return normalizedPaths;
+    }
+}
@@ -1,27 +1,39 @@
 package org.xlrnet.datac.vcs.services;
 
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.Date;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.support.PeriodicTrigger;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
 import org.springframework.stereotype.Service;
 import org.xlrnet.datac.commons.lifecycle.AbstractLifecycleComponent;
 import org.xlrnet.datac.foundation.configuration.StartupPhases;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.domain.repository.ProjectRepository;
-import org.xlrnet.datac.vcs.tasks.ProjectUpdateTask;
+import org.xlrnet.datac.foundation.services.ProjectChangeCheckEvent;
+import org.xlrnet.datac.vcs.domain.UpdatePriority;
 
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Service which is responsible for scheduling automatic project updates.
+ * Service which is responsible for scheduling automatic project updates. The first update of each project is scheduled
+ * at a random time within its poll interval, so that projects don't poll at the same time after a restart. Every
+ * following poll is delayed by a randomly jittered interval. The interval of a project starts at its configured poll
+ * interval and grows with every update that didn't find any changes up to a maximum interval. As soon as an update
+ * finds changes, the project is polled at its configured interval again.
  */
 @Slf4j
 @Service
@@ -47,14 +59,43 @@ public class ProjectSchedulingService extends AbstractLifecycleComponent {
      */
     private final AutowireCapableBeanFactory beanFactory;
 
-    private Map<Long, ScheduledFuture> projectScheduleMap = new HashMap<>();
+    /**
+     * Maximum poll interval in milliseconds of projects without changes.
+     */
+    private final long maxInterval;
+
+    /**
+     * Factor by which the poll interval grows after each update without changes.
+     */
+    private final double backoffFactor;
+
+    /**
+     * Maximum relative random deviation from the poll interval.
+     */
+    private final double jitter;
+
+    /**
+     * Scheduled polls by project id.
+     */
+    private final Map<Long, ScheduledFuture<?>> projectScheduleMap = new ConcurrentHashMap<>();
+
+    /**
+     * Current polling state by project id.
+     */
+    private final Map<Long, PollingState> pollingStates = new ConcurrentHashMap<>();
 
     @Autowired
-    public ProjectSchedulingService(Environment environment, ProjectRepository projectRepository, TaskScheduler taskScheduler, AutowireCapableBeanFactory beanFactory) {
+    public ProjectSchedulingService(Environment environment, ProjectRepository projectRepository, TaskScheduler taskScheduler, AutowireCapableBeanFactory beanFactory,
+                                    @Value("${datac.polling.maxInterval:60}") int maxIntervalMinutes,
+                                    @Value("${datac.polling.backoffFactor:1.5}") double backoffFactor,
+                                    @Value("${datac.polling.jitter:0.2}") double jitter) {
         this.environment = environment;
         this.projectRepository = projectRepository;
         this.taskScheduler = taskScheduler;
         this.beanFactory = beanFactory;
+        this.maxInterval = TimeUnit.MINUTES.toMillis(maxIntervalMinutes);
+        this.backoffFactor = Math.max(backoffFactor, 1);
+        this.jitter = Math.min(Math.max(jitter, 0), 0.5);
     }
 
     @Override
@@ -82,31 +123,24 @@ public class ProjectSchedulingService extends AbstractLifecycleComponent {
      *         The project to schedule.
      *         @return Flag whether the project was scheduled for an update.
      */
-    public boolean scheduleProjectUpdate(@NotNull Project project) {
+    public synchronized boolean scheduleProjectUpdate(@NotNull Project project) {
         boolean scheduled = false;
         if (project.isAutomaticPollingEnabled()) {
             LOGGER.info("Scheduling update of project {} [id={}] in {} minute interval", project.getName(), project.getId(), project.getPollInterval());
-            ProjectUpdateTask task = beanFactory.createBean(ProjectUpdateTask.class);
-            task.setProjectToUpdate(project);
-            PeriodicTrigger trigger = new PeriodicTrigger(project.getPollInterval(), TimeUnit.MINUTES);
-            trigger.setInitialDelay(project.getPollInterval());
-            ScheduledFuture<?> schedule = taskScheduler.schedule(task, trigger);
-            if (schedule != null) {
-                projectScheduleMap.put(project.getId(), schedule);
-                LOGGER.debug("Successfully scheduled automatic project update for {} [id={}]", project.getName(), project.getId());
-                scheduled = true;
-            } else {
-                LOGGER.error("Scheduling project update for {} [id={}] failed", project.getName(), project.getId());
-            }
+            long minInterval = TimeUnit.MINUTES.toMillis(project.getPollInterval());
+            PollingState pollingState = new PollingState(minInterval, Math.max(minInterval, maxInterval));
+            pollingStates.put(project.getId(), pollingState);
+            scheduled = startPolling(project, pollingState, true);
         } else {
             LOGGER.info("Project {} [id={}] will not be not scheduled for automatic polling", project.getName(), project.getId());
         }
         return scheduled;
     }
 
-    public boolean unscheduleProjectUpdate(@NotNull Project project) {
+    public synchronized boolean unscheduleProjectUpdate(@NotNull Project project) {
         LOGGER.info("Unscheduling automatic update of project {} [id={}]", project.getName(), project.getId());
-        ScheduledFuture scheduledFuture = projectScheduleMap.get(project.getId());
+        pollingStates.remove(project.getId());
+        ScheduledFuture scheduledFuture = projectScheduleMap.remove(project.getId());
         if (scheduledFuture == null) {
             LOGGER.info("No automatic update scheduled for project {} [id={}]", project.getName(), project.getId());
             return false;
@@ -120,6 +154,60 @@ public class ProjectSchedulingService extends AbstractLifecycleComponent {
         return cancelled;
     }
 
+    /**
+     * Returns the time of the next scheduled poll of the given project.
+     *
+     * @param project
+     *         The project to check.
+     * @return the time of the next poll or an empty optional if the project isn't polled automatically.
+     */
+    @NotNull
+    public Optional<Instant> getNextPollTime(@NotNull Project project) {
+        PollingState pollingState = pollingStates.get(project.getId());
+        return pollingState != null ? Optional.ofNullable(pollingState.nextPoll) : Optional.empty();
+    }
+
+    /**
+     * Adapts the poll interval of a project after its remote repository was checked for changes. If changes were
+     * found after the interval had grown, the next poll is rescheduled with the configured interval of the project.
+     *
+     * @param event
+     *         The event of the finished check.
+     */
+    @EventListener
+    public synchronized void onProjectChangeCheck(ProjectChangeCheckEvent event) {
+        Project project = event.getProject();
+        PollingState pollingState = pollingStates.get(project.getId());
+        if (pollingState == null) {
+            return;
+        }
+        if (!event.isChanged()) {
+            pollingState.backOff(backoffFactor);
+            LOGGER.debug("No changes in project {} [id={}] - increased poll interval to {} ms", project.getName(), project.getId(), pollingState.interval);
+        } else if (pollingState.reset()) {
+            LOGGER.debug("Found changes in project {} [id={}] - resetting poll interval to {} ms", project.getName(), project.getId(), pollingState.interval);
+            ScheduledFuture<?> scheduledFuture = projectScheduleMap.remove(project.getId());
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+            startPolling(project, pollingState, false);
+        }
+    }
+
+    private boolean startPolling(@NotNull Project project, @NotNull PollingState pollingState, boolean staggered) {
+        // The queue is looked up lazily, since it depends indirectly on services which depend on this service
+        ProjectUpdateQueue updateQueue = beanFactory.getBean(ProjectUpdateQueue.class);
+        Runnable task = () -> updateQueue.requestUpdate(project, UpdatePriority.SCHEDULED);
+        ScheduledFuture<?> schedule = taskScheduler.schedule(task, new AdaptivePollingTrigger(pollingState, staggered));
+        if (schedule != null) {
+            projectScheduleMap.put(project.getId(), schedule);
+            LOGGER.debug("Successfully scheduled automatic project update for {} [id={}]", project.getName(), project.getId());
+            return true;
+        }
+        LOGGER.error("Scheduling project update for {} [id={}] failed", project.getName(), project.getId());
+        return false;
+    }
+
     @Override
     protected void onStop() {
         LOGGER.info("Unscheduling project updates");
@@ -132,4 +220,74 @@ public class ProjectSchedulingService extends AbstractLifecycleComponent {
     public int getPhase() {
         return StartupPhases.SCHEDULING;
     }
+
+    /**
+     * Trigger which computes the next poll from the current interval of a project.
+     */
+    private class AdaptivePollingTrigger implements Trigger {
+
+        /** The polling state of the project. */
+        private final PollingState pollingState;
+
+        /** Flag whether the first poll is scheduled at a random time within the interval. */
+        private final boolean staggered;
+
+        AdaptivePollingTrigger(PollingState pollingState, boolean staggered) {
+            this.pollingState = pollingState;
+            this.staggered = staggered;
+        }
+
+        @Override
+        public Date nextExecutionTime(TriggerContext triggerContext) {
+            Date lastCompletion = triggerContext.lastCompletionTime();
+            long interval = pollingState.interval;
+            long nextPoll;
+            if (lastCompletion == null && staggered) {
+                nextPoll = System.currentTimeMillis() + 1 + ThreadLocalRandom.current().nextLong(Math.max(interval, 1));
+            } else {
+                long base = lastCompletion != null ? lastCompletion.getTime() : System.currentTimeMillis();
+                double deviation = jitter > 0 ? ThreadLocalRandom.current().nextDouble(-jitter, jitter) : 0;
+                nextPoll = base + Math.round(interval * (1 + deviation));
+            }
+            pollingState.nextPoll = Instant.ofEpochMilli(nextPoll);
+            return new Date(nextPoll);
+        }
+    }
+
+    /**
+     * Current poll interval and next poll of a single project.
+     */
+    private static class PollingState {
+
+        /** The configured poll interval of the project in milliseconds. */
+        private final long minInterval;
+
+        /** The maximum poll interval of the project in milliseconds. */
+        private final long maxInterval;
+
+        /** The current poll interval in milliseconds. */
+        private volatile long interval;
+
+        /** The time of the next poll. */
+        private volatile Instant nextPoll;
+
+        PollingState(long minInterval, long maxInterval) {
+            this.minInterval = minInterval;
+            this.maxInterval = maxInterval;
+            this.interval = minInterval;
+        }
+
+        void backOff(double factor) {
+            interval = Math.min(Math.round(interval * factor), maxInterval);
+        }
+
+        /**
+         * Resets the interval to the configured interval and returns true if it had grown.
+         */
+        boolean reset() {
+            boolean grown = interval > minInterval;
+            interval = minInterval;
+            return grown;
+        }
+    }
 }
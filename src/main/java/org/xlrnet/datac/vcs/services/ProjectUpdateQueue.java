@@ -0,0 +1,255 @@
+package org.xlrnet.datac.vcs.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.xlrnet.datac.commons.exception.LockFailedException;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.domain.UpdatePriority;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Central queue for all project updates. Requests for a project which is already queued are merged into a single
+ * update, which keeps the highest requested priority. Manual updates are started before scheduled updates and the
+ * number of concurrently running updates is limited. Updates are only handed to the executor when a slot is free, so
+ * requests are never rejected. If a project is locked when its update starts, the update is queued again and retried
+ * after a delay.
+ */
+@Slf4j
+@Service
+public class ProjectUpdateQueue {
+
+    /** Service which performs the actual updates. */
+    private final ProjectUpdateService projectUpdateService;
+
+    /** Executor which runs the updates. */
+    private final TaskExecutor taskExecutor;
+
+    /** Scheduler for retrying updates of locked projects. */
+    private final TaskScheduler taskScheduler;
+
+    /** Maximum number of concurrently running updates. */
+    private final int maxConcurrency;
+
+    /** Delay in milliseconds after which the update of a locked project is retried. */
+    private final long lockRetryDelay;
+
+    /** Queued updates by project id in the order in which they were requested. Guarded by this. */
+    private final Map<Long, QueuedUpdate> queuedUpdates = new LinkedHashMap<>();
+
+    /** Ids of all projects which are currently being updated. Guarded by this. */
+    private final Set<Long> runningUpdates = new HashSet<>();
+
+    /** Sequence number of the last request, used for ordering requests with the same priority. Guarded by this. */
+    private long sequence;
+
+    public ProjectUpdateQueue(ProjectUpdateService projectUpdateService, @Qualifier("vcsTaskExecutor") TaskExecutor taskExecutor,
+                              TaskScheduler taskScheduler,
+                              @Value("${datac.projectUpdates.maxConcurrency:2}") int maxConcurrency,
+                              @Value("${datac.projectUpdates.lockRetryDelay:30}") int lockRetryDelaySeconds) {
+        this.projectUpdateService = projectUpdateService;
+        this.taskExecutor = taskExecutor;
+        this.taskScheduler = taskScheduler;
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.lockRetryDelay = TimeUnit.SECONDS.toMillis(lockRetryDelaySeconds);
+    }
+
+    /**
+     * Requests an update of the given project. If an update of the project is already queued, both requests are merged
+     * and the higher priority is kept. If the project is currently being updated, another update will be performed
+     * after the running one is finished.
+     *
+     * @param project
+     *         The project to update.
+     * @param priority
+     *         The priority of the request.
+     * @return True if a new update was queued or false if the request was merged into an already queued update.
+     */
+    public boolean requestUpdate(@NotNull Project project, @NotNull UpdatePriority priority) {
+        checkArgument(project.isPersisted(), "Project must be persisted");
+        boolean queued;
+        synchronized (this) {
+            QueuedUpdate existing = queuedUpdates.get(project.getId());
+            if (existing != null) {
+                existing.merge(priority);
+                if (priority == UpdatePriority.MANUAL) {
+                    // Updates waiting for a lock retry are started immediately if a user asks again
+                    existing.notBefore = 0;
+                }
+                LOGGER.debug("Merged {} update request into queued update of project {} [id={}]", priority, project.getName(), project.getId());
+                queued = false;
+            } else {
+                queuedUpdates.put(project.getId(), new QueuedUpdate(project, priority, ++sequence));
+                LOGGER.debug("Queued {} update of project {} [id={}]", priority, project.getName(), project.getId());
+                queued = true;
+            }
+        }
+        dispatch();
+        return queued;
+    }
+
+    /**
+     * Returns whether an update of the given project is queued but not yet running.
+     *
+     * @param project
+     *         The project to check.
+     * @return True if an update of the project is queued.
+     */
+    public synchronized boolean isQueued(@NotNull Project project) {
+        return queuedUpdates.containsKey(project.getId());
+    }
+
+    /**
+     * Returns the number of queued updates which are not yet running.
+     *
+     * @return the number of queued updates.
+     */
+    public synchronized int getQueueSize() {
+        return queuedUpdates.size();
+    }
+
+    /**
+     * Returns the number of currently running updates.
+     *
+     * @return the number of currently running updates.
+     */
+    public synchronized int getRunningCount() {
+        return runningUpdates.size();
+    }
+
+    /**
+     * Starts queued updates until the concurrency limit is reached.
+     */
+    void dispatch() {
+        while (true) {
+            QueuedUpdate update;
+            synchronized (this) {
+                if (runningUpdates.size() >= maxConcurrency) {
+                    return;
+                }
+                update = pollNext();
+                if (update == null) {
+                    return;
+                }
+                runningUpdates.add(update.project.getId());
+            }
+            try {
+                taskExecutor.execute(() -> runUpdate(update));
+            } catch (TaskRejectedException e) {
+                LOGGER.warn("Executor rejected update of project {} [id={}] - retrying later", update.project.getName(), update.project.getId());
+                synchronized (this) {
+                    runningUpdates.remove(update.project.getId());
+                }
+                requeueDelayed(update);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the next update which may be started, i.e. the oldest request with the highest priority whose
+     * project is not running and whose retry delay has passed.
+     */
+    @Nullable
+    private QueuedUpdate pollNext() {
+        long now = System.currentTimeMillis();
+        QueuedUpdate next = null;
+        for (QueuedUpdate candidate : queuedUpdates.values()) {
+            if (runningUpdates.contains(candidate.project.getId()) || candidate.notBefore > now) {
+                continue;
+            }
+            if (next == null || candidate.priority.compareTo(next.priority) < 0
+                    || (candidate.priority == next.priority && candidate.sequence < next.sequence)) {
+                next = candidate;
+            }
+        }
+        if (next != null) {
+            queuedUpdates.remove(next.project.getId());
+        }
+        return next;
+    }
+
+    private void runUpdate(QueuedUpdate update) {
+        Project project = update.project;
+        try {
+            LOGGER.debug("Starting {} update of project {} [id={}]", update.priority, project.getName(), project.getId());
+            projectUpdateService.startProjectUpdate(project);
+        } catch (LockFailedException e) {       // NOSONAR: No logging of exception necessary
+            LOGGER.info("Project {} [id={}] is locked - retrying update in {} ms", project.getName(), project.getId(), lockRetryDelay);
+            synchronized (this) {
+                runningUpdates.remove(project.getId());
+            }
+            requeueDelayed(update);
+            return;
+        } catch (RuntimeException e) {
+            LOGGER.error("Update of project {} [id={}] failed unexpectedly", project.getName(), project.getId(), e);
+        }
+        synchronized (this) {
+            runningUpdates.remove(project.getId());
+        }
+        dispatch();
+    }
+
+    /**
+     * Queues the given update again and schedules a dispatch after the retry delay. A request for the same project
+     * which arrived in the meantime is merged.
+     */
+    private void requeueDelayed(QueuedUpdate update) {
+        long notBefore = System.currentTimeMillis() + lockRetryDelay;
+        synchronized (this) {
+            QueuedUpdate existing = queuedUpdates.get(update.project.getId());
+            if (existing != null) {
+                existing.merge(update.priority);
+            } else {
+                update.notBefore = notBefore;
+                queuedUpdates.put(update.project.getId(), update);
+            }
+        }
+        taskScheduler.schedule(this::dispatch, new Date(notBefore));
+    }
+
+    /**
+     * A queued update of a single project.
+     */
+    private static class QueuedUpdate {
+
+        /** The project to update. */
+        private final Project project;
+
+        /** Sequence number of the first request. */
+        private final long sequence;
+
+        /** Highest requested priority. */
+        private UpdatePriority priority;
+
+        /** Timestamp in milliseconds before which the update may not be started. */
+        private long notBefore;
+
+        QueuedUpdate(Project project, UpdatePriority priority, long sequence) {
+            this.project = project;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        void merge(UpdatePriority requestedPriority) {
+            if (requestedPriority.compareTo(priority) < 0) {
+                priority = requestedPriority;
+            }
+        }
+    }
+}
@@ -3,14 +3,33 @@ package org.xlrnet.datac.vcs.services;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 import org.xlrnet.datac.commons.exception.DatacRuntimeException;
 import org.xlrnet.datac.commons.exception.DatacTechnicalException;
@@ -20,21 +39,29 @@ import org.xlrnet.datac.database.impl.liquibase.LiquibaseAdapter;
 import org.xlrnet.datac.database.services.ChangeIndexingService;
 import org.xlrnet.datac.database.services.ChangeSetService;
 import org.xlrnet.datac.foundation.components.EventLogProxy;
+import org.xlrnet.datac.foundation.domain.EventLog;
 import org.xlrnet.datac.foundation.domain.EventLogMessage;
 import org.xlrnet.datac.foundation.domain.EventType;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
 import org.xlrnet.datac.foundation.domain.Project;
 import org.xlrnet.datac.foundation.domain.ProjectState;
 import org.xlrnet.datac.foundation.services.EventLogService;
 import org.xlrnet.datac.foundation.services.FileService;
 import org.xlrnet.datac.foundation.services.ProjectCacheReloadEvent;
+import org.xlrnet.datac.foundation.services.ProjectChangeCheckEvent;
 import org.xlrnet.datac.foundation.services.ProjectService;
 import org.xlrnet.datac.vcs.api.VcsAdapter;
 import org.xlrnet.datac.vcs.api.VcsConnectionStatus;
 import org.xlrnet.datac.vcs.api.VcsLocalRepository;
 import org.xlrnet.datac.vcs.api.VcsRemoteRepositoryConnection;
-import org.xlrnet.datac.vcs.api.VcsRevision;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
 import org.xlrnet.datac.vcs.domain.Branch;
-import org.xlrnet.datac.vcs.domain.Revision;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import lombok.Value;
 
 /**
  * Service which is responsible for collecting all database changes in a project.
@@ -44,6 +71,21 @@ public class ProjectUpdateService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProjectUpdateService.class);
 
+    /**
+     * Number of streamed revisions which are imported in a single transaction.
+     */
+    private static final int REVISION_IMPORT_BATCH_SIZE = 500;
+
+    /**
+     * Maximum number of walked revision chunks which may wait for being imported.
+     */
+    private static final int REVISION_IMPORT_QUEUE_CAPACITY = 8;
+
+    /**
+     * Time in seconds after which the persisting thread checks for walks which ended without passing their last chunk.
+     */
+    private static final int REVISION_IMPORT_WALK_CHECK_INTERVAL = 1;
+
     /**
      * Thread-scoped event log proxy.
      */
@@ -94,8 +136,18 @@ public class ProjectUpdateService {
      */
     private final ApplicationEventPublisher eventPublisher;
 
+    /**
+     * Executor for walking the revisions of multiple branches concurrently.
+     */
+    private final AsyncTaskExecutor revisionImportExecutor;
+
+    /**
+     * Executor for indexing the database changes of updated projects.
+     */
+    private final AsyncTaskExecutor indexingExecutor;
+
     @Autowired
-    public ProjectUpdateService(EventLogProxy eventLog1, VersionControlSystemRegistry vcsService, LockingService lockingService, FileService fileService, ProjectService projectService, BranchService branchService, RevisionGraphService revisionGraphService, EventLogService eventLogService, EventLogProxy eventLog, LiquibaseAdapter databaseChangeSystemAdapter, ChangeSetService changeSetService, ChangeIndexingService changeIndexingService, ApplicationEventPublisher eventPublisher) {
+    public ProjectUpdateService(EventLogProxy eventLog1, VersionControlSystemRegistry vcsService, LockingService lockingService, FileService fileService, ProjectService projectService, BranchService branchService, RevisionGraphService revisionGraphService, EventLogService eventLogService, EventLogProxy eventLog, LiquibaseAdapter databaseChangeSystemAdapter, ChangeSetService changeSetService, ChangeIndexingService changeIndexingService, ApplicationEventPublisher eventPublisher, @Qualifier("revisionImportTaskExecutor") AsyncTaskExecutor revisionImportExecutor, @Qualifier("indexingTaskExecutor") AsyncTaskExecutor indexingExecutor) {
         this.eventLog = eventLog1;
         this.vcsService = vcsService;
         this.lockingService = lockingService;
@@ -106,25 +158,22 @@ public class ProjectUpdateService {
         this.eventLogService = eventLogService;
         this.changeIndexingService = changeIndexingService;
         this.eventPublisher = eventPublisher;
+        this.revisionImportExecutor = revisionImportExecutor;
+        this.indexingExecutor = indexingExecutor;
     }
 
     /**
-     * Asynchronously trigger a project change update.
+     * Updates the given project in the calling thread. Updates should be requested through the
+     * {@link ProjectUpdateQueue}, which limits the number of concurrent updates.
      *
      * @param project
      *         The project to update.
+     * @throws LockFailedException
+     *         Will be thrown if the project is locked.
      */
-    @Async
-    public void startAsynchronousProjectUpdate(@NotNull Project project) {
-        try {
-            startProjectUpdate(project);
-        } catch (LockFailedException e) {       // NOSONAR: No logging of exception necessary
-            LOGGER.warn("Update of project {} [id={}] failed because project is locked", project.getName(), project.getId());
-        }
-    }
-
     void startProjectUpdate(@NotNull Project project) throws LockFailedException {
-        if (lockingService.tryLock(project)) {
+        Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE);
+        if (lease.isPresent()) {
             try {
                 LOGGER.info("Begin update of project {}", project.getName());
                 eventLog.setDelegate(eventLogService.newEventLog().setType(EventType.PROJECT_UPDATE));
@@ -145,7 +194,7 @@ public class ProjectUpdateService {
                 } catch (DatacRuntimeException e) {
                     LOGGER.error("Writing eventlog after project update failed", e);
                 } finally {
-                    lockingService.unlock(project);
+                    lockingService.release(lease.get());
                 }
             }
         } else {
@@ -177,14 +226,17 @@ public class ProjectUpdateService {
             LOGGER.debug("Opening local repository at {}", repositoryPath.toString());
             VcsLocalRepository localRepository = vcsAdapter.openLocalRepository(repositoryPath, updatedProject);
 
+            Map<String, String> headsBeforeUpdate = collectBranchHeads(updatedProject);
             updatedProject = updateRevisions(updatedProject, localRepository);
-            updatedProject = changeIndexingService.indexDatabaseChanges(updatedProject, localRepository);
+            boolean changed = !headsBeforeUpdate.equals(collectBranchHeads(updatedProject));
+            updatedProject = indexDatabaseChanges(updatedProject, localRepository);
 
             updatedProject.setLastChangeCheck(LocalDateTime.now());
             if (updatedProject.getState() != ProjectState.MISSING_LOG) {
                 updatedProject.setState(ProjectState.FINISHED);
             }
             updatedProject = projectService.saveAndPublishStateChange(updatedProject, 0);
+            eventPublisher.publishEvent(new ProjectChangeCheckEvent(this, updatedProject, changed));
         } catch (RuntimeException | IOException e) {
             throw new DatacTechnicalException("Project update failed", e);
         } finally {
@@ -193,6 +245,18 @@ public class ProjectUpdateService {
         return updatedProject;
     }
 
+    /**
+     * Returns the internal ids of the heads of all branches in the given project by their name.
+     */
+    @NotNull
+    private Map<String, String> collectBranchHeads(@NotNull Project project) {
+        Map<String, String> heads = new HashMap<>();
+        for (Branch branch : project.getBranches()) {
+            heads.put(branch.getName(), branch.getInternalId());
+        }
+        return heads;
+    }
+
     /**
      * Initialize a new project repository. This will first call the file service to create necessary file structures
      * and afterwards open a remote connection to the project's VCS to initialize local VCS files.
@@ -261,34 +325,260 @@ public class ProjectUpdateService {
 
         LOGGER.debug("Updating revisions in project {}", updatedProject.getName());
 
-        long branchCount = updatedProject.getBranches().stream().filter(b -> b.isWatched() || b.isDevelopment()).count();
-        int updatedBranches = 0;
-        for (Branch branch : updatedProject.getBranches()) {
-            projectService.saveAndPublishStateChange(updatedProject, updatedBranches / (double) branchCount * 100.f);
-            if (branch.isWatched() || branch.isDevelopment()) {
-                updateRevisionsInBranch(updatedProject, branch, localRepository);
-                updatedBranches++;
-            } else {
-                LOGGER.debug("Skipping branch {} in project {}", branch.getName(), updatedProject.getName());
-            }
-        }
+        List<Branch> branchesToUpdate = updatedProject.getBranches().stream().filter(b -> b.isWatched() || b.isDevelopment()).collect(Collectors.toList());
+        updatedProject.getBranches().stream().filter(b -> !b.isWatched() && !b.isDevelopment())
+                .forEach(b -> LOGGER.debug("Skipping branch {} in project {}", b.getName(), project.getName()));
+        localRepository.updateRevisionsFromRemote(branchesToUpdate);
+
+        Project progressProject = updatedProject;
+        long branchCount = branchesToUpdate.size();
+        importRevisions(updatedProject, branchesToUpdate, localRepository,
+                updatedBranches -> projectService.saveAndPublishStateChange(progressProject, updatedBranches / (double) branchCount * 100.f));
+
         LOGGER.debug("Finished revision update in project {}", updatedProject.getName());
         revisionGraphService.reloadRevisionCache(updatedProject);   // Update only the revision cache to improve indexing performance
         return updatedProject;
     }
 
     protected void updateRevisionsInBranch(@NotNull Project project, @NotNull Branch branch, @NotNull VcsLocalRepository localRepository) throws DatacTechnicalException {
-        LOGGER.debug("Updating revisions on branch {} in project {}", branch.getName(), project.getName());
-        localRepository.updateRevisionsFromRemote(branch);
+        importRevisions(project, Collections.singletonList(branch), localRepository, updatedBranches -> {});
+    }
+
+    /**
+     * Indexes the database changes of the given project on the indexing executor and waits until indexing is finished.
+     * Indexing is CPU intensive, so it is bounded by the indexing executor instead of the executor which runs project
+     * updates. The update keeps waiting if it is interrupted, so that indexing never outlives the lock of the update.
+     * Messages are added to the event log of the update.
+     *
+     * @param project
+     *         The project to index.
+     * @param localRepository
+     *         The local repository of the project.
+     * @return The indexed project.
+     */
+    @NotNull
+    private Project indexDatabaseChanges(@NotNull Project project, @NotNull VcsLocalRepository localRepository) throws DatacTechnicalException {
+        EventLog updateEventLog = eventLog.getDelegate().orElse(null);
+        Future<Project> indexing;
+        try {
+            indexing = indexingExecutor.submit(() -> {
+                eventLog.setDelegate(updateEventLog);
+                try {
+                    return changeIndexingService.indexDatabaseChanges(project, localRepository);
+                } finally {
+                    eventLog.setDelegate(null);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            throw new DatacTechnicalException("Indexing executor rejected indexing of project " + project.getName(), e);
+        }
+        try {
+            return Uninterruptibles.getUninterruptibly(indexing);
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), DatacTechnicalException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new DatacTechnicalException("Indexing of project " + project.getName() + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Imports the new revisions of all given branches. The revisions of each branch are walked concurrently on the
+     * revision import executor, while the current thread is the only one which persists the walked revisions. Since
+     * each branch is walked in topological order and the revisions of every branch are persisted in the order in which
+     * they were walked, the parents of a revision are always persisted before the revision itself. Every persisted
+     * revision is added to the shared set of known revisions: walks which start later don't walk over them at all and
+     * running walks skip them, so that history shared between branches is only passed once to the persisting thread.
+     *
+     * @param project
+     *         The project to update.
+     * @param branches
+     *         The branches whose revisions should be imported.
+     * @param localRepository
+     *         The local repository to interact with a VCS.
+     * @param progressListener
+     *         Listener which will be called with the number of completely imported branches.
+     */
+    private void importRevisions(@NotNull Project project, @NotNull List<Branch> branches, @NotNull VcsLocalRepository localRepository, @NotNull IntConsumer progressListener) throws DatacTechnicalException {
+        Set<String> knownRevisions = ConcurrentHashMap.newKeySet();
+        knownRevisions.addAll(findImportedBranchHeads(project));
+        BlockingQueue<RevisionImportChunk> chunks = new ArrayBlockingQueue<>(REVISION_IMPORT_QUEUE_CAPACITY);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<?>> walks = new ArrayList<>(branches.size());
+        Map<String, Long> newRevisions = new HashMap<>();
+        Set<Branch> updatedBranchSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        int updatedBranches = 0;
+        try {
+            for (Branch branch : branches) {
+                walks.add(submitWalk(() -> walkRevisionsOnBranch(branch, knownRevisions, localRepository, chunks, cancelled), branch));
+            }
+            progressListener.accept(updatedBranches);
+            while (updatedBranches < branches.size()) {
+                RevisionImportChunk chunk = takeChunk(chunks, branches, walks, updatedBranchSet);
+                Branch branch = chunk.getBranch();
+                if (chunk.getFailure() != null) {
+                    throw new DatacTechnicalException("Walking revisions on branch " + branch.getName() + " failed", chunk.getFailure());
+                }
+                long newRevisionsOnBranch = newRevisions.merge(branch.getName(), revisionGraphService.importRevisionRecords(project, chunk.getRecords()), Long::sum);
+                chunk.getRecords().forEach(r -> knownRevisions.add(r.getInternalId()));
+                if (chunk.getHeadId() != null) {
+                    LOGGER.debug("Finished updating revisions on branch {} in project {}", branch.getName(), project.getName());
+                    branch.setInternalId(chunk.getHeadId()); // Internal id must point to the correct revision
+                    branchService.save(branch);
+                    if (newRevisionsOnBranch > 0) {
+                        eventLog.addMessage(new EventLogMessage(String.format("Found %d new revisions in branch %s", newRevisionsOnBranch, branch.getName())));
+                    }
+                    updatedBranchSet.add(branch);
+                    updatedBranches++;
+                    progressListener.accept(updatedBranches);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatacTechnicalException("Revision import was interrupted", e);
+        } finally {
+            // Stop all walks which are still running, e.g. after a failure on another branch. The walking threads are
+            // not interrupted, since interrupts would close the pack files which are shared by the repository.
+            cancelled.set(true);
+            walks.forEach(w -> w.cancel(false));
+        }
+    }
 
-        VcsRevision rootRevision = localRepository.listLatestRevisionOnBranch(branch);
+    /**
+     * Submits the walk of a branch to the revision import executor.
+     */
+    @NotNull
+    private Future<?> submitWalk(@NotNull Runnable walk, @NotNull Branch branch) throws DatacTechnicalException {
+        try {
+            return revisionImportExecutor.submit(walk);
+        } catch (TaskRejectedException e) {
+            throw new DatacTechnicalException("Revision import executor rejected walking revisions on branch " + branch.getName(), e);
+        }
+    }
 
-        Pair<Revision, Long> latestRevision = revisionGraphService.convertRevisionAndSave(rootRevision, project);
-        LOGGER.debug("Finished updating revisions on branch {} in project {}", branch.getName(), project.getName());
-        branch.setInternalId(latestRevision.getLeft().getInternalId()); // Internal id must point to the correct revision
-        branchService.save(branch);
-        if (latestRevision.getRight() != null && latestRevision.getRight() > 0) {
-            eventLog.addMessage(new EventLogMessage(String.format("Found %d new revisions in branch %s", latestRevision.getRight(), branch.getName())));
+    /**
+     * Takes the next walked chunk from the given queue. Since a walk passes its last chunk before it ends, a walk which
+     * ended without passing its last chunk died without reporting its failure, e.g. because of an {@link Error}. The
+     * import fails in this case instead of waiting forever for the branch.
+     */
+    @NotNull
+    private RevisionImportChunk takeChunk(@NotNull BlockingQueue<RevisionImportChunk> chunks, @NotNull List<Branch> branches, @NotNull List<Future<?>> walks, @NotNull Set<Branch> updatedBranches) throws InterruptedException, DatacTechnicalException {
+        while (true) {
+            RevisionImportChunk chunk = chunks.poll(REVISION_IMPORT_WALK_CHECK_INTERVAL, TimeUnit.SECONDS);
+            if (chunk != null) {
+                return chunk;
+            }
+            Branch lostBranch = null;
+            for (int i = 0; i < walks.size() && lostBranch == null; i++) {
+                if (walks.get(i).isDone() && !updatedBranches.contains(branches.get(i))) {
+                    lostBranch = branches.get(i);
+                }
+            }
+            if (lostBranch != null) {
+                // The walk may have passed its last chunk right before it ended
+                chunk = chunks.poll();
+                if (chunk != null) {
+                    return chunk;
+                }
+                throw new DatacTechnicalException("Walking revisions on branch " + lostBranch.getName() + " ended unexpectedly");
+            }
         }
     }
+
+    /**
+     * Walks the new revisions on the given branch and passes them in chunks to the given queue. The last chunk
+     * contains the id of the branch head. If walking fails, a chunk with the failure is passed instead. Revisions which
+     * were persisted by the import of another branch in the meantime are skipped.
+     */
+    private void walkRevisionsOnBranch(@NotNull Branch branch, @NotNull Set<String> knownRevisions, @NotNull VcsLocalRepository localRepository, @NotNull BlockingQueue<RevisionImportChunk> chunks, @NotNull AtomicBoolean cancelled) {
+        LOGGER.debug("Updating revisions on branch {}", branch.getName());
+        try {
+            List<VcsRevisionRecord> batch = new ArrayList<>(REVISION_IMPORT_BATCH_SIZE);
+            String latestRevisionId = localRepository.streamNewRevisionsOnBranch(branch, knownRevisions, record -> {
+                if (cancelled.get()) {
+                    throw new DatacRuntimeException("Walking revisions was cancelled");
+                }
+                if (knownRevisions.contains(record.getInternalId())) {
+                    return;
+                }
+                batch.add(record);
+                if (batch.size() >= REVISION_IMPORT_BATCH_SIZE) {
+                    try {
+                        putChunk(chunks, new RevisionImportChunk(branch, new ArrayList<>(batch), null, null), cancelled);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DatacRuntimeException("Walking revisions was cancelled", e);
+                    }
+                    batch.clear();
+                }
+            });
+            putChunk(chunks, new RevisionImportChunk(branch, batch, latestRevisionId, null), cancelled);
+        } catch (InterruptedException e) {      // NOSONAR: Nobody waits for the result anymore
+            LOGGER.debug("Walking revisions on branch {} was cancelled", branch.getName());
+        } catch (Throwable e) {     // NOSONAR: Errors must be reported as well, otherwise the persisting thread waits for them
+            if (cancelled.get()) {
+                LOGGER.debug("Walking revisions on branch {} was cancelled", branch.getName());
+                return;
+            }
+            try {
+                putChunk(chunks, new RevisionImportChunk(branch, Collections.emptyList(), null, e), cancelled);
+            } catch (InterruptedException e2) {     // NOSONAR: Nobody waits for the result anymore
+                LOGGER.error("Walking revisions on branch {} failed", branch.getName(), e);
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    /**
+     * Passes the given chunk to the persisting thread. Blocks while the queue is full, so that walking threads can't
+     * run ahead too far. Gives up as soon as the import was cancelled.
+     */
+    private void putChunk(@NotNull BlockingQueue<RevisionImportChunk> chunks, @NotNull RevisionImportChunk chunk, @NotNull AtomicBoolean cancelled) throws InterruptedException {
+        while (!chunks.offer(chunk, 1, TimeUnit.SECONDS)) {
+            if (cancelled.get()) {
+                throw new InterruptedException("Revision import was cancelled");
+            }
+        }
+    }
+
+    /**
+     * Returns the internal ids of all branch heads in the given project which were already imported. Since revisions
+     * are always imported together with all their parents, the VCS doesn't have to walk over any revisions reachable
+     * from these heads. Branch heads which were only updated from remote but not imported yet are ignored.
+     *
+     * @param project
+     *         The project whose branch heads should be returned.
+     * @return The internal ids of all imported branch heads.
+     */
+    @NotNull
+    private Set<String> findImportedBranchHeads(@NotNull Project project) {
+        Set<String> knownRevisions = new HashSet<>();
+        for (Branch knownBranch : project.getBranches()) {
+            String internalId = knownBranch.getInternalId();
+            if (internalId != null && !knownRevisions.contains(internalId) && revisionGraphService.existsRevisionInProject(project, internalId)) {
+                knownRevisions.add(internalId);
+            }
+        }
+        return knownRevisions;
+    }
+
+    /**
+     * Chunk of walked revisions on a single branch which is passed from a walking thread to the persisting thread.
+     */
+    @Value
+    private static class RevisionImportChunk {
+
+        /** The branch on which the revisions were walked. */
+        Branch branch;
+
+        /** The walked revisions in topological order. */
+        List<VcsRevisionRecord> records;
+
+        /** Internal id of the branch head if this is the last chunk of the branch. */
+        String headId;
+
+        /** The exception which occurred while walking the branch. */
+        Throwable failure;
+    }
 }
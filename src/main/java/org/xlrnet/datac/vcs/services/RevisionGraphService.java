@@ -1,10 +1,12 @@
 package org.xlrnet.datac.vcs.services;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -19,8 +21,6 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -36,17 +36,18 @@ import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.commons.graph.BreadthFirstTraverser;
 import org.xlrnet.datac.commons.graph.DepthFirstTraverser;
 import org.xlrnet.datac.foundation.domain.Project;
-import org.xlrnet.datac.foundation.domain.repository.ProjectRepository;
 import org.xlrnet.datac.foundation.services.AbstractTransactionalService;
 import org.xlrnet.datac.foundation.services.ProjectCacheReloadEvent;
 import org.xlrnet.datac.foundation.services.ValidationService;
 import org.xlrnet.datac.vcs.api.VcsRevision;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
 import org.xlrnet.datac.vcs.domain.Branch;
 import org.xlrnet.datac.vcs.domain.Revision;
 import org.xlrnet.datac.vcs.domain.repository.RevisionRepository;
 import org.xlrnet.datac.vcs.util.CachedRevisionDecorator;
 import org.xlrnet.datac.vcs.util.RevisionTimestampComparator;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.MultimapBuilder;
 
@@ -60,9 +61,9 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
     private static final Logger LOGGER = LoggerFactory.getLogger(RevisionGraphService.class);
 
     /**
-     * Project repository.
+     * Maximum number of internal ids which are looked up in a single query while importing revisions.
      */
-    private final ProjectRepository projectRepository;
+    private static final int REVISION_LOOKUP_PARTITION_SIZE = 500;
 
     /**
      * Bean validation service.
@@ -94,13 +95,11 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
      *
      * @param crudRepository
      *         The crud repository for providing basic crud operations.
-     * @param projectRepository
      * @param validator
      */
     @Autowired
-    public RevisionGraphService(RevisionRepository crudRepository, ProjectRepository projectRepository, ValidationService validator) {
+    public RevisionGraphService(RevisionRepository crudRepository, ValidationService validator) {
         super(crudRepository);
-        this.projectRepository = projectRepository;
         this.validator = validator;
     }
 
@@ -232,12 +231,28 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
      */
     @Transactional(readOnly = true)
     public Collection<Revision> findMatchingInternalRevisions(Project project, Collection<VcsRevision> externalRevisions) {
+        return findMatchingInternalRevisionsByIds(project, externalRevisions.stream().map(VcsRevision::getInternalId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Finds all internal {@link Revision} objects with the given internal ids. Ids which don't exist in the project are
+     * ignored.
+     *
+     * @param project
+     *         The project in which the revisions must exist
+     * @param internalIds
+     *         The internal ids of the revisions that should be found.
+     * @return Internal revision objects with the given internal ids.
+     */
+    @Transactional(readOnly = true)
+    public Collection<Revision> findMatchingInternalRevisionsByIds(Project project, Collection<String> internalIds) {
         Set<Revision> internalRevisions = new HashSet<>();
-        for (VcsRevision externalRevision : externalRevisions) {
-            Revision internalRevision = getRepository().findByInternalIdAndProject(externalRevision.getInternalId(), project);
-            LOGGER.debug("Revision {} was not found in project {} [id={}]", externalRevision.getInternalId(), project.getName(), project.getId());
+        for (String internalId : internalIds) {
+            Revision internalRevision = getRepository().findByInternalIdAndProject(internalId, project);
             if (internalRevision != null) {
                 internalRevisions.add(internalRevision);
+            } else {
+                LOGGER.debug("Revision {} was not found in project {} [id={}]", internalId, project.getName(), project.getId());
             }
         }
 
@@ -245,22 +260,72 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
     }
 
     /**
-     * Recursive implementation which converts external {@link VcsRevision} objects to {@link Revision} entities. If any
-     * of the revision objects already exist in the database, the rest of the graph will be fetched from the database.
-     * The revision will be saved afterwards. The project must be already persisted or an {@link
-     * IllegalArgumentException} will be thrown.
+     * Imports a batch of flat revision records into the given project. The records must be in topological order, i.e.
+     * the parents of each record must either exist already in the project or be contained earlier in the batch.
+     * Records of already existing revisions are skipped. The revision cache is not updated.
      *
-     * @param rootRevision
-     *         The root revision used for starting the conversion.
      * @param project
      *         The project in which the revisions will be stored.
-     * @return A pair containing the converted revision and the number of new revisions.
+     * @param records
+     *         The records to import in topological order.
+     * @return The number of new revisions.
      */
     @Transactional
-    public Pair<Revision, Long> convertRevisionAndSave(VcsRevision rootRevision, Project project) {
-        Pair<Revision, Long> convertedRevision = convertRevision(rootRevision, project);
-        Revision savedRevision = save(convertedRevision.getLeft());
-        return ImmutablePair.of(savedRevision, convertedRevision.getRight());
+    public long importRevisionRecords(@NotNull Project project, @NotNull List<VcsRevisionRecord> records) {
+        checkArgument(project.isPersisted(), "Project must be persisted");
+        Map<String, Revision> importedRevisions = new HashMap<>(records.size());
+        Map<String, Revision> existingRevisions = findExistingRevisions(project, records);
+        long newRevisions = 0;
+
+        for (VcsRevisionRecord record : records) {
+            validator.checkConstraints(record);
+            String internalId = record.getInternalId();
+            if (importedRevisions.containsKey(internalId) || existingRevisions.containsKey(internalId)) {
+                LOGGER.trace("Revision {} is already imported", internalId);
+                continue;
+            }
+            Revision revision = new Revision()
+                    .setInternalId(internalId)
+                    .setMessage(record.getMessage())
+                    .setAuthor(record.getAuthor())
+                    .setReviewer(record.getReviewer())
+                    .setCommitTime(record.getCommitTime())
+                    .setProject(project);
+            List<Revision> parents = new ArrayList<>(record.getParentIds().size());
+            for (String parentId : record.getParentIds()) {
+                Revision parent = importedRevisions.get(parentId);
+                if (parent == null) {
+                    parent = existingRevisions.get(parentId);
+                }
+                checkState(parent != null, "Parent %s of revision %s was not imported before", parentId, internalId);
+                parents.add(parent);
+            }
+            // Parents are linked in the order in which they were persisted, like the graph based import did
+            parents.sort(Comparator.comparing(Revision::getId));
+            parents.forEach(revision::addParent);
+            importedRevisions.put(internalId, super.save(revision));
+            newRevisions++;
+        }
+        LOGGER.trace("Imported {} new revisions in project {}", newRevisions, project.getName());
+        return newRevisions;
+    }
+
+    /**
+     * Loads all revisions of the given project which are referenced by the given records either as revision or as
+     * parent. The revisions are loaded with a few bulk queries instead of one query per record.
+     */
+    @NotNull
+    private Map<String, Revision> findExistingRevisions(@NotNull Project project, @NotNull List<VcsRevisionRecord> records) {
+        Set<String> referencedIds = new HashSet<>();
+        for (VcsRevisionRecord record : records) {
+            referencedIds.add(record.getInternalId());
+            referencedIds.addAll(record.getParentIds());
+        }
+        Map<String, Revision> existingRevisions = new HashMap<>();
+        for (List<String> partition : Iterables.partition(referencedIds, REVISION_LOOKUP_PARTITION_SIZE)) {
+            getRepository().findAllByProjectAndInternalIdIn(project, partition).forEach(r -> existingRevisions.put(r.getInternalId(), r));
+        }
+        return existingRevisions;
     }
 
     /**
@@ -313,30 +378,6 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
         return getRepository().findAll(mergeRevisionIdsInProject.stream().map(BigInteger::longValue).collect(Collectors.toList()));
     }
 
-    /**
-     * Recursive implementation which converts external {@link VcsRevision} objects to {@link Revision} entities. If any
-     * of the revision objects already exist in the database, the rest of the graph will be fetched from the database.
-     * Use this method only if you only want to convert but not save the revision. Consider {@link
-     * #convertRevisionAndSave(VcsRevision, Project)} to save the graph also in the same transaction.
-     *
-     * @param rootRevision
-     *         The root revision used for starting the conversion.
-     * @param project
-     *         The project in which the revisions will be stored.
-     * @return A pair containing the converted revision and the number of new revisions.
-     */
-    @NotNull
-    @Transactional(readOnly = true)
-    protected Pair<Revision, Long> convertRevision(@NotNull VcsRevision rootRevision, @NotNull Project project) {
-        checkArgument(project.isPersisted(), "Project must be persisted");
-        Project reloadedProject = projectRepository.findOne(project.getId());
-
-        Map<String, Revision> revisionMap = buildRevisionMap(rootRevision, reloadedProject);
-        long newRevisions = collectParents(rootRevision, revisionMap);
-
-        return ImmutablePair.of(revisionMap.get(rootRevision.getInternalId()), newRevisions);
-    }
-
     /**
      * Traverses the child graph of a given revision and creates a flattened list of it. Note, that it is not guaranteed
      * that calling this method again on the last revision in the flattened list yields the same result as calling this
@@ -417,6 +458,39 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
         return getRepository().findAllWithModifyingDatabaseChangesInProject(project.getId());
     }
 
+    /**
+     * Returns the paths of all change log files which were read while indexing any revision of the given project. The
+     * paths are relative to the repository root.
+     *
+     * @param project
+     *         The persisted project to check.
+     * @return the paths of all known change log files in the given project.
+     */
+    @NotNull
+    @Transactional(readOnly = true)
+    public Set<String> findChangeLogFilesInProject(@NotNull Project project) {
+        checkArgument(project.isPersisted(), "Project must be persisted");
+        return new HashSet<>(getRepository().findAllChangeLogFilesInProject(project.getId()));
+    }
+
+    /**
+     * Stores the paths of the change log files which were read while indexing the given revision. Previously stored
+     * paths of the revision will be replaced.
+     *
+     * @param revision
+     *         The persisted revision which was indexed.
+     * @param changeLogFiles
+     *         The paths of the change log files relative to the repository root.
+     */
+    @Transactional
+    public void saveChangeLogFiles(@NotNull Revision revision, @NotNull Collection<String> changeLogFiles) {
+        checkArgument(revision.isPersisted(), "Revision must be persisted");
+        getRepository().deleteChangeLogFilesInRevision(revision.getId());
+        for (String changeLogFile : changeLogFiles) {
+            getRepository().insertChangeLogFile(revision.getId(), changeLogFile);
+        }
+    }
+
     private ProjectRevisionCache getProjectRevisionCache(Project project) {
         Long projectId = project.getId();
         if (!revisionCacheMap.containsKey(projectId)) {
@@ -450,72 +524,6 @@ public class RevisionGraphService extends AbstractTransactionalService<Revision,
         target.setRevisionMap(revisionMap);
     }
 
-    private long collectParents(@NotNull VcsRevision rootRevision, Map<String, Revision> revisionMap) {
-        Set<String> importedRevisions = new HashSet<>(revisionMap.size());
-        Queue<VcsRevision> revisionsToImport = new LinkedList<>();
-        revisionsToImport.add(rootRevision);
-        long newRevisions = 0;
-
-        while (!revisionsToImport.isEmpty()) {
-            VcsRevision revision = revisionsToImport.poll();
-            String internalId = revision.getInternalId();
-            if (importedRevisions.contains(internalId)) {
-                LOGGER.trace("Encountered visited revision {}", internalId);
-                continue;
-            } else {
-                importedRevisions.add(internalId);
-            }
-            Revision converted = revisionMap.get(internalId);
-            if (converted == null) {
-                LOGGER.trace("Revision {} is already imported", internalId);
-                continue;
-            }
-            for (VcsRevision parent : revision.getParents()) {
-                Revision convertedParent = revisionMap.get(parent.getInternalId());
-                if (convertedParent == null) {
-                    // The parent will be missing, because its child already exists
-                    continue;
-                }
-                LOGGER.trace("Adding revision {} as parent of {}", parent.getInternalId(), internalId);
-                converted.addParent(convertedParent);
-                revisionsToImport.add(parent);
-                newRevisions++;
-            }
-        }
-        return newRevisions;
-    }
-
-
-    @NotNull
-    private Map<String, Revision> buildRevisionMap(@NotNull VcsRevision rootRevision, @NotNull Project project) {
-        Map<String, Revision> revisionMap = new HashMap<>();
-        Queue<VcsRevision> revisionsToConvert = new LinkedList<>();
-        revisionsToConvert.add(rootRevision);
-
-        while (!revisionsToConvert.isEmpty()) {
-            VcsRevision revision = revisionsToConvert.poll();
-            validator.checkConstraints(revision);
-            String internalId = revision.getInternalId();
-            if (revisionMap.containsKey(internalId)) {
-                // Already visited this revision - skip other parents
-                LOGGER.trace("Found visited revision {}", internalId);
-                continue;
-            }
-            Revision converted = findByInternalIdAndProject(internalId, project);
-            if (converted != null) {
-                // Existing revision means that all parents have already been persisted - skip other parents
-                LOGGER.trace("Found existing revision {} in database", internalId);
-            } else {
-                // Convert new revision and add all its parents to the queue
-                converted = new Revision(revision).setProject(project);
-                LOGGER.trace("Found new revision {}", internalId);
-                revisionsToConvert.addAll(revision.getParents());
-            }
-            revisionMap.put(internalId, converted);
-        }
-        return revisionMap;
-    }
-
     private void saveAndReplaceChildren(Revision revisionToPersist, Multimap<Revision, Revision> revisionChildMap) {
         LOGGER.trace("Saving revision {}", revisionToPersist.getInternalId());
         Revision persistedRevision = super.save(revisionToPersist);
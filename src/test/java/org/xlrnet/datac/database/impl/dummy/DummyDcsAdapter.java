@@ -1,6 +1,9 @@
 package org.xlrnet.datac.database.impl.dummy;
 
+import java.io.Writer;
+import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.commons.lang3.RandomStringUtils;
@@ -12,10 +15,15 @@ import org.xlrnet.datac.commons.exception.DatacTechnicalException;
 import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
 import org.xlrnet.datac.database.api.DatabaseChangeSystemMetaInfo;
 import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
+import org.xlrnet.datac.database.domain.AppliedChangeSet;
 import org.xlrnet.datac.database.domain.DatabaseChange;
 import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseType;
 import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.IndexedChangeLog;
 import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.domain.Revision;
 
 /**
  * Dummy change adapter which corresponds to the dummy VCS adapter. Creates a complex change graph with various
@@ -165,6 +173,18 @@ public class DummyDcsAdapter implements DatabaseChangeSystemAdapter {
         return changeSets;
     }
 
+    @NotNull
+    @Override
+    public IndexedChangeLog indexChangeLog(@NotNull Project project) throws DatacTechnicalException {
+        return new IndexedChangeLog(listDatabaseChangeSetsForProject(project), Collections.singleton(project.getChangelogLocation()));
+    }
+
+    @NotNull
+    @Override
+    public IndexedChangeLog indexChangeLog(@NotNull Project project, @NotNull VcsFileSnapshot snapshot) throws DatacTechnicalException {
+        return indexChangeLog(project);
+    }
+
     @NotNull
     @Override
     public IPreparedDeploymentContainer prepareDeployment(@NotNull Project project, @NotNull DeploymentInstance targetInstance, @NotNull DatabaseChangeSet changeSet) throws DatacTechnicalException {
@@ -172,6 +192,23 @@ public class DummyDcsAdapter implements DatabaseChangeSystemAdapter {
         return null;
     }
 
+    @NotNull
+    @Override
+    public List<AppliedChangeSet> listAppliedChangeSets(@NotNull Connection connection) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void writeOfflineSql(@NotNull Project project, @NotNull Revision revision, @NotNull List<DatabaseChangeSet> changeSets, @NotNull DatabaseType databaseType, @NotNull Writer writer) {
+        // Nothing to do...
+    }
+
+    @NotNull
+    @Override
+    public List<String> generateOfflineSql(@NotNull Project project, @NotNull Revision revision, @NotNull DatabaseChangeSet changeSet, @NotNull DatabaseType databaseType) {
+        return Collections.emptyList();
+    }
+
     private DatabaseChange buildDummyChange() {
         return new DatabaseChange()
                 .setChecksum(RandomStringUtils.random(16))
@@ -0,0 +1,77 @@
+package org.xlrnet.datac.database.impl.liquibase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.parser.ChangeLogParserFactory;
+
+public class CustomLiquibaseFileSystemResourceAccessorTest {
+
+    private static final String CHANGELOG_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<databaseChangeLog xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n" +
+            "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+            "        xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.5.xsd\">\n";
+
+    private static final String CHANGELOG_FOOTER = "</databaseChangeLog>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path basePath;
+
+    @Before
+    public void setup() throws Exception {
+        basePath = temporaryFolder.getRoot().toPath();
+        Files.createDirectories(basePath.resolve("db/include"));
+        Files.createDirectories(basePath.resolve("db/empty"));
+        Files.createDirectories(basePath.resolve("docs"));
+        write("docs/readme.txt", "Not part of the change log");
+        write("db/master.xml", CHANGELOG_HEADER +
+                "    <include file=\"include/tables.xml\" relativeToChangelogFile=\"true\"/>\n" +
+                "    <includeAll path=\"empty/\" relativeToChangelogFile=\"true\"/>\n" +
+                CHANGELOG_FOOTER);
+        write("db/include/tables.xml", CHANGELOG_HEADER +
+                "    <changeSet id=\"1\" author=\"test\">\n" +
+                "        <createTable tableName=\"test\">\n" +
+                "            <column name=\"id\" type=\"int\"/>\n" +
+                "        </createTable>\n" +
+                "    </changeSet>\n" +
+                CHANGELOG_FOOTER);
+    }
+
+    @Test
+    public void testGetAccessedPaths() throws Exception {
+        CustomLiquibaseFileSystemResourceAccessor resourceAccessor = new CustomLiquibaseFileSystemResourceAccessor(basePath.toString());
+
+        ChangeLogParserFactory.getInstance().getParser("db/master.xml", resourceAccessor)
+                .parse("db/master.xml", new ChangeLogParameters(), resourceAccessor);
+
+        assertThat(resourceAccessor.getAccessedPaths())
+                .contains("db/master.xml", "db/include/tables.xml", "db/empty")
+                .doesNotContain("docs/readme.txt", "docs");
+    }
+
+    @Test
+    public void testGetAccessedPaths_withoutBaseDirectory() throws Exception {
+        CustomLiquibaseFileSystemResourceAccessor resourceAccessor = new CustomLiquibaseFileSystemResourceAccessor();
+
+        resourceAccessor.list(null, basePath.resolve("db").toString(), true, false, true);
+
+        assertThat(resourceAccessor.getAccessedPaths()).isEmpty();
+    }
+
+    private void write(String path, String content) throws Exception {
+        File file = basePath.resolve(path).toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
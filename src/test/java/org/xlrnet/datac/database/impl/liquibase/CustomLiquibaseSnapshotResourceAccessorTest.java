@@ -0,0 +1,116 @@
+package org.xlrnet.datac.database.impl.liquibase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.impl.jgit.JGitAdapter;
+import org.xlrnet.datac.vcs.impl.jgit.JGitRemoteRefCache;
+import org.xlrnet.datac.vcs.impl.jgit.JGitRepositoryPool;
+
+import liquibase.changelog.ChangeLogParameters;
+import liquibase.changelog.DatabaseChangeLog;
+import liquibase.parser.ChangeLogParserFactory;
+
+public class CustomLiquibaseSnapshotResourceAccessorTest {
+
+    private static final String CHANGELOG_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<databaseChangeLog xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n" +
+            "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+            "        xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.5.xsd\">\n";
+
+    private static final String CHANGELOG_FOOTER = "</databaseChangeLog>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JGitRepositoryPool repositoryPool;
+
+    private Path repositoryPath;
+
+    private RevCommit commit;
+
+    private VcsFileSnapshot snapshot;
+
+    @Before
+    public void setup() throws Exception {
+        repositoryPool = new JGitRepositoryPool();
+        repositoryPath = temporaryFolder.newFolder("repo").toPath();
+        try (Git git = Git.init().setDirectory(repositoryPath.toFile()).call()) {
+            write("docs/readme.txt", "Not part of the change log");
+            write("db/master.xml", CHANGELOG_HEADER +
+                    "    <include file=\"include/tables.xml\" relativeToChangelogFile=\"true\"/>\n" +
+                    "    <includeAll path=\"all/\" relativeToChangelogFile=\"true\"/>\n" +
+                    CHANGELOG_FOOTER);
+            write("db/include/tables.xml", changeSet("1", "first"));
+            write("db/all/views.xml", changeSet("2", "second"));
+            git.add().addFilepattern(".").call();
+            commit = git.commit().setMessage("Initial commit").setAuthor("test", "test@example.com").call();
+            // Changes in the working tree must not be visible in the snapshot
+            write("db/include/tables.xml", "broken");
+        }
+
+        Project project = new Project();
+        project.setUrl("dummy");
+        JGitAdapter adapter = new JGitAdapter(null, repositoryPool, new JGitRemoteRefCache(30), false, false);
+        snapshot = adapter.openLocalRepository(repositoryPath, project).openFileSnapshot(new Revision().setInternalId(commit.getName()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        snapshot.close();
+        repositoryPool.closeAll();
+    }
+
+    @Test
+    public void testGetAccessedPaths() throws Exception {
+        CustomLiquibaseSnapshotResourceAccessor resourceAccessor = new CustomLiquibaseSnapshotResourceAccessor(snapshot);
+
+        DatabaseChangeLog changeLog = ChangeLogParserFactory.getInstance().getParser("db/master.xml", resourceAccessor)
+                .parse("db/master.xml", new ChangeLogParameters(), resourceAccessor);
+
+        assertEquals(2, changeLog.getChangeSets().size());
+        assertThat(resourceAccessor.getAccessedPaths())
+                .contains("db/master.xml", "db/include/tables.xml", "db/all/views.xml", "db/all")
+                .doesNotContain("docs/readme.txt", "docs");
+    }
+
+    @Test
+    public void testGetResourcesAsStream_outsideOfRepository() throws Exception {
+        CustomLiquibaseSnapshotResourceAccessor resourceAccessor = new CustomLiquibaseSnapshotResourceAccessor(snapshot);
+
+        assertNull(resourceAccessor.getResourcesAsStream("../repo/db/master.xml"));
+        assertNull(resourceAccessor.getResourcesAsStream("db/missing.xml"));
+        assertThat(resourceAccessor.getAccessedPaths()).isEmpty();
+    }
+
+    private String changeSet(String id, String tableName) {
+        return CHANGELOG_HEADER +
+                "    <changeSet id=\"" + id + "\" author=\"test\">\n" +
+                "        <createTable tableName=\"" + tableName + "\">\n" +
+                "            <column name=\"id\" type=\"int\"/>\n" +
+                "        </createTable>\n" +
+                "    </changeSet>\n" +
+                CHANGELOG_FOOTER;
+    }
+
+    private void write(String path, String content) throws Exception {
+        Path file = repositoryPath.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
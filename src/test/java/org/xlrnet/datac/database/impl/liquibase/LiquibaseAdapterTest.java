@@ -0,0 +1,275 @@
+package org.xlrnet.datac.database.impl.liquibase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
+import org.xlrnet.datac.database.domain.AppliedChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+import org.xlrnet.datac.database.domain.DatabaseType;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.services.ConnectionManagerService;
+import org.xlrnet.datac.database.services.SqlExecutionService;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.FileService;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.impl.jgit.JGitAdapter;
+import org.xlrnet.datac.vcs.impl.jgit.JGitRemoteRefCache;
+import org.xlrnet.datac.vcs.impl.jgit.JGitRepositoryPool;
+import org.xlrnet.datac.vcs.services.VersionControlSystemRegistry;
+
+import liquibase.database.jvm.JdbcConnection;
+
+public class LiquibaseAdapterTest {
+
+    private static final String CHANGELOG_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<databaseChangeLog xmlns=\"http://www.liquibase.org/xml/ns/dbchangelog\"\n" +
+            "        xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+            "        xsi:schemaLocation=\"http://www.liquibase.org/xml/ns/dbchangelog http://www.liquibase.org/xml/ns/dbchangelog/dbchangelog-3.5.xsd\">\n";
+
+    private static final String CHANGELOG_FOOTER = "</databaseChangeLog>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JGitRepositoryPool repositoryPool;
+
+    private JGitAdapter vcsAdapter;
+
+    private LiquibaseAdapter liquibaseAdapter;
+
+    private Path repositoryPath;
+
+    private Project project;
+
+    private Revision revision;
+
+    private List<DatabaseChangeSet> changeSets;
+
+    private String jdbcUrl;
+
+    private SqlExecutionService sqlExecutionService;
+
+    private LiquibaseConnectionFactory connectionFactory;
+
+    @Before
+    public void setup() throws Exception {
+        repositoryPath = temporaryFolder.newFolder("repo").toPath();
+        try (Git git = Git.init().setDirectory(repositoryPath.toFile()).call()) {
+            write("db/master.xml", CHANGELOG_HEADER +
+                    "    <changeSet id=\"1\" author=\"test\">\n" +
+                    "        <createTable tableName=\"person\">\n" +
+                    "            <column name=\"id\" type=\"int\"/>\n" +
+                    "        </createTable>\n" +
+                    "    </changeSet>\n" +
+                    "    <changeSet id=\"2\" author=\"test\">\n" +
+                    "        <sqlFile path=\"sql/insert.sql\" relativeToChangelogFile=\"true\"/>\n" +
+                    "    </changeSet>\n" +
+                    CHANGELOG_FOOTER);
+            write("db/sql/insert.sql", "INSERT INTO person (id) VALUES (1);\nINSERT INTO person (id) VALUES (2);");
+            git.add().addFilepattern(".").call();
+            revision = new Revision().setInternalId(git.commit().setMessage("Initial commit").setAuthor("test", "test@example.com").call().getName());
+        }
+
+        project = new Project();
+        project.setId(1L);
+        project.setUrl("dummy");
+        project.setChangelogLocation("db/master.xml");
+
+        repositoryPool = new JGitRepositoryPool();
+        vcsAdapter = new JGitAdapter(null, repositoryPool, new JGitRemoteRefCache(30), false, false);
+        FileService fileService = mock(FileService.class);
+        when(fileService.getProjectRepositoryPath(project)).thenReturn(repositoryPath);
+        VersionControlSystemRegistry registry = mock(VersionControlSystemRegistry.class);
+        when(registry.getVcsAdapter(project)).thenReturn(vcsAdapter);
+        jdbcUrl = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        connectionFactory = mock(LiquibaseConnectionFactory.class);
+        when(connectionFactory.createDatabaseConnectionFromConfig(any(DeploymentInstance.class)))
+                .thenAnswer(invocation -> new JdbcConnection(DriverManager.getConnection(jdbcUrl, "sa", "")));
+        ConnectionManagerService connectionManagerService = mock(ConnectionManagerService.class);
+        when(connectionManagerService.getConnectionFromConfig(any(DatabaseConnection.class), anyBoolean()))
+                .thenAnswer(invocation -> DriverManager.getConnection(jdbcUrl, "sa", ""));
+        sqlExecutionService = new SqlExecutionService(connectionManagerService, 10);
+        liquibaseAdapter = new LiquibaseAdapter(fileService, registry, connectionFactory);
+
+        try (VcsFileSnapshot snapshot = vcsAdapter.openLocalRepository(repositoryPath, project).openFileSnapshot(revision)) {
+            changeSets = liquibaseAdapter.indexChangeLog(project, snapshot).getChangeSets();
+        }
+        changeSets.forEach(c -> c.setRevision(revision));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        repositoryPool.closeAll();
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    @Test
+    public void testIndexChangeLog_sqlFile() {
+        assertEquals(2, changeSets.size());
+        assertThat(changeSets.get(1).getChanges().get(0).getPreviewSql()).contains("INSERT INTO person (id) VALUES (2)");
+    }
+
+    @Test
+    public void testPrepareDeployment_sqlFileAfterSnapshotWasClosed() throws Exception {
+        DatabaseChangeSet sqlFileChangeSet = changeSets.get(1);
+
+        // Both deployments use the same cached change log, but generate their SQL separately
+        List<String> first = liquibaseAdapter.prepareDeployment(project, buildInstance("first", null), sqlFileChangeSet).getGeneratedSql();
+        List<String> second = liquibaseAdapter.prepareDeployment(project, buildInstance("second", "OTHER"), sqlFileChangeSet).getGeneratedSql();
+
+        // Every statement is passed on separately and without its end delimiter
+        assertThat(first).containsExactly("INSERT INTO person (id) VALUES (1)", "INSERT INTO person (id) VALUES (2)");
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testExecutePreparedDeployment_recordsChangeSetInSameTransaction() throws Exception {
+        DeploymentInstance instance = buildInstance("first", null);
+
+        sqlExecutionService.executePreparedDeployment(liquibaseAdapter.prepareDeployment(project, instance, changeSets.get(0)), result -> {});
+        sqlExecutionService.executePreparedDeployment(liquibaseAdapter.prepareDeployment(project, instance, changeSets.get(1)), result -> {});
+        try {
+            // The table exists already, so the change set fails and must not be recorded again
+            sqlExecutionService.executePreparedDeployment(liquibaseAdapter.prepareDeployment(project, instance, changeSets.get(0)), result -> {});
+            fail("Expected SQLException");
+        } catch (SQLException e) {
+            // Expected
+        }
+
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "sa", "")) {
+            List<AppliedChangeSet> appliedChangeSets = liquibaseAdapter.listAppliedChangeSets(connection);
+            assertThat(appliedChangeSets).extracting(AppliedChangeSet::getInternalId).containsExactly("1", "2");
+            assertThat(appliedChangeSets).extracting(AppliedChangeSet::getChecksum).containsExactly(changeSets.get(0).getChecksum(), changeSets.get(1).getChecksum());
+            List<Integer> orders = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT ORDEREXECUTED FROM DATABASECHANGELOG ORDER BY ID")) {
+                while (resultSet.next()) {
+                    orders.add(resultSet.getInt(1));
+                }
+            }
+            assertThat(orders).containsExactly(1, 2);
+        }
+    }
+
+    @Test
+    public void testPrepareDeployment_changeLogWithoutConnection() throws Exception {
+        DeploymentInstance instance = buildInstance("first", null);
+
+        liquibaseAdapter.prepareDeployment(project, instance, changeSets.get(0));
+        IPreparedDeploymentContainer preparedDeployment = liquibaseAdapter.prepareDeployment(project, instance, changeSets.get(0));
+
+        // Only the cached change set SQL needs a connection, the change log table is checked when the SQL is executed
+        verify(connectionFactory, times(1)).createDatabaseConnectionFromConfig(any(DeploymentInstance.class));
+        assertEquals("DATABASECHANGELOG", preparedDeployment.getChangeLogEntry().getTableName());
+        assertThat(preparedDeployment.getChangeLogEntry().getInsertSql()).contains("INSERT INTO").contains("?");
+    }
+
+    @Test
+    public void testWriteOfflineSql_sqlFileAfterSnapshotWasClosed() throws Exception {
+        StringWriter firstExport = new StringWriter();
+        StringWriter secondExport = new StringWriter();
+
+        liquibaseAdapter.writeOfflineSql(project, revision, changeSets, DatabaseType.H2, firstExport);
+        liquibaseAdapter.writeOfflineSql(project, revision, changeSets, DatabaseType.HSQL, secondExport);
+
+        assertThat(firstExport.toString()).contains("CREATE TABLE", "INSERT INTO person (id) VALUES (2)");
+        assertThat(secondExport.toString()).contains("CREATE TABLE", "INSERT INTO person (id) VALUES (2);");
+    }
+
+    @Test
+    public void testGenerateOfflineSql() throws Exception {
+        List<String> statements = liquibaseAdapter.generateOfflineSql(project, revision, changeSets.get(1), DatabaseType.HSQL);
+
+        assertThat(statements).containsExactly("INSERT INTO person (id) VALUES (1)", "INSERT INTO person (id) VALUES (2)");
+    }
+
+    @Test(timeout = 10000)
+    public void testWriteOfflineSql_doesNotBlockOtherGeneration() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Writer blockingWriter = new StringWriter() {
+            @Override
+            public void write(String str) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(str);
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> export = executor.submit(() -> {
+                liquibaseAdapter.writeOfflineSql(project, revision, changeSets, DatabaseType.H2, blockingWriter);
+                return null;
+            });
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            // A slow writer of one export doesn't block the generation for other dialects or deployments
+            List<String> statements = liquibaseAdapter.generateOfflineSql(project, revision, changeSets.get(1), DatabaseType.HSQL);
+
+            assertThat(statements).hasSize(2);
+            release.countDown();
+            export.get(5, TimeUnit.SECONDS);
+            assertThat(blockingWriter.toString()).contains("INSERT INTO person (id) VALUES (2)");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private DeploymentInstance buildInstance(String name, String schema) {
+        DatabaseConnection connection = new DatabaseConnection();
+        connection.setName(name);
+        connection.setType(DatabaseType.H2);
+        connection.setSchema(schema);
+        return new DeploymentInstance(name, connection);
+    }
+
+    private void write(String path, String content) throws Exception {
+        Path file = repositoryPath.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
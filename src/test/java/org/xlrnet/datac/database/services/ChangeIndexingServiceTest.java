@@ -0,0 +1,98 @@
+package org.xlrnet.datac.database.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.xlrnet.datac.AbstractSpringBootTest;
+import org.xlrnet.datac.database.domain.IndexingJournal;
+import org.xlrnet.datac.database.domain.repository.IndexingJournalRepository;
+import org.xlrnet.datac.database.impl.dummy.DummyDcsAdapter;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.domain.ProjectState;
+import org.xlrnet.datac.foundation.services.ProjectService;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
+import org.xlrnet.datac.vcs.domain.Branch;
+import org.xlrnet.datac.vcs.impl.dummy.DummyLocalRepository;
+import org.xlrnet.datac.vcs.impl.dummy.DummyVcsAdapter;
+import org.xlrnet.datac.vcs.impl.dummy.DummyVcsMetaInfo;
+import org.xlrnet.datac.vcs.services.RevisionGraphService;
+
+/**
+ * Integration test for resuming an interrupted indexing process from its journal.
+ */
+public class ChangeIndexingServiceTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private RevisionGraphService revisionGraphService;
+
+    @Autowired
+    private ChangeSetService changeSetService;
+
+    @Autowired
+    private ChangeIndexingService changeIndexingService;
+
+    @Autowired
+    private IndexingJournalService indexingJournalService;
+
+    @Autowired
+    private IndexingJournalRepository indexingJournalRepository;
+
+    private DummyLocalRepository localRepository;
+
+    private Project project;
+
+    @Before
+    public void setup() throws Exception {
+        project = new Project();
+        project.setName("Journal project");
+        project.setUrl("dummy");
+        project.setState(ProjectState.NEW);
+        project.setNewBranchPattern(".*");
+        project.setChangelogLocation("DUMMY.txt");
+        project.setPollInterval(300);
+        project.addBranch(new Branch().setInternalId("master").setName("master").setDevelopment(true));
+        project.setChangeSystemAdapterClass(DummyDcsAdapter.class.getName());
+        project.setVcsAdapterClass(DummyVcsAdapter.class.getName());
+        project.setVcsType(DummyVcsMetaInfo.VCS_NAME);
+        project = projectService.saveProject(project);
+
+        localRepository = new DummyLocalRepository();
+        Branch branch = project.getBranches().iterator().next();
+        List<VcsRevisionRecord> records = new ArrayList<>();
+        localRepository.streamNewRevisionsOnBranch(branch, Collections.emptySet(), records::add);
+        revisionGraphService.importRevisionRecords(project, records);
+    }
+
+    @Test
+    public void testIndexDatabaseChanges_resumesAtWatermark() throws Exception {
+        // Simulate a process which was interrupted after the first revision of its work list
+        IndexingJournal journal = indexingJournalService.createJournal(project, Arrays.asList(
+                revisionGraphService.findByInternalIdAndProject("6", project),
+                revisionGraphService.findByInternalIdAndProject("5", project),
+                revisionGraphService.findByInternalIdAndProject("4", project)));
+        beginTransaction();
+        indexingJournalRepository.updateWatermark(journal.getId(), 1);
+        commit();
+
+        changeIndexingService.indexDatabaseChanges(project, localRepository);
+
+        assertFalse(indexingJournalService.findUnfinishedJournal(project).isPresent());
+        // Revisions below the watermark are not indexed again
+        assertEquals(0, changeSetService.countByRevision(revisionGraphService.findByInternalIdAndProject("6", project)));
+        assertEquals(1, changeSetService.countByRevision(revisionGraphService.findByInternalIdAndProject("5", project)));
+        assertEquals(2, changeSetService.countByRevision(revisionGraphService.findByInternalIdAndProject("4", project)));
+        // Revisions which weren't part of the journal are indexed afterwards
+        assertEquals(2, changeSetService.countByRevision(revisionGraphService.findByInternalIdAndProject("3", project)));
+    }
+}
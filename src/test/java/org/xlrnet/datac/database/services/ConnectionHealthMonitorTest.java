@@ -0,0 +1,151 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.xlrnet.datac.database.domain.ConnectionPingResult;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+
+public class ConnectionHealthMonitorTest {
+
+    private static final int INTERVAL = 60;
+
+    private static final int JITTER = 15;
+
+    private static final int CONCURRENCY = 2;
+
+    /** Sizes of all pinged chunks. */
+    private final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+
+    private DatabaseConnectionService databaseConnectionService;
+
+    private TaskScheduler taskScheduler;
+
+    private ConnectionHealthMonitor monitor;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        databaseConnectionService = mock(DatabaseConnectionService.class);
+        ConnectionManagerService connectionManagerService = mock(ConnectionManagerService.class);
+        when(connectionManagerService.pingConnections(anyListOf(DatabaseConnection.class), any(IntConsumer.class))).thenAnswer(invocation -> {
+            List<DatabaseConnection> chunk = invocation.getArgumentAt(0, List.class);
+            chunkSizes.add(chunk.size());
+            return chunk.stream().map(c -> new ConnectionPingResult(c.getJdbcUrl(), true, "H2", "1.4", 1, null)).collect(Collectors.toList());
+        });
+        taskScheduler = mock(TaskScheduler.class);
+        monitor = buildMonitor(connectionManagerService);
+    }
+
+    @Test
+    public void testRunHealthCheck_pingsInChunks() {
+        List<DatabaseConnection> configs = buildConfigs(5);
+        when(databaseConnectionService.findAllOrderByNameAsc()).thenReturn(configs);
+        monitor.runHealthCheck();
+        assertThat(chunkSizes).containsExactly(2, 2, 1);
+        assertTrue(monitor.getCachedHealth(configs.get(4)).isPresent());
+
+        // Deleted connections are removed from the cache
+        when(databaseConnectionService.findAllOrderByNameAsc()).thenReturn(configs.subList(0, 3));
+        monitor.runHealthCheck();
+        assertThat(chunkSizes).containsExactly(2, 2, 1, 2, 1);
+        assertTrue(monitor.getCachedHealth(configs.get(2)).isPresent());
+        assertFalse(monitor.getCachedHealth(configs.get(4)).isPresent());
+    }
+
+    @Test
+    public void testRunAndReschedule() {
+        when(databaseConnectionService.findAllOrderByNameAsc()).thenReturn(buildConfigs(3));
+        ArgumentCaptor<Runnable> runCaptor = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Date> dateCaptor = ArgumentCaptor.forClass(Date.class);
+        long start = System.currentTimeMillis();
+
+        monitor.init();
+        verify(taskScheduler).schedule(runCaptor.capture(), dateCaptor.capture());
+        assertThat(dateCaptor.getValue().getTime() - start)
+                .isBetween(TimeUnit.SECONDS.toMillis(INTERVAL - JITTER), TimeUnit.SECONDS.toMillis(INTERVAL + JITTER) + 1000);
+        runCaptor.getValue().run();
+
+        // The next run is only scheduled after the current run is finished
+        assertThat(chunkSizes).containsExactly(2, 1);
+        verify(taskScheduler, times(2)).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    @Test
+    public void testRunAndReschedule_failure() {
+        when(databaseConnectionService.findAllOrderByNameAsc()).thenThrow(new IllegalStateException("Database is down"));
+
+        monitor.runAndReschedule();
+
+        verify(taskScheduler).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    @Test(timeout = 10000)
+    public void testRunHealthCheck_singleCheckThread() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.initialize();
+        ConnectionManagerService connectionManagerService = new ConnectionManagerService(1, 5, 300, 1800, 30, 1, 1, executor);
+        List<DatabaseConnection> configs = buildConfigs(3);
+        configs.forEach(c -> c.setUser("sa"));
+        when(databaseConnectionService.findAllOrderByNameAsc()).thenReturn(configs);
+        try {
+            // The run doesn't occupy a check thread, so its pings can't be queued behind the run itself
+            ConnectionHealthMonitor pingingMonitor = buildMonitor(connectionManagerService);
+            pingingMonitor.runHealthCheck();
+
+            assertThat(configs).extracting(c -> pingingMonitor.getCachedHealth(c).get().getPingResult().isConnected()).containsOnly(true);
+        } finally {
+            connectionManagerService.closeAll();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInit_disabled() {
+        ConnectionHealthMonitor disabledMonitor = new ConnectionHealthMonitor(databaseConnectionService, mock(ConnectionManagerService.class),
+                taskScheduler, 0, JITTER, CONCURRENCY);
+
+        disabledMonitor.init();
+
+        verify(taskScheduler, never()).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    private ConnectionHealthMonitor buildMonitor(ConnectionManagerService connectionManagerService) {
+        return new ConnectionHealthMonitor(databaseConnectionService, connectionManagerService, taskScheduler, INTERVAL, JITTER, CONCURRENCY);
+    }
+
+    private List<DatabaseConnection> buildConfigs(int count) {
+        List<DatabaseConnection> configs = new ArrayList<>();
+        for (long i = 1; i <= count; i++) {
+            DatabaseConnection config = new DatabaseConnection();
+            config.setId(i);
+            config.setName("Connection " + i);
+            config.setJdbcUrl("jdbc:h2:mem:health-" + i);
+            configs.add(config);
+        }
+        return configs;
+    }
+}
@@ -0,0 +1,336 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.xlrnet.datac.database.domain.ConnectionPingResult;
+import org.xlrnet.datac.database.domain.ConnectionPoolStatistics;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+
+public class ConnectionManagerServiceTest {
+
+    private static final int MAX_IDLE_TIME = 300;
+
+    private static final int CONNECT_TIMEOUT = 10;
+
+    private final BlockingDriver blockingDriver = new BlockingDriver();
+
+    private ConnectionManagerService connectionManagerService;
+
+    private DatabaseConnection config;
+
+    @Before
+    public void setup() throws Exception {
+        DriverManager.registerDriver(blockingDriver);
+        connectionManagerService = new ConnectionManagerService(1, 5, MAX_IDLE_TIME, 1800, 30, CONNECT_TIMEOUT, 5, new SimpleAsyncTaskExecutor());
+        config = buildConfig("jdbc:h2:mem:pool-first;DB_CLOSE_DELAY=-1");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connectionManagerService.closeAll();
+        DriverManager.deregisterDriver(blockingDriver);
+    }
+
+    @Test
+    public void testGetConnectionFromConfig_reusesPool() throws Exception {
+        Connection physicalConnection;
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, false)) {
+            physicalConnection = connection.unwrap(Connection.class);
+        }
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, false)) {
+            assertThat(connection.unwrap(Connection.class)).isSameAs(physicalConnection);
+        }
+
+        ConnectionPoolStatistics statistics = connectionManagerService.getPoolStatistics().iterator().next();
+        assertEquals(2, statistics.getBorrowCount());
+        assertEquals(0, statistics.getActive());
+        assertEquals(1, statistics.getIdle());
+    }
+
+    @Test
+    public void testGetConnectionFromConfig_rebuildsPoolAfterConfigChange() throws Exception {
+        connectionManagerService.getConnectionFromConfig(config, false).close();
+
+        config.setJdbcUrl("jdbc:h2:mem:pool-second;DB_CLOSE_DELAY=-1");
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, false)) {
+            assertThat(connection.getMetaData().getURL()).startsWith("jdbc:h2:mem:pool-second");
+        }
+
+        Collection<ConnectionPoolStatistics> statistics = connectionManagerService.getPoolStatistics();
+        assertThat(statistics).hasSize(1);
+        assertEquals(config.getJdbcUrl(), statistics.iterator().next().getJdbcUrl());
+        assertEquals(1, statistics.iterator().next().getBorrowCount());
+    }
+
+    @Test
+    public void testGetConnectionFromConfig_resetsSchemaOnReturn() throws Exception {
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, false);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SCHEMA IF NOT EXISTS OTHER");
+        }
+        config.setSchema("OTHER");
+
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, true)) {
+            assertEquals("OTHER", connection.getSchema());
+        }
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, false)) {
+            assertEquals("PUBLIC", connection.getSchema());
+        }
+    }
+
+    @Test
+    public void testEvictUnusedPools() throws Exception {
+        long later = System.currentTimeMillis() + MAX_IDLE_TIME * 1000L + 1000;
+        try (Connection connection = connectionManagerService.getConnectionFromConfig(config, false)) {
+            // Pools with borrowed connections are never evicted
+            connectionManagerService.evictUnusedPools(later);
+            assertThat(connectionManagerService.getPoolStatistics()).hasSize(1);
+        }
+
+        connectionManagerService.evictUnusedPools(System.currentTimeMillis());
+        assertThat(connectionManagerService.getPoolStatistics()).hasSize(1);
+
+        connectionManagerService.evictUnusedPools(later);
+        assertThat(connectionManagerService.getPoolStatistics()).isEmpty();
+    }
+
+    @Test
+    public void testPingConnections() throws Exception {
+        List<Integer> progress = new ArrayList<>();
+
+        List<ConnectionPingResult> results = connectionManagerService.pingConnections(Arrays.asList(config, buildUnsavedConfig("jdbc:unknown:test")), progress::add);
+
+        assertTrue(results.get(0).isConnected());
+        assertEquals("H2", results.get(0).getDbProductName());
+        assertFalse(results.get(1).isConnected());
+        assertEquals("jdbc:unknown:test", results.get(1).getJdbcUrl());
+        assertThat(progress).containsExactly(1, 2);
+    }
+
+    @Test
+    public void testPingConnections_timeout() throws Exception {
+        ConnectionManagerService service = new ConnectionManagerService(1, 5, MAX_IDLE_TIME, 1800, 30, 1, 0, new SimpleAsyncTaskExecutor());
+
+        long start = System.currentTimeMillis();
+        List<ConnectionPingResult> results = service.pingConnections(Arrays.asList(buildUnsavedConfig(BlockingDriver.URL), config), finished -> {});
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(TimeUnit.SECONDS.toMillis(CONNECT_TIMEOUT));
+        assertFalse(results.get(0).isConnected());
+        assertTrue(results.get(0).getException() instanceof SQLTimeoutException);
+        assertTrue(results.get(1).isConnected());
+        // The blocked ping is interrupted after its timeout
+        assertTrue(blockingDriver.interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testPingConnections_queuedTimeout() throws Exception {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        ConnectionManagerService service = new ConnectionManagerService(1, 5, MAX_IDLE_TIME, 1800, 30, 1, 0, executor);
+        try {
+            // The only check thread is busy, so the ping can't be started
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            List<ConnectionPingResult> results = service.pingConnections(Arrays.asList(config), finished -> {});
+
+            assertFalse(results.get(0).isConnected());
+            assertTrue(results.get(0).getException() instanceof SQLTimeoutException);
+            assertEquals("Connection test wasn't started in time", results.get(0).getException().getMessage());
+        } finally {
+            release.countDown();
+            service.closeAll();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPingConnections_rejected() throws Exception {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        ConnectionManagerService service = new ConnectionManagerService(1, 5, MAX_IDLE_TIME, 1800, 30, 1, 0, executor);
+        List<Integer> progress = new ArrayList<>();
+        try {
+            // The only check thread is blocked by the first ping, so the executor rejects the second one
+            List<ConnectionPingResult> results = service.pingConnections(Arrays.asList(buildUnsavedConfig(BlockingDriver.URL), config), progress::add);
+
+            assertFalse(results.get(0).isConnected());
+            assertTrue(results.get(0).getException() instanceof SQLTimeoutException);
+            assertFalse(results.get(1).isConnected());
+            assertTrue(results.get(1).getException().getCause() instanceof TaskRejectedException);
+            assertThat(progress).containsExactly(1, 2);
+        } finally {
+            service.closeAll();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPingConnections_interrupted() throws Exception {
+        Thread.currentThread().interrupt();
+        List<ConnectionPingResult> results = connectionManagerService.pingConnections(Arrays.asList(buildUnsavedConfig(BlockingDriver.URL)), finished -> {});
+
+        assertTrue("Interrupt flag must be restored", Thread.interrupted());
+        assertFalse(results.get(0).isConnected());
+        assertEquals("Connection test was interrupted", results.get(0).getException().getMessage());
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        RecordingDriver recordingDriver = new RecordingDriver();
+        DriverManager.registerDriver(recordingDriver);
+        try {
+            for (DatabaseConnection target : Arrays.asList(buildConfig(RecordingDriver.URL), buildUnsavedConfig(RecordingDriver.URL))) {
+                try {
+                    connectionManagerService.getConnectionFromConfig(target, false);
+                    fail("Expected exception");
+                } catch (SQLException e) {
+                    assertEquals("Connection refused", e.getMessage());
+                }
+            }
+
+            // The timeout is passed to pooled and direct connections without changing the timeout of the whole JVM
+            assertThat(recordingDriver.connectProperties).hasSize(2);
+            for (Properties properties : recordingDriver.connectProperties) {
+                assertEquals(String.valueOf(CONNECT_TIMEOUT), properties.getProperty("loginTimeout"));
+                assertEquals("sa", properties.getProperty("user"));
+            }
+            assertEquals(0, DriverManager.getLoginTimeout());
+        } finally {
+            DriverManager.deregisterDriver(recordingDriver);
+        }
+    }
+
+    private DatabaseConnection buildUnsavedConfig(String jdbcUrl) {
+        DatabaseConnection databaseConnection = buildConfig(jdbcUrl);
+        databaseConnection.setId(null);
+        return databaseConnection;
+    }
+
+    private DatabaseConnection buildConfig(String jdbcUrl) {
+        DatabaseConnection databaseConnection = new DatabaseConnection();
+        databaseConnection.setId(1L);
+        databaseConnection.setName("Pooled connection");
+        databaseConnection.setJdbcUrl(jdbcUrl);
+        databaseConnection.setUser("sa");
+        databaseConnection.setPassword("");
+        return databaseConnection;
+    }
+
+    /**
+     * Driver whose connections never get established until the connecting thread is interrupted.
+     */
+    private static class BlockingDriver implements Driver {
+
+        private static final String URL = "jdbc:blocking:test";
+
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            throw new SQLException("Connection was not established");
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return URL.equals(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    /**
+     * Driver which refuses all connections and records the properties with which they were requested.
+     */
+    private static class RecordingDriver extends BlockingDriver {
+
+        private static final String URL = "jdbc:postgresql://recording/test";
+
+        private final List<Properties> connectProperties = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            connectProperties.add(info);
+            throw new SQLException("Connection refused");
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return URL.equals(url);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyFloat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.xlrnet.datac.commons.exception.LockFailedException;
+import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
+import org.xlrnet.datac.database.domain.ConnectionPingResult;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+import org.xlrnet.datac.database.domain.DatabaseType;
+import org.xlrnet.datac.database.domain.DeploymentGroup;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.DryRunReport;
+import org.xlrnet.datac.database.domain.DryRunResult;
+import org.xlrnet.datac.database.domain.QuickDeploymentConfig;
+import org.xlrnet.datac.database.domain.QuickDeploymentResult;
+import org.xlrnet.datac.database.util.DeploymentPhase;
+import org.xlrnet.datac.foundation.components.EventLogProxy;
+import org.xlrnet.datac.foundation.domain.EventLog;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.EventLogService;
+import org.xlrnet.datac.foundation.ui.components.ProgressChangeHandler;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.LockingService;
+
+public class DeploymentManagerServiceTest {
+
+    private static final int SHARED_LOCK_TIMEOUT = 30;
+
+    private final Project project = new Project();
+
+    private final Revision revision = new Revision().setInternalId("revision");
+
+    private final DatabaseChangeSet createTable = buildChangeSet("1");
+
+    private final DatabaseChangeSet brokenInsert = buildChangeSet("2");
+
+    private final DatabaseChangeSet insert = buildChangeSet("3");
+
+    private final LockLease lease = new LockLease(UUID.randomUUID(), "project", LockMode.SHARED, Instant.now());
+
+    private LockingService lockingService;
+
+    private DryRunResultService dryRunResultService;
+
+    private DeploymentManagerService deploymentManagerService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        project.setId(1L);
+        project.setName("Dry run project");
+
+        lockingService = mock(LockingService.class);
+        when(lockingService.tryAcquire(project, LockMode.SHARED, SHARED_LOCK_TIMEOUT, TimeUnit.SECONDS)).thenReturn(Optional.of(lease));
+        DatabaseChangeSystemAdapter adapter = mock(DatabaseChangeSystemAdapter.class);
+        when(adapter.generateOfflineSql(project, revision, createTable, DatabaseType.H2))
+                .thenReturn(Arrays.asList("CREATE TABLE person (id INT)", "INSERT INTO person (id) VALUES (1)", "INSERT INTO person (id) VALUES (2)"));
+        when(adapter.generateOfflineSql(project, revision, brokenInsert, DatabaseType.H2))
+                .thenReturn(Arrays.asList("INSERT INTO person (id) VALUES (3)", "INSERT INTO missing (id) VALUES (1)"));
+        when(adapter.generateOfflineSql(project, revision, insert, DatabaseType.H2))
+                .thenReturn(Arrays.asList("UPDATE person SET id = id + 10"));
+        DatabaseChangeSystemAdapterRegistry registry = mock(DatabaseChangeSystemAdapterRegistry.class);
+        when(registry.getAdapterByProject(project)).thenReturn(Optional.of(adapter));
+        ChangeSetService changeSetService = mock(ChangeSetService.class);
+        when(changeSetService.findDatabaseChangeSetsInRevision(revision)).thenReturn(Arrays.asList(createTable, brokenInsert, insert));
+        dryRunResultService = mock(DryRunResultService.class);
+        when(dryRunResultService.replaceResults(anyCollectionOf(DryRunResult.class)))
+                .thenAnswer(invocation -> new ArrayList<>((Collection<DryRunResult>) invocation.getArgumentAt(0, Collection.class)));
+
+        deploymentManagerService = new DeploymentManagerService(lockingService, mock(EventLogService.class), mock(EventLogProxy.class),
+                mock(ConnectionHealthMonitor.class), registry, mock(ParallelDeploymentExecutor.class),
+                new SqlExecutionService(mock(ConnectionManagerService.class), 10), changeSetService, dryRunResultService,
+                mock(DeploymentPlanningService.class), SHARED_LOCK_TIMEOUT);
+    }
+
+    @Test
+    public void testPerformDryRun() throws Exception {
+        List<Float> progress = new ArrayList<>();
+
+        DryRunReport report = deploymentManagerService.performDryRun(project, revision, (p, m) -> progress.add(p));
+
+        assertTrue(report.isSuccessful());
+        List<DryRunResult> results = report.getResults();
+        assertThat(results).extracting(DryRunResult::getChangeSet).containsExactly(createTable, brokenInsert, insert);
+        // Failed change sets don't stop the simulation of later change sets
+        assertThat(results).extracting(DryRunResult::isSuccessful).containsExactly(true, false, true);
+        assertEquals(1, report.countFailedChangeSets());
+        assertThat(results.get(1).getErrorMessage()).contains("MISSING");
+        // The inserts of the failed change set are batched, so none of them is counted
+        assertThat(results).extracting(DryRunResult::getStatementCount).containsExactly(3, 0, 1);
+        assertThat(results).extracting(DryRunResult::getRowCount).containsExactly(2L, 0L, 2L);
+        assertThat(progress).containsExactly(0f, 1f / 3, 2f / 3, 1f);
+        verify(dryRunResultService).replaceResults(results);
+        verify(lockingService).release(lease);
+    }
+
+    @Test
+    public void testPerformDryRun_usesThrowawayDatabase() throws Exception {
+        deploymentManagerService.performDryRun(project, revision, (p, m) -> {});
+
+        // A second dry run doesn't see the tables of the first one
+        DryRunReport report = deploymentManagerService.performDryRun(project, revision, (p, m) -> {});
+
+        assertThat(report.getResults()).extracting(DryRunResult::isSuccessful).containsExactly(true, false, true);
+    }
+
+    @Test(expected = LockFailedException.class)
+    public void testPerformDryRun_locked() throws Exception {
+        when(lockingService.tryAcquire(project, LockMode.SHARED, SHARED_LOCK_TIMEOUT, TimeUnit.SECONDS)).thenReturn(Optional.empty());
+
+        try {
+            deploymentManagerService.performDryRun(project, revision, (p, m) -> {});
+        } finally {
+            verify(dryRunResultService, never()).replaceResults(anyCollectionOf(DryRunResult.class));
+            verify(lockingService, never()).release(any(LockLease.class));
+        }
+    }
+
+    @Test
+    public void testPerformDryRun_noAdapter() throws Exception {
+        DatabaseChangeSystemAdapterRegistry registry = mock(DatabaseChangeSystemAdapterRegistry.class);
+        when(registry.getAdapterByProject(project)).thenReturn(Optional.empty());
+        DeploymentManagerService service = new DeploymentManagerService(lockingService, mock(EventLogService.class), mock(EventLogProxy.class),
+                mock(ConnectionHealthMonitor.class), registry, mock(ParallelDeploymentExecutor.class), mock(SqlExecutionService.class),
+                mock(ChangeSetService.class), dryRunResultService, mock(DeploymentPlanningService.class), SHARED_LOCK_TIMEOUT);
+
+        DryRunReport report = service.performDryRun(project, revision, (p, m) -> {});
+
+        assertFalse(report.isSuccessful());
+        assertEquals("Unable to open DCS adapter", report.getErrorMessage());
+        verify(lockingService).release(lease);
+    }
+
+    @Test
+    public void testStartAsynchronousQuickDeployment_unexpectedError() throws Exception {
+        when(lockingService.tryAcquire(project, LockMode.EXCLUSIVE)).thenReturn(Optional.of(lease));
+        EventLogService eventLogService = mock(EventLogService.class);
+        when(eventLogService.newEventLog()).thenReturn(new EventLog());
+        ConnectionHealthMonitor connectionHealthMonitor = mock(ConnectionHealthMonitor.class);
+        when(connectionHealthMonitor.checkConnections(anyListOf(DatabaseConnection.class), anyBoolean(), any(IntConsumer.class)))
+                .thenReturn(Collections.singletonList(new ConnectionPingResult("jdbc:h2:mem:", true, "H2", "1.4", 1, null)));
+        ParallelDeploymentExecutor parallelDeploymentExecutor = mock(ParallelDeploymentExecutor.class);
+        when(parallelDeploymentExecutor.deploy(anyCollectionOf(DeploymentInstance.class), any(ParallelDeploymentExecutor.InstanceDeployment.class),
+                anyBoolean(), anyBoolean(), anyFloat(), any(ProgressChangeHandler.class))).thenThrow(new TaskRejectedException("Queue is full"));
+        DatabaseChangeSystemAdapterRegistry registry = mock(DatabaseChangeSystemAdapterRegistry.class);
+        when(registry.getAdapterByProject(project)).thenReturn(Optional.of(mock(DatabaseChangeSystemAdapter.class)));
+        DeploymentManagerService service = new DeploymentManagerService(lockingService, eventLogService, mock(EventLogProxy.class),
+                connectionHealthMonitor, registry, parallelDeploymentExecutor, mock(SqlExecutionService.class),
+                mock(ChangeSetService.class), dryRunResultService, mock(DeploymentPlanningService.class), SHARED_LOCK_TIMEOUT);
+        DeploymentGroup group = new DeploymentGroup("group", project);
+        DeploymentInstance instance = new DeploymentInstance("instance", new DatabaseConnection());
+        group.addInstance(instance);
+        List<QuickDeploymentResult> results = new ArrayList<>();
+
+        service.startAsynchronousQuickDeployment(project, new QuickDeploymentConfig(Collections.singleton(instance), false, false, false),
+                insert, (p, m) -> {}, results::add);
+
+        assertThat(results).hasSize(1);
+        assertFalse(results.get(0).isSuccessful());
+        assertEquals(DeploymentPhase.MIGRATION, results.get(0).getPhase());
+        verify(lockingService).release(lease);
+    }
+
+    private DatabaseChangeSet buildChangeSet(String id) {
+        return new DatabaseChangeSet().setSourceFilename("db/changelog.xml").setAuthor("author").setInternalId(id).setChecksum("7:" + id);
+    }
+}
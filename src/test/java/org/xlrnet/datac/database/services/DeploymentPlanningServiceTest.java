@@ -0,0 +1,133 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.xlrnet.datac.database.domain.AppliedChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+import org.xlrnet.datac.database.domain.DeploymentGroup;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.InstanceChangePlan;
+import org.xlrnet.datac.database.impl.liquibase.LiquibaseAdapter;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.domain.Branch;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.RevisionGraphService;
+
+public class DeploymentPlanningServiceTest {
+
+    private final DeploymentInstance instance = new DeploymentInstance("instance", null);
+
+    private final Revision revision = new Revision();
+
+    @Test
+    public void testDiffChangeSets() {
+        DatabaseChangeSet applied = buildChangeSet("1", "7:a");
+        DatabaseChangeSet drifted = buildChangeSet("2", "7:b");
+        DatabaseChangeSet pending = buildChangeSet("3", "7:c");
+        List<AppliedChangeSet> appliedChangeSets = Arrays.asList(
+                new AppliedChangeSet("db\\changelog.xml", "author", "1", "7:a"),
+                new AppliedChangeSet("db/changelog.xml", "author", "2", "7:old"),
+                new AppliedChangeSet("db/changelog.xml", "author", "unknown", "7:x"));
+
+        InstanceChangePlan plan = DeploymentPlanningService.diffChangeSets(instance, revision, Arrays.asList(applied, drifted, pending), appliedChangeSets);
+
+        assertTrue(plan.isSuccessful());
+        assertEquals(Collections.singletonList(applied), plan.getAppliedChangeSets());
+        assertEquals(Collections.singletonList(drifted), plan.getDriftedChangeSets());
+        assertEquals(Collections.singletonList(pending), plan.getPendingChangeSets());
+    }
+
+    @Test
+    public void testDiffChangeSets_missingChecksum() {
+        DatabaseChangeSet changeSet = buildChangeSet("1", "7:a");
+
+        InstanceChangePlan plan = DeploymentPlanningService.diffChangeSets(instance, revision, Collections.singletonList(changeSet),
+                Collections.singletonList(new AppliedChangeSet("db/changelog.xml", "author", "1", null)));
+
+        assertEquals(Collections.singletonList(changeSet), plan.getAppliedChangeSets());
+    }
+
+    @Test
+    public void testPlanInstances() throws Exception {
+        String jdbcUrl = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE DATABASECHANGELOG (ID VARCHAR(255), AUTHOR VARCHAR(255), FILENAME VARCHAR(255), MD5SUM VARCHAR(35))");
+            statement.execute("INSERT INTO DATABASECHANGELOG VALUES ('1', 'author', 'db/changelog.xml', '7:a')");
+            statement.execute("INSERT INTO DATABASECHANGELOG VALUES ('2', 'author', 'db/changelog.xml', '7:old')");
+
+            Project project = new Project();
+            Branch branch = new Branch().setName("master").setInternalId("head").setProject(project);
+            branch.setId(1L);
+            DatabaseConnection databaseConnection = new DatabaseConnection();
+            databaseConnection.setJdbcUrl(jdbcUrl);
+            DeploymentGroup group = new DeploymentGroup("group", project, branch);
+            DeploymentInstance trackingInstance = new DeploymentInstance("tracking", databaseConnection);
+            trackingInstance.setId(1L);
+            group.addInstance(trackingInstance);
+            DeploymentInstance untrackedInstance = new DeploymentInstance("untracked", databaseConnection);
+            untrackedInstance.setId(2L);
+            new DeploymentGroup("other", project).addInstance(untrackedInstance);
+            revision.setId(1L);
+            List<DatabaseChangeSet> changeSets = Arrays.asList(buildChangeSet("1", "7:a"), buildChangeSet("2", "7:b"), buildChangeSet("3", "7:c"));
+
+            ChangeSetService changeSetService = mock(ChangeSetService.class);
+            when(changeSetService.findDatabaseChangeSetsInRevision(revision)).thenReturn(changeSets);
+            RevisionGraphService revisionGraphService = mock(RevisionGraphService.class);
+            when(revisionGraphService.findByInternalIdAndProject("head", project)).thenReturn(revision);
+            ConnectionManagerService connectionManagerService = mock(ConnectionManagerService.class);
+            when(connectionManagerService.getConnectionFromConfig(databaseConnection, true)).thenAnswer(invocation -> DriverManager.getConnection(jdbcUrl, "sa", ""));
+            DatabaseChangeSystemAdapterRegistry registry = mock(DatabaseChangeSystemAdapterRegistry.class);
+            when(registry.getAdapterByProject(project)).thenReturn(Optional.of(new LiquibaseAdapter(null, null, null)));
+            DeploymentPlanningService planningService = new DeploymentPlanningService(changeSetService, revisionGraphService,
+                    connectionManagerService, registry, new SimpleAsyncTaskExecutor("planning-test-"), 60);
+
+            Map<DeploymentInstance, InstanceChangePlan> plans = planningService.planInstances(Arrays.asList(untrackedInstance, trackingInstance));
+
+            assertThat(plans.keySet()).containsExactly(untrackedInstance, trackingInstance);
+            assertFalse(plans.get(untrackedInstance).isSuccessful());
+            InstanceChangePlan plan = plans.get(trackingInstance);
+            assertTrue(plan.isSuccessful());
+            assertEquals(Collections.singletonList(changeSets.get(0)), plan.getAppliedChangeSets());
+            assertEquals(Collections.singletonList(changeSets.get(1)), plan.getDriftedChangeSets());
+            assertEquals(Collections.singletonList(changeSets.get(2)), plan.getPendingChangeSets());
+
+            // Plans are cached until the instance is invalidated, e.g. after a deployment
+            statement.execute("INSERT INTO DATABASECHANGELOG VALUES ('3', 'author', 'db/changelog.xml', '7:c')");
+            assertSame(plan, planningService.planInstances(Collections.singletonList(trackingInstance)).get(trackingInstance));
+            planningService.invalidate(trackingInstance);
+            InstanceChangePlan updatedPlan = planningService.planInstances(Collections.singletonList(trackingInstance)).get(trackingInstance);
+            assertEquals(Arrays.asList(changeSets.get(0), changeSets.get(2)), updatedPlan.getAppliedChangeSets());
+            assertTrue(updatedPlan.getPendingChangeSets().isEmpty());
+            verify(changeSetService, times(2)).findDatabaseChangeSetsInRevision(revision);
+
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    private DatabaseChangeSet buildChangeSet(String id, String checksum) {
+        return new DatabaseChangeSet().setSourceFilename("db/changelog.xml").setAuthor("author").setInternalId(id).setChecksum(checksum);
+    }
+}
@@ -0,0 +1,114 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.xlrnet.datac.AbstractSpringBootTest;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DryRunResult;
+import org.xlrnet.datac.database.impl.dummy.DummyDcsAdapter;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.domain.ProjectState;
+import org.xlrnet.datac.foundation.services.ProjectService;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
+import org.xlrnet.datac.vcs.domain.Branch;
+import org.xlrnet.datac.vcs.impl.dummy.DummyLocalRepository;
+import org.xlrnet.datac.vcs.impl.dummy.DummyVcsAdapter;
+import org.xlrnet.datac.vcs.impl.dummy.DummyVcsMetaInfo;
+import org.xlrnet.datac.vcs.services.RevisionGraphService;
+
+/**
+ * Integration test for replacing the results of previous dry runs.
+ */
+public class DryRunResultServiceTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private RevisionGraphService revisionGraphService;
+
+    @Autowired
+    private ChangeSetService changeSetService;
+
+    @Autowired
+    private ChangeIndexingService changeIndexingService;
+
+    @Autowired
+    private DryRunResultService dryRunResultService;
+
+    private DatabaseChangeSet first;
+
+    private DatabaseChangeSet second;
+
+    @Before
+    public void setup() throws Exception {
+        Project project = new Project();
+        project.setName("Dry run project");
+        project.setUrl("dummy");
+        project.setState(ProjectState.NEW);
+        project.setNewBranchPattern(".*");
+        project.setChangelogLocation("DUMMY.txt");
+        project.setPollInterval(300);
+        project.addBranch(new Branch().setInternalId("master").setName("master").setDevelopment(true));
+        project.setChangeSystemAdapterClass(DummyDcsAdapter.class.getName());
+        project.setVcsAdapterClass(DummyVcsAdapter.class.getName());
+        project.setVcsType(DummyVcsMetaInfo.VCS_NAME);
+        project = projectService.saveProject(project);
+
+        DummyLocalRepository localRepository = new DummyLocalRepository();
+        Branch branch = project.getBranches().iterator().next();
+        List<VcsRevisionRecord> records = new ArrayList<>();
+        localRepository.streamNewRevisionsOnBranch(branch, Collections.emptySet(), records::add);
+        revisionGraphService.importRevisionRecords(project, records);
+        changeIndexingService.indexDatabaseChanges(project, localRepository);
+
+        List<DatabaseChangeSet> changeSets = changeSetService.findAllInRevision(revisionGraphService.findByInternalIdAndProject("4", project));
+        first = changeSets.get(0);
+        second = changeSets.get(1);
+    }
+
+    @Test
+    public void testReplaceResults() {
+        List<DryRunResult> initialResults = dryRunResultService.replaceResults(Arrays.asList(
+                buildResult(first, true, 100, null), buildResult(second, false, 200, "Table not found")));
+
+        // Change sets which are simulated again keep their row, change sets which aren't simulated keep their result
+        List<DryRunResult> replacedResults = dryRunResultService.replaceResults(Collections.singletonList(buildResult(second, true, 300, null)));
+
+        assertEquals(initialResults.get(1).getId(), replacedResults.get(0).getId());
+        Map<Long, DryRunResult> results = dryRunResultService.findByChangeSets(Arrays.asList(first, second));
+        assertThat(results).hasSize(2);
+        assertTrue(results.get(second.getId()).isSuccessful());
+        assertEquals(300, results.get(second.getId()).getExecutionTimeMicros());
+        assertNull(results.get(second.getId()).getErrorMessage());
+        assertEquals(100, results.get(first.getId()).getExecutionTimeMicros());
+    }
+
+    @Test
+    public void testFindByChangeSets_empty() {
+        dryRunResultService.replaceResults(Collections.singletonList(buildResult(first, false, 100, "Failed")));
+
+        assertFalse(dryRunResultService.findByChangeSets(Collections.singletonList(first)).get(first.getId()).isSuccessful());
+        assertThat(dryRunResultService.findByChangeSets(Collections.emptyList())).isEmpty();
+        assertThat(dryRunResultService.findByChangeSets(Collections.singletonList(second))).isEmpty();
+    }
+
+    private DryRunResult buildResult(DatabaseChangeSet changeSet, boolean successful, long executionTimeMicros, String errorMessage) {
+        return new DryRunResult().setChangeSet(changeSet).setExecuted(Instant.now()).setSuccessful(successful)
+                .setExecutionTimeMicros(executionTimeMicros).setStatementCount(1).setRowCount(1).setErrorMessage(errorMessage);
+    }
+}
@@ -0,0 +1,238 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.xlrnet.datac.commons.exception.DatacTechnicalException;
+import org.xlrnet.datac.database.domain.DeploymentGroup;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.InstanceDeploymentResult;
+
+public class ParallelDeploymentExecutorTest {
+
+    private static final long DEPLOYMENT_DURATION = 200;
+
+    /** Number of running deployments by group name. */
+    private final Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+
+    /** Maximum number of running deployments by group name. */
+    private final Map<String, AtomicInteger> maxRunning = new ConcurrentHashMap<>();
+
+    /** Start and end events of all deployments. */
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private long groupId;
+
+    @Test
+    public void testDeploy_respectsGroupLimits() throws Exception {
+        DeploymentGroup root = buildGroup("root", null, 2);
+        DeploymentGroup child = buildGroup("child", root, null);
+        DeploymentGroup other = buildGroup("other", null, null);
+        List<DeploymentInstance> instances = Arrays.asList(
+                buildInstance("r1", root), buildInstance("r2", root), buildInstance("c1", child), buildInstance("c2", child),
+                buildInstance("o1", other), buildInstance("o2", other), buildInstance("o3", other));
+
+        List<InstanceDeploymentResult> results = buildExecutor(8).deploy(instances, this::deploy, false, false, 0, (p, m) -> {});
+
+        assertThat(results).hasSize(7).extracting(InstanceDeploymentResult::isSuccessful).containsOnly(true);
+        // The limit of a group also covers the deployments in its children
+        assertThat(maxRunning.get("root").get()).isEqualTo(2);
+        assertThat(maxRunning.get("other").get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDeploy_respectsGlobalLimit() throws Exception {
+        DeploymentGroup group = buildGroup("group", null, null);
+        List<DeploymentInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            instances.add(buildInstance("i" + i, group));
+        }
+
+        List<InstanceDeploymentResult> results = buildExecutor(3).deploy(instances, this::deploy, false, false, 0, (p, m) -> {});
+
+        assertThat(results).hasSize(6).extracting(InstanceDeploymentResult::isSuccessful).containsOnly(true);
+        assertThat(maxRunning.get("group").get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDeploy_abortOnFailureSkipsRemainingInstances() throws Exception {
+        DeploymentGroup first = buildGroup("a", null, null);
+        DeploymentGroup second = buildGroup("b", null, null);
+        List<DeploymentInstance> instances = Arrays.asList(
+                buildInstance("i1", first), buildInstance("i2", first), buildInstance("i3", first), buildInstance("i4", second));
+
+        List<InstanceDeploymentResult> results = buildExecutor(1).deploy(instances, instance -> {
+            deploy(instance);
+            if ("i2".equals(instance.getName())) {
+                throw new DatacTechnicalException("Deployment failed");
+            }
+            return InstanceDeploymentResult.success(instance, "", Collections.emptyList());
+        }, true, true, 0, (p, m) -> {});
+
+        assertThat(results).extracting(r -> r.getInstance().getName()).containsExactly("i1", "i2", "i3", "i4");
+        assertThat(results).extracting(InstanceDeploymentResult::isSuccessful).containsExactly(true, false, false, false);
+        assertEquals("Deployment failed", results.get(1).getErrorMessage());
+        assertEquals(InstanceDeploymentResult.skipped(results.get(2).getInstance()), results.get(2));
+        assertThat(events).containsExactly("start:i1", "end:i1", "start:i2", "end:i2");
+    }
+
+    @Test
+    public void testDeploy_continuesAfterFailure() throws Exception {
+        DeploymentGroup group = buildGroup("a", null, null);
+        List<DeploymentInstance> instances = Arrays.asList(buildInstance("i1", group), buildInstance("i2", group), buildInstance("i3", group));
+
+        List<InstanceDeploymentResult> results = buildExecutor(1).deploy(instances, instance -> {
+            deploy(instance);
+            return "i1".equals(instance.getName()) ? InstanceDeploymentResult.failed(instance, "failed")
+                    : InstanceDeploymentResult.success(instance, "", Collections.emptyList());
+        }, false, true, 0, (p, m) -> {});
+
+        assertThat(results).extracting(InstanceDeploymentResult::isSuccessful).containsExactly(false, true, true);
+    }
+
+    @Test
+    public void testDeploy_sequentialGroups() throws Exception {
+        DeploymentGroup parent = buildGroup("a", null, null);
+        DeploymentGroup child = buildGroup("b", parent, null);
+        DeploymentGroup other = buildGroup("c", null, null);
+        List<DeploymentInstance> instances = Arrays.asList(
+                buildInstance("c1", other), buildInstance("b1", child), buildInstance("a2", parent),
+                buildInstance("b2", child), buildInstance("a1", parent), buildInstance("c2", other));
+        List<Float> progress = Collections.synchronizedList(new ArrayList<>());
+
+        List<InstanceDeploymentResult> results = buildExecutor(8).deploy(instances, this::deploy, false, true, 0.5f, (p, m) -> progress.add(p));
+
+        assertThat(results).hasSize(6).extracting(InstanceDeploymentResult::isSuccessful).containsOnly(true);
+        // Parent groups are deployed before their children and every group waits for the previous group
+        List<String> phases = events.stream().map(e -> e.replaceAll("^(start|end):(.).*$", "$2")).collect(Collectors.toList());
+        assertThat(phases).isSorted();
+        assertThat(maxRunning.get("a").get()).isEqualTo(2);
+        assertThat(progress).hasSize(6).isSorted().endsWith(1.0f);
+        assertThat(progress.get(0)).isGreaterThan(0.5f);
+    }
+
+    @Test
+    public void testDeploy_retriesRejectedDeployments() throws Exception {
+        ThreadPoolTaskExecutor executor = buildSaturatedExecutor();
+        DeploymentGroup group = buildGroup("group", null, null);
+        List<DeploymentInstance> instances = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            instances.add(buildInstance("i" + i, group));
+        }
+
+        try {
+            // The executor accepts only two deployments at once, the others are submitted again after a deployment finished
+            List<InstanceDeploymentResult> results = new ParallelDeploymentExecutor(executor, 5).deploy(instances, this::deploy, true, false, 0, (p, m) -> {});
+
+            assertThat(results).hasSize(5).extracting(InstanceDeploymentResult::isSuccessful).containsOnly(true);
+            assertThat(maxRunning.get("group").get()).isEqualTo(1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDeploy_rejectedWithoutRunningDeployments() throws Exception {
+        DeploymentGroup group = buildGroup("group", null, null);
+        List<DeploymentInstance> instances = Arrays.asList(buildInstance("i1", group), buildInstance("i2", group));
+        AsyncTaskExecutor executor = mock(AsyncTaskExecutor.class);
+        doThrow(new TaskRejectedException("Queue is full")).when(executor).execute(any(Runnable.class));
+
+        List<InstanceDeploymentResult> results = new ParallelDeploymentExecutor(executor, 2).deploy(instances, this::deploy, true, false, 0, (p, m) -> {});
+
+        assertThat(results).extracting(r -> r.getInstance().getName()).containsExactly("i1", "i2");
+        assertThat(results).extracting(InstanceDeploymentResult::isSuccessful).containsExactly(false, false);
+        assertEquals("Deployment executor is saturated", results.get(0).getErrorMessage());
+        assertEquals(InstanceDeploymentResult.skipped(results.get(1).getInstance()), results.get(1));
+    }
+
+    @Test
+    public void testDeploy_waitsForRunningDeploymentsOnError() throws Exception {
+        DeploymentGroup group = buildGroup("group", null, null);
+        List<DeploymentInstance> instances = Arrays.asList(buildInstance("i1", group), buildInstance("i2", group), buildInstance("i3", group));
+
+        try {
+            buildExecutor(3).deploy(instances, this::deploy, false, false, 0, (p, m) -> {
+                throw new IllegalStateException("Progress handler failed");
+            });
+            fail("Expected exception");
+        } catch (IllegalStateException e) {
+            // No deployment may still be running after the call returned
+            assertThat(events.stream().filter(event -> event.startsWith("end:")).count()).isEqualTo(3);
+        }
+    }
+
+    private InstanceDeploymentResult deploy(DeploymentInstance instance) {
+        String group = instance.getGroup().getName();
+        events.add("start:" + instance.getName());
+        int current = running.computeIfAbsent(group, k -> new AtomicInteger()).incrementAndGet();
+        maxRunning.computeIfAbsent(group, k -> new AtomicInteger()).accumulateAndGet(current, Math::max);
+        DeploymentGroup parent = instance.getGroup().getParent();
+        if (parent != null) {
+            // Also count running deployments of children in their parent group
+            int parentCurrent = running.computeIfAbsent(parent.getName(), k -> new AtomicInteger()).incrementAndGet();
+            maxRunning.computeIfAbsent(parent.getName(), k -> new AtomicInteger()).accumulateAndGet(parentCurrent, Math::max);
+        }
+        try {
+            Thread.sleep(DEPLOYMENT_DURATION);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.get(group).decrementAndGet();
+        if (parent != null) {
+            running.get(parent.getName()).decrementAndGet();
+        }
+        events.add("end:" + instance.getName());
+        return InstanceDeploymentResult.success(instance, "", Collections.emptyList());
+    }
+
+    private ParallelDeploymentExecutor buildExecutor(int maxConcurrency) {
+        return new ParallelDeploymentExecutor(new SimpleAsyncTaskExecutor("deployment-test-"), maxConcurrency);
+    }
+
+    /**
+     * Builds an executor with a single thread and a single queue slot, which rejects all further tasks.
+     */
+    private ThreadPoolTaskExecutor buildSaturatedExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+        return executor;
+    }
+
+    private DeploymentGroup buildGroup(String name, DeploymentGroup parent, Integer maxConcurrentDeployments) {
+        DeploymentGroup group = new DeploymentGroup(name, null);
+        group.setId(++groupId);
+        group.setMaxConcurrentDeployments(maxConcurrentDeployments);
+        if (parent != null) {
+            parent.addChildGroup(group);
+        }
+        return group;
+    }
+
+    private DeploymentInstance buildInstance(String name, DeploymentGroup group) {
+        DeploymentInstance instance = new DeploymentInstance(name, null);
+        group.addInstance(instance);
+        return instance;
+    }
+}
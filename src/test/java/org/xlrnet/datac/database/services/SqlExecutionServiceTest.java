@@ -0,0 +1,161 @@
+package org.xlrnet.datac.database.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.xlrnet.datac.database.api.IPreparedDeploymentContainer;
+import org.xlrnet.datac.database.domain.ChangeLogEntryTemplate;
+import org.xlrnet.datac.database.domain.DatabaseConnection;
+import org.xlrnet.datac.database.domain.DeploymentInstance;
+import org.xlrnet.datac.database.domain.StatementExecutionResult;
+
+/**
+ * Tests for {@link SqlExecutionService} against embedded H2 and HSQL databases.
+ */
+@RunWith(Parameterized.class)
+public class SqlExecutionServiceTest {
+
+    private final String jdbcUrlPrefix;
+
+    private final ConnectionManagerService connectionManagerService = mock(ConnectionManagerService.class);
+
+    private final SqlExecutionService sqlExecutionService = new SqlExecutionService(connectionManagerService, 10);
+
+    private String jdbcUrl;
+
+    private Connection connection;
+
+    public SqlExecutionServiceTest(String name, String jdbcUrlPrefix) {
+        this.jdbcUrlPrefix = jdbcUrlPrefix;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> databases() {
+        return Arrays.asList(new Object[][]{
+                {"H2", "jdbc:h2:mem:"},
+                {"HSQL", "jdbc:hsqldb:mem:"}
+        });
+    }
+
+    @Before
+    public void setup() throws SQLException {
+        jdbcUrl = jdbcUrlPrefix + UUID.randomUUID();
+        connection = DriverManager.getConnection(jdbcUrl, "SA", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE person (id INT PRIMARY KEY, name VARCHAR(255))");
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testExecuteInTransaction() throws SQLException {
+        List<StatementExecutionResult> streamedResults = new ArrayList<>();
+        List<String> statements = Arrays.asList(
+                "INSERT INTO person VALUES (1, 'a;b')",
+                "INSERT INTO person VALUES (2, 'c')",
+                "UPDATE person SET name = 'd' WHERE id = 2",
+                "CREATE TABLE address (id INT PRIMARY KEY)");
+
+        List<StatementExecutionResult> results = sqlExecutionService.executeInTransaction(connection, statements, streamedResults::add);
+
+        assertEquals(4, results.size());
+        assertEquals(results, streamedResults);
+        assertEquals("INSERT INTO person VALUES (1, 'a;b')", results.get(0).getSql());
+        assertTrue(results.get(0).isBatched());
+        assertTrue(results.get(2).isBatched());
+        assertEquals(1, results.get(2).getUpdateCount());
+        assertFalse(results.get(3).isBatched());
+        assertEquals(2, countRows("person"));
+        assertEquals(0, countRows("address"));
+        assertTrue(connection.getAutoCommit());
+    }
+
+    @Test
+    public void testExecuteInTransaction_rollbackOnFailure() throws SQLException {
+        List<String> statements = Arrays.asList(
+                "INSERT INTO person VALUES (1, 'a')",
+                "INSERT INTO person VALUES (1, 'duplicate')");
+
+        try {
+            sqlExecutionService.executeInTransaction(connection, statements, result -> {});
+            fail("Expected SQLException");
+        } catch (SQLException e) {
+            // Expected
+        }
+
+        assertEquals(0, countRows("person"));
+        assertTrue(connection.getAutoCommit());
+    }
+
+    @Test
+    public void testExecutePreparedDeployment_recordsChangeLogEntry() throws SQLException {
+        when(connectionManagerService.getConnectionFromConfig(any(DatabaseConnection.class), anyBoolean()))
+                .thenAnswer(invocation -> DriverManager.getConnection(jdbcUrl, "SA", ""));
+        ChangeLogEntryTemplate changeLogEntry = new ChangeLogEntryTemplate("changelog",
+                Collections.singletonList("CREATE TABLE changelog (id INT, orderexecuted INT)"), "orderexecuted",
+                "INSERT INTO changelog (id, orderexecuted) VALUES (1, ?)");
+
+        // The change log table is created by the first deployment
+        List<StatementExecutionResult> results = sqlExecutionService.executePreparedDeployment(
+                buildPreparedDeployment("INSERT INTO person VALUES (1, 'a')", changeLogEntry), result -> {});
+        sqlExecutionService.executePreparedDeployment(buildPreparedDeployment("INSERT INTO person VALUES (2, 'b')", changeLogEntry), result -> {});
+
+        assertEquals(3, results.size());
+        assertEquals(changeLogEntry.getInsertSql(), results.get(2).getSql());
+        assertEquals(1, results.get(2).getUpdateCount());
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT orderexecuted FROM changelog ORDER BY orderexecuted")) {
+            assertTrue(resultSet.next());
+            assertEquals(1, resultSet.getInt(1));
+            assertTrue(resultSet.next());
+            assertEquals(2, resultSet.getInt(1));
+            assertFalse(resultSet.next());
+        }
+    }
+
+    private IPreparedDeploymentContainer buildPreparedDeployment(String sql, ChangeLogEntryTemplate changeLogEntry) {
+        IPreparedDeploymentContainer preparedDeployment = mock(IPreparedDeploymentContainer.class);
+        when(preparedDeployment.getTargetInstance()).thenReturn(new DeploymentInstance("instance", new DatabaseConnection()));
+        when(preparedDeployment.getGeneratedSql()).thenReturn(Collections.singletonList(sql));
+        when(preparedDeployment.getChangeLogEntry()).thenReturn(changeLogEntry);
+        return preparedDeployment;
+    }
+
+    private int countRows(String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
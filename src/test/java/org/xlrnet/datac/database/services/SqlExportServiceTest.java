@@ -0,0 +1,143 @@
+package org.xlrnet.datac.database.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.xlrnet.datac.database.api.DatabaseChangeSystemAdapter;
+import org.xlrnet.datac.database.domain.DatabaseChangeSet;
+import org.xlrnet.datac.database.domain.DatabaseType;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.FileService;
+import org.xlrnet.datac.vcs.domain.Revision;
+import org.xlrnet.datac.vcs.services.LockingService;
+
+import com.google.common.io.CharStreams;
+
+public class SqlExportServiceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Project project = new Project();
+
+    private final Revision fromRevision = new Revision().setInternalId("from");
+
+    private final Revision toRevision = new Revision().setInternalId("to");
+
+    private final DatabaseChangeSet first = buildChangeSet("1");
+
+    private final DatabaseChangeSet second = buildChangeSet("2");
+
+    private DatabaseChangeSystemAdapter adapter;
+
+    private SqlExportService sqlExportService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        project.setId(1L);
+        project.setName("Export project");
+        project.setChangelogLocation("db/changelog.xml");
+
+        ChangeSetService changeSetService = mock(ChangeSetService.class);
+        when(changeSetService.findDatabaseChangeSetsInRevision(fromRevision)).thenReturn(Collections.singletonList(first));
+        when(changeSetService.findDatabaseChangeSetsInRevision(toRevision)).thenReturn(Arrays.asList(first, second));
+        adapter = mock(DatabaseChangeSystemAdapter.class);
+        doAnswer(invocation -> {
+            DatabaseType databaseType = invocation.getArgumentAt(3, DatabaseType.class);
+            Writer writer = invocation.getArgumentAt(4, Writer.class);
+            for (DatabaseChangeSet changeSet : (List<DatabaseChangeSet>) invocation.getArgumentAt(2, List.class)) {
+                writer.write(String.format("-- %s %s%n", databaseType, changeSet.getInternalId()));
+            }
+            return null;
+        }).when(adapter).writeOfflineSql(eq(project), eq(toRevision), anyListOf(DatabaseChangeSet.class), any(DatabaseType.class), any(Writer.class));
+        DatabaseChangeSystemAdapterRegistry registry = mock(DatabaseChangeSystemAdapterRegistry.class);
+        when(registry.getAdapterByProject(project)).thenReturn(Optional.of(adapter));
+        FileService fileService = mock(FileService.class);
+        when(fileService.getExportDirectoryPath()).thenReturn(temporaryFolder.getRoot().toPath());
+        LockingService lockingService = mock(LockingService.class);
+        when(lockingService.tryAcquire(eq(project), eq(LockMode.SHARED), anyLong(), any(TimeUnit.class)))
+                .thenReturn(Optional.of(new LockLease(UUID.randomUUID(), "project", LockMode.SHARED, Instant.now())));
+
+        sqlExportService = new SqlExportService(changeSetService, registry, fileService, lockingService, new SimpleAsyncTaskExecutor("export-test-"), 30);
+    }
+
+    @Test
+    public void testExportSqlBundle() throws Exception {
+        Path bundle = sqlExportService.exportSqlBundle(project, fromRevision, toRevision, EnumSet.of(DatabaseType.HSQL, DatabaseType.H2));
+
+        assertThat(bundle.getFileName().toString()).endsWith("-h2-hsql.zip");
+        Map<String, String> entries = readZip(bundle);
+        assertThat(entries.keySet()).containsExactly("h2.sql", "hsql.sql");
+        // Only change sets which are missing in the source revision are exported
+        assertEquals(String.format("-- H2 2%n"), entries.get("h2.sql"));
+        assertEquals(String.format("-- HSQL 2%n"), entries.get("hsql.sql"));
+    }
+
+    @Test
+    public void testExportSqlBundle_reusesScripts() throws Exception {
+        Path bundle = sqlExportService.exportSqlBundle(project, null, toRevision, EnumSet.of(DatabaseType.H2, DatabaseType.HSQL));
+        Path script = sqlExportService.exportSqlBundle(project, null, toRevision, EnumSet.of(DatabaseType.H2));
+
+        assertThat(script.getFileName().toString()).endsWith("-h2.sql");
+        assertEquals(String.format("-- H2 1%n-- H2 2%n"), new String(Files.readAllBytes(script), StandardCharsets.UTF_8));
+        assertEquals(readZip(bundle).get("h2.sql"), new String(Files.readAllBytes(script), StandardCharsets.UTF_8));
+        verify(adapter, times(2)).writeOfflineSql(eq(project), eq(toRevision), anyListOf(DatabaseChangeSet.class), any(DatabaseType.class), any(Writer.class));
+        // No temporary files are left behind
+        try (Stream<Path> files = Files.list(temporaryFolder.getRoot().toPath())) {
+            assertEquals(0, files.filter(p -> p.getFileName().toString().endsWith(".tmp")).count());
+        }
+    }
+
+    private Map<String, String> readZip(Path bundle) throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (InputStream inputStream = Files.newInputStream(bundle);
+             ZipInputStream zipInputStream = new ZipInputStream(inputStream)) {
+            ZipEntry entry;
+            while ((entry = zipInputStream.getNextEntry()) != null) {
+                entries.put(entry.getName(), CharStreams.toString(new InputStreamReader(zipInputStream, StandardCharsets.UTF_8)));
+            }
+        }
+        return entries;
+    }
+
+    private DatabaseChangeSet buildChangeSet(String id) {
+        return new DatabaseChangeSet().setSourceFilename("db/changelog.xml").setAuthor("author").setInternalId(id).setChecksum("7:" + id);
+    }
+}
@@ -0,0 +1,85 @@
+package org.xlrnet.datac.foundation.configuration.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+public class BulkheadTaskExecutorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private BulkheadTaskExecutor executor;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAbort_countsRejections() throws Exception {
+        executor = createExecutor(RejectionPolicy.ABORT);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(this::awaitRelease);
+
+        boolean rejected = false;
+        try {
+            executor.execute(this::awaitRelease);
+        } catch (TaskRejectedException e) {
+            rejected = true;
+        }
+
+        assertTrue(rejected);
+        BulkheadMetrics metrics = executor.getMetrics();
+        assertEquals("test", metrics.getName());
+        assertEquals(1, metrics.getActiveThreads());
+        assertEquals(1, metrics.getQueueDepth());
+        assertEquals(1, metrics.getRejectedCount());
+    }
+
+    @Test
+    public void testCallerRuns_runsOnCallingThread() throws Exception {
+        executor = createExecutor(RejectionPolicy.CALLER_RUNS);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(this::awaitRelease);
+
+        AtomicReference<Thread> executingThread = new AtomicReference<>();
+        executor.execute(() -> executingThread.set(Thread.currentThread()));
+
+        assertEquals(Thread.currentThread(), executingThread.get());
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    private BulkheadTaskExecutor createExecutor(RejectionPolicy rejectionPolicy) {
+        BulkheadTaskExecutor bulkhead = new BulkheadTaskExecutor("test", "testExec-", 1, 1, rejectionPolicy);
+        bulkhead.initialize();
+        return bulkhead;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.xlrnet.datac.foundation.services;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
@@ -9,6 +10,7 @@ import java.nio.file.Paths;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
 import org.xlrnet.datac.foundation.domain.Project;
 
 /**
@@ -22,7 +24,7 @@ public class FileServiceTest {
 
     @Before
     public void setup() {
-        fileService = spy(new FileService());
+        fileService = spy(new FileService(mock(ApplicationEventPublisher.class)));
         when(fileService.getWorkingDirectoryPath()).thenReturn(Paths.get(BASE_PATH));
     }
 
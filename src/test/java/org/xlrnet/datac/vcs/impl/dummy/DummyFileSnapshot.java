@@ -0,0 +1,49 @@
+package org.xlrnet.datac.vcs.impl.dummy;
+
+import java.io.InputStream;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.api.VcsRevision;
+
+/**
+ * Dummy implementation of {@link VcsFileSnapshot} without any files.
+ */
+public class DummyFileSnapshot implements VcsFileSnapshot {
+
+    private final VcsRevision revision;
+
+    public DummyFileSnapshot(VcsRevision revision) {
+        this.revision = revision;
+    }
+
+    @NotNull
+    @Override
+    public VcsRevision getRevision() {
+        return revision;
+    }
+
+    @Nullable
+    @Override
+    public InputStream openFile(@NotNull String path) {
+        return null;
+    }
+
+    @Override
+    public boolean isDirectory(@NotNull String path) {
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public Set<String> list(@NotNull String directory, boolean includeFiles, boolean includeDirectories, boolean recursive) {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close
+    }
+}
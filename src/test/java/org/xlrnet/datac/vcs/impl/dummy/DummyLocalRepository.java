@@ -8,13 +8,22 @@ import org.slf4j.LoggerFactory;
 import org.xlrnet.datac.commons.exception.VcsRepositoryException;
 import org.xlrnet.datac.database.impl.dummy.DummyDcsAdapter;
 import org.xlrnet.datac.vcs.api.VcsConnectionException;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
 import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.api.VcsPathHistory;
 import org.xlrnet.datac.vcs.api.VcsRemoteRepositoryConnection;
 import org.xlrnet.datac.vcs.api.VcsRevision;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
 import org.xlrnet.datac.vcs.domain.Branch;
 
 import java.time.Instant;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Dummy implementation of {@link VcsLocalRepository}.
@@ -34,9 +43,21 @@ public class DummyLocalRepository implements VcsLocalRepository {
         // Do nothing
     }
 
+    @Override
+    public void updateRevisionsFromRemote(@NotNull Collection<Branch> branches) throws VcsConnectionException {
+        // Do nothing
+    }
+
     @NotNull
     @Override
-    public VcsRevision listLatestRevisionOnBranch(@NotNull Branch branch) throws VcsConnectionException, VcsRepositoryException {
+    public String streamNewRevisionsOnBranch(@NotNull Branch branch, @NotNull Collection<String> knownRevisions, @NotNull Consumer<VcsRevisionRecord> consumer) throws VcsConnectionException, VcsRepositoryException {
+        DummyRevision latestRevision = buildRevisionGraph();
+        latestRevision.toTopologicalRecords().forEach(consumer);
+        return latestRevision.getInternalId();
+    }
+
+    @NotNull
+    private DummyRevision buildRevisionGraph() {
         DummyRevision root = new DummyRevision("6").setCommitTime(Instant.now());
 
         DummyRevision revision4 = new DummyRevision("4").setCommitTime(Instant.now())
@@ -75,6 +96,32 @@ public class DummyLocalRepository implements VcsLocalRepository {
         );
     }
 
+    @NotNull
+    @Override
+    public Collection<VcsRevision> listRevisionsWithChangesInPaths(@NotNull Collection<String> paths) {
+        // Combine the revisions of all paths like a real repository would do
+        Map<String, VcsRevision> revisions = new LinkedHashMap<>();
+        for (String path : paths) {
+            listRevisionsWithChangesInPath(path).forEach(r -> revisions.putIfAbsent(r.getInternalId(), r));
+        }
+        return revisions.values();
+    }
+
+    @NotNull
+    @Override
+    public VcsFileSnapshot openFileSnapshot(@NotNull VcsRevision revision) throws VcsRepositoryException {
+        // The dummy change system reads the state of the last checked out revision
+        checkoutRevision(revision);
+        return new DummyFileSnapshot(revision);
+    }
+
+    @NotNull
+    @Override
+    public VcsPathHistory listPathHistory(@NotNull Collection<String> paths, @NotNull Collection<String> walkedHeads) {
+        Set<String> revisionIds = listRevisionsWithChangesInPaths(paths).stream().map(VcsRevision::getInternalId).collect(Collectors.toSet());
+        return new VcsPathHistory(revisionIds, Collections.emptySet());
+    }
+
     @Override
     public void checkoutRevision(@NotNull VcsRevision revision) throws VcsRepositoryException {
         int revisionNumber = NumberUtils.toInt(revision.getInternalId());
@@ -91,4 +138,10 @@ public class DummyLocalRepository implements VcsLocalRepository {
     public boolean existsPathInRevision(@NotNull VcsRevision revision, @NotNull String path) {
         return true;
     }
+
+    @NotNull
+    @Override
+    public Set<String> findRevisionsContainingPath(@NotNull Collection<? extends VcsRevision> revisions, @NotNull String path) {
+        return revisions.stream().map(VcsRevision::getInternalId).collect(Collectors.toSet());
+    }
 }
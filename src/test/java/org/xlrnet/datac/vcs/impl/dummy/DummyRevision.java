@@ -2,10 +2,16 @@ package org.xlrnet.datac.vcs.impl.dummy;
 
 import org.jetbrains.annotations.NotNull;
 import org.xlrnet.datac.vcs.api.VcsRevision;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Dummy implementation of {@link VcsRevision}.
@@ -128,4 +134,39 @@ public class DummyRevision implements VcsRevision {
         this.parents.add(parent);
         return this;
     }
+
+    /**
+     * Converts the graph starting at this revision to a list of flat records in topological order, i.e. each revision
+     * is listed after all of its parents.
+     *
+     * @return the records of this revision and all its parents.
+     */
+    @NotNull
+    public List<VcsRevisionRecord> toTopologicalRecords() {
+        List<VcsRevisionRecord> records = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        Deque<DummyRevision> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            DummyRevision next = stack.peek();
+            if (visited.contains(next.getInternalId())) {
+                stack.pop();
+                continue;
+            }
+            boolean parentsVisited = true;
+            for (DummyRevision parent : next.getParents()) {
+                if (!visited.contains(parent.getInternalId())) {
+                    stack.push(parent);
+                    parentsVisited = false;
+                }
+            }
+            if (parentsVisited) {
+                stack.pop();
+                visited.add(next.getInternalId());
+                List<String> parentIds = next.getParents().stream().map(DummyRevision::getInternalId).collect(Collectors.toList());
+                records.add(new VcsRevisionRecord(next.getInternalId(), parentIds, next.getCommitTime(), next.getAuthor(), next.getReviewer(), next.getMessage()));
+            }
+        }
+        return records;
+    }
 }
@@ -0,0 +1,151 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.common.io.CharStreams;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.api.VcsFileSnapshot;
+import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.api.VcsRevision;
+
+public class JGitAdapterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JGitRepositoryPool repositoryPool;
+
+    private JGitAdapter adapter;
+
+    private Path repositoryPath;
+
+    private Project project;
+
+    private RevCommit first;
+
+    private RevCommit second;
+
+    @Before
+    public void setup() throws Exception {
+        repositoryPool = new JGitRepositoryPool();
+        adapter = new JGitAdapter(null, repositoryPool, new JGitRemoteRefCache(30), false, true);
+        project = new Project();
+        project.setUrl("dummy");
+
+        repositoryPath = temporaryFolder.newFolder("repo").toPath();
+        try (Git git = Git.init().setDirectory(repositoryPath.toFile()).call()) {
+            first = commit(git, "db/master.xml", "master");
+            second = commit(git, "db/include/tables.xml", "tables");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        repositoryPool.closeAll();
+    }
+
+    @Test
+    public void testOpenLocalRepository_migratesToBareRepository() throws Exception {
+        adapter.openLocalRepository(repositoryPath, project);
+
+        assertMigrated();
+    }
+
+    @Test
+    public void testMigrateToBareRepository_resumesAfterFirstRename() throws Exception {
+        // Interrupted after the repository was moved to the temporary directory
+        Files.move(repositoryPath, migrationPath());
+
+        adapter.openLocalRepository(repositoryPath, project);
+
+        assertMigrated();
+    }
+
+    @Test
+    public void testMigrateToBareRepository_resumesAfterSecondRename() throws Exception {
+        // Interrupted after the git directory replaced the repository, but before it was marked as bare
+        Files.move(repositoryPath, migrationPath());
+        Files.move(migrationPath().resolve(".git"), repositoryPath);
+
+        adapter.openLocalRepository(repositoryPath, project);
+
+        assertMigrated();
+    }
+
+    @Test
+    public void testOpenFileSnapshot_readsFromObjectDatabase() throws Exception {
+        VcsLocalRepository localRepository = adapter.openLocalRepository(repositoryPath, project);
+
+        try (VcsFileSnapshot snapshot = localRepository.openFileSnapshot(revision(second))) {
+            try (InputStream inputStream = snapshot.openFile("/db/master.xml")) {
+                assertThat(CharStreams.toString(new InputStreamReader(inputStream, StandardCharsets.UTF_8))).isEqualTo("master");
+            }
+            assertNull(snapshot.openFile("db/include"));
+            assertNull(snapshot.openFile("db/missing.xml"));
+            assertTrue(snapshot.isDirectory("db/include/"));
+            assertFalse(snapshot.isDirectory("db/master.xml"));
+            assertThat(snapshot.list("db", true, false, false)).containsExactly("db/master.xml");
+            assertThat(snapshot.list("db", true, true, true)).containsExactlyInAnyOrder("db/include", "db/include/tables.xml", "db/master.xml");
+            assertNull(snapshot.list("docs", true, true, true));
+        }
+
+        try (VcsFileSnapshot snapshot = localRepository.openFileSnapshot(revision(first))) {
+            assertNull(snapshot.openFile("db/include/tables.xml"));
+            assertThat(snapshot.list("", false, true, false)).containsExactly("db");
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenFileSnapshot_closed() throws Exception {
+        VcsFileSnapshot snapshot = adapter.openLocalRepository(repositoryPath, project).openFileSnapshot(revision(second));
+        snapshot.close();
+
+        snapshot.openFile("db/master.xml");
+    }
+
+    private void assertMigrated() throws Exception {
+        assertFalse(Files.exists(migrationPath()));
+        assertFalse(Files.exists(repositoryPath.resolve(".git")));
+        assertFalse(Files.exists(repositoryPath.resolve("db")));
+        assertFalse(Files.exists(repositoryPath.resolve("index")));
+        try (Repository repository = new FileRepositoryBuilder().setGitDir(repositoryPath.toFile()).setMustExist(true).build()) {
+            assertTrue(repository.isBare());
+            assertThat(repository.resolve("HEAD")).isEqualTo(second.getId());
+        }
+    }
+
+    private Path migrationPath() {
+        return repositoryPath.resolveSibling("repo.migrating");
+    }
+
+    private VcsRevision revision(RevCommit commit) {
+        return new CommitToRevisionWrapper(commit);
+    }
+
+    private RevCommit commit(Git git, String path, String content) throws Exception {
+        Path file = repositoryPath.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(path).call();
+        return git.commit().setMessage("Update " + path).setAuthor("test", "test@example.com").call();
+    }
+}
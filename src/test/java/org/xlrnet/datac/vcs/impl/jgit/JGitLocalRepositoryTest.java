@@ -0,0 +1,111 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.datac.vcs.api.VcsPathHistory;
+import org.xlrnet.datac.vcs.api.VcsRevision;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
+import org.xlrnet.datac.vcs.domain.Branch;
+
+public class JGitLocalRepositoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JGitRepositoryPool repositoryPool;
+
+    private Path repositoryPath;
+
+    private Git git;
+
+    private JGitLocalRepository localRepository;
+
+    @Before
+    public void setup() throws Exception {
+        repositoryPool = new JGitRepositoryPool();
+        repositoryPath = temporaryFolder.newFolder("repo").toPath();
+        git = Git.init().setDirectory(repositoryPath.toFile()).call();
+        localRepository = new JGitLocalRepository(repositoryPath, null, "dummy", null, repositoryPool, false, false, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        git.close();
+        repositoryPool.closeAll();
+    }
+
+    @Test
+    public void testListRevisionsWithChangesInPaths() throws Exception {
+        RevCommit master = commit("db/master.xml", "master");
+        commit("docs/readme.txt", "readme");
+        RevCommit include = commit("db/include/tables.xml", "tables");
+        commit("db/unrelated.xml", "unrelated");
+
+        assertThat(listRevisionIds(Arrays.asList("db/master.xml", "/db/include/tables.xml")))
+                .containsExactlyInAnyOrder(master.getName(), include.getName());
+        assertThat(listRevisionIds(Collections.singletonList("db/include")))
+                .containsExactly(include.getName());
+    }
+
+    @Test
+    public void testListPathHistory_onlyNewRevisions() throws Exception {
+        RevCommit first = commit("db/master.xml", "master");
+        commit("docs/readme.txt", "readme");
+
+        VcsPathHistory history = localRepository.listPathHistory(Collections.singletonList("db/master.xml"), Collections.emptyList());
+        assertThat(history.getRevisionIds()).containsExactly(first.getName());
+
+        commit("docs/readme.txt", "changed readme");
+        RevCommit second = commit("db/master.xml", "changed master");
+
+        VcsPathHistory nextHistory = localRepository.listPathHistory(Collections.singletonList("db/master.xml"), history.getHeads());
+        assertThat(nextHistory.getRevisionIds()).containsExactly(second.getName());
+        assertThat(nextHistory.getHeads()).containsExactly(second.getName());
+    }
+
+    @Test
+    public void testStreamNewRevisionsOnBranch() throws Exception {
+        RevCommit known = commit("db/master.xml", "master");
+        RevCommit first = commit("db/master.xml", "first");
+        RevCommit second = commit("docs/readme.txt", "second");
+
+        List<VcsRevisionRecord> records = new ArrayList<>();
+        String head = localRepository.streamNewRevisionsOnBranch(new Branch().setName("master"), Collections.singleton(known.getName()), records::add);
+
+        assertThat(head).isEqualTo(second.getName());
+        assertThat(records).extracting(VcsRevisionRecord::getInternalId).containsExactly(first.getName(), second.getName());
+        assertThat(records.get(0).getParentIds()).containsExactly(known.getName());
+        assertThat(records.get(1).getMessage()).isEqualTo("Update docs/readme.txt");
+        assertThat(records.get(1).getAuthor()).contains("test@example.com");
+    }
+
+    private List<String> listRevisionIds(List<String> paths) throws Exception {
+        return localRepository.listRevisionsWithChangesInPaths(paths).stream()
+                .map(VcsRevision::getInternalId)
+                .collect(Collectors.toList());
+    }
+
+    private RevCommit commit(String path, String content) throws Exception {
+        Path file = repositoryPath.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        git.add().addFilepattern(path).call();
+        return git.commit().setMessage("Update " + path).setAuthor("test", "test@example.com").call();
+    }
+}
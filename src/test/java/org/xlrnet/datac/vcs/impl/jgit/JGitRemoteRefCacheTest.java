@@ -0,0 +1,107 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link JGitRemoteRefCache} using a local file:// remote.
+ */
+public class JGitRemoteRefCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final CredentialsProvider credentialsProvider = new UsernamePasswordCredentialsProvider("", "");
+
+    private Git remote;
+
+    private String remoteUrl;
+
+    private String key;
+
+    @Before
+    public void setup() throws Exception {
+        File remoteDirectory = temporaryFolder.newFolder("remote");
+        remote = Git.init().setDirectory(remoteDirectory).call();
+        remote.commit().setMessage("Initial commit").call();
+        remoteUrl = "file://" + remoteDirectory.getAbsolutePath();
+        key = JGitRemoteRefCache.buildKey(remoteUrl, null, null);
+    }
+
+    @After
+    public void tearDown() {
+        remote.close();
+    }
+
+    @Test
+    public void testListHeads() throws Exception {
+        JGitRemoteRefCache refCache = new JGitRemoteRefCache(30);
+
+        Collection<Ref> heads = refCache.listHeads(key, remoteUrl, credentialsProvider);
+
+        assertEquals(1, heads.size());
+        assertEquals("refs/heads/master", heads.iterator().next().getName());
+        refCache.closeAll();
+    }
+
+    @Test
+    public void testListHeads_cached() throws Exception {
+        JGitRemoteRefCache refCache = new JGitRemoteRefCache(30);
+        refCache.listHeads(key, remoteUrl, credentialsProvider);
+
+        remote.branchCreate().setName("feature").call();
+
+        assertEquals(1, refCache.listHeads(key, remoteUrl, credentialsProvider).size());
+        refCache.closeAll();
+    }
+
+    @Test
+    public void testListHeads_invalidated() throws Exception {
+        JGitRemoteRefCache refCache = new JGitRemoteRefCache(30);
+        refCache.listHeads(key, remoteUrl, credentialsProvider);
+
+        remote.branchCreate().setName("feature").call();
+        refCache.invalidate(key);
+
+        assertTrue(listHeadNames(refCache).contains("refs/heads/feature"));
+        refCache.closeAll();
+    }
+
+    @Test
+    public void testListHeads_expired() throws Exception {
+        JGitRemoteRefCache refCache = new JGitRemoteRefCache(0);
+        refCache.listHeads(key, remoteUrl, credentialsProvider);
+
+        remote.branchCreate().setName("feature").call();
+
+        assertTrue(listHeadNames(refCache).contains("refs/heads/feature"));
+        refCache.closeAll();
+    }
+
+    @Test
+    public void testBuildKey_differentCredentials() {
+        assertNotEquals(JGitRemoteRefCache.buildKey(remoteUrl, "user", "a"), JGitRemoteRefCache.buildKey(remoteUrl, "user", "b"));
+        assertNotEquals(JGitRemoteRefCache.buildKey(remoteUrl, "user", "a"), JGitRemoteRefCache.buildKey(remoteUrl, "other", "a"));
+    }
+
+    private Set<String> listHeadNames(JGitRemoteRefCache refCache) throws GitAPIException {
+        return refCache.listHeads(key, remoteUrl, credentialsProvider).stream().map(Ref::getName).collect(Collectors.toSet());
+    }
+}
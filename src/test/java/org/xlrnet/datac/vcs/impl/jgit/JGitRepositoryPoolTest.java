@@ -0,0 +1,90 @@
+package org.xlrnet.datac.vcs.impl.jgit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.file.Path;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JGitRepositoryPoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private JGitRepositoryPool pool;
+
+    private Path repositoryPath;
+
+    @Before
+    public void setup() throws Exception {
+        pool = new JGitRepositoryPool();
+        repositoryPath = temporaryFolder.newFolder("repo").toPath();
+        Git.init().setDirectory(repositoryPath.toFile()).call().close();
+    }
+
+    @After
+    public void tearDown() {
+        pool.closeAll();
+    }
+
+    @Test
+    public void testOpenSession_reusesHandle() throws Exception {
+        try (JGitRepositorySession first = pool.openSession(repositoryPath);
+             JGitRepositorySession second = pool.openSession(repositoryPath.resolve("..").resolve("repo"))) {
+            assertSame(first.getRepository(), second.getRepository());
+            assertEquals(1, pool.getOpenRepositoryCount());
+        }
+    }
+
+    @Test
+    public void testEvictIdleRepositories_keepsReferencedHandles() throws Exception {
+        long later = System.currentTimeMillis() + JGitRepositoryPool.IDLE_TIMEOUT + 1000;
+        try (JGitRepositorySession session = pool.openSession(repositoryPath)) {
+            pool.evictIdleRepositories(later);
+            assertEquals(1, pool.getOpenRepositoryCount());
+        }
+    }
+
+    @Test
+    public void testEvictIdleRepositories_closesIdleHandles() throws Exception {
+        Repository repository;
+        try (JGitRepositorySession session = pool.openSession(repositoryPath)) {
+            repository = session.getRepository();
+        }
+
+        pool.evictIdleRepositories(System.currentTimeMillis());
+        assertEquals(1, pool.getOpenRepositoryCount());
+
+        pool.evictIdleRepositories(System.currentTimeMillis() + JGitRepositoryPool.IDLE_TIMEOUT + 1000);
+        assertEquals(0, pool.getOpenRepositoryCount());
+
+        try (JGitRepositorySession session = pool.openSession(repositoryPath)) {
+            assertNotSame(repository, session.getRepository());
+        }
+    }
+
+    @Test
+    public void testInvalidate_whileInUse() throws Exception {
+        try (JGitRepositorySession session = pool.openSession(repositoryPath)) {
+            Repository repository = session.getRepository();
+            pool.invalidate(repositoryPath);
+            assertEquals(0, pool.getOpenRepositoryCount());
+
+            // The invalidated handle stays usable for the running session
+            repository.exactRef("HEAD");
+
+            try (JGitRepositorySession newSession = pool.openSession(repositoryPath)) {
+                assertNotSame(repository, newSession.getRepository());
+            }
+        }
+        assertEquals(1, pool.getOpenRepositoryCount());
+    }
+}
@@ -0,0 +1,86 @@
+package org.xlrnet.datac.vcs.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xlrnet.datac.foundation.domain.LockLease;
+import org.xlrnet.datac.foundation.domain.LockMode;
+import org.xlrnet.datac.foundation.domain.Project;
+
+public class LockingServiceTest {
+
+    private LockingService lockingService;
+
+    private Project project;
+
+    @Before
+    public void setup() {
+        lockingService = new LockingService();
+        project = new Project();
+        project.setId(1L);
+    }
+
+    @Test
+    public void testSharedLeases() {
+        Optional<LockLease> first = lockingService.tryAcquire(project, LockMode.SHARED);
+        Optional<LockLease> second = lockingService.tryAcquire(project, LockMode.SHARED);
+
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertFalse(lockingService.tryAcquire(project, LockMode.EXCLUSIVE).isPresent());
+    }
+
+    @Test
+    public void testExclusiveLease() {
+        Optional<LockLease> lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE);
+
+        assertTrue(lease.isPresent());
+        assertTrue(lockingService.isLocked(project));
+        assertFalse(lockingService.tryAcquire(project, LockMode.SHARED).isPresent());
+        assertFalse(lockingService.tryAcquire(project, LockMode.EXCLUSIVE).isPresent());
+    }
+
+    @Test
+    public void testRelease_otherThread() throws Exception {
+        LockLease lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE).get();
+
+        assertTrue(CompletableFuture.supplyAsync(() -> lockingService.release(lease)).get(5, TimeUnit.SECONDS));
+        assertFalse(lockingService.isLocked(project));
+        assertFalse(lockingService.release(lease));
+    }
+
+    @Test
+    public void testTryAcquire_waitsForRelease() throws Exception {
+        LockLease lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE).get();
+        CompletableFuture<Optional<LockLease>> waiting = CompletableFuture.supplyAsync(() -> lockingService.tryAcquire(project, LockMode.SHARED, 5, TimeUnit.SECONDS));
+
+        lockingService.release(lease);
+
+        assertTrue(waiting.get(5, TimeUnit.SECONDS).isPresent());
+    }
+
+    @Test
+    public void testTryAcquire_timeout() {
+        lockingService.tryAcquire(project, LockMode.SHARED);
+
+        assertFalse(lockingService.tryAcquire(project, LockMode.EXCLUSIVE, 10, TimeUnit.MILLISECONDS).isPresent());
+    }
+
+    @Test
+    public void testUnusedEntriesAreRemoved() {
+        LockLease lease = lockingService.tryAcquire(project, LockMode.EXCLUSIVE).get();
+        lockingService.tryAcquire(project, LockMode.SHARED);
+        assertEquals(1, lockingService.getLockEntryCount());
+
+        lockingService.release(lease);
+
+        assertEquals(0, lockingService.getLockEntryCount());
+    }
+}
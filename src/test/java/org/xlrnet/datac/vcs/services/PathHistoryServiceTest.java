@@ -0,0 +1,127 @@
+package org.xlrnet.datac.vcs.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.test.util.ReturnFirstArgumentAnswer;
+import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.api.VcsPathHistory;
+import org.xlrnet.datac.vcs.domain.PathHistory;
+import org.xlrnet.datac.vcs.domain.repository.PathHistoryRepository;
+
+import com.google.common.hash.Hashing;
+
+public class PathHistoryServiceTest {
+
+    private static final long HISTORY_ID = 5L;
+
+    private static final long OTHER_HISTORY_ID = 6L;
+
+    private static final int RETENTION_DAYS = 30;
+
+    private PathHistoryRepository repository;
+
+    private VcsLocalRepository localRepository;
+
+    private PathHistoryService service;
+
+    private Project project;
+
+    @Before
+    public void setup() {
+        repository = mock(PathHistoryRepository.class);
+        localRepository = mock(VcsLocalRepository.class);
+        service = new PathHistoryService(repository, RETENTION_DAYS);
+        project = new Project();
+        project.setId(1L);
+        project.setName("test");
+
+        PathHistory history = new PathHistory().setProject(project);
+        history.setId(HISTORY_ID);
+        when(repository.findByProjectAndPathHash(eq(project), anyString())).thenReturn(history);
+        when(repository.save(any(PathHistory.class))).thenAnswer(new ReturnFirstArgumentAnswer());
+    }
+
+    @Test
+    public void testListRevisionsWithChangesInPaths_mergesNewRevisionsIntoCache() throws Exception {
+        when(repository.findHeads(HISTORY_ID)).thenReturn(Collections.singletonList("head1"));
+        when(repository.findRevisionIds(HISTORY_ID)).thenReturn(Arrays.asList("c1", "c2"));
+        when(localRepository.listPathHistory(Collections.singleton("db/changelog"), Collections.singletonList("head1")))
+                .thenReturn(new VcsPathHistory(new HashSet<>(Arrays.asList("c2", "c3")), Collections.singleton("head2")));
+
+        Set<String> revisions = service.listRevisionsWithChangesInPaths(project, localRepository, Collections.singleton("/db/changelog/"));
+
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2", "c3")), revisions);
+        verify(repository).insertRevisionId(HISTORY_ID, "c3");
+        verify(repository, never()).insertRevisionId(HISTORY_ID, "c1");
+        verify(repository, never()).insertRevisionId(HISTORY_ID, "c2");
+        verify(repository).deleteHeads(HISTORY_ID);
+        verify(repository).insertHead(HISTORY_ID, "head2");
+    }
+
+    @Test
+    public void testListRevisionsWithChangesInPaths_cachedPerPath() throws Exception {
+        PathHistory otherHistory = new PathHistory().setProject(project);
+        otherHistory.setId(OTHER_HISTORY_ID);
+        when(repository.findByProjectAndPathHash(project, hash("db/other"))).thenReturn(otherHistory);
+        when(repository.findHeads(HISTORY_ID)).thenReturn(Collections.singletonList("head1"));
+        when(repository.findRevisionIds(HISTORY_ID)).thenReturn(Collections.singletonList("c1"));
+        when(repository.findHeads(OTHER_HISTORY_ID)).thenReturn(Collections.emptyList());
+        when(repository.findRevisionIds(OTHER_HISTORY_ID)).thenReturn(Collections.emptyList());
+        when(localRepository.listPathHistory(Collections.singleton("db/changelog"), Collections.singletonList("head1")))
+                .thenReturn(new VcsPathHistory(Collections.emptySet(), Collections.singleton("head1")));
+        when(localRepository.listPathHistory(Collections.singleton("db/other"), Collections.emptyList()))
+                .thenReturn(new VcsPathHistory(new HashSet<>(Arrays.asList("c1", "c2")), Collections.singleton("head1")));
+
+        // A path which is added to the query doesn't cause the history of the other paths to be walked again
+        Set<String> revisions = service.listRevisionsWithChangesInPaths(project, localRepository, Arrays.asList("db\\other", "/db/changelog/"));
+
+        assertEquals(new HashSet<>(Arrays.asList("c1", "c2")), revisions);
+        verify(repository).findByProjectAndPathHash(project, hash("db/changelog"));
+        verify(repository).findByProjectAndPathHash(project, hash("db/other"));
+        verify(repository, never()).insertRevisionId(HISTORY_ID, "c1");
+        verify(repository).insertRevisionId(OTHER_HISTORY_ID, "c1");
+        verify(repository).insertRevisionId(OTHER_HISTORY_ID, "c2");
+        verify(localRepository, times(2)).listPathHistory(anyCollectionOf(String.class), anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void testListRevisionsWithChangesInPaths_deletesUnusedHistories() throws Exception {
+        when(repository.findHeads(HISTORY_ID)).thenReturn(Collections.emptyList());
+        when(repository.findRevisionIds(HISTORY_ID)).thenReturn(Collections.emptyList());
+        when(localRepository.listPathHistory(anyCollectionOf(String.class), anyCollectionOf(String.class)))
+                .thenReturn(new VcsPathHistory(Collections.emptySet(), Collections.emptySet()));
+        Instant start = Instant.now();
+
+        service.listRevisionsWithChangesInPaths(project, localRepository, Collections.singleton("a"));
+
+        ArgumentCaptor<Instant> thresholdCaptor = ArgumentCaptor.forClass(Instant.class);
+        verify(repository).deleteByProjectAndUpdatedBefore(eq(project), thresholdCaptor.capture());
+        assertThat(thresholdCaptor.getValue()).isBetween(start.minus(RETENTION_DAYS, ChronoUnit.DAYS), Instant.now().minus(RETENTION_DAYS, ChronoUnit.DAYS));
+    }
+
+    private String hash(String path) {
+        return Hashing.sha256().hashString(path, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,176 @@
+package org.xlrnet.datac.vcs.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.domain.repository.ProjectRepository;
+import org.xlrnet.datac.foundation.services.ProjectChangeCheckEvent;
+
+public class ProjectSchedulingServiceTest {
+
+    private static final int POLL_INTERVAL = 10;
+
+    private static final int MAX_INTERVAL = 60;
+
+    private static final double JITTER = 0.2;
+
+    private static final long INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(POLL_INTERVAL);
+
+    private final Project project = new Project();
+
+    private TaskScheduler taskScheduler;
+
+    private ScheduledFuture<?> scheduledFuture;
+
+    @Before
+    public void setup() {
+        project.setId(1L);
+        project.setName("Polled project");
+        project.setPollInterval(POLL_INTERVAL);
+        project.setAutomaticPollingEnabled(true);
+
+        taskScheduler = mock(TaskScheduler.class);
+        scheduledFuture = mock(ScheduledFuture.class);
+        doReturn(scheduledFuture).when(taskScheduler).schedule(any(Runnable.class), any(Trigger.class));
+    }
+
+    @Test
+    public void testNextExecutionTime_staggeredFirstPoll() {
+        ProjectSchedulingService service = buildService(JITTER);
+        Set<Long> delays = new HashSet<>();
+
+        for (int i = 0; i < 20; i++) {
+            long start = System.currentTimeMillis();
+            Date firstPoll = scheduleAndCaptureTrigger(service).nextExecutionTime(new SimpleTriggerContext());
+            long delay = firstPoll.getTime() - start;
+            // The first poll happens at any time within the poll interval, regardless of the jitter
+            assertThat(delay).isBetween(1L, INTERVAL_MILLIS + 1000);
+            assertEquals(firstPoll.toInstant(), service.getNextPollTime(project).get());
+            delays.add(delay / 1000);
+        }
+        assertThat(delays.size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testNextExecutionTime_jitter() {
+        ProjectSchedulingService service = buildService(JITTER);
+        Trigger trigger = scheduleAndCaptureTrigger(service);
+        Date lastCompletion = new Date();
+        Set<Long> delays = new HashSet<>();
+
+        for (int i = 0; i < 50; i++) {
+            long delay = trigger.nextExecutionTime(completedAt(lastCompletion)).getTime() - lastCompletion.getTime();
+            assertThat(delay).isBetween(Math.round(INTERVAL_MILLIS * (1 - JITTER)), Math.round(INTERVAL_MILLIS * (1 + JITTER)));
+            delays.add(delay);
+        }
+        assertThat(delays.size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testNextExecutionTime_backoffCap() {
+        ProjectSchedulingService service = buildService(0);
+        Trigger trigger = scheduleAndCaptureTrigger(service);
+        Date lastCompletion = new Date();
+
+        assertEquals(INTERVAL_MILLIS, delayAfterCompletion(trigger, lastCompletion));
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+        assertEquals(TimeUnit.MINUTES.toMillis(20), delayAfterCompletion(trigger, lastCompletion));
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+        assertEquals(TimeUnit.MINUTES.toMillis(40), delayAfterCompletion(trigger, lastCompletion));
+        // The interval never grows beyond the maximum interval
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+        assertEquals(TimeUnit.MINUTES.toMillis(MAX_INTERVAL), delayAfterCompletion(trigger, lastCompletion));
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+        assertEquals(TimeUnit.MINUTES.toMillis(MAX_INTERVAL), delayAfterCompletion(trigger, lastCompletion));
+        verify(scheduledFuture, never()).cancel(any(Boolean.class));
+    }
+
+    @Test
+    public void testOnProjectChangeCheck_resetsInterval() {
+        ProjectSchedulingService service = buildService(0);
+        scheduleAndCaptureTrigger(service);
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+
+        long start = System.currentTimeMillis();
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, true));
+
+        // The grown interval is dropped and the next poll is rescheduled without staggering
+        verify(scheduledFuture).cancel(false);
+        ArgumentCaptor<Trigger> triggerCaptor = ArgumentCaptor.forClass(Trigger.class);
+        verify(taskScheduler, times(2)).schedule(any(Runnable.class), triggerCaptor.capture());
+        Trigger resetTrigger = triggerCaptor.getAllValues().get(1);
+        assertThat(resetTrigger.nextExecutionTime(new SimpleTriggerContext()).getTime() - start).isBetween(INTERVAL_MILLIS, INTERVAL_MILLIS + 1000);
+        assertEquals(INTERVAL_MILLIS, delayAfterCompletion(resetTrigger, new Date()));
+    }
+
+    @Test
+    public void testOnProjectChangeCheck_changesWithoutBackoff() {
+        ProjectSchedulingService service = buildService(0);
+        scheduleAndCaptureTrigger(service);
+
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, true));
+
+        // The interval didn't grow, so the existing schedule is kept
+        verify(scheduledFuture, never()).cancel(any(Boolean.class));
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Trigger.class));
+    }
+
+    @Test
+    public void testOnProjectChangeCheck_unscheduledProject() {
+        ProjectSchedulingService service = buildService(0);
+        scheduleAndCaptureTrigger(service);
+        service.unscheduleProjectUpdate(project);
+
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, false));
+        service.onProjectChangeCheck(new ProjectChangeCheckEvent(this, project, true));
+
+        verify(taskScheduler, times(1)).schedule(any(Runnable.class), any(Trigger.class));
+        assertThat(service.getNextPollTime(project).isPresent()).isFalse();
+    }
+
+    private long delayAfterCompletion(Trigger trigger, Date lastCompletion) {
+        return trigger.nextExecutionTime(completedAt(lastCompletion)).getTime() - lastCompletion.getTime();
+    }
+
+    private SimpleTriggerContext completedAt(Date lastCompletion) {
+        return new SimpleTriggerContext(lastCompletion, lastCompletion, lastCompletion);
+    }
+
+    private Trigger scheduleAndCaptureTrigger(ProjectSchedulingService service) {
+        assertTrue(service.scheduleProjectUpdate(project));
+        ArgumentCaptor<Trigger> triggerCaptor = ArgumentCaptor.forClass(Trigger.class);
+        verify(taskScheduler, atLeastOnce()).schedule(any(Runnable.class), triggerCaptor.capture());
+        return triggerCaptor.getValue();
+    }
+
+    private ProjectSchedulingService buildService(double jitter) {
+        AutowireCapableBeanFactory beanFactory = mock(AutowireCapableBeanFactory.class);
+        when(beanFactory.getBean(ProjectUpdateQueue.class)).thenReturn(mock(ProjectUpdateQueue.class));
+        return new ProjectSchedulingService(mock(Environment.class), mock(ProjectRepository.class), taskScheduler, beanFactory, MAX_INTERVAL, 2, jitter);
+    }
+}
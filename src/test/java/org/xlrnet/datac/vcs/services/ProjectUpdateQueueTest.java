@@ -0,0 +1,98 @@
+package org.xlrnet.datac.vcs.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.scheduling.TaskScheduler;
+import org.xlrnet.datac.commons.exception.LockFailedException;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.vcs.domain.UpdatePriority;
+
+public class ProjectUpdateQueueTest {
+
+    private final List<Runnable> startedTasks = new ArrayList<>();
+
+    private ProjectUpdateService updateService;
+
+    private TaskScheduler taskScheduler;
+
+    private ProjectUpdateQueue queue;
+
+    @Before
+    public void setup() {
+        updateService = mock(ProjectUpdateService.class);
+        taskScheduler = mock(TaskScheduler.class);
+        queue = new ProjectUpdateQueue(updateService, startedTasks::add, taskScheduler, 1, 30);
+    }
+
+    @Test
+    public void testRequestUpdate_coalesce() {
+        Project running = buildProject(1L);
+        Project queued = buildProject(2L);
+
+        assertTrue(queue.requestUpdate(running, UpdatePriority.SCHEDULED));
+        assertTrue(queue.requestUpdate(queued, UpdatePriority.SCHEDULED));
+        assertFalse(queue.requestUpdate(queued, UpdatePriority.SCHEDULED));
+
+        assertEquals(1, startedTasks.size());
+        assertEquals(1, queue.getRunningCount());
+        assertEquals(1, queue.getQueueSize());
+    }
+
+    @Test
+    public void testRequestUpdate_manualFirst() throws Exception {
+        Project first = buildProject(1L);
+        Project scheduled = buildProject(2L);
+        Project manual = buildProject(3L);
+        queue.requestUpdate(first, UpdatePriority.SCHEDULED);
+        queue.requestUpdate(scheduled, UpdatePriority.SCHEDULED);
+        queue.requestUpdate(manual, UpdatePriority.MANUAL);
+
+        runStartedTasks();
+
+        InOrder order = inOrder(updateService);
+        order.verify(updateService).startProjectUpdate(first);
+        order.verify(updateService).startProjectUpdate(manual);
+        order.verify(updateService).startProjectUpdate(scheduled);
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    @Test
+    public void testRequestUpdate_lockedProjectIsRetried() throws Exception {
+        Project project = buildProject(1L);
+        doThrow(new LockFailedException(project)).when(updateService).startProjectUpdate(project);
+
+        queue.requestUpdate(project, UpdatePriority.MANUAL);
+        runStartedTasks();
+
+        assertTrue(queue.isQueued(project));
+        assertEquals(0, queue.getRunningCount());
+        verify(taskScheduler).schedule(any(Runnable.class), any(Date.class));
+    }
+
+    private void runStartedTasks() {
+        while (!startedTasks.isEmpty()) {
+            startedTasks.remove(0).run();
+        }
+    }
+
+    private Project buildProject(Long id) {
+        Project project = new Project();
+        project.setId(id);
+        project.setName("project" + id);
+        return project;
+    }
+}
@@ -0,0 +1,160 @@
+package org.xlrnet.datac.vcs.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.xlrnet.datac.commons.exception.DatacTechnicalException;
+import org.xlrnet.datac.foundation.components.EventLogProxy;
+import org.xlrnet.datac.foundation.domain.Project;
+import org.xlrnet.datac.foundation.services.ProjectService;
+import org.xlrnet.datac.vcs.api.VcsLocalRepository;
+import org.xlrnet.datac.vcs.api.VcsRevisionRecord;
+import org.xlrnet.datac.vcs.domain.Branch;
+
+/**
+ * Tests for the concurrent revision import in {@link ProjectUpdateService}.
+ */
+public class ProjectUpdateServiceImportTest {
+
+    private final List<String> importedRevisions = Collections.synchronizedList(new ArrayList<>());
+
+    private final Set<Thread> writerThreads = ConcurrentHashMap.newKeySet();
+
+    private final CountDownLatch masterImported = new CountDownLatch(1);
+
+    private ProjectService projectService;
+
+    private RevisionGraphService revisionGraphService;
+
+    private ProjectUpdateService projectUpdateService;
+
+    private VcsLocalRepository localRepository;
+
+    private Project project;
+
+    private Branch master;
+
+    private Branch feature;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setup() throws Exception {
+        projectService = mock(ProjectService.class);
+        BranchService branchService = mock(BranchService.class);
+        revisionGraphService = mock(RevisionGraphService.class);
+        localRepository = mock(VcsLocalRepository.class);
+        projectUpdateService = new ProjectUpdateService(mock(EventLogProxy.class), null, null, null, projectService, branchService,
+                revisionGraphService, null, null, null, null, null, null, new SimpleAsyncTaskExecutor("revision-import-test-"), null);
+
+        project = new Project();
+        project.setName("Import project");
+        master = new Branch().setName("master").setDevelopment(true);
+        feature = new Branch().setName("feature").setWatched(true);
+        project.addBranch(master);
+        project.addBranch(feature);
+
+        when(projectService.updateAvailableBranches(project, localRepository)).thenReturn(project);
+        when(projectService.saveAndPublishStateChange(eq(project), anyDouble())).thenReturn(project);
+        when(revisionGraphService.importRevisionRecords(eq(project), anyListOf(VcsRevisionRecord.class))).thenAnswer(invocation -> {
+            writerThreads.add(Thread.currentThread());
+            List<VcsRevisionRecord> records = invocation.getArgumentAt(1, List.class);
+            records.forEach(r -> importedRevisions.add(r.getInternalId()));
+            return (long) records.size();
+        });
+        // The head of a branch is saved after all of its revisions were persisted
+        when(branchService.save(master)).thenAnswer(invocation -> {
+            masterImported.countDown();
+            return master;
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUpdateRevisions_sharedHistoryIsPersistedOnce() throws Exception {
+        List<Collection<String>> knownRevisionsOnFeature = new ArrayList<>();
+        doAnswer(invocation -> {
+            Arrays.asList(record("1"), record("2", "1"), record("3", "2")).forEach(invocation.getArgumentAt(2, Consumer.class));
+            return "3";
+        }).when(localRepository).streamNewRevisionsOnBranch(eq(master), anyCollectionOf(String.class), any(Consumer.class));
+        doAnswer(invocation -> {
+            // Continue only after the shared history was persisted by the import of the other branch
+            assertTrue(masterImported.await(10, TimeUnit.SECONDS));
+            knownRevisionsOnFeature.add(new ArrayList<>(invocation.getArgumentAt(1, Collection.class)));
+            Arrays.asList(record("1"), record("2", "1"), record("4", "2")).forEach(invocation.getArgumentAt(2, Consumer.class));
+            return "4";
+        }).when(localRepository).streamNewRevisionsOnBranch(eq(feature), anyCollectionOf(String.class), any(Consumer.class));
+
+        projectUpdateService.updateRevisions(project, localRepository);
+
+        assertThat(importedRevisions).containsExactly("1", "2", "3", "4");
+        assertThat(knownRevisionsOnFeature.get(0)).contains("1", "2", "3");
+        assertThat(writerThreads).containsExactly(Thread.currentThread());
+        assertThat(master.getInternalId()).isEqualTo("3");
+        assertThat(feature.getInternalId()).isEqualTo("4");
+    }
+
+    @Test(timeout = 10000)
+    @SuppressWarnings("unchecked")
+    public void testUpdateRevisions_walkFailsWithError() throws Exception {
+        when(localRepository.streamNewRevisionsOnBranch(eq(master), anyCollectionOf(String.class), any(Consumer.class))).thenReturn("1");
+        when(localRepository.streamNewRevisionsOnBranch(eq(feature), anyCollectionOf(String.class), any(Consumer.class))).thenThrow(new StackOverflowError());
+
+        try {
+            projectUpdateService.updateRevisions(project, localRepository);
+            fail("Expected DatacTechnicalException");
+        } catch (DatacTechnicalException e) {
+            assertTrue(e.getCause() instanceof StackOverflowError);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testUpdateRevisions_walkEndsWithoutResult() throws Exception {
+        // Walks which end without passing any chunk, e.g. because they died before they could report their failure
+        SimpleAsyncTaskExecutor lostWalkExecutor = new SimpleAsyncTaskExecutor() {
+            @Override
+            public Future<?> submit(Runnable task) {
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        ProjectUpdateService service = new ProjectUpdateService(mock(EventLogProxy.class), null, null, null, projectService, mock(BranchService.class),
+                revisionGraphService, null, null, null, null, null, null, lostWalkExecutor, null);
+
+        try {
+            service.updateRevisions(project, localRepository);
+            fail("Expected DatacTechnicalException");
+        } catch (DatacTechnicalException e) {
+            assertThat(e.getMessage()).endsWith("ended unexpectedly");
+        }
+    }
+
+    private VcsRevisionRecord record(String internalId, String... parentIds) {
+        return new VcsRevisionRecord(internalId, Arrays.stream(parentIds).collect(Collectors.toList()), Instant.now(), "test", null, "Revision " + internalId);
+    }
+}
@@ -2,9 +2,13 @@ package org.xlrnet.datac.vcs.services;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
-import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 
 import java.time.Instant;
+import java.util.function.Consumer;
 
 import javax.transaction.Transactional;
 
@@ -53,7 +57,7 @@ public class ProjectUpdateServiceTest extends AbstractSpringBootTest {
     public void testUpdateRevisionInBranch() throws Exception {
         DummyRevision root = buildDummyGraph();
         VcsLocalRepository mockedRepository = Mockito.mock(VcsLocalRepository.class);
-        when(mockedRepository.listLatestRevisionOnBranch(testBranch)).thenReturn(root);
+        mockStreamedRevisions(mockedRepository, root);
 
         projectUpdateService.updateRevisionsInBranch(testProject, testBranch, mockedRepository);
 
@@ -62,6 +66,14 @@ public class ProjectUpdateServiceTest extends AbstractSpringBootTest {
         validateRevisionGraph(revision);
     }
 
+    @SuppressWarnings("unchecked")
+    private void mockStreamedRevisions(VcsLocalRepository mockedRepository, DummyRevision root) throws Exception {
+        doAnswer(invocation -> {
+            root.toTopologicalRecords().forEach(invocation.getArgumentAt(2, Consumer.class));
+            return root.getInternalId();
+        }).when(mockedRepository).streamNewRevisionsOnBranch(eq(testBranch), anyCollectionOf(String.class), any(Consumer.class));
+    }
+
     @NotNull
     private DummyRevision buildDummyGraph() {
         DummyRevision root = new DummyRevision().setInternalId("1").setCommitTime(Instant.now());
@@ -78,14 +90,14 @@ public class ProjectUpdateServiceTest extends AbstractSpringBootTest {
         // Prepare first update
         VcsLocalRepository mockedRepository = Mockito.mock(VcsLocalRepository.class);
         DummyRevision root = buildDummyGraph();
-        when(mockedRepository.listLatestRevisionOnBranch(testBranch)).thenReturn(root);
+        mockStreamedRevisions(mockedRepository, root);
         // Perform first update
         projectUpdateService.updateRevisionsInBranch(testProject, testBranch, mockedRepository);
 
         // Prepare second update
         DummyRevision newRoot = new DummyRevision().setInternalId("NEW").setCommitTime(Instant.now())
                 .addParent(new DummyRevision().setInternalId("1").setCommitTime(Instant.now()));
-        when(mockedRepository.listLatestRevisionOnBranch(testBranch)).thenReturn(newRoot);
+        mockStreamedRevisions(mockedRepository, newRoot);
         // Perform second update
         projectUpdateService.updateRevisionsInBranch(testProject, testBranch, mockedRepository);
 